@@ -32,8 +32,10 @@ import systems.dmx.core.service.accesscontrol.Credentials;
 import systems.dmx.core.service.accesscontrol.Operation;
 import systems.dmx.core.service.accesscontrol.Permissions;
 import systems.dmx.core.service.event.CheckAssocReadAccess;
+import systems.dmx.core.service.event.CheckAssocReadAccessBatch;
 import systems.dmx.core.service.event.CheckAssocWriteAccess;
 import systems.dmx.core.service.event.CheckTopicReadAccess;
+import systems.dmx.core.service.event.CheckTopicReadAccessBatch;
 import systems.dmx.core.service.event.CheckTopicWriteAccess;
 import systems.dmx.core.service.event.PostCreateAssoc;
 import systems.dmx.core.service.event.PostCreateTopic;
@@ -45,6 +47,7 @@ import systems.dmx.core.service.event.StaticResourceFilter;
 import systems.dmx.core.util.DMXUtils;
 import systems.dmx.core.util.IdList;
 import systems.dmx.core.util.JavaUtils;
+import systems.dmx.core.util.SubnetFilter;
 import static systems.dmx.files.Constants.*;
 import systems.dmx.files.FilesService;
 import systems.dmx.files.event.CheckDiskQuota;
@@ -72,6 +75,7 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -87,8 +91,10 @@ import java.util.logging.Logger;
 @Produces("application/json")
 public class AccessControlPlugin extends PluginActivator implements AccessControlService, ConfigCustomizer,
                                                                                           CheckTopicReadAccess,
+                                                                                          CheckTopicReadAccessBatch,
                                                                                           CheckTopicWriteAccess,
                                                                                           CheckAssocReadAccess,
+                                                                                          CheckAssocReadAccessBatch,
                                                                                           CheckAssocWriteAccess,
                                                                                           PreCreateAssoc,
                                                                                           PostCreateTopic,
@@ -108,7 +114,9 @@ public class AccessControlPlugin extends PluginActivator implements AccessContro
         "NONE");
     private static final AnonymousAccessFilter accessFilter = new AnonymousAccessFilter(ANONYMOUS_READ_ALLOWED,
         ANONYMOUS_WRITE_ALLOWED);
-    private static final String SUBNET_FILTER = System.getProperty("dmx.security.subnet_filter", "127.0.0.1/32");
+    private static final SubnetFilter subnetFilter = new SubnetFilter(
+        System.getProperty("dmx.security.subnet_filter", "127.0.0.1/32")
+    );
     private static final boolean NEW_ACCOUNTS_ARE_ENABLED = Boolean.parseBoolean(
         System.getProperty("dmx.security.new_accounts_are_enabled", "true")
     );
@@ -119,6 +127,9 @@ public class AccessControlPlugin extends PluginActivator implements AccessContro
 
     private static final String AUTHENTICATION_REALM = "DMX";
 
+    // The cookie set by the webclient. Its presence indicates that the client maintains a session, see isSessionless().
+    private static final String CLIENT_ID_COOKIE = "dmx_client_id";
+
     // Events
     private static DMXEvent POST_LOGIN_USER = new DMXEvent(PostLoginUser.class) {
         @Override
@@ -154,7 +165,7 @@ public class AccessControlPlugin extends PluginActivator implements AccessContro
         logger.info("Security config:" +
             "\n  dmx.security.anonymous_read_allowed = " + accessFilter.dumpReadSetting() +
             "\n  dmx.security.anonymous_write_allowed = " + accessFilter.dumpWriteSetting() +
-            "\n  dmx.security.subnet_filter = " + SUBNET_FILTER +
+            "\n  dmx.security.subnet_filter = " + subnetFilter +
             "\n  dmx.security.new_accounts_are_enabled = " + NEW_ACCOUNTS_ARE_ENABLED);
     }
 
@@ -593,6 +604,11 @@ public class AccessControlPlugin extends PluginActivator implements AccessContro
         checkReadAccess(topicId);
     }
 
+    @Override
+    public void checkTopicReadAccess(long[] topicIds, BitSet readable) {
+        checkReadAccess(topicIds, readable);
+    }
+
     @Override
     public void checkTopicWriteAccess(long topicId) {
         checkWriteAccess(topicId);
@@ -609,6 +625,44 @@ public class AccessControlPlugin extends PluginActivator implements AccessContro
         checkReadAccess(players.get(1));
     }
 
+    @Override
+    public void checkAssocReadAccess(long[] assocIds, BitSet readable) {
+        checkReadAccess(assocIds, readable);
+        if (!inRequestScope()) {
+            return;
+        }
+        // check the players of the readable assocs (like checkAssocReadAccess() does)
+        List<Long> topicIds = new ArrayList();
+        List<Long> assocPlayerIds = new ArrayList();
+        List<Integer> topicPlayerOf = new ArrayList();     // index of the assoc the player belongs to
+        List<Integer> assocPlayerOf = new ArrayList();
+        for (int i = readable.nextSetBit(0); i >= 0; i = readable.nextSetBit(i + 1)) {
+            for (PlayerModel player : dmx.getPlayerModels(assocIds[i])) {
+                if (player instanceof AssocPlayerModel) {
+                    assocPlayerIds.add(player.getId());
+                    assocPlayerOf.add(i);
+                } else {
+                    topicIds.add(player.getId());
+                    topicPlayerOf.add(i);
+                }
+            }
+        }
+        BitSet readableTopics = allSet(topicIds.size());
+        checkReadAccess(toArray(topicIds), readableTopics);
+        BitSet readableAssocs = allSet(assocPlayerIds.size());
+        checkAssocReadAccess(toArray(assocPlayerIds), readableAssocs);      // recursion
+        for (int i = 0; i < topicIds.size(); i++) {
+            if (!readableTopics.get(i)) {
+                readable.clear(topicPlayerOf.get(i));
+            }
+        }
+        for (int i = 0; i < assocPlayerIds.size(); i++) {
+            if (!readableAssocs.get(i)) {
+                readable.clear(assocPlayerOf.get(i));
+            }
+        }
+    }
+
     @Override
     public void checkAssocWriteAccess(long assocId) {
         checkWriteAccess(assocId);
@@ -750,18 +804,7 @@ public class AccessControlPlugin extends PluginActivator implements AccessContro
     // --- Disk Quota ---
 
     private long getOccupiedSpace(String username) {
-        long occupiedSpace = 0;
-        for (Topic fileTopic : dmx.getTopicsByType(FILE)) {
-            long fileTopicId = fileTopic.getId();
-            if (getCreator(fileTopicId).equals(username)) {
-                try {
-                    occupiedSpace += fs.getFile(fileTopicId).length();
-                } catch (Exception e) {
-                    // Note: file might be deleted meanwhile
-                }
-            }
-        }
-        return occupiedSpace;
+        return fs.getOccupiedSpace(username);
     }
 
 
@@ -774,11 +817,10 @@ public class AccessControlPlugin extends PluginActivator implements AccessContro
             "\n      ##### " + info(request.getSession(false)));    // create=false
         // 1) apply subnet filter
         checkRequestOrigin(request);        // throws WebApplicationException 403 Forbidden
-        // 2) create session (if needed)
-        HttpSession session = getSession(request, response);
-        // 3) check authorization (if not yet logged in)
-        if (username(session) == null) {
-            checkAuthorization(request);    // throws WebApplicationException 401 Unauthorized
+        // 2) check authorization (if not yet logged in)
+        HttpSession session = request.getSession(false);    // create=false
+        if (session == null || username(session) == null) {
+            checkAuthorization(request, response);          // throws WebApplicationException 401 Unauthorized
         }
     }
 
@@ -793,11 +835,19 @@ public class AccessControlPlugin extends PluginActivator implements AccessContro
         return session;
     }
 
+    /**
+     * An anonymous read request is served without creating a session if the client is not a webclient, e.g. a
+     * crawler. A webclient is recognized by its client ID cookie. It needs a session for its WebSocket connection.
+     */
+    private boolean isSessionless(HttpServletRequest request) {
+        return request.getMethod().equals("GET") && JavaUtils.cookieValue(request, CLIENT_ID_COOKIE) == null;
+    }
+
     private void checkRequestOrigin(HttpServletRequest request) {
         String remoteAddr = request.getRemoteAddr();
-        boolean allowed = JavaUtils.isInRange(remoteAddr, SUBNET_FILTER);
+        boolean allowed = subnetFilter.isInRange(remoteAddr);
         //
-        logger.fine("Remote address=\"" + remoteAddr + "\", dmx.security.subnet_filter=\"" + SUBNET_FILTER +
+        logger.fine("Remote address=\"" + remoteAddr + "\", dmx.security.subnet_filter=\"" + subnetFilter +
             "\" => " + (allowed ? "ALLOWED" : "FORBIDDEN"));
         //
         if (!allowed) {
@@ -805,16 +855,23 @@ public class AccessControlPlugin extends PluginActivator implements AccessContro
         }
     }
 
-    private void checkAuthorization(HttpServletRequest request) {
+    /**
+     * Creates a session if needed: for a login attempt, and for anonymous requests unless they are sessionless.
+     */
+    private void checkAuthorization(HttpServletRequest request, HttpServletResponse response) {
         boolean authorized;
         String authHeader = request.getHeader("Authorization");
         if (authHeader != null) {
+            getSession(request, response);
             Credentials cred = new Credentials(authHeader);
             AuthorizationMethod am = getAuthorizationMethod(cred);
             // Note: if login fails we are NOT authorized, even if no login is required
             authorized = tryLogin(cred, am, request);
         } else {
             authorized = accessFilter.isAnonymousAccessAllowed(request);
+            if (authorized && !isSessionless(request)) {
+                getSession(request, response);
+            }
         }
         if (!authorized) {
             // Note: a non-public DM installation (anonymous_read_allowed != "ALL") utilizes the browser's login dialog.
@@ -871,8 +928,7 @@ public class AccessControlPlugin extends PluginActivator implements AccessContro
     }
 
     private boolean getLoginEnabled(Topic usernameTopic) {
-        Topic loginEnabled = dmx.getPrivilegedAccess().getConfigTopic(LOGIN_ENABLED, usernameTopic.getId());
-        return loginEnabled.getSimpleValue().booleanValue();
+        return dmx.getPrivilegedAccess().isLoginEnabled(usernameTopic);
     }
 
     // ---
@@ -1018,6 +1074,35 @@ public class AccessControlPlugin extends PluginActivator implements AccessContro
         checkAccess(Operation.READ, objectId);
     }
 
+    /**
+     * Clears the bits of the objects the current user has no READ permission for.
+     *
+     * @param   objectIds   topic IDs and/or association IDs
+     */
+    private void checkReadAccess(long[] objectIds, BitSet readable) {
+        if (!inRequestScope()) {
+            return;
+        }
+        //
+        readable.and(dmx.getPrivilegedAccess().filterReadable(getUsername(), objectIds));
+    }
+
+    private BitSet allSet(int size) {
+        BitSet bits = new BitSet(size);
+        bits.set(0, size);
+        return bits;
+    }
+
+    private long[] toArray(List<Long> ids) {
+        long[] _ids = new long[ids.size()];
+        for (int i = 0; i < _ids.length; i++) {
+            _ids[i] = ids.get(i);
+        }
+        return _ids;
+    }
+
+    // ---
+
     /**
      * @param   objectId    a topic ID, or an association ID
      */
@@ -53,7 +53,6 @@ public class AccountManagementPlugin extends PluginActivator implements AccountM
     private static final boolean NEW_ACCOUNTS_ARE_ENABLED = Boolean.parseBoolean(
         System.getProperty("dmx.security.new_accounts_are_enabled", "true")
     );
-    private static final String SITE_SALT = System.getProperty("dmx.security.site_salt", "");
     // Note: the default values are required in case no config file is in effect. This applies when DM is started
     // via feature:install from Karaf. The default values must match the values defined in project POM.
 
@@ -81,7 +80,7 @@ public class AccountManagementPlugin extends PluginActivator implements AccountM
         if (service instanceof AccessControlService || service instanceof CoreService) {
             // registers built-in account manager
             if (accessControlService != null && dmx != null) {
-                registerAccountManager(new DmxAccountManager(dmx, mf, SITE_SALT));
+                registerAccountManager(new DmxAccountManager(dmx, mf));
             }
         }
     }
@@ -23,12 +23,9 @@ final class DmxAccountManager implements AccountManager {
 
     private final ModelFactory mf;
 
-    private final String siteSalt;
-
-    DmxAccountManager(CoreService dmx, ModelFactory mf, String siteSalt) {
+    DmxAccountManager(CoreService dmx, ModelFactory mf) {
         this.dmx = dmx;
         this.mf = mf;
-        this.siteSalt = siteSalt;
     }
 
     @Override
@@ -52,16 +49,15 @@ final class DmxAccountManager implements AccountManager {
         // Note: a User Account topic (and its child topics) requires special workspace assignments (see next step 3).
         // So we suppress standard workspace assignment. (We can't set the actual workspace here as privileged
         // "assignToWorkspace" calls are required.)
-        String salt = JavaUtils.random256();
+        // Note: the Password topic is created with a random value. It is replaced by the salted hash right away.
         try {
             Topic userAccount = pa.runInWorkspaceContext(-1, () ->
                     dmx.createTopic(mf.newTopicModel(USER_ACCOUNT, mf.newChildTopicsModel()
                             .setRef(USERNAME, usernameTopic.getId())
-                            .set(PASSWORD, JavaUtils.encodeSHA256(siteSalt + salt + cred.password))))
+                            .set(PASSWORD, JavaUtils.random256())))
             );
-            logger.info("### Salting password of user \"" + cred.username + "\"");
             RelatedTopic passwordTopic = userAccount.getChildTopics().getTopic(PASSWORD);
-            passwordTopic.setProperty(SALT, salt, false);     // addToIndex=false
+            pa.storePasswordHash(cred, passwordTopic.getModel());
             // 2) assign user account and password to private workspace
             // Note: the current user has no READ access to the private workspace just created.
             // Privileged assignToWorkspace() calls are required (instead of using the Workspaces service).
@@ -0,0 +1,47 @@
+package systems.dmx.core.impl;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+
+/**
+ * Runs the benchmarks. Accepts the JMH command line options, e.g.
+ * <pre>
+ * java -jar target/benchmarks.jar ReadBenchmarks -p size=10000 -p readCheck=none,single,batch
+ * java -jar target/benchmarks.jar PermissionBenchmarks ReadBenchmarks.getTopicsByType -p readCheck=accesscontrol
+ * </pre>
+ * Unless another format is requested (by <code>-rf</code>) the results are written as JSON, to
+ * <code>dmx-benchmarks.json</code> by default, so that runs can be compared.
+ */
+public class BenchmarkRunner {
+
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    private static final String RESULT_FILE = "dmx-benchmarks.json";
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        if (cmdOptions.shouldHelp()) {
+            cmdOptions.showHelp();
+            return;
+        }
+        if (cmdOptions.shouldList()) {
+            new Runner(cmdOptions).list();
+            return;
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cmdOptions);
+        if (!cmdOptions.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+            if (!cmdOptions.getResult().hasValue()) {
+                options.result(RESULT_FILE);
+            }
+        }
+        new Runner(options.build()).run();
+    }
+}
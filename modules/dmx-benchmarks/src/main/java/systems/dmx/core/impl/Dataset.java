@@ -0,0 +1,529 @@
+package systems.dmx.core.impl;
+
+import static systems.dmx.contacts.Constants.*;
+import static systems.dmx.core.Constants.*;
+import static systems.dmx.datetime.Constants.*;
+import systems.dmx.core.Assoc;
+import systems.dmx.core.Topic;
+import systems.dmx.core.model.SimpleValue;
+import systems.dmx.core.model.TopicModel;
+import systems.dmx.core.osgi.CoreActivator;
+import systems.dmx.core.service.accesscontrol.AccessControlException;
+import systems.dmx.core.service.accesscontrol.Operation;
+import systems.dmx.core.service.accesscontrol.PrivilegedAccess;
+import systems.dmx.core.service.accesscontrol.SharingMode;
+import systems.dmx.core.service.event.CheckAssocReadAccess;
+import systems.dmx.core.service.event.CheckAssocReadAccessBatch;
+import systems.dmx.core.service.event.CheckTopicReadAccess;
+import systems.dmx.core.service.event.CheckTopicReadAccessBatch;
+import systems.dmx.core.storage.spi.DMXStorage;
+import systems.dmx.core.storage.spi.DMXTransaction;
+import systems.dmx.core.util.DMXUtils;
+import systems.dmx.core.util.JavaUtils;
+
+import org.codehaus.jettison.json.JSONObject;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+
+
+/**
+ * A generated dataset the benchmarks run against: a DMX Core (no OSGi container) on top of a fresh database, populated
+ * with <code>size</code> Persons (composites as defined by the Contacts model), a number of Tags each Person is
+ * associated with, and a Topicmap which contains all of these (the way the Topicmaps plugin stores it).
+ * <p>
+ * The Persons are assigned to a number of Workspaces, round-robin. The Workspaces cover all sharing modes, and the
+ * benchmark user ({@link #USER}) is their owner, a member, or neither (the way the Workspaces and AccessControl
+ * plugins store it).
+ * <p>
+ * Parameters (to be set e.g. by <code>-p size=10000</code>):
+ * <ul>
+ * <li><code>size</code>: the number of Persons.
+ * <li><code>storage</code>: the storage factory class.
+ * <li><code>readCheck</code>: the read access check listener in place while the benchmarks run.
+ *     <code>none</code>: no listener; <code>single</code>: a listener which checks one object at a time;
+ *     <code>batch</code>: a listener which checks batches of objects (as the AccessControl plugin does).
+ *     The listener denies access to every 10th Person.
+ *     <code>accesscontrol</code>: a listener which checks (batches of) objects for the benchmark user by the
+ *     actual permission calculation, that is PrivilegedAccess's hasPermission() and filterReadable(), as the
+ *     AccessControl plugin does. Unlike the AccessControl plugin it does not check the players of an assoc.
+ * </ul>
+ */
+@State(Scope.Benchmark)
+public class Dataset {
+
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    static final String TAG = "dmx.benchmarks.tag";
+
+    // Note: we can't depend on the dmx-topicmaps plugin as it comes with migration files (see dmx-test's pom.xml).
+    // Its type model and props are rebuilt here.
+    static final String TOPICMAP         = "dmx.topicmaps.topicmap";
+    static final String TOPICMAP_CONTEXT = "dmx.topicmaps.topicmap_context";
+    static final String TOPICMAP_CONTENT = "dmx.topicmaps.topicmap_content";
+    static final String X                = "dmx.topicmaps.x";
+    static final String Y                = "dmx.topicmaps.y";
+    static final String VISIBILITY       = "dmx.topicmaps.visibility";
+    static final String PINNED           = "dmx.topicmaps.pinned";
+
+    // Note: neither can we depend on the dmx-workspaces and dmx-accesscontrol plugins. Their type URIs and props are
+    // rebuilt here.
+    static final String WORKSPACE            = "dmx.workspaces.workspace";
+    static final String SHARING_MODE         = "dmx.workspaces.sharing_mode";
+    static final String MEMBERSHIP           = "dmx.accesscontrol.membership";
+    static final String USERNAME             = "dmx.accesscontrol.username";
+    static final String PROP_WORKSPACE_ID    = "dmx.workspaces.workspace_id";
+    static final String PROP_OWNER           = "dmx.accesscontrol.owner";
+    static final String SYSTEM_WORKSPACE_URI = "dmx.workspaces.system";
+
+    static final String USER  = "alice";        // the benchmark user
+    static final String ADMIN = "admin";
+
+    static final String[] FIRST_NAMES = {
+        "Anna", "Ben", "Clara", "David", "Emma", "Felix", "Greta", "Hannes", "Ida", "Jonas",
+        "Karla", "Lukas", "Mia", "Noah", "Olga", "Paul", "Rosa", "Simon", "Tilda", "Umut"
+    };
+    static final String[] CITIES = {"Berlin", "Hamburg", "Leipzig", "Dresden", "Potsdam"};
+
+    private static final int TAGS = 10;
+    private static final int WORKSPACES = 20;   // workspace i is owned by the benchmark user if i % 3 == 0, and has
+                                                // them as a member if i % 3 == 1
+    private static final int TX_SIZE = 500;     // number of Persons created per transaction
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    @Param("1000")
+    public int size;
+
+    @Param("systems.dmx.storage.neo4j.Neo4jStorageFactory")
+    public String storage;
+
+    @Param("batch")
+    public String readCheck;
+
+    CoreServiceImpl dmx;
+    ModelFactoryImpl mf;
+
+    List<Long> personIds = new ArrayList();
+    List<Long> readablePersonIds = new ArrayList();     // the Persons not denied by the read access check
+    List<Long> tagIds = new ArrayList();
+    List<Long> workspaceIds = new ArrayList();
+    long topicmapId;
+
+    /**
+     * The Persons along with their child topics, as loaded at the end of setup.
+     */
+    List<Topic> persons;
+
+    private AtomicInteger counter = new AtomicInteger();
+
+    private DMXStorage db;
+    private File databasePath;
+
+    private Logger logger = Logger.getLogger(getClass().getName());
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+    @Setup
+    public void setup() {
+        databasePath = JavaUtils.createTempDirectory("dmx-benchmarks-");
+        db = CoreActivator.openDB(storage, databasePath.getAbsolutePath());
+        mf = db.getModelFactory();
+        dmx = new CoreServiceImpl(new AccessLayer(db), null);     // bundleContext=null
+        //
+        long time = System.currentTimeMillis();
+        inTx(() -> {
+            definePersonModel();
+            defineTopicmapModel();
+            createWorkspaces();
+            dmx.createTopicType(mf.newTopicTypeModel(TAG, "Tag", TEXT));
+            for (int i = 0; i < TAGS; i++) {
+                tagIds.add(dmx.createTopic(mf.newTopicModel(TAG, new SimpleValue("Tag " + i))).getId());
+            }
+            topicmapId = dmx.createTopic(mf.newTopicModel(TOPICMAP, new SimpleValue("Benchmark Map"))).getId();
+            for (long tagId : tagIds) {
+                addTopicToTopicmap(tagId);
+            }
+            return null;
+        });
+        for (int i = 0; i < size; i += TX_SIZE) {
+            int from = i;
+            inTx(() -> {
+                for (int j = from; j < Math.min(from + TX_SIZE, size); j++) {
+                    createPersonWithContext(j);
+                }
+                return null;
+            });
+        }
+        counter.set(size);
+        persons = DMXUtils.loadChildTopics(dmx.getTopicsByType(PERSON));
+        addReadCheck();
+        logger.info("### Generating dataset complete -- " + size + " Persons, storage=" + storage + ", readCheck=" +
+            readCheck + " (" + (System.currentTimeMillis() - time) + " ms)");
+    }
+
+    @TearDown
+    public void shutdown() throws IOException {
+        // copy in CoreActivator.stop()
+        if (dmx != null) {
+            dmx.shutdown();
+        }
+        if (db != null) {
+            db.shutdown();
+        }
+        try (Stream<Path> paths = Files.walk(databasePath.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    <T> T inTx(Supplier<T> work) {
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            T result = work.get();
+            tx.success();
+            return result;
+        } finally {
+            tx.finish();
+        }
+    }
+
+    /**
+     * Returns an ever-increasing number, e.g. for picking the next object round-robin, or for creating a value not
+     * existing yet.
+     */
+    int next() {
+        return counter.getAndIncrement();
+    }
+
+    /**
+     * Returns a readable Person, picked round-robin.
+     */
+    long personId(int i) {
+        return readablePersonIds.get(i % readablePersonIds.size());
+    }
+
+    long tagId(int i) {
+        return tagIds.get(i % tagIds.size());
+    }
+
+    long workspaceId(int i) {
+        return workspaceIds.get(i % workspaceIds.size());
+    }
+
+    TopicModel newPersonModel(int i) {
+        return mf.newTopicModel(PERSON, mf.newChildTopicsModel()
+            .set(PERSON_NAME, mf.newChildTopicsModel()
+                .set(FIRST_NAME, FIRST_NAMES[i % FIRST_NAMES.length])
+                .set(LAST_NAME,  "Doe " + i))
+            .set(DATE + "#" + DATE_OF_BIRTH, mf.newChildTopicsModel()
+                .set(MONTH, i % 12 + 1)
+                .set(DAY,   i % 28 + 1)
+                .set(YEAR,  1950 + i % 50))
+            .add(EMAIL_ADDRESS, "person" + i + "@example.com")
+            .add(ADDRESS + "#" + ADDRESS_ENTRY, mf.newChildTopicsModel()
+                .set(STREET,      "Parkstr. " + i % 100)
+                .set(POSTAL_CODE, String.valueOf(10000 + i % 100))
+                .set(CITY,        CITIES[i % CITIES.length])
+                .set(COUNTRY,     "Germany"))
+            .set(PERSON_DESCRIPTION, "<p>Person " + i + "</p>")
+        );
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    private void createPersonWithContext(int i) {
+        Topic person = dmx.createTopic(newPersonModel(i));
+        Assoc assoc = dmx.createAssoc(mf.newAssocModel(ASSOCIATION,
+            mf.newTopicPlayerModel(person.getId(), DEFAULT),
+            mf.newTopicPlayerModel(tagId(i), DEFAULT)
+        ));
+        person.setProperty(PROP_WORKSPACE_ID, workspaceId(i), true);       // addToIndex=true
+        personIds.add(person.getId());
+        addTopicToTopicmap(person.getId());
+        addAssocToTopicmap(assoc.getId());
+    }
+
+    // --- Topicmap ---
+
+    // copy in TopicmapsPlugin.createTopicMapcontext()
+    private void addTopicToTopicmap(long topicId) {
+        Assoc topicmapContext = dmx.createAssoc(mf.newAssocModel(TOPICMAP_CONTEXT,
+            mf.newTopicPlayerModel(topicmapId, DEFAULT),
+            mf.newTopicPlayerModel(topicId,    TOPICMAP_CONTENT)
+        ));
+        int i = next();
+        mf.newViewProps(100 + i % 40 * 30, 100 + i / 40 * 30, true, false).store(topicmapContext);
+    }
+
+    // copy in TopicmapsPlugin.createAssocMapcontext()
+    private void addAssocToTopicmap(long assocId) {
+        Assoc topicmapContext = dmx.createAssoc(mf.newAssocModel(TOPICMAP_CONTEXT,
+            mf.newTopicPlayerModel(topicmapId, DEFAULT),
+            mf.newAssocPlayerModel(assocId,    TOPICMAP_CONTENT)
+        ));
+        mf.newViewProps(true, false).store(topicmapContext);
+    }
+
+    // --- Workspaces ---
+
+    // copy in WorkspacesPlugin.createWorkspace() and AccessControlPlugin.createMembership()
+    private void createWorkspaces() {
+        dmx.createTopicType(mf.newTopicTypeModel(WORKSPACE,    "Workspace",    TEXT));
+        dmx.createTopicType(mf.newTopicTypeModel(SHARING_MODE, "Sharing Mode", TEXT));
+        dmx.createTopicType(mf.newTopicTypeModel(USERNAME,     "Username",     TEXT));
+        dmx.createAssocType(mf.newAssocTypeModel(MEMBERSHIP,   "Membership",   TEXT));
+        for (SharingMode sharingMode : SharingMode.values()) {
+            dmx.createTopic(mf.newTopicModel(sharingMode.getUri(), SHARING_MODE, new SimpleValue(sharingMode.name())));
+        }
+        long userId = dmx.createTopic(mf.newTopicModel(USERNAME, new SimpleValue(USER))).getId();
+        dmx.createTopic(mf.newTopicModel(USERNAME, new SimpleValue(ADMIN)));
+        // the PUBLIC sharing mode relies on the System workspace
+        createWorkspace(SYSTEM_WORKSPACE_URI, "System", SharingMode.PUBLIC, ADMIN);
+        for (int i = 0; i < WORKSPACES; i++) {
+            SharingMode sharingMode = SharingMode.values()[i % SharingMode.values().length];
+            long workspaceId = createWorkspace(null, "Workspace " + i, sharingMode, i % 3 == 0 ? USER : ADMIN);
+            if (i % 3 == 1) {
+                dmx.createAssoc(mf.newAssocModel(MEMBERSHIP,
+                    mf.newTopicPlayerModel(userId,      DEFAULT),
+                    mf.newTopicPlayerModel(workspaceId, DEFAULT)
+                ));
+            }
+            workspaceIds.add(workspaceId);
+        }
+    }
+
+    private long createWorkspace(String uri, String name, SharingMode sharingMode, String owner) {
+        Topic workspace = dmx.createTopic(mf.newTopicModel(uri, WORKSPACE, new SimpleValue(name)));
+        workspace.setProperty(PROP_OWNER, owner, true);                     // addToIndex=true
+        dmx.createAssoc(mf.newAssocModel(COMPOSITION,
+            mf.newTopicPlayerModel(workspace.getId(), PARENT),
+            mf.newTopicPlayerModel(sharingMode.getUri(), CHILD)
+        ));
+        return workspace.getId();
+    }
+
+    // --- Type Model ---
+
+    // copy in PersonTest (dmx-test)
+    private void definePersonModel() {
+        defineDateModel();
+        defineAddressModel();
+        // Person Name
+        dmx.createTopicType(mf.newTopicTypeModel(FIRST_NAME,  "First Name",  TEXT));
+        dmx.createTopicType(mf.newTopicTypeModel(LAST_NAME,   "Last Name",   TEXT));
+        dmx.createTopicType(mf.newTopicTypeModel(PERSON_NAME, "Person Name", VALUE)
+          .addCompDef(mf.newCompDefModel(null, false, true, PERSON_NAME, FIRST_NAME, ONE))
+          .addCompDef(mf.newCompDefModel(null, false, true, PERSON_NAME, LAST_NAME,  ONE))
+        );
+        // Person
+        dmx.createAssocType(mf.newAssocTypeModel(DATE_OF_BIRTH,      "Date of Birth",      TEXT));
+        dmx.createAssocType(mf.newAssocTypeModel(ADDRESS_ENTRY,      "Address Entry",      TEXT));
+        dmx.createTopicType(mf.newTopicTypeModel(EMAIL_ADDRESS,      "Email Address",      TEXT));
+        dmx.createTopicType(mf.newTopicTypeModel(PERSON_DESCRIPTION, "Person Description", HTML));
+        dmx.createTopicType(mf.newTopicTypeModel(PERSON,             "Person",             ENTITY)
+          .addCompDef(mf.newCompDefModel(null, true, false, PERSON, PERSON_NAME, ONE))
+          .addCompDef(mf.newCompDefModel(DATE_OF_BIRTH, false, false,
+                                         PERSON, DATE,               ONE))
+          .addCompDef(mf.newCompDefModel(PERSON, EMAIL_ADDRESS,      MANY))
+          .addCompDef(mf.newCompDefModel(ADDRESS_ENTRY, false, false,
+                                         PERSON, ADDRESS,            MANY))
+          .addCompDef(mf.newCompDefModel(PERSON, PERSON_DESCRIPTION, ONE))
+        );
+    }
+
+    private void defineDateModel() {
+        dmx.createTopicType(mf.newTopicTypeModel(MONTH, "Month", NUMBER));
+        dmx.createTopicType(mf.newTopicTypeModel(DAY,   "Day",   NUMBER));
+        dmx.createTopicType(mf.newTopicTypeModel(YEAR,  "Year",  NUMBER));
+        dmx.createTopicType(mf.newTopicTypeModel(DATE,  "Date",  VALUE)
+            .addCompDef(mf.newCompDefModel(null, false, true, DATE, MONTH, ONE))
+            .addCompDef(mf.newCompDefModel(null, false, true, DATE, DAY,   ONE))
+            .addCompDef(mf.newCompDefModel(null, false, true, DATE, YEAR,  ONE))
+        );
+    }
+
+    private void defineAddressModel() {
+        dmx.createTopicType(mf.newTopicTypeModel(STREET,      "Street",      TEXT));
+        dmx.createTopicType(mf.newTopicTypeModel(POSTAL_CODE, "Postal Code", TEXT));
+        dmx.createTopicType(mf.newTopicTypeModel(CITY,        "City",        TEXT));
+        dmx.createTopicType(mf.newTopicTypeModel(COUNTRY,     "Country",     TEXT));
+        dmx.createTopicType(mf.newTopicTypeModel(ADDRESS,     "Address",     VALUE)
+            .addCompDef(mf.newCompDefModel(null, false, true, ADDRESS, STREET,      ONE))
+            .addCompDef(mf.newCompDefModel(null, false, true, ADDRESS, POSTAL_CODE, ONE))
+            .addCompDef(mf.newCompDefModel(null, false, true, ADDRESS, CITY,        ONE))
+            .addCompDef(mf.newCompDefModel(null, false, true, ADDRESS, COUNTRY,     ONE))
+        );
+    }
+
+    // copy in dmx-topicmaps migration1.json
+    private void defineTopicmapModel() {
+        try {
+            dmx.createTopicType(mf.newTopicTypeModel(TOPICMAP, "Topicmap", TEXT));
+            dmx.createAssocType(mf.newAssocTypeModel(TOPICMAP_CONTEXT, "Topicmap Context", TEXT));
+            dmx.createRoleType(mf.newRoleTypeModel(new JSONObject()
+                .put("value", "Topicmap Content")
+                .put("uri",   TOPICMAP_CONTENT)
+            ));
+        } catch (Exception e) {
+            throw new RuntimeException("Defining the Topicmap model failed", e);
+        }
+    }
+
+    // --- Read Access Check ---
+
+    private void addReadCheck() {
+        if (readCheck.equals("accesscontrol")) {
+            PrivilegedAccess pa = dmx.getPrivilegedAccess();
+            for (long personId : personIds) {
+                if (pa.hasPermission(USER, Operation.READ, personId)) {
+                    readablePersonIds.add(personId);
+                }
+            }
+            AccessControlReadCheck listener = new AccessControlReadCheck(pa);
+            dmx.em.addListener(CoreEvent.CHECK_TOPIC_READ_ACCESS, listener);
+            dmx.em.addListener(CoreEvent.CHECK_TOPIC_READ_ACCESS_BATCH, listener);
+            dmx.em.addListener(CoreEvent.CHECK_ASSOC_READ_ACCESS, listener);
+            dmx.em.addListener(CoreEvent.CHECK_ASSOC_READ_ACCESS_BATCH, listener);
+            return;
+        }
+        Set<Long> denied = new HashSet();
+        for (int i = 0; i < personIds.size(); i++) {
+            if (i % 10 == 0 && !readCheck.equals("none")) {
+                denied.add(personIds.get(i));
+            } else {
+                readablePersonIds.add(personIds.get(i));
+            }
+        }
+        switch (readCheck) {
+        case "none":
+            break;
+        case "single":
+            ReadCheck listener = new ReadCheck(denied);
+            dmx.em.addListener(CoreEvent.CHECK_TOPIC_READ_ACCESS, listener);
+            dmx.em.addListener(CoreEvent.CHECK_ASSOC_READ_ACCESS, listener);
+            break;
+        case "batch":
+            BatchReadCheck batchListener = new BatchReadCheck(denied);
+            dmx.em.addListener(CoreEvent.CHECK_TOPIC_READ_ACCESS, batchListener);
+            dmx.em.addListener(CoreEvent.CHECK_TOPIC_READ_ACCESS_BATCH, batchListener);
+            dmx.em.addListener(CoreEvent.CHECK_ASSOC_READ_ACCESS, batchListener);
+            dmx.em.addListener(CoreEvent.CHECK_ASSOC_READ_ACCESS_BATCH, batchListener);
+            break;
+        default:
+            throw new RuntimeException("\"" + readCheck + "\" is an unexpected readCheck parameter (expected are " +
+                "\"none\", \"single\", \"batch\", \"accesscontrol\")");
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Classes
+
+    private static class ReadCheck implements CheckTopicReadAccess, CheckAssocReadAccess {
+
+        private Set<Long> denied;
+
+        private ReadCheck(Set<Long> denied) {
+            this.denied = denied;
+        }
+
+        @Override
+        public void checkTopicReadAccess(long topicId) {
+            check(topicId);
+        }
+
+        @Override
+        public void checkAssocReadAccess(long assocId) {
+            check(assocId);
+        }
+
+        void check(long objectId) {
+            if (denied.contains(objectId)) {
+                throw new AccessControlException("Object " + objectId + " is not readable");
+            }
+        }
+
+        void check(long[] objectIds, BitSet readable) {
+            for (int i = 0; i < objectIds.length; i++) {
+                if (denied.contains(objectIds[i])) {
+                    readable.clear(i);
+                }
+            }
+        }
+    }
+
+    private static class BatchReadCheck extends ReadCheck implements CheckTopicReadAccessBatch,
+                                                                      CheckAssocReadAccessBatch {
+
+        private BatchReadCheck(Set<Long> denied) {
+            super(denied);
+        }
+
+        @Override
+        public void checkTopicReadAccess(long[] topicIds, BitSet readable) {
+            check(topicIds, readable);
+        }
+
+        @Override
+        public void checkAssocReadAccess(long[] assocIds, BitSet readable) {
+            check(assocIds, readable);
+        }
+    }
+
+    /**
+     * Checks the READ permission of the benchmark user, like the AccessControl plugin does for the logged in user.
+     */
+    private static class AccessControlReadCheck implements CheckTopicReadAccess, CheckTopicReadAccessBatch,
+                                                           CheckAssocReadAccess, CheckAssocReadAccessBatch {
+
+        private PrivilegedAccess pa;
+
+        private AccessControlReadCheck(PrivilegedAccess pa) {
+            this.pa = pa;
+        }
+
+        @Override
+        public void checkTopicReadAccess(long topicId) {
+            check(topicId);
+        }
+
+        @Override
+        public void checkTopicReadAccess(long[] topicIds, BitSet readable) {
+            readable.and(pa.filterReadable(USER, topicIds));
+        }
+
+        @Override
+        public void checkAssocReadAccess(long assocId) {
+            check(assocId);
+        }
+
+        @Override
+        public void checkAssocReadAccess(long[] assocIds, BitSet readable) {
+            readable.and(pa.filterReadable(USER, assocIds));
+        }
+
+        private void check(long objectId) {
+            if (!pa.hasPermission(USER, Operation.READ, objectId)) {
+                throw new AccessControlException("Object " + objectId + " is not readable");
+            }
+        }
+    }
+}
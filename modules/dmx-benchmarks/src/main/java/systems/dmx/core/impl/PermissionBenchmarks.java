@@ -0,0 +1,87 @@
+package systems.dmx.core.impl;
+
+import systems.dmx.core.service.accesscontrol.Operation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * Benchmarks the permission calculation of PrivilegedAccess: workspace assignment lookup, sharing mode, ownership,
+ * and membership, along with the PermissionCache. The Persons of the dataset are spread over Workspaces of all sharing
+ * modes, for which the benchmark user is the owner, a member, or neither.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PermissionBenchmarks {
+
+    @State(Scope.Benchmark)
+    public static class PersonIds {
+
+        long[] ids;
+
+        @Setup
+        public void setup(Dataset data) {
+            ids = data.personIds.stream().mapToLong(Long::longValue).toArray();
+        }
+    }
+
+    // --- Single Object ---
+
+    /**
+     * Checks the benchmark user's READ permission for a Person. The workspace permissions are cached, so this
+     * measures the workspace assignment lookup and the cache hit.
+     */
+    @Benchmark
+    public boolean hasPermission(Dataset data) {
+        return data.dmx.getPrivilegedAccess().hasPermission(Dataset.USER, Operation.READ,
+            data.personId(data.next()));
+    }
+
+    /**
+     * Checks the benchmark user's READ permission for a Person, after its workspace is invalidated the way a
+     * committed ownership change does. So the sharing mode, ownership, and membership are calculated each time.
+     */
+    @Benchmark
+    public boolean hasPermissionUncached(Dataset data) {
+        int i = data.next();
+        PermissionCache permissionCache = data.dmx.al.permissionCache;
+        permissionCache.propertyChanged(data.workspaceId(i), Dataset.PROP_OWNER);
+        permissionCache.txFinished();
+        return data.dmx.getPrivilegedAccess().hasPermission(Dataset.USER, Operation.READ, data.personId(i));
+    }
+
+    // --- Batch ---
+
+    /**
+     * Determines which of all Persons are readable by the benchmark user, as the AccessControl plugin's batch read
+     * check does.
+     */
+    @Benchmark
+    public BitSet filterReadable(Dataset data, PersonIds personIds) {
+        return data.dmx.getPrivilegedAccess().filterReadable(Dataset.USER, personIds.ids);
+    }
+
+    /**
+     * Determines which of all Persons are readable by an anonymous user.
+     */
+    @Benchmark
+    public BitSet filterReadableAnonymous(Dataset data, PersonIds personIds) {
+        return data.dmx.getPrivilegedAccess().filterReadable(null, personIds.ids);      // username=null
+    }
+}
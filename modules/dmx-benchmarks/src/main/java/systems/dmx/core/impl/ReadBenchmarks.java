@@ -0,0 +1,140 @@
+package systems.dmx.core.impl;
+
+import static systems.dmx.contacts.Constants.*;
+import static systems.dmx.core.Constants.*;
+import systems.dmx.core.Assoc;
+import systems.dmx.core.RelatedAssoc;
+import systems.dmx.core.RelatedTopic;
+import systems.dmx.core.Topic;
+import systems.dmx.core.model.topicmaps.ViewAssoc;
+import systems.dmx.core.model.topicmaps.ViewProps;
+import systems.dmx.core.model.topicmaps.ViewTopic;
+import systems.dmx.core.service.TopicResult;
+import systems.dmx.core.util.DMXUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * Benchmarks the read paths: fetching composites (ChildTopicsFetcher), traversal and index queries, read access checks,
+ * Topicmap loading, and JSON serialization. All of these run outside a transaction, as a webservice GET request does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ReadBenchmarks {
+
+    // --- Composites ---
+
+    @Benchmark
+    public Topic getTopicWithChildren(Dataset data) {
+        return data.dmx.getTopic(data.personId(data.next())).loadChildTopics();
+    }
+
+    /**
+     * Fetches all Persons along with their child topics (batched).
+     */
+    @Benchmark
+    public List<Topic> getTopicsByTypeWithChildren(Dataset data) {
+        return DMXUtils.loadChildTopics(data.dmx.getTopicsByType(PERSON));
+    }
+
+    // --- Traversal and Queries ---
+
+    /**
+     * Fetches the Persons associated with a Tag (about 1/10 of all Persons).
+     */
+    @Benchmark
+    public List<RelatedTopic> relatedTopics(Dataset data) {
+        Topic tag = data.dmx.getTopic(data.tagId(data.next()));
+        return tag.getRelatedTopics(ASSOCIATION, DEFAULT, DEFAULT, PERSON);
+    }
+
+    /**
+     * Searches Persons by first name (about 1/20 of all Persons), involving the child topics search.
+     */
+    @Benchmark
+    public TopicResult fulltextSearch(Dataset data) {
+        String firstName = Dataset.FIRST_NAMES[data.next() % Dataset.FIRST_NAMES.length];
+        return data.dmx.queryTopicsFulltext(firstName, PERSON, true);      // searchChildTopics=true
+    }
+
+    // --- Access Control ---
+
+    /**
+     * Fetches all Persons, each of which is checked for read access (see the <code>readCheck</code> parameter).
+     */
+    @Benchmark
+    public List<Topic> getTopicsByType(Dataset data) {
+        return data.dmx.getTopicsByType(PERSON);
+    }
+
+    // --- Topicmap ---
+
+    /**
+     * Loads the Topicmap, which contains all Persons, Tags, and the assocs between them.
+     * The loading is a copy of TopicmapsPlugin.getTopicmap() (includeChildren=true).
+     */
+    @Benchmark
+    public List<Object> loadTopicmap(Dataset data) {
+        Topic topicmapTopic = data.dmx.getTopic(data.topicmapId);
+        List<Object> viewObjects = new ArrayList();
+        List<RelatedTopic> topics = topicmapTopic.getRelatedTopics(Dataset.TOPICMAP_CONTEXT, DEFAULT,
+            Dataset.TOPICMAP_CONTENT, null);        // othersTopicTypeUri=null
+        DMXUtils.loadChildTopics(topics);
+        for (RelatedTopic topic : topics) {
+            viewObjects.add(buildViewTopic(data, topic));
+        }
+        List<RelatedAssoc> assocs = topicmapTopic.getRelatedAssocs(Dataset.TOPICMAP_CONTEXT, DEFAULT,
+            Dataset.TOPICMAP_CONTENT, null);        // othersAssocTypeUri=null
+        for (RelatedAssoc assoc : assocs) {
+            viewObjects.add(buildViewAssoc(data, assoc));
+        }
+        return viewObjects;
+    }
+
+    // --- Serialization ---
+
+    /**
+     * Serializes all Persons along with their child topics (as loaded at setup).
+     */
+    @Benchmark
+    public String toJSON(Dataset data) {
+        return DMXUtils.toJSONArray(data.persons).toString();
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    private ViewTopic buildViewTopic(Dataset data, RelatedTopic topic) {
+        Assoc topicmapContext = topic.getRelatingAssoc();
+        ViewProps viewProps = data.mf.newViewProps(
+            (Integer) topicmapContext.getProperty(Dataset.X),
+            (Integer) topicmapContext.getProperty(Dataset.Y),
+            (Boolean) topicmapContext.getProperty(Dataset.VISIBILITY),
+            (Boolean) topicmapContext.getProperty(Dataset.PINNED)
+        );
+        return data.mf.newViewTopic(topic.getModel(), viewProps);
+    }
+
+    private ViewAssoc buildViewAssoc(Dataset data, RelatedAssoc assoc) {
+        Assoc topicmapContext = assoc.getRelatingAssoc();
+        ViewProps viewProps = data.mf.newViewProps(
+            (Boolean) topicmapContext.getProperty(Dataset.VISIBILITY),
+            (Boolean) topicmapContext.getProperty(Dataset.PINNED)
+        );
+        return data.mf.newViewAssoc(assoc.getModel(), viewProps);
+    }
+}
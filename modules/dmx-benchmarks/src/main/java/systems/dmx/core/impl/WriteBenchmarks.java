@@ -0,0 +1,66 @@
+package systems.dmx.core.impl;
+
+import static systems.dmx.contacts.Constants.*;
+import systems.dmx.core.Topic;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * Benchmarks the write paths (mainly ValueIntegrator) by creating and updating composites. Each invocation runs (and
+ * commits) its own transaction. Note: the dataset grows while these benchmarks run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class WriteBenchmarks {
+
+    /**
+     * Creates a Person (a composite with nested values).
+     */
+    @Benchmark
+    public Topic createComposite(Dataset data) {
+        return data.inTx(() -> data.dmx.createTopic(data.newPersonModel(data.next())));
+    }
+
+    /**
+     * Updates the name of an existing Person (a nested value, to be replaced by a new one).
+     */
+    @Benchmark
+    public Topic updateComposite(Dataset data) {
+        return data.inTx(() -> {
+            int i = data.next();
+            Topic person = data.dmx.getTopic(data.personId(i));
+            person.update(data.mf.newChildTopicsModel()
+                .set(PERSON_NAME, data.mf.newChildTopicsModel()
+                    .set(FIRST_NAME, Dataset.FIRST_NAMES[i % Dataset.FIRST_NAMES.length])
+                    .set(LAST_NAME,  "Doe " + i))
+            );
+            return person;
+        });
+    }
+
+    /**
+     * Updates a simple child value of an existing Person.
+     */
+    @Benchmark
+    public Topic updateSimpleChild(Dataset data) {
+        return data.inTx(() -> {
+            int i = data.next();
+            Topic person = data.dmx.getTopic(data.personId(i));
+            person.update(data.mf.newChildTopicsModel().set(PERSON_DESCRIPTION, "<p>Updated " + i + "</p>"));
+            return person;
+        });
+    }
+}
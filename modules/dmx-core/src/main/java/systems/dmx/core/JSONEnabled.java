@@ -1,7 +1,11 @@
 package systems.dmx.core;
 
+import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
 
+import java.io.IOException;
+import java.io.Writer;
+
 
 
 /**
@@ -11,6 +15,16 @@ public interface JSONEnabled {
 
     JSONObject toJSON();
 
+    /**
+     * Writes the JSON representation to the given writer.
+     * <p>
+     * Entities which aggregate many other entities (e.g. a query result) override this to stream their parts one by
+     * one. So the JSON tree of the entire entity is never built in memory.
+     */
+    default public void writeJSON(Writer writer) throws IOException, JSONException {
+        toJSON().write(writer);
+    }
+
     default public String dump() {
         try {
             return getClass().getSimpleName() + " " + toJSON().toString(4);
@@ -3,18 +3,26 @@ package systems.dmx.core.impl;
 import static systems.dmx.core.Constants.*;
 import systems.dmx.core.DMXObject;
 import systems.dmx.core.model.PlayerModel;
-import systems.dmx.core.model.RelatedObjectModel;
 import systems.dmx.core.model.SimpleValue;
 import systems.dmx.core.service.CriticalityLevel;
+import systems.dmx.core.service.DMXEvent;
 import systems.dmx.core.service.DMXException;
+import systems.dmx.core.service.ResultPage;
 import systems.dmx.core.service.accesscontrol.PrivilegedAccess;
 import systems.dmx.core.storage.spi.DMXStorage;
+import systems.dmx.core.storage.spi.DMXTransaction;
+import systems.dmx.core.storage.spi.ModelHits;
 import systems.dmx.core.util.DMXUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Logger;
 
@@ -40,18 +48,22 @@ public final class AccessLayer {
     EventManager em;
     ModelFactoryImpl mf;
     PrivilegedAccess pa;
+    PermissionCache permissionCache;
+    ModelCache modelCache;
 
     private final Logger logger = Logger.getLogger(getClass().getName());
 
     // ---------------------------------------------------------------------------------------------------- Constructors
 
     public AccessLayer(DMXStorage db) {
-        this.db = db;
-        this.sd = new StorageDecorator(db);
+        this.modelCache = new ModelCache(db);
+        this.db = modelCache;
+        this.sd = new StorageDecorator(this.db);
         // Note: mf must be initialzed before the type storage is instantiated
         this.em = new EventManager();
         this.mf = (ModelFactoryImpl) db.getModelFactory();
         this.typeStorage = new TypeStorage(this);
+        this.permissionCache = new PermissionCache();
         this.pa = new PrivilegedAccessImpl(this);
         //
         // Note: this is a constructor side effect. This is a cyclic dependency.
@@ -134,6 +146,36 @@ public final class AccessLayer {
         return new ReadableIterable(db.fetchAllTopics());
     }
 
+    // --- Paged queries ---
+
+    ResultPage<TopicModelImpl> getTopicsByType(String topicTypeUri, String cursor, int offset, int limit) {
+        try {
+            _getTopicType(topicTypeUri);        // throws if type is unknown
+            return page(db.fetchTopicHits("typeUri", topicTypeUri), cursor, offset, limit);
+        } catch (Exception e) {
+            throw new RuntimeException("Fetching topics by type failed, topicTypeUri=\"" + topicTypeUri +
+                "\", cursor=\"" + cursor + "\", offset=" + offset + ", limit=" + limit, e);
+        }
+    }
+
+    ResultPage<TopicModelImpl> queryTopicsFulltext(String query, String topicTypeUri, boolean searchChildTopics,
+                                                   String cursor, int offset, int limit) {
+        try {
+            ModelHits<TopicModelImpl> topics;
+            if (topicTypeUri != null && searchChildTopics) {
+                // Note: the parent topics are found by traversal, so the result can't be paged lazily
+                topics = ModelHits.of(parentObjects(topicTypeUri, db.queryTopicsFulltext(null, query)));  // key=null
+            } else {
+                topics = db.queryTopicHitsFulltext(topicTypeUri, query);
+            }
+            return page(topics, cursor, offset, limit);
+        } catch (Exception e) {
+            throw new RuntimeException("Querying topics fulltext failed, query=\"" + query + "\", topicTypeUri=" +
+                topicTypeUri + ", searchChildTopics=" + searchChildTopics + ", cursor=\"" + cursor + "\", offset=" +
+                offset + ", limit=" + limit, e);
+        }
+    }
+
     void indexTopicFulltext(long topicId, String text, String indexKey) {
         // FIXME: check WRITE permission
         db.indexTopicFulltext(topicId, text, indexKey);
@@ -331,6 +373,7 @@ public final class AccessLayer {
             //
             // store in DB
             db.storeAssoc(model);
+            permissionCache.assocChanged(model);
             AssocModelImpl _model = integrateValues(model);
             createAssocInstantiation(_model.getId(), _model.getTypeUri());
             //
@@ -775,6 +818,11 @@ public final class AccessLayer {
         return filterReadables(db.fetchTopicsByPropertyRange(propUri, from, to));
     }
 
+    ResultPage<TopicModelImpl> getTopicsByProperty(String propUri, Object propValue, String cursor, int offset,
+                                                   int limit) {
+        return page(db.fetchTopicHitsByProperty(propUri, propValue), cursor, offset, limit);
+    }
+
     List<AssocModelImpl> getAssocsByProperty(String propUri, Object propValue) {
         return filterReadables(db.fetchAssocsByProperty(propUri, propValue));
     }
@@ -783,11 +831,40 @@ public final class AccessLayer {
         return filterReadables(db.fetchAssocsByPropertyRange(propUri, from, to));
     }
 
+    List<TopicModelImpl> getTopicsByTypeAndProperty(String topicTypeUri, String propUri, Object propValue) {
+        return filterReadables(db.fetchTopicsByTypeAndProperty(topicTypeUri, propUri, propValue));
+    }
+
+    List<AssocModelImpl> getAssocsByTypeAndProperty(String assocTypeUri, String propUri, Object propValue) {
+        return filterReadables(db.fetchAssocsByTypeAndProperty(assocTypeUri, propUri, propValue));
+    }
+
+
+
+    // === Transactions ===
+
+    /**
+     * Begins a transaction. Once the outermost transaction of the current thread has finished the Core caches get
+     * notified.
+     */
+    DMXTransaction beginTx() {
+        return new TransactionImpl(db.beginTx(), this);
+    }
+
 
 
     // === Access Control ===
 
+    /**
+     * Removes the models the current user has no READ permission for.
+     * <p>
+     * If all the read access listeners support batch checking the models are checked at once (see
+     * {@link #filterReadablesBatch}). Otherwise the models are checked one by one.
+     */
     <M extends DMXObjectModelImpl> List<M> filterReadables(List<M> models) {
+        if (models.size() > 1 && isReadCheckBatchSupported()) {
+            return filterReadablesBatch(models);
+        }
         Iterator<? extends DMXObjectModelImpl> i = models.iterator();
         while (i.hasNext()) {
             if (!i.next().isReadable()) {
@@ -943,28 +1020,26 @@ public final class AccessLayer {
     // ---
 
     /**
-     * Returns parent topics of the given type as found by child-to-parent traversal starting at the given topics.
-     * ### FIXDOC
+     * Returns parent objects of the given type as found by child-to-parent traversal starting at the given topics.
+     * A starting topic which is of the given type is returned itself. Each parent is resolved by one lookup in the
+     * model cache's ancestor index, and is returned once.
+     * <p>
+     * Note: the parents are returned as plain models. No relating assoc is attached.
      */
     private <M extends DMXObjectModelImpl> List<M> parentObjects(String typeUri, List<TopicModelImpl> topics) {
-        List<M> result = new ArrayList();                   // TODO: use rather a set?
+        List<M> result = new ArrayList();
+        Set<Long> resultIds = new HashSet();
         for (TopicModelImpl topic : topics) {
-            for (DMXObjectModelImpl parentObject : _parentObjects(typeUri, topic)) {
-                if (!result.contains(parentObject)) {       // TODO: equality and rel-objects?
-                    result.add((M) parentObject);
+            if (topic.typeUri.equals(typeUri)) {
+                if (resultIds.add(topic.id)) {
+                    result.add((M) topic);
+                }
+            } else {
+                for (long parentId : modelCache.fetchAncestorIds(topic.id, typeUri)) {
+                    if (resultIds.add(parentId)) {
+                        result.add((M) db.fetchObject(parentId));
+                    }
                 }
-            }
-        }
-        return result;
-    }
-
-    private List<DMXObjectModelImpl> _parentObjects(String typeUri, DMXObjectModelImpl object) {
-        List<DMXObjectModelImpl> result = new ArrayList();
-        if (object.typeUri.equals(typeUri)) {
-            result.add(object);
-        } else {
-            for (RelatedObjectModel parentObject : object.getRelatedObjects(null, CHILD, PARENT, null)) {
-                result.addAll(_parentObjects(typeUri, (DMXObjectModelImpl) parentObject));
             }
         }
         return result;
@@ -1083,6 +1158,114 @@ public final class AccessLayer {
 
     // ---
 
+    /**
+     * Collects one page of readable models from the given hits. The permission checks are performed only until the
+     * page is full. The hits are closed.
+     *
+     * @param   cursor  Optional: the cursor as returned with the previous page. If <code>null</code> the hits are read
+     *                  from the start.
+     * @param   offset  the number of readable models to skip (after the cursor position).
+     * @param   limit   the max number of models per page.
+     */
+    private <M extends DMXObjectModelImpl> ResultPage<M> page(ModelHits<M> hits, String cursor, int offset,
+                                                              int limit) {
+        try {
+            if (offset < 0 || limit <= 0) {
+                throw new IllegalArgumentException("Invalid page, offset=" + offset + ", limit=" + limit);
+            }
+            // Note: the hits are ordered by ID and the cursor holds the ID of the last model returned. So the next
+            // page resumes right after that model, even if objects were created or deleted in the meantime.
+            if (cursor != null) {
+                hits.skipPast(decodeCursor(cursor));
+            }
+            List<M> items = new ArrayList();
+            while (items.size() < limit && hits.hasNext()) {
+                M model = hits.next();
+                if (model.isReadable()) {
+                    if (offset > 0) {
+                        offset--;
+                    } else {
+                        items.add(model);
+                    }
+                }
+            }
+            String nextCursor = hits.hasNext() ? encodeCursor(items.get(items.size() - 1).getId()) : null;
+            return new ResultPage(items, nextCursor, hits.size());
+        } finally {
+            hits.close();
+        }
+    }
+
+    private String encodeCursor(long id) {
+        return Base64.getUrlEncoder().encodeToString(Long.toString(id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long decodeCursor(String cursor) {
+        long id = -1;
+        try {
+            id = Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {      // NumberFormatException is an IllegalArgumentException too
+        }
+        if (id < 0) {
+            throw new IllegalArgumentException("Invalid cursor \"" + cursor + "\"");
+        }
+        return id;
+    }
+
+    // ---
+
+    private boolean isReadCheckBatchSupported() {
+        return em.isBatchSupported(CoreEvent.CHECK_TOPIC_READ_ACCESS, CoreEvent.CHECK_TOPIC_READ_ACCESS_BATCH) &&
+               em.isBatchSupported(CoreEvent.CHECK_ASSOC_READ_ACCESS, CoreEvent.CHECK_ASSOC_READ_ACCESS_BATCH);
+    }
+
+    /**
+     * Checks READability of the given models at once: the IDs of all the topics and assocs to be checked are collected
+     * (duplicates removed) and a CHECK_TOPIC_READ_ACCESS_BATCH resp. CHECK_ASSOC_READ_ACCESS_BATCH event is fired
+     * once. A related topic/assoc is readable only if its relating assoc is readable as well (like at isReadable()).
+     * A comp def is checked by its own as it involves its custom assoc type.
+     */
+    private <M extends DMXObjectModelImpl> List<M> filterReadablesBatch(List<M> models) {
+        if (!em.hasListeners(CoreEvent.CHECK_TOPIC_READ_ACCESS_BATCH) &&
+            !em.hasListeners(CoreEvent.CHECK_ASSOC_READ_ACCESS_BATCH)) {
+            return models;
+        }
+        ReadCheckBatch batch = new ReadCheckBatch();
+        for (M model : models) {
+            if (!(model instanceof CompDefModelImpl)) {
+                batch.add(model);
+                batch.add(relatingAssoc(model));
+            }
+        }
+        batch.check();
+        //
+        Iterator<M> i = models.iterator();
+        while (i.hasNext()) {
+            M model = i.next();
+            boolean readable;
+            if (model instanceof CompDefModelImpl) {
+                readable = model.isReadable();
+            } else {
+                readable = batch.isReadable(model) && batch.isReadable(relatingAssoc(model));
+            }
+            if (!readable) {
+                i.remove();
+            }
+        }
+        return models;
+    }
+
+    private AssocModelImpl relatingAssoc(DMXObjectModelImpl model) {
+        if (model instanceof RelatedTopicModelImpl) {
+            return ((RelatedTopicModelImpl) model).getRelatingAssoc();
+        } else if (model instanceof RelatedAssocModelImpl) {
+            return ((RelatedAssocModelImpl) model).getRelatingAssoc();
+        }
+        return null;
+    }
+
+    // ---
+
     private String typeUri(long objectId) {
         return (String) db.fetchProperty(objectId, "typeUri");
     }
@@ -1104,4 +1287,64 @@ public final class AccessLayer {
         //
         return value;
     }
+
+    // ------------------------------------------------------------------------------------------------- Private Classes
+
+    /**
+     * The topic IDs and assoc IDs to be checked for READability at once.
+     */
+    private class ReadCheckBatch {
+
+        // value: array index resp. bit index
+        private Map<Long, Integer> topicIds = new LinkedHashMap();
+        private Map<Long, Integer> assocIds = new LinkedHashMap();
+
+        private BitSet readableTopics;
+        private BitSet readableAssocs;
+
+        /**
+         * @param   model   a topic or an assoc. If <code>null</code> nothing is performed.
+         */
+        private void add(DMXObjectModelImpl model) {
+            if (model != null) {
+                Map<Long, Integer> ids = ids(model);
+                ids.putIfAbsent(model.getId(), ids.size());
+            }
+        }
+
+        private void check() {
+            readableTopics = check(CoreEvent.CHECK_TOPIC_READ_ACCESS_BATCH, topicIds);
+            readableAssocs = check(CoreEvent.CHECK_ASSOC_READ_ACCESS_BATCH, assocIds);
+        }
+
+        /**
+         * @param   model   a topic or an assoc. If <code>null</code> <code>true</code> is returned.
+         */
+        private boolean isReadable(DMXObjectModelImpl model) {
+            if (model == null) {
+                return true;
+            }
+            BitSet readable = model instanceof TopicModelImpl ? readableTopics : readableAssocs;
+            return readable.get(ids(model).get(model.getId()));
+        }
+
+        // ---
+
+        private BitSet check(DMXEvent batchEvent, Map<Long, Integer> ids) {
+            long[] _ids = new long[ids.size()];
+            for (Map.Entry<Long, Integer> entry : ids.entrySet()) {
+                _ids[entry.getValue()] = entry.getKey();
+            }
+            BitSet readable = new BitSet(_ids.length);
+            readable.set(0, _ids.length);
+            if (_ids.length > 0) {
+                em.fireEvent(batchEvent, _ids, readable);
+            }
+            return readable;
+        }
+
+        private Map<Long, Integer> ids(DMXObjectModelImpl model) {
+            return model instanceof TopicModelImpl ? topicIds : assocIds;
+        }
+    }
 }
@@ -0,0 +1,155 @@
+package systems.dmx.core.impl;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Logger;
+
+
+
+/**
+ * Index from a child object to its composite ancestors of a given type, see
+ * AccessLayer.queryTopicsFulltext() with "searchChildTopics". The ancestors of a type are the objects of that type
+ * which are reached first by child-to-parent traversal. So a fulltext hit is resolved to its parent objects in one
+ * lookup.
+ * <p>
+ * An entry is calculated on demand by ModelCache (based on its parent IDs) and then maintained along with the
+ * assignments: an entry depends on every object passed by its traversal. Once an object's parents or its type change
+ * (ModelCache invokes {@link #objectChanged} then, e.g. when ValueIntegrator assigns or unassigns a child) all entries
+ * which passed that object are removed. Other writes do not affect the index. Like at the other caches the
+ * invalidation is repeated once the invalidating transaction has finished, and an entry is not stored if one of the
+ * objects it passed was invalidated while it was calculated. The invalidations are counted per stripe (by object ID),
+ * so invalidations of unrelated objects rarely prevent storing an entry.
+ */
+class AncestorIndex {
+
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    private static final int MAX_SIZE = Integer.getInteger("dmx.database.ancestor_index_size", 50000);
+    private static final int STRIPES = 64;      // a power of 2
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    /**
+     * Key: child object ID, value: the entries of that child, keyed by ancestor type URI.
+     */
+    private final Map<Long, Map<String, Entry>> entries = new HashMap();
+
+    /**
+     * The reverse index. Key: ID of an object passed by traversal, value: the child object IDs whose entries passed it.
+     */
+    private final Map<Long, Set<Long>> dependents = new HashMap();
+
+    /**
+     * Counts the invalidations per stripe of object IDs. Used to detect a concurrent invalidation of a passed object
+     * while traversing. Incremented under the index monitor, which also guards the storing of entries.
+     */
+    private final AtomicLongArray invalidations = new AtomicLongArray(STRIPES);
+
+    private int size;
+
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    /**
+     * To be obtained before traversing, and to be passed to {@link #put}.
+     */
+    long[] stamp() {
+        long[] stamp = new long[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stamp[i] = invalidations.get(i);
+        }
+        return stamp;
+    }
+
+    /**
+     * @return  the entry of the given child and ancestor type, or <code>null</code> if not indexed.
+     */
+    synchronized Entry get(long childId, String typeUri) {
+        Map<String, Entry> types = entries.get(childId);
+        return types != null ? types.get(typeUri) : null;
+    }
+
+    /**
+     * Stores an entry, unless one of its passed objects was invalidated since the given stamp was obtained.
+     */
+    synchronized void put(long childId, String typeUri, Entry entry, long[] stamp) {
+        if (MAX_SIZE <= 0 || isInvalidated(entry.passedIds, stamp)) {
+            return;
+        }
+        if (size >= MAX_SIZE) {
+            clear();
+        }
+        if (entries.computeIfAbsent(childId, id -> new HashMap()).put(typeUri, entry) == null) {
+            size++;
+        }
+        for (long objectId : entry.passedIds) {
+            dependents.computeIfAbsent(objectId, id -> new HashSet()).add(childId);
+        }
+    }
+
+    /**
+     * To be called when the parents of the given object might have changed, or when it is deleted.
+     */
+    synchronized void objectChanged(long objectId) {
+        invalidations.incrementAndGet(stripe(objectId));
+        Set<Long> childIds = dependents.remove(objectId);
+        if (childIds != null) {
+            for (long childId : childIds) {
+                Map<String, Entry> types = entries.remove(childId);
+                if (types != null) {
+                    size -= types.size();
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    private boolean isInvalidated(long[] ids, long[] stamp) {
+        for (long id : ids) {
+            int stripe = stripe(id);
+            if (invalidations.get(stripe) != stamp[stripe]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int stripe(long id) {
+        return Long.hashCode(id) & (STRIPES - 1);
+    }
+
+    private void clear() {
+        for (int i = 0; i < STRIPES; i++) {
+            invalidations.incrementAndGet(i);
+        }
+        entries.clear();
+        dependents.clear();
+        size = 0;
+        logger.info("### Ancestor index exceeded " + MAX_SIZE + " entries -- cleared");
+    }
+
+    // -------------------------------------------------------------------------------------------------- Nested Classes
+
+    static class Entry {
+
+        /**
+         * The IDs of the ancestors. Each ID appears once.
+         */
+        final long[] ancestorIds;
+
+        /**
+         * The IDs of all objects passed by the traversal, including the child itself.
+         */
+        final long[] passedIds;
+
+        Entry(long[] ancestorIds, long[] passedIds) {
+            this.ancestorIds = ancestorIds;
+            this.passedIds = passedIds;
+        }
+    }
+}
@@ -326,6 +326,8 @@ public class AssocModelImpl extends DMXObjectModelImpl implements AssocModel {
     void postUpdate(DMXObjectModel updateModel, DMXObjectModel oldObject) {
         // update assoc specific parts: the 2 players
         updatePlayers((AssocModelImpl) updateModel);
+        al.permissionCache.assocChanged((AssocModelImpl) oldObject);
+        al.permissionCache.assocChanged(this);
         //
         duplicateCheck();
         //
@@ -343,6 +345,8 @@ public class AssocModelImpl extends DMXObjectModelImpl implements AssocModel {
 
     @Override
     void preDelete() {
+        al.permissionCache.assocChanged(this);
+        //
         // Type Editor Support
         if (isCompDef(this)) {
             // Note: we listen to the PRE event here, not the POST event. At POST time the compdef sequence might be
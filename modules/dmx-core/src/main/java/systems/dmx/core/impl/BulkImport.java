@@ -0,0 +1,106 @@
+package systems.dmx.core.impl;
+
+import systems.dmx.core.model.DMXObjectModel;
+import systems.dmx.core.model.TypeModel;
+import systems.dmx.core.service.ImportReport;
+import systems.dmx.core.storage.spi.DMXTransaction;
+
+import java.util.Iterator;
+import java.util.logging.Logger;
+
+
+
+/**
+ * Creates topics and assocs in bulk, see {@link systems.dmx.core.service.CoreService#importObjects}.
+ * <p>
+ * The models are created batch by batch, each batch in its own transaction. While a batch is created the label
+ * calculation is deferred (see {@link LabelCalculation#defer}), and the create events are not delivered to the plugins
+ * which opt out (see {@link EventManager#setBulkImport}). The labels -- and with them their fulltext index entries --
+ * are calculated once at the end of the batch.
+ */
+class BulkImport {
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private AccessLayer al;
+
+    private Logger logger = Logger.getLogger(getClass().getName());
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    BulkImport(AccessLayer al) {
+        this.al = al;
+    }
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    ImportReport run(Iterator<? extends DMXObjectModel> models, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+        }
+        ImportReport report = new ImportReport();
+        long time = System.currentTimeMillis();
+        while (models.hasNext()) {
+            importBatch(models, batchSize, report);
+        }
+        logger.info("### Bulk import complete -- " + report + " (" + (System.currentTimeMillis() - time) + " ms)");
+        return report;
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    private void importBatch(Iterator<? extends DMXObjectModel> models, int batchSize, ImportReport report) {
+        int topics = 0, assocs = 0;
+        DMXTransaction tx = al.beginTx();
+        try {
+            al.em.setBulkImport(true);
+            LabelCalculation.defer();
+            for (int i = 0; i < batchSize && models.hasNext(); i++) {
+                DMXObjectModel model = models.next();
+                if (model instanceof TypeModel) {
+                    throw new IllegalArgumentException("Types can't be bulk imported (\"" + model.getUri() + "\")");
+                } else if (model instanceof AssocModelImpl) {
+                    AssocModelImpl assoc = (AssocModelImpl) model;
+                    resolvePlayer(assoc.getPlayer1());
+                    resolvePlayer(assoc.getPlayer2());
+                    al.createAssoc(assoc);
+                    assocs++;
+                } else if (model instanceof TopicModelImpl) {
+                    al.createTopic((TopicModelImpl) model);
+                    topics++;
+                } else {
+                    throw new IllegalArgumentException("Unexpected model: " + model);
+                }
+            }
+            LabelCalculation.calculateDeferred(al);
+            tx.success();
+        } catch (Exception e) {
+            throw new RuntimeException("Importing batch " + (report.batches + 1) + " failed (" + report +
+                " imported before)", e);
+        } finally {
+            LabelCalculation.discardDeferred();
+            al.em.setBulkImport(false);
+            tx.finish();
+        }
+        report.topics += topics;
+        report.assocs += assocs;
+        report.batches++;
+        logger.fine("### Batch " + report.batches + " imported (" + topics + " topics, " + assocs + " assocs)");
+    }
+
+    /**
+     * Resolves a topic player which is identified by URI, e.g. a topic created earlier in the same import.
+     */
+    private void resolvePlayer(PlayerModelImpl player) {
+        if (player instanceof TopicPlayerModelImpl && player.id == -1) {
+            TopicPlayerModelImpl topicPlayer = (TopicPlayerModelImpl) player;
+            if (topicPlayer.topicIdentifiedByUri()) {
+                TopicModelImpl topic = al.getTopicByUri(topicPlayer.topicUri);
+                if (topic == null) {
+                    throw new RuntimeException("Topic \"" + topicPlayer.topicUri + "\" not found");
+                }
+                player.id = topic.getId();
+            }
+        }
+    }
+}
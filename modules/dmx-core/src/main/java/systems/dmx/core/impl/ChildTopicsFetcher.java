@@ -5,9 +5,15 @@ import systems.dmx.core.model.ChildTopicsModel;
 import systems.dmx.core.model.CompDefModel;
 import systems.dmx.core.model.DMXObjectModel;
 import systems.dmx.core.model.RelatedTopicModel;
-import systems.dmx.core.util.DMXUtils;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
 
@@ -48,40 +54,15 @@ class ChildTopicsFetcher {
                 if (childTopic != null) {
                     childTopics.set(compDefUri, childTopic);
                     if (deep) {
-                        fetchChildTopics(childTopic, deep);    // recursion
+                        fetch(Collections.singletonList(childTopic), deep);     // recursion
                     }
                 }
             } else if (cardinalityUri.equals(MANY)) {
-                List<? extends RelatedTopicModel> _childTopics = fetchChildTopics(object.getId(), compDef);
-                int a = 0;
-                for (RelatedAssocModelImpl assoc : newChildTopicsSequence(object.getId(), compDef)) {
-                    RelatedTopicModel childTopic = DMXUtils.findByAssoc(assoc.id, _childTopics);
-                    if (childTopic == null) {
-                        throw new RuntimeException("DB inconsistency: assoc " + assoc.id +
-                            " is in sequence but not in " + _childTopics + ", assoc=" + assoc + ", child topic=" +
-                            assoc.getDMXObjectByRole(CHILD));
-                    }
-                    childTopics.add(compDefUri, childTopic);
-                    a++;
-                }
-                if (a != _childTopics.size()) {
-                    if (a > 0) {
-                        throw new RuntimeException("DB inconsistency: " + a + " values in sequence when " +
-                            "there should be " + _childTopics.size() + ", parentTopicId=" + object.getId() +
-                            ", compDefUri=\"" + compDefUri + "\"");
-                    } else if (_childTopics.size() > 0) {
-                        logger.fine("### No sequence for " + _childTopics.size() + " \"" + compDefUri + "\" values");
-                        for (RelatedTopicModel childTopic : _childTopics) {
-                            childTopics.add(compDefUri, childTopic);
-                        }
-                    }
-                }
+                addChildTopics((DMXObjectModelImpl) object, compDef, fetchChildTopics(object.getId(), compDef));
                 if (deep) {
-                    List<? extends RelatedTopicModel> topics = childTopics.getTopicsOrNull(compDefUri);
+                    List<RelatedTopicModelImpl> topics = (List) childTopics.getTopicsOrNull(compDefUri);
                     if (topics != null) {
-                        for (RelatedTopicModel topic : topics) {
-                            fetchChildTopics((DMXObjectModelImpl) topic, deep);    // recursion
-                        }
+                        fetch(topics, deep);    // recursion, all child topics at once
                     }
                 }
             } else {
@@ -93,29 +74,187 @@ class ChildTopicsFetcher {
         }
     }
 
+    /**
+     * Fetches the child topic models of many object models at once and updates them in-place. Only the child topics
+     * which are not loaded already are fetched.
+     * <p>
+     * Works breadth-first: per tree level and comp def the child topics of all objects are fetched by one batch
+     * query. So the number of queries depends on the depth of the type definitions, not on the number of objects.
+     *
+     * @param   deep    if <code>false</code> only the direct child topics are fetched.
+     */
+    void fetch(Iterable<? extends DMXObjectModelImpl> objects, boolean deep) {
+        List<DMXObjectModelImpl> level = new ArrayList();
+        for (DMXObjectModelImpl object : objects) {
+            level.add(object);
+        }
+        while (!level.isEmpty()) {
+            List<DMXObjectModelImpl> nextLevel = new ArrayList();
+            for (List<DMXObjectModelImpl> _objects : groupByType(level).values()) {
+                for (CompDefModel compDef : _objects.get(0).getType().getCompDefs()) {
+                    fetch(_objects, compDef, deep, nextLevel);
+                }
+            }
+            level = deep ? nextLevel : new ArrayList();
+        }
+    }
+
+    /**
+     * Fetches the direct child topic models of many object models of the same type, according to one comp def, by
+     * one batch query. Objects whose child topics are loaded already are skipped.
+     */
+    void fetch(List<DMXObjectModelImpl> objects, CompDefModel compDef) {
+        fetch(objects, compDef, false, new ArrayList());        // deep=false
+    }
+
     // ------------------------------------------------------------------------------------------------- Private Methods
 
-    // ### TODO: copy in ValueIntegrator
-    private ChildTopicsSequence newChildTopicsSequence(long parentTopicId, CompDefModel compDef) {
-        return new ChildTopicsSequence(
-            parentTopicId,
-            compDef.getChildTypeUri(),
-            compDef.getInstanceLevelAssocTypeUri(),
-            al
-        );
+    /**
+     * Fetches the child topic models of the given object models according to the given comp def by one batch query.
+     * Objects whose child topics are loaded already are skipped.
+     *
+     * @param   objects     object models of the same type.
+     * @param   nextLevel   the fetched child topic models are added here.
+     */
+    private void fetch(List<DMXObjectModelImpl> objects, CompDefModel compDef, boolean deep,
+                                                                               List<DMXObjectModelImpl> nextLevel) {
+        String compDefUri = compDef.getCompDefUri();
+        try {
+            Map<Long, DMXObjectModelImpl> parents = new LinkedHashMap();
+            for (DMXObjectModelImpl object : objects) {
+                if (!object.getChildTopics().has(compDefUri)) {
+                    if (parents.containsKey(object.getId())) {
+                        // the same object is contained twice; don't let both share the same child topic models
+                        fetch(object, compDef, deep);
+                    } else {
+                        parents.put(object.getId(), object);
+                    }
+                }
+            }
+            if (parents.isEmpty()) {
+                return;
+            }
+            Map<Long, List<RelatedTopicModelImpl>> childTopics = fetchChildTopics(parents.keySet(), compDef);
+            String cardinalityUri = compDef.getChildCardinalityUri();
+            if (cardinalityUri.equals(ONE)) {
+                for (DMXObjectModelImpl parent : parents.values()) {
+                    List<RelatedTopicModelImpl> _childTopics = childTopics.get(parent.getId());
+                    if (_childTopics == null) {
+                        continue;       // Note: topics just created have no child topics yet
+                    }
+                    if (_childTopics.size() > 1) {
+                        throw new RuntimeException("Ambiguity: object " + parent.getId() + " has " +
+                            _childTopics.size() + " related \"" + compDef.getChildTypeUri() + "\" topics, " +
+                            "topics=" + _childTopics);
+                    }
+                    parent.getChildTopics().set(compDefUri, _childTopics.get(0));
+                }
+            } else if (cardinalityUri.equals(MANY)) {
+                addChildTopics(parents.values(), compDef, childTopics);
+            } else {
+                throw new RuntimeException("\"" + cardinalityUri + "\" is an unexpected cardinality URI");
+            }
+            for (List<RelatedTopicModelImpl> _childTopics : childTopics.values()) {
+                nextLevel.addAll(_childTopics);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Fetching the \"" + compDefUri + "\" child topics of " + objects.size() +
+                " objects failed", e);
+        }
     }
 
     /**
-     * Fetches the child topic models (recursively) of the given object model and updates it in-place.
-     * ### TODO: recursion is required in some cases (e.g. when fetching a topic through REST API) but is possibly
-     * overhead in others (e.g. when updating composite structures).
+     * Adds the given "many" child topic models to the given object model, in sequence order.
+     */
+    private void addChildTopics(DMXObjectModelImpl object, CompDefModel compDef,
+                                List<RelatedTopicModelImpl> _childTopics) {
+        Map<Long, List<RelatedTopicModelImpl>> childTopics = new HashMap();
+        childTopics.put(object.getId(), _childTopics);
+        addChildTopics(Collections.singletonList(object), compDef, childTopics);
+    }
+
+    /**
+     * Adds the given "many" child topic models to the given object models, in sequence order. The sequences of all
+     * objects are read by 2 batch queries, see {@link ChildTopicsSequence#getAssocIds(Map, String, AccessLayer)}.
+     *
+     * @param   childTopics     key: object ID, value: the object's child topic models. Objects without an entry
+     *                          are skipped.
+     */
+    private void addChildTopics(Collection<DMXObjectModelImpl> objects, CompDefModel compDef,
+                                Map<Long, List<RelatedTopicModelImpl>> childTopics) {
+        Map<Long, Map<Long, RelatedTopicModelImpl>> childTopicsByAssoc = new HashMap();  // key: object ID
+        for (DMXObjectModelImpl object : objects) {
+            List<RelatedTopicModelImpl> _childTopics = childTopics.get(object.getId());
+            if (_childTopics != null) {
+                Map<Long, RelatedTopicModelImpl> _childTopicsByAssoc = new HashMap();  // key: ID of parent connection
+                for (RelatedTopicModelImpl childTopic : _childTopics) {
+                    _childTopicsByAssoc.put(childTopic.getRelatingAssoc().getId(), childTopic);
+                }
+                childTopicsByAssoc.put(object.getId(), _childTopicsByAssoc);
+            }
+        }
+        if (childTopicsByAssoc.isEmpty()) {
+            return;
+        }
+        Map<Long, Set<Long>> assocIds = new HashMap();
+        for (Map.Entry<Long, Map<Long, RelatedTopicModelImpl>> entry : childTopicsByAssoc.entrySet()) {
+            assocIds.put(entry.getKey(), entry.getValue().keySet());
+        }
+        Map<Long, List<Long>> sequences = ChildTopicsSequence.getAssocIds(assocIds,
+            compDef.getInstanceLevelAssocTypeUri(), al);
+        for (DMXObjectModelImpl object : objects) {
+            Map<Long, RelatedTopicModelImpl> _childTopicsByAssoc = childTopicsByAssoc.get(object.getId());
+            if (_childTopicsByAssoc != null) {
+                addChildTopics(object, compDef, childTopics.get(object.getId()), _childTopicsByAssoc,
+                    sequences.get(object.getId()));
+            }
+        }
+    }
+
+    /**
+     * @param   sequence    the IDs of the object's sequence associations, in sequence order.
      */
-    private void fetchChildTopics(DMXObjectModelImpl object, boolean deep) {
-        for (CompDefModel compDef : object.getType().getCompDefs()) {
-            fetch(object, compDef, deep);
+    private void addChildTopics(DMXObjectModel object, CompDefModel compDef, List<RelatedTopicModelImpl> _childTopics,
+                                Map<Long, RelatedTopicModelImpl> childTopicsByAssoc, List<Long> sequence) {
+        ChildTopicsModel childTopics = object.getChildTopics();
+        String compDefUri = compDef.getCompDefUri();
+        int a = 0;
+        for (long assocId : sequence) {
+            RelatedTopicModel childTopic = childTopicsByAssoc.get(assocId);
+            if (childTopic == null) {
+                throw new RuntimeException("DB inconsistency: assoc " + assocId +
+                    " is in sequence but not in " + _childTopics);
+            }
+            childTopics.add(compDefUri, childTopic);
+            a++;
+        }
+        if (a != _childTopics.size()) {
+            if (a > 0) {
+                throw new RuntimeException("DB inconsistency: " + a + " values in sequence when " +
+                    "there should be " + _childTopics.size() + ", parentTopicId=" + object.getId() +
+                    ", compDefUri=\"" + compDefUri + "\"");
+            } else if (_childTopics.size() > 0) {
+                logger.fine("### No sequence for " + _childTopics.size() + " \"" + compDefUri + "\" values");
+                for (RelatedTopicModel childTopic : _childTopics) {
+                    childTopics.add(compDefUri, childTopic);
+                }
+            }
         }
     }
 
+    private Map<String, List<DMXObjectModelImpl>> groupByType(List<DMXObjectModelImpl> objects) {
+        Map<String, List<DMXObjectModelImpl>> groups = new LinkedHashMap();
+        for (DMXObjectModelImpl object : objects) {
+            List<DMXObjectModelImpl> group = groups.get(object.getTypeUri());
+            if (group == null) {
+                group = new ArrayList();
+                groups.put(object.getTypeUri(), group);
+            }
+            group.add(object);
+        }
+        return groups;
+    }
+
     // ---
 
     /**
@@ -138,4 +277,14 @@ class ChildTopicsFetcher {
             compDef.getChildTypeUri()
         );
     }
+
+    private Map<Long, List<RelatedTopicModelImpl>> fetchChildTopics(Collection<Long> objectIds,
+                                                                    CompDefModel compDef) {
+        return al.db.fetchRelatedTopics(        // direct DB access is required as sequence is not per-user
+            objectIds,
+            compDef.getInstanceLevelAssocTypeUri(),
+            PARENT, CHILD,
+            compDef.getChildTypeUri()
+        );
+    }
 }
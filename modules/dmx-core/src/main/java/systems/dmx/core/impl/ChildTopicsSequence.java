@@ -3,8 +3,13 @@ package systems.dmx.core.impl;
 import static systems.dmx.core.Constants.*;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
 
@@ -70,6 +75,38 @@ class ChildTopicsSequence implements Iterable<RelatedAssocModelImpl> {
         };
     }
 
+    /**
+     * Reads the sequences of many parent topics at once. In contrast to {@link #iterator} the successors are not
+     * fetched hop by hop: the sequence starts of all parents are fetched by one batch
+     * query, and the successors of all parents' associations by another one. So the number of queries does not
+     * depend on the number of parents.
+     *
+     * @param   assocIdsByParent    key: parent topic ID, value: the IDs of the associations that connect the parent
+     *                              topic with its child topics (of the respective child type).
+     *
+     * @return  key: parent topic ID, value: the IDs of the parent's sequence associations, in sequence order. An
+     *          empty list if the parent has no sequence.
+     */
+    static Map<Long, List<Long>> getAssocIds(Map<Long, ? extends Collection<Long>> assocIdsByParent,
+                                             String assocTypeUri, AccessLayer al) {
+        Map<Long, List<RelatedAssocModelImpl>> startAssocs = al.db.fetchRelatedAssocs(assocIdsByParent.keySet(),
+            SEQUENCE, DEFAULT, SEQUENCE_START, assocTypeUri);
+        List<Long> allAssocIds = new ArrayList();
+        for (Collection<Long> assocIds : assocIdsByParent.values()) {
+            allAssocIds.addAll(assocIds);
+        }
+        Map<Long, List<RelatedAssocModelImpl>> succAssocs = al.db.fetchRelatedAssocs(allAssocIds, SEQUENCE,
+            PREDECESSOR, SUCCESSOR, assocTypeUri);
+        //
+        Map<Long, List<Long>> sequences = new HashMap();
+        for (Map.Entry<Long, ? extends Collection<Long>> entry : assocIdsByParent.entrySet()) {
+            long parentTopicId = entry.getKey();
+            Long first = firstAssocId(parentTopicId, startAssocs.get(parentTopicId), entry.getValue());
+            sequences.put(parentTopicId, sequence(first, succAssocs));
+        }
+        return sequences;
+    }
+
     // ---
 
     AssocModelImpl insert(AssocModelImpl assoc, AssocModelImpl predAssoc) {
@@ -221,6 +258,60 @@ class ChildTopicsSequence implements Iterable<RelatedAssocModelImpl> {
 
     // ---
 
+    /**
+     * Returns the first association of a parent topic's sequence.
+     * <p>
+     * Note: a parent topic has a sequence per child type. A sequence start belongs to this sequence if it points to
+     * one of the given parent connections (these are of the respective child type), so no child topic is fetched.
+     *
+     * @param   startAssocs     the associations the parent topic's sequence starts point to, possibly null.
+     * @param   assocIds        the IDs of the associations that connect the parent topic with its child topics.
+     *
+     * @return  the ID of the first association, or <code>null</code> if there is no sequence.
+     */
+    private static Long firstAssocId(long parentTopicId, List<RelatedAssocModelImpl> startAssocs,
+                                     Collection<Long> assocIds) {
+        Long firstAssocId = null;
+        if (startAssocs != null) {
+            Set<Long> _assocIds = assocIds instanceof Set ? (Set<Long>) assocIds : new HashSet(assocIds);
+            for (RelatedAssocModelImpl assoc : startAssocs) {
+                if (_assocIds.contains(assoc.id)) {
+                    if (firstAssocId != null) {
+                        throw new RuntimeException("Ambiguous sequence start, parentTopicId=" + parentTopicId +
+                            ", assocIds=" + assocIds);
+                    }
+                    firstAssocId = assoc.id;
+                }
+            }
+        }
+        return firstAssocId;
+    }
+
+    /**
+     * Follows the successor associations, starting at the given association.
+     *
+     * @param   assocId     possibly null
+     */
+    private static List<Long> sequence(Long assocId, Map<Long, List<RelatedAssocModelImpl>> succAssocs) {
+        List<Long> sequence = new ArrayList();
+        Set<Long> visited = new HashSet();
+        while (assocId != null) {
+            if (!visited.add(assocId)) {
+                throw new RuntimeException("Cycle detected: assoc " + assocId + " already in " + sequence);
+            }
+            sequence.add(assocId);
+            List<RelatedAssocModelImpl> succ = succAssocs.get(assocId);
+            if (succ != null && succ.size() > 1) {
+                throw new RuntimeException("Ambiguity detected: assoc " + assocId + " has " + succ.size() +
+                    " successors: " + succ);
+            }
+            assocId = succ != null ? succ.get(0).id : null;
+        }
+        return sequence;
+    }
+
+    // ---
+
     private RelatedTopicModelImpl childTopic(AssocModelImpl assoc) {
         return (RelatedTopicModelImpl) assoc.getDMXObjectByRole(CHILD);
     }
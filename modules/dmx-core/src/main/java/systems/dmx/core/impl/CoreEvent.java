@@ -22,6 +22,8 @@ import com.sun.jersey.spi.container.ContainerResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import java.util.BitSet;
+
 
 
 /**
@@ -41,6 +43,15 @@ class CoreEvent {
         }
     };
 
+    static DMXEvent CHECK_TOPIC_READ_ACCESS_BATCH = new DMXEvent(CheckTopicReadAccessBatch.class) {
+        @Override
+        public void dispatch(EventListener listener, Object... params) {
+            ((CheckTopicReadAccessBatch) listener).checkTopicReadAccess(
+                (long[]) params[0], (BitSet) params[1]
+            );
+        }
+    };
+
     static DMXEvent CHECK_ASSOC_READ_ACCESS = new DMXEvent(CheckAssocReadAccess.class) {
         @Override
         public void dispatch(EventListener listener, Object... params) {
@@ -50,6 +61,15 @@ class CoreEvent {
         }
     };
 
+    static DMXEvent CHECK_ASSOC_READ_ACCESS_BATCH = new DMXEvent(CheckAssocReadAccessBatch.class) {
+        @Override
+        public void dispatch(EventListener listener, Object... params) {
+            ((CheckAssocReadAccessBatch) listener).checkAssocReadAccess(
+                (long[]) params[0], (BitSet) params[1]
+            );
+        }
+    };
+
     // ---
 
     static DMXEvent CHECK_TOPIC_WRITE_ACCESS = new DMXEvent(CheckTopicWriteAccess.class) {
@@ -9,16 +9,20 @@ import systems.dmx.core.Topic;
 import systems.dmx.core.TopicType;
 import systems.dmx.core.model.AssocModel;
 import systems.dmx.core.model.AssocTypeModel;
+import systems.dmx.core.model.DMXObjectModel;
 import systems.dmx.core.model.PlayerModel;
 import systems.dmx.core.model.RoleTypeModel;
 import systems.dmx.core.model.SimpleValue;
 import systems.dmx.core.model.TopicModel;
 import systems.dmx.core.model.TopicTypeModel;
+import systems.dmx.core.service.CacheStats;
 import systems.dmx.core.service.CoreService;
 import systems.dmx.core.service.DMXEvent;
+import systems.dmx.core.service.ImportReport;
 import systems.dmx.core.service.ModelFactory;
 import systems.dmx.core.service.PluginInfo;
 import systems.dmx.core.service.QueryResult;
+import systems.dmx.core.service.ResultPage;
 import systems.dmx.core.service.TopicResult;
 import systems.dmx.core.service.accesscontrol.PrivilegedAccess;
 import systems.dmx.core.storage.spi.DMXTransaction;
@@ -26,6 +30,7 @@ import systems.dmx.core.storage.spi.DMXTransaction;
 import org.osgi.framework.BundleContext;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -61,7 +66,7 @@ public class CoreServiceImpl implements CoreService {
         this.mf = al.mf;
         this.migrationManager = new MigrationManager(this);
         this.pluginManager = new PluginManager(this);
-        this.wss = new WebSocketServiceImpl(this);
+        this.wss = new WebSocketServiceImpl(al, this);
         this.wpService = new WebPublishingService(al, wss);
         //
         setupDB();
@@ -95,6 +100,16 @@ public class CoreServiceImpl implements CoreService {
         return al.instantiate(al.getTopicsByType(topicTypeUri));
     }
 
+    @Override
+    public ResultPage<Topic> getTopicsByType(String topicTypeUri, int offset, int limit) {
+        return instantiate(al.getTopicsByType(topicTypeUri, null, offset, limit));
+    }
+
+    @Override
+    public ResultPage<Topic> getTopicsByType(String topicTypeUri, String cursor, int limit) {
+        return instantiate(al.getTopicsByType(topicTypeUri, cursor, 0, limit));
+    }
+
     @Override
     public Iterable<Topic> getAllTopics() {
         return new InstantiationIterable(al.getAllTopics());
@@ -126,6 +141,18 @@ public class CoreServiceImpl implements CoreService {
         );
     }
 
+    @Override
+    public ResultPage<Topic> queryTopicsFulltext(String query, String typeUri, boolean searchChildTopics, int offset,
+                                                 int limit) {
+        return instantiate(al.queryTopicsFulltext(query, typeUri, searchChildTopics, null, offset, limit));
+    }
+
+    @Override
+    public ResultPage<Topic> queryTopicsFulltext(String query, String typeUri, boolean searchChildTopics,
+                                                 String cursor, int limit) {
+        return instantiate(al.queryTopicsFulltext(query, typeUri, searchChildTopics, cursor, 0, limit));
+    }
+
     @Override
     public void indexTopicFulltext(long topicId, String text, String indexKey) {
         al.indexTopicFulltext(topicId, text, indexKey);
@@ -351,6 +378,11 @@ public class CoreServiceImpl implements CoreService {
         );
     }
 
+    @Override
+    public ImportReport importObjects(Iterator<? extends DMXObjectModel> models, int batchSize) {
+        return new BulkImport(al).run(models, batchSize);
+    }
+
 
 
     // === Plugins ===
@@ -393,6 +425,11 @@ public class CoreServiceImpl implements CoreService {
         return al.db.hasProperty(id, propUri);
     }
 
+    @Override
+    public void acquireWriteLock(long id) {
+        al.db.acquireWriteLock(id);
+    }
+
     // ---
 
     @Override
@@ -400,6 +437,16 @@ public class CoreServiceImpl implements CoreService {
         return al.instantiate(al.getTopicsByProperty(propUri, propValue));
     }
 
+    @Override
+    public ResultPage<Topic> getTopicsByProperty(String propUri, Object propValue, int offset, int limit) {
+        return instantiate(al.getTopicsByProperty(propUri, propValue, null, offset, limit));
+    }
+
+    @Override
+    public ResultPage<Topic> getTopicsByProperty(String propUri, Object propValue, String cursor, int limit) {
+        return instantiate(al.getTopicsByProperty(propUri, propValue, cursor, 0, limit));
+    }
+
     @Override
     public List<Topic> getTopicsByPropertyRange(String propUri, Number from, Number to) {
         return al.instantiate(al.getTopicsByPropertyRange(propUri, from, to));
@@ -415,6 +462,16 @@ public class CoreServiceImpl implements CoreService {
         return al.instantiate(al.getAssocsByPropertyRange(propUri, from, to));
     }
 
+    @Override
+    public List<Topic> getTopicsByTypeAndProperty(String topicTypeUri, String propUri, Object propValue) {
+        return al.instantiate(al.getTopicsByTypeAndProperty(topicTypeUri, propUri, propValue));
+    }
+
+    @Override
+    public List<Assoc> getAssocsByTypeAndProperty(String assocTypeUri, String propUri, Object propValue) {
+        return al.instantiate(al.getAssocsByTypeAndProperty(assocTypeUri, propUri, propValue));
+    }
+
     // ---
 
     @Override
@@ -457,7 +514,7 @@ public class CoreServiceImpl implements CoreService {
 
     @Override
     public DMXTransaction beginTx() {
-        return al.db.beginTx();
+        return al.beginTx();
     }
 
     // ---
@@ -482,11 +539,17 @@ public class CoreServiceImpl implements CoreService {
         return al.db.getDatabaseVendorObject();
     }
 
+    @Override
+    public CacheStats getModelCacheStats() {
+        return al.modelCache.getStats();
+    }
+
     // ---
 
     // Note: not part of public interface
     // Called from CoreActivator
     public void shutdown() {
+        pluginManager.shutdown();
         wss.stop();
     }
 
@@ -505,6 +568,10 @@ public class CoreServiceImpl implements CoreService {
 
     // ------------------------------------------------------------------------------------------------- Private Methods
 
+    private ResultPage<Topic> instantiate(ResultPage<TopicModelImpl> page) {
+        return new ResultPage(al.instantiate(page.items), page.cursor, page.totalEstimate);
+    }
+
 
 
     // === Bootstrap ===
@@ -513,6 +580,7 @@ public class CoreServiceImpl implements CoreService {
      * Setups the database:
      *   1) initializes the database.
      *   2) in case of a clean install: sets up the bootstrap content.
+     *      Otherwise: loads the type catalogue snapshot (if up-to-date).
      *   3) runs the core migrations.
      */
     private void setupDB() {
@@ -522,6 +590,8 @@ public class CoreServiceImpl implements CoreService {
             boolean isCleanInstall = al.sd.init();
             if (isCleanInstall) {
                 setupBootstrapContent();
+            } else {
+                al.typeStorage.loadSnapshot();
             }
             migrationManager.runCoreMigrations(isCleanInstall);
             tx.success();
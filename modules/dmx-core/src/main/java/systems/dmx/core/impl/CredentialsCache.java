@@ -0,0 +1,261 @@
+package systems.dmx.core.impl;
+
+import systems.dmx.core.model.PlayerModel;
+import systems.dmx.core.service.accesscontrol.Credentials;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+
+
+/**
+ * Caches verified credentials, keyed by username, see PrivilegedAccessImpl.checkCredentials(). So a client which
+ * authenticates every request via Basic auth (and maintains no session) is not subject to the username lookup, the
+ * User Account traversal, and the password hashing at every request.
+ * <p>
+ * Not the password itself is cached but a digest of it, salted with a random key which lives only in memory.
+ * Along with the digest the resolved Username/User Account/Password topic IDs are cached, and -- once requested --
+ * the user's "Login Enabled" setting.
+ * <p>
+ * An entry expires after <code>dmx.security.credentials_cache_ttl</code> seconds. It is invalidated once one of the
+ * topics it was derived from is changed or deleted, or once an association of the Username topic is created or
+ * deleted (e.g. a config topic is reassigned). The hooks are invoked by ModelCache. Like at PermissionCache the
+ * invalidation is repeated once the invalidating transaction has finished. Additionally an entry is not stored if an
+ * invalidation occurred while it was calculated (see {@link #stamp}).
+ */
+class CredentialsCache {
+
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    private static final int MAX_SIZE = Integer.getInteger("dmx.security.credentials_cache_size", 1000);
+    private static final long TTL = TimeUnit.SECONDS.toMillis(
+        Integer.getInteger("dmx.security.credentials_cache_ttl", 300)
+    );
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    /**
+     * Key: username (as given in the credentials).
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap();
+
+    /**
+     * The reverse index. Key: ID of a topic an entry was derived from, value: the usernames of the entries.
+     */
+    private final Map<Long, Set<String>> dependents = new ConcurrentHashMap();
+
+    /**
+     * The topics invalidated by the current thread within the running transaction.
+     */
+    private final ThreadLocal<Set<Long>> invalidated = ThreadLocal.withInitial(HashSet::new);
+
+    /**
+     * Counts all invalidations. Used to detect a concurrent invalidation while verifying credentials.
+     */
+    private volatile long invalidations;
+
+    private final byte[] key = new byte[32];
+
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    CredentialsCache() {
+        new SecureRandom().nextBytes(key);
+    }
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    /**
+     * To be obtained before reading the data an entry is derived from, and to be passed to the respective put method.
+     */
+    long stamp() {
+        return invalidations;
+    }
+
+    /**
+     * @return  the ID of the Username topic if the given credentials are cached as verified, -1 otherwise.
+     */
+    long get(Credentials cred) {
+        Entry entry = getEntry(cred.username);
+        if (entry != null && MessageDigest.isEqual(entry.digest, digest(cred))) {
+            return entry.usernameTopicId;
+        }
+        return -1;
+    }
+
+    void put(Credentials cred, long usernameTopicId, long userAccountId, long passwordTopicId, long stamp) {
+        if (MAX_SIZE <= 0) {
+            return;
+        }
+        if (entries.size() >= MAX_SIZE) {
+            clear();
+        }
+        synchronized (this) {
+            if (stamp != invalidations) {
+                return;
+            }
+            entries.put(cred.username, new Entry(usernameTopicId, digest(cred)));
+            addDependent(usernameTopicId, cred.username);
+            addDependent(userAccountId, cred.username);
+            addDependent(passwordTopicId, cred.username);
+        }
+    }
+
+    // ---
+
+    /**
+     * @return  the cached "Login Enabled" setting of the given user, or <code>null</code> if not cached.
+     */
+    Boolean getLoginEnabled(long usernameTopicId) {
+        for (String username : usernames(usernameTopicId)) {
+            Entry entry = getEntry(username);
+            if (entry != null && entry.loginEnabled != null) {
+                return entry.loginEnabled;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Caches the "Login Enabled" setting along with the user's verified credentials. If no credentials of the user
+     * are cached the setting is not cached either.
+     */
+    void putLoginEnabled(long usernameTopicId, long configTopicId, boolean loginEnabled, long stamp) {
+        synchronized (this) {
+            if (stamp != invalidations) {
+                return;
+            }
+            for (String username : usernames(usernameTopicId)) {
+                Entry entry = entries.get(username);
+                if (entry != null && entry.usernameTopicId == usernameTopicId) {
+                    entry.loginEnabled = loginEnabled;
+                    addDependent(configTopicId, username);
+                }
+            }
+        }
+    }
+
+    // --- Invalidation Hooks ---
+
+    /**
+     * To be called when a topic's value or type is changed, or when the topic is deleted.
+     */
+    void topicChanged(long topicId) {
+        invalidate(topicId);
+    }
+
+    /**
+     * To be called when an association is created or deleted.
+     */
+    void assocChanged(PlayerModel player1, PlayerModel player2) {
+        invalidate(player1);
+        invalidate(player2);
+    }
+
+    /**
+     * To be called when the outermost transaction of the current thread has finished (committed or rolled back).
+     */
+    void txFinished() {
+        Set<Long> topicIds = invalidated.get();
+        if (!topicIds.isEmpty()) {
+            synchronized (this) {
+                for (long topicId : topicIds) {
+                    remove(topicId);
+                }
+            }
+            topicIds.clear();
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    private Entry getEntry(String username) {
+        Entry entry = entries.get(username);
+        if (entry != null && System.currentTimeMillis() > entry.expires) {
+            entries.remove(username, entry);
+            return null;
+        }
+        return entry;
+    }
+
+    private Set<String> usernames(long topicId) {
+        Set<String> usernames = dependents.get(topicId);
+        return usernames != null ? usernames : new HashSet();
+    }
+
+    private void addDependent(long topicId, String username) {
+        dependents.computeIfAbsent(topicId, id -> ConcurrentHashMap.newKeySet()).add(username);
+    }
+
+    // ---
+
+    private void invalidate(PlayerModel player) {
+        long playerId = ((PlayerModelImpl) player).id;
+        if (playerId != -1) {
+            invalidate(playerId);
+        }
+    }
+
+    private void invalidate(long topicId) {
+        // Note: the removal within the transaction is an optimization only. The removal once the transaction has
+        // finished is what counts: it also catches an entry stored concurrently meanwhile (from committed data).
+        invalidated.get().add(topicId);
+        if (!entries.isEmpty()) {
+            remove(topicId);
+        }
+    }
+
+    private synchronized void remove(long topicId) {
+        invalidations++;
+        Set<String> usernames = dependents.remove(topicId);
+        if (usernames != null) {
+            for (String username : usernames) {
+                entries.remove(username);
+            }
+        }
+    }
+
+    private synchronized void clear() {
+        invalidations++;
+        entries.clear();
+        dependents.clear();
+        logger.info("### Credentials cache exceeded " + MAX_SIZE + " entries -- cleared");
+    }
+
+    private byte[] digest(Credentials cred) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(key);
+            md.update(cred.username.getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            md.update(cred.password.getBytes(StandardCharsets.UTF_8));
+            return md.digest();
+        } catch (Exception e) {
+            throw new RuntimeException("Calculating credentials digest failed", e);
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Classes
+
+    private static class Entry {
+
+        private final long usernameTopicId;
+        private final byte[] digest;
+        private final long expires = System.currentTimeMillis() + TTL;
+
+        private volatile Boolean loginEnabled;      // null if not yet requested
+
+        private Entry(long usernameTopicId, byte[] digest) {
+            this.usernameTopicId = usernameTopicId;
+            this.digest = digest;
+        }
+    }
+}
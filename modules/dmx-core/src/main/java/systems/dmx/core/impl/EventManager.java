@@ -4,13 +4,14 @@ import systems.dmx.core.osgi.PluginContext;
 import systems.dmx.core.service.DMXEvent;
 import systems.dmx.core.service.EventListener;
 import systems.dmx.core.service.accesscontrol.AccessControlException;
+import systems.dmx.core.service.event.BulkImportOptOut;
 
 import javax.ws.rs.WebApplicationException;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 
 
@@ -20,8 +21,16 @@ class EventManager {
 
     /**
      * The registered event listeners (key: event class name, value: event listeners).
+     * <p>
+     * Thread-safe: plugins are activated concurrently (see PluginManager) while events are fired. The listener lists
+     * are copy-on-write as they are iterated at every event but change only when a plugin is (de)activated.
      */
-    private Map<String, List<EventListener>> listenerRegistry = new HashMap();
+    private Map<String, List<EventListener>> listenerRegistry = new ConcurrentHashMap();
+
+    /**
+     * True while the current thread runs a bulk import, see {@link #setBulkImport}.
+     */
+    private ThreadLocal<Boolean> bulkImport = ThreadLocal.withInitial(() -> false);
 
     // ---------------------------------------------------------------------------------------------------- Constructors
 
@@ -34,12 +43,8 @@ class EventManager {
     // ----------------------------------------------------------------------------------------- Package Private Methods
 
     void addListener(DMXEvent event, EventListener listener) {
-        List<EventListener> listeners = getListeners(event);
-        if (listeners == null) {
-            listeners = new ArrayList();
-            putListeners(event, listeners);
-        }
-        listeners.add(listener);
+        listenerRegistry.computeIfAbsent(event.getClass().getName(), name -> new CopyOnWriteArrayList())
+            .add(listener);
     }
 
     void removeListener(DMXEvent event, EventListener listener) {
@@ -55,12 +60,45 @@ class EventManager {
     void fireEvent(DMXEvent event, Object... params) {
         List<EventListener> listeners = getListeners(event);
         if (listeners != null) {
+            boolean optOut = bulkImport.get() && isCreateEvent(event);
             for (EventListener listener : listeners) {
+                if (optOut && listener instanceof BulkImportOptOut) {
+                    continue;
+                }
                 dispatchEvent(listener, event, params);
             }
         }
     }
 
+    boolean hasListeners(DMXEvent event) {
+        List<EventListener> listeners = getListeners(event);
+        return listeners != null && !listeners.isEmpty();
+    }
+
+    /**
+     * Returns true if all the listeners of the given event implement the listener interface of the given batch event
+     * as well. Then firing the batch event is equivalent to firing the event for each object.
+     */
+    boolean isBatchSupported(DMXEvent event, DMXEvent batchEvent) {
+        List<EventListener> listeners = getListeners(event);
+        if (listeners != null) {
+            for (EventListener listener : listeners) {
+                if (!batchEvent.getListenerInterface().isInstance(listener)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * While a bulk import is running the create events are not delivered to the plugins which opt out
+     * (see {@link BulkImportOptOut}).
+     */
+    void setBulkImport(boolean bulkImport) {
+        this.bulkImport.set(bulkImport);
+    }
+
     // ---
 
     /**
@@ -107,13 +145,14 @@ class EventManager {
         return event.getListenerInterface().isAssignableFrom(pluginContext.getClass());
     }
 
+    private boolean isCreateEvent(DMXEvent event) {
+        return event == CoreEvent.PRE_CREATE_TOPIC || event == CoreEvent.POST_CREATE_TOPIC ||
+               event == CoreEvent.PRE_CREATE_ASSOC || event == CoreEvent.POST_CREATE_ASSOC;
+    }
+
     // ---
 
     private List<EventListener> getListeners(DMXEvent event) {
         return listenerRegistry.get(event.getClass().getName());
     }
-
-    private void putListeners(DMXEvent event, List<EventListener> listeners) {
-        listenerRegistry.put(event.getClass().getName(), listeners);
-    }
 }
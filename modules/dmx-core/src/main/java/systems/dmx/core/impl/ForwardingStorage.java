@@ -0,0 +1,448 @@
+package systems.dmx.core.impl;
+
+import systems.dmx.core.model.PlayerModel;
+import systems.dmx.core.model.RelatedObjectModel;
+import systems.dmx.core.model.SimpleValue;
+import systems.dmx.core.storage.spi.DMXStorage;
+import systems.dmx.core.storage.spi.DMXTransaction;
+import systems.dmx.core.storage.spi.ModelHits;
+import systems.dmx.core.storage.spi.ObjectHeader;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+
+
+/**
+ * A storage which passes all calls through to another storage. Base class of the storage decorators, see ModelCache.
+ * A decorator overrides just the calls it is interested in.
+ */
+abstract class ForwardingStorage implements DMXStorage {
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    final DMXStorage db;
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    ForwardingStorage(DMXStorage db) {
+        this.db = db;
+    }
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+
+
+    // === Topics ===
+
+    @Override
+    public TopicModelImpl fetchTopic(long topicId) {
+        return db.fetchTopic(topicId);
+    }
+
+    @Override
+    public List<TopicModelImpl> fetchTopics(String key, Object value) {
+        return db.fetchTopics(key, value);
+    }
+
+    @Override
+    public List<TopicModelImpl> queryTopics(String key, Object value) {
+        return db.queryTopics(key, value);
+    }
+
+    @Override
+    public List<TopicModelImpl> queryTopicsFulltext(String key, Object value) {
+        return db.queryTopicsFulltext(key, value);
+    }
+
+    @Override
+    public Iterable<TopicModelImpl> fetchAllTopics() {
+        return db.fetchAllTopics();
+    }
+
+    @Override
+    public ModelHits<TopicModelImpl> fetchTopicHits(String key, Object value) {
+        return db.fetchTopicHits(key, value);
+    }
+
+    @Override
+    public ModelHits<TopicModelImpl> queryTopicHitsFulltext(String key, Object value) {
+        return db.queryTopicHitsFulltext(key, value);
+    }
+
+    // ---
+
+    @Override
+    public void storeTopic(TopicModelImpl topicModel) {
+        db.storeTopic(topicModel);
+    }
+
+    @Override
+    public void storeTopicUri(long topicId, String uri) {
+        db.storeTopicUri(topicId, uri);
+    }
+
+    @Override
+    public void storeTopicTypeUri(long topicId, String topicTypeUri) {
+        db.storeTopicTypeUri(topicId, topicTypeUri);
+    }
+
+    @Override
+    public void storeTopicValue(long topicId, SimpleValue value, String indexKey, boolean isHtmlValue) {
+        db.storeTopicValue(topicId, value, indexKey, isHtmlValue);
+    }
+
+    @Override
+    public void indexTopicFulltext(long topicId, String text, String indexKey) {
+        db.indexTopicFulltext(topicId, text, indexKey);
+    }
+
+    // ---
+
+    @Override
+    public void deleteTopic(long topicId) {
+        db.deleteTopic(topicId);
+    }
+
+
+
+    // === Associations ===
+
+    @Override
+    public AssocModelImpl fetchAssoc(long assocId) {
+        return db.fetchAssoc(assocId);
+    }
+
+    @Override
+    public List<AssocModelImpl> fetchAssocs(String key, Object value) {
+        return db.fetchAssocs(key, value);
+    }
+
+    @Override
+    public List<AssocModelImpl> queryAssocs(String key, Object value) {
+        return db.queryAssocs(key, value);
+    }
+
+    @Override
+    public List<AssocModelImpl> queryAssocsFulltext(String key, Object value) {
+        return db.queryAssocsFulltext(key, value);
+    }
+
+    @Override
+    public List<AssocModelImpl> queryAssocsByRoleType(String roleTypeUri) {
+        return db.queryAssocsByRoleType(roleTypeUri);
+    }
+
+    @Override
+    public List<AssocModelImpl> fetchAssocs(String assocTypeUri, long topicId1, long topicId2, String roleTypeUri1,
+                                                                                               String roleTypeUri2) {
+        return db.fetchAssocs(assocTypeUri, topicId1, topicId2, roleTypeUri1, roleTypeUri2);
+    }
+
+    @Override
+    public List<AssocModelImpl> fetchAssocsBetweenTopicAndAssoc(String assocTypeUri, long topicId, long assocId,
+                                                                String topicRoleTypeUri, String assocRoleTypeUri) {
+        return db.fetchAssocsBetweenTopicAndAssoc(assocTypeUri, topicId, assocId, topicRoleTypeUri, assocRoleTypeUri);
+    }
+
+    @Override
+    public Iterable<AssocModelImpl> fetchAllAssocs() {
+        return db.fetchAllAssocs();
+    }
+
+    @Override
+    public List<PlayerModel> fetchPlayerModels(long assocId) {
+        return db.fetchPlayerModels(assocId);
+    }
+
+    // ---
+
+    @Override
+    public void storeAssoc(AssocModelImpl assocModel) {
+        db.storeAssoc(assocModel);
+    }
+
+    @Override
+    public void storeAssocUri(long assocId, String uri) {
+        db.storeAssocUri(assocId, uri);
+    }
+
+    @Override
+    public void storeAssocTypeUri(long assocId, String assocTypeUri) {
+        db.storeAssocTypeUri(assocId, assocTypeUri);
+    }
+
+    @Override
+    public void storeAssocValue(long assocId, SimpleValue value, String indexKey, boolean isHtmlValue) {
+        db.storeAssocValue(assocId, value, indexKey, isHtmlValue);
+    }
+
+    @Override
+    public void storeRoleTypeUri(long assocId, long playerId, String roleTypeUri) {
+        db.storeRoleTypeUri(assocId, playerId, roleTypeUri);
+    }
+
+    // ---
+
+    @Override
+    public void deleteAssoc(long assocId) {
+        db.deleteAssoc(assocId);
+    }
+
+
+
+    // === Generic Object ===
+
+    @Override
+    public DMXObjectModelImpl fetchObject(long id) {
+        return db.fetchObject(id);
+    }
+
+    @Override
+    public boolean objectExists(long id) {
+        return db.objectExists(id);
+    }
+
+
+
+    // === Traversal ===
+
+    @Override
+    public List<AssocModelImpl> fetchTopicAssocs(long topicId) {
+        return db.fetchTopicAssocs(topicId);
+    }
+
+    @Override
+    public List<AssocModelImpl> fetchAssocAssocs(long assocId) {
+        return db.fetchAssocAssocs(assocId);
+    }
+
+    // ---
+
+    @Override
+    public List<RelatedTopicModelImpl> fetchTopicRelatedTopics(long topicId, String assocTypeUri,
+                                                               String myRoleTypeUri, String othersRoleTypeUri,
+                                                               String othersTopicTypeUri) {
+        return db.fetchTopicRelatedTopics(topicId, assocTypeUri, myRoleTypeUri, othersRoleTypeUri,
+            othersTopicTypeUri);
+    }
+
+    @Override
+    public List<RelatedAssocModelImpl> fetchTopicRelatedAssocs(long topicId, String assocTypeUri,
+                                                               String myRoleTypeUri, String othersRoleTypeUri,
+                                                               String othersAssocTypeUri) {
+        return db.fetchTopicRelatedAssocs(topicId, assocTypeUri, myRoleTypeUri, othersRoleTypeUri,
+            othersAssocTypeUri);
+    }
+
+    // ---
+
+    @Override
+    public List<RelatedTopicModelImpl> fetchAssocRelatedTopics(long assocId, String assocTypeUri,
+                                                               String myRoleTypeUri, String othersRoleTypeUri,
+                                                               String othersTopicTypeUri) {
+        return db.fetchAssocRelatedTopics(assocId, assocTypeUri, myRoleTypeUri, othersRoleTypeUri,
+            othersTopicTypeUri);
+    }
+
+    @Override
+    public List<RelatedAssocModelImpl> fetchAssocRelatedAssocs(long assocId, String assocTypeUri,
+                                                               String myRoleTypeUri, String othersRoleTypeUri,
+                                                               String othersAssocTypeUri) {
+        return db.fetchAssocRelatedAssocs(assocId, assocTypeUri, myRoleTypeUri, othersRoleTypeUri,
+            othersAssocTypeUri);
+    }
+
+    // ---
+
+    @Override
+    public <M extends RelatedObjectModel> List<M> fetchTopicRelatedObjects(long topicId, String assocTypeUri,
+                                                                           String myRoleTypeUri,
+                                                                           String othersRoleTypeUri,
+                                                                           String othersTypeUri) {
+        return db.fetchTopicRelatedObjects(topicId, assocTypeUri, myRoleTypeUri, othersRoleTypeUri, othersTypeUri);
+    }
+
+    @Override
+    public <M extends RelatedObjectModel> List<M> fetchAssocRelatedObjects(long assocId, String assocTypeUri,
+                                                                           String myRoleTypeUri,
+                                                                           String othersRoleTypeUri,
+                                                                           String othersTypeUri) {
+        return db.fetchAssocRelatedObjects(assocId, assocTypeUri, myRoleTypeUri, othersRoleTypeUri, othersTypeUri);
+    }
+
+    // ---
+
+    @Override
+    public List<RelatedTopicModelImpl> fetchRelatedTopics(long objectId, String assocTypeUri, String myRoleTypeUri,
+                                                          String othersRoleTypeUri, String othersTopicTypeUri) {
+        return db.fetchRelatedTopics(objectId, assocTypeUri, myRoleTypeUri, othersRoleTypeUri, othersTopicTypeUri);
+    }
+
+    @Override
+    public Map<Long, List<RelatedTopicModelImpl>> fetchRelatedTopics(Collection<Long> objectIds, String assocTypeUri,
+                                                                     String myRoleTypeUri, String othersRoleTypeUri,
+                                                                     String othersTopicTypeUri) {
+        return db.fetchRelatedTopics(objectIds, assocTypeUri, myRoleTypeUri, othersRoleTypeUri, othersTopicTypeUri);
+    }
+
+    @Override
+    public List<RelatedAssocModelImpl> fetchRelatedAssocs(long objectId, String assocTypeUri, String myRoleTypeUri,
+                                                          String othersRoleTypeUri, String othersAssocTypeUri) {
+        return db.fetchRelatedAssocs(objectId, assocTypeUri, myRoleTypeUri, othersRoleTypeUri, othersAssocTypeUri);
+    }
+
+    @Override
+    public Map<Long, List<RelatedAssocModelImpl>> fetchRelatedAssocs(Collection<Long> objectIds, String assocTypeUri,
+                                                                     String myRoleTypeUri, String othersRoleTypeUri,
+                                                                     String othersAssocTypeUri) {
+        return db.fetchRelatedAssocs(objectIds, assocTypeUri, myRoleTypeUri, othersRoleTypeUri, othersAssocTypeUri);
+    }
+
+    @Override
+    public List<Long> fetchRelatedIds(long objectId, String assocTypeUri, String myRoleTypeUri,
+                                      String othersRoleTypeUri, String othersTypeUri) {
+        return db.fetchRelatedIds(objectId, assocTypeUri, myRoleTypeUri, othersRoleTypeUri, othersTypeUri);
+    }
+
+
+
+    // === Properties ===
+
+    @Override
+    public Object fetchProperty(long id, String propUri) {
+        return db.fetchProperty(id, propUri);
+    }
+
+    @Override
+    public boolean hasProperty(long id, String propUri) {
+        return db.hasProperty(id, propUri);
+    }
+
+    // ---
+
+    @Override
+    public List<TopicModelImpl> fetchTopicsByProperty(String propUri, Object propValue) {
+        return db.fetchTopicsByProperty(propUri, propValue);
+    }
+
+    @Override
+    public List<TopicModelImpl> fetchTopicsByPropertyRange(String propUri, Number from, Number to) {
+        return db.fetchTopicsByPropertyRange(propUri, from, to);
+    }
+
+    @Override
+    public List<AssocModelImpl> fetchAssocsByProperty(String propUri, Object propValue) {
+        return db.fetchAssocsByProperty(propUri, propValue);
+    }
+
+    @Override
+    public List<AssocModelImpl> fetchAssocsByPropertyRange(String propUri, Number from, Number to) {
+        return db.fetchAssocsByPropertyRange(propUri, from, to);
+    }
+
+    @Override
+    public List<TopicModelImpl> fetchTopicsByTypeAndProperty(String topicTypeUri, String propUri, Object propValue) {
+        return db.fetchTopicsByTypeAndProperty(topicTypeUri, propUri, propValue);
+    }
+
+    @Override
+    public List<AssocModelImpl> fetchAssocsByTypeAndProperty(String assocTypeUri, String propUri, Object propValue) {
+        return db.fetchAssocsByTypeAndProperty(assocTypeUri, propUri, propValue);
+    }
+
+    @Override
+    public ModelHits<TopicModelImpl> fetchTopicHitsByProperty(String propUri, Object propValue) {
+        return db.fetchTopicHitsByProperty(propUri, propValue);
+    }
+
+    @Override
+    public List<ObjectHeader> fetchTopicHeadersByProperty(String propUri, Object propValue) {
+        return db.fetchTopicHeadersByProperty(propUri, propValue);
+    }
+
+    @Override
+    public List<ObjectHeader> fetchAssocHeadersByProperty(String propUri, Object propValue) {
+        return db.fetchAssocHeadersByProperty(propUri, propValue);
+    }
+
+    // ---
+
+    @Override
+    public void storeTopicProperty(long topicId, String propUri, Object propValue, boolean addToIndex) {
+        db.storeTopicProperty(topicId, propUri, propValue, addToIndex);
+    }
+
+    @Override
+    public void storeAssocProperty(long assocId, String propUri, Object propValue, boolean addToIndex) {
+        db.storeAssocProperty(assocId, propUri, propValue, addToIndex);
+    }
+
+    // ---
+
+    @Override
+    public void indexTopicProperty(long topicId, String propUri, Object propValue) {
+        db.indexTopicProperty(topicId, propUri, propValue);
+    }
+
+    @Override
+    public void indexAssocProperty(long assocId, String propUri, Object propValue) {
+        db.indexAssocProperty(assocId, propUri, propValue);
+    }
+
+    // ---
+
+    @Override
+    public void deleteTopicProperty(long topicId, String propUri) {
+        db.deleteTopicProperty(topicId, propUri);
+    }
+
+    @Override
+    public void deleteAssocProperty(long assocId, String propUri) {
+        db.deleteAssocProperty(assocId, propUri);
+    }
+
+
+
+    // === DB ===
+
+    @Override
+    public DMXTransaction beginTx() {
+        return db.beginTx();
+    }
+
+    @Override
+    public void acquireWriteLock(long id) {
+        db.acquireWriteLock(id);
+    }
+
+    @Override
+    public boolean setupRootNode() {
+        return db.setupRootNode();
+    }
+
+    @Override
+    public void shutdown() {
+        db.shutdown();
+    }
+
+    // ---
+
+    @Override
+    public Object getDatabaseVendorObject() {
+        return db.getDatabaseVendorObject();
+    }
+
+    @Override
+    public Object getDatabaseVendorObject(long objectId) {
+        return db.getDatabaseVendorObject(objectId);
+    }
+
+    // ---
+
+    @Override
+    public ModelFactoryImpl getModelFactory() {
+        return db.getModelFactory();
+    }
+}
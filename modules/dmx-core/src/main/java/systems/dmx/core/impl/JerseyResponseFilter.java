@@ -3,14 +3,13 @@ package systems.dmx.core.impl;
 import systems.dmx.core.Assoc;
 import systems.dmx.core.AssocType;
 import systems.dmx.core.DMXObject;
-import systems.dmx.core.ChildTopics;
-import systems.dmx.core.RelatedTopic;
 import systems.dmx.core.Topic;
 import systems.dmx.core.TopicType;
 import systems.dmx.core.impl.Messages.Message;
 import systems.dmx.core.service.Directives;
 import systems.dmx.core.service.DirectivesResponse;
 import systems.dmx.core.service.QueryResult;
+import systems.dmx.core.service.ResultPage;
 import systems.dmx.core.service.TopicResult;
 import systems.dmx.core.service.websocket.WebSocketService;
 
@@ -26,6 +25,8 @@ import javax.ws.rs.core.Context;
 
 import java.lang.reflect.Type;
 import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -54,6 +55,7 @@ class JerseyResponseFilter implements ContainerResponseFilter {
 
     // ---------------------------------------------------------------------------------------------- Instance Variables
 
+    private AccessLayer al;
     private EventManager em;
     private WebSocketServiceImpl wss;
 
@@ -64,8 +66,9 @@ class JerseyResponseFilter implements ContainerResponseFilter {
 
     // ---------------------------------------------------------------------------------------------------- Constructors
 
-    JerseyResponseFilter(EventManager em, WebSocketServiceImpl wss) {
-        this.em = em;
+    JerseyResponseFilter(AccessLayer al, WebSocketServiceImpl wss) {
+        this.al = al;
+        this.em = al.em;
         this.wss = wss;
     }
 
@@ -87,6 +90,8 @@ class JerseyResponseFilter implements ContainerResponseFilter {
                     loadChildTopics((DMXObject) entity, includeChildren, includeAssocChildren);
                 } else if (isIterable(response, DMXObject.class)) {
                     loadChildTopics((Iterable<DMXObject>) entity, includeChildren, includeAssocChildren);
+                } else if (entity instanceof ResultPage) {
+                    loadChildTopics(((ResultPage) entity).items, includeChildren, includeAssocChildren);
                 }
                 // 2) Firing PRE_SEND events
                 Directives directives = null;
@@ -98,6 +103,8 @@ class JerseyResponseFilter implements ContainerResponseFilter {
                     firePreSend(((TopicResult) entity).topics);
                 } else if (entity instanceof QueryResult) {
                     firePreSend(((QueryResult) entity).objects);
+                } else if (entity instanceof ResultPage) {
+                    firePreSend(((ResultPage) entity).items);
                 } else if (entity instanceof DirectivesResponse) {
                     firePreSend(((DirectivesResponse) entity).getObject());
                     //
@@ -115,6 +122,7 @@ class JerseyResponseFilter implements ContainerResponseFilter {
                     broadcast(directives);
                 }
             }
+            wss.checkUsername(this.request);    // the request might have logged in/out the user
             broadcast(Messages.get());
             Messages.remove();
             Directives.remove();
@@ -135,31 +143,50 @@ class JerseyResponseFilter implements ContainerResponseFilter {
         if (includeChildren) {
             object.loadChildTopics();
             if (includeAssocChildren) {
-                loadRelatingAssocChildTopics(object);
+                loadRelatingAssocChildTopics(Collections.singletonList((DMXObjectModelImpl) object.getModel()));
             }
         }
     }
 
     private void loadChildTopics(Iterable<DMXObject> objects, boolean includeChildren, boolean includeAssocChildren) {
-        for (DMXObject object : objects) {
-            loadChildTopics(object, includeChildren, includeChildren);
+        if (includeChildren) {
+            // all objects are loaded at once, level by level, see ChildTopicsFetcher
+            List<DMXObjectModelImpl> models = new ArrayList();
+            for (DMXObject object : objects) {
+                models.add((DMXObjectModelImpl) object.getModel());
+            }
+            new ChildTopicsFetcher(al).fetch(models, true);     // deep=true
+            //
+            loadRelatingAssocChildTopics(models);
         }
     }
 
     // ---
 
-    private void loadRelatingAssocChildTopics(DMXObject object) {
-        ChildTopics childTopics = object.getChildTopics();
+    /**
+     * Loads the child topics of the relating assocs of all child topics (recursively) of the given objects. All
+     * relating assocs are loaded at once, see ChildTopicsFetcher.
+     */
+    private void loadRelatingAssocChildTopics(List<DMXObjectModelImpl> objects) {
+        List<AssocModelImpl> assocs = new ArrayList();
+        for (DMXObjectModelImpl object : objects) {
+            collectRelatingAssocs(object, assocs);
+        }
+        new ChildTopicsFetcher(al).fetch(assocs, true);     // deep=true
+    }
+
+    private void collectRelatingAssocs(DMXObjectModelImpl object, List<AssocModelImpl> assocs) {
+        ChildTopicsModelImpl childTopics = object.getChildTopics();
         for (String childTypeUri : childTopics) {
             Object value = childTopics.get(childTypeUri);
-            if (value instanceof RelatedTopic) {
-                RelatedTopic childTopic = (RelatedTopic) value;
-                childTopic.getRelatingAssoc().loadChildTopics();
-                loadRelatingAssocChildTopics(childTopic);         // recursion
+            if (value instanceof RelatedTopicModelImpl) {
+                RelatedTopicModelImpl childTopic = (RelatedTopicModelImpl) value;
+                assocs.add(childTopic.getRelatingAssoc());
+                collectRelatingAssocs(childTopic, assocs);          // recursion
             } else if (value instanceof List) {
-                for (RelatedTopic childTopic : (List<RelatedTopic>) value) {
-                    childTopic.getRelatingAssoc().loadChildTopics();
-                    loadRelatingAssocChildTopics(childTopic);     // recursion
+                for (RelatedTopicModelImpl childTopic : (List<RelatedTopicModelImpl>) value) {
+                    assocs.add(childTopic.getRelatingAssoc());
+                    collectRelatingAssocs(childTopic, assocs);      // recursion
                 }
             } else {
                 throw new RuntimeException("Unexpected \"" + childTypeUri + "\" value in ChildTopics: " + value);
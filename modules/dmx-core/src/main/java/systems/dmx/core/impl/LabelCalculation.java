@@ -5,8 +5,12 @@ import systems.dmx.core.model.SimpleValue;
 import systems.dmx.core.model.TopicModel;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
 
@@ -18,6 +22,14 @@ class LabelCalculation {
     private static final String LABEL_CHILD_SEPARATOR = " ";
     private static final String LABEL_TOPIC_SEPARATOR = ", ";
 
+    // ------------------------------------------------------------------------------------------------- Class Variables
+
+    /**
+     * The composites whose label calculation is deferred by the current thread, in calculation order (key: object
+     * ID). <code>null</code> if label calculation is not deferred (the default).
+     */
+    private static final ThreadLocal<Map<Long, DMXObjectModelImpl>> deferred = new ThreadLocal();
+
     // ---------------------------------------------------------------------------------------------- Instance Variables
 
     private DMXObjectModelImpl comp;
@@ -41,7 +53,80 @@ class LabelCalculation {
 
     // ----------------------------------------------------------------------------------------- Package Private Methods
 
+    /**
+     * Calculates the label and stores it as the composite's simple value.
+     * If label calculation is deferred (see {@link #defer}) the composite is just remembered.
+     */
     void calculate() {
+        Map<Long, DMXObjectModelImpl> comps = deferred.get();
+        if (comps != null) {
+            comps.putIfAbsent(comp.getId(), comp);
+            return;
+        }
+        _calculate();
+    }
+
+    // ---
+
+    /**
+     * Defers the label calculations of the current thread until {@link #calculateDeferred} is called.
+     * Used by the bulk import: a composite changed several times is calculated only once, and the child topics of
+     * many composites are loaded by batch queries.
+     */
+    static void defer() {
+        deferred.set(new LinkedHashMap());
+    }
+
+    /**
+     * Performs the deferred label calculations of the current thread, and ends deferring.
+     * <p>
+     * The composites are processed per type, child types before parent types, so a label is calculated only once the
+     * labels of its children are. The label children of the composites of a type are loaded by one batch query per
+     * comp def. If the types involved are recursive the composites are processed one by one, in the order their label
+     * calculations were requested.
+     */
+    static void calculateDeferred(AccessLayer al) {
+        Map<Long, DMXObjectModelImpl> comps = deferred.get();
+        deferred.remove();
+        if (comps == null || comps.isEmpty()) {
+            return;
+        }
+        // Note: the remembered models might hold stale child topics. So we calculate on fresh models.
+        Map<String, List<DMXObjectModelImpl>> compsByType = new LinkedHashMap();
+        for (long id : comps.keySet()) {
+            DMXObjectModelImpl comp = al.db.fetchObject(id);
+            compsByType.computeIfAbsent(comp.getTypeUri(), typeUri -> new ArrayList()).add(comp);
+        }
+        List<String> typeUris = calculationOrder(compsByType);
+        if (typeUris != null) {
+            ChildTopicsFetcher fetcher = new ChildTopicsFetcher(al);
+            for (String typeUri : typeUris) {
+                List<DMXObjectModelImpl> _comps = compsByType.get(typeUri);
+                TypeModelImpl type = _comps.get(0).getType();
+                for (String compDefUri : type.getLabelCompDefUris()) {
+                    fetcher.fetch(_comps, type.getCompDef(compDefUri));
+                }
+                for (DMXObjectModelImpl comp : _comps) {
+                    new LabelCalculation(comp)._calculate();
+                }
+            }
+        } else {
+            for (long id : comps.keySet()) {
+                new LabelCalculation(al.db.fetchObject(id))._calculate();
+            }
+        }
+    }
+
+    /**
+     * Discards the deferred label calculations of the current thread (e.g. on rollback), and ends deferring.
+     */
+    static void discardDeferred() {
+        deferred.remove();
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    private void _calculate() {
         try {
             StringBuilder builder = new StringBuilder();
             for (String compDefUri : labelCompDefUris) {
@@ -56,8 +141,6 @@ class LabelCalculation {
         }
     }
 
-    // ------------------------------------------------------------------------------------------------- Private Methods
-
     private String calculateChildLabel(String compDefUri) {
         Object value = comp.getChildTopics().get(compDefUri);
         // Note: topics just created have no child topics yet
@@ -88,4 +171,44 @@ class LabelCalculation {
         //
         builder.append(label);
     }
+
+    // ---
+
+    /**
+     * Orders the given types so that child types come before their parent types.
+     *
+     * @return  the ordered type URIs, or <code>null</code> if the types are recursive.
+     */
+    private static List<String> calculationOrder(Map<String, List<DMXObjectModelImpl>> compsByType) {
+        List<String> typeUris = new ArrayList();
+        Set<String> visiting = new HashSet();
+        for (String typeUri : compsByType.keySet()) {
+            if (!visit(typeUri, compsByType, visiting, typeUris)) {
+                return null;
+            }
+        }
+        return typeUris;
+    }
+
+    /**
+     * @return  false if a recursion is detected.
+     */
+    private static boolean visit(String typeUri, Map<String, List<DMXObjectModelImpl>> compsByType,
+                                 Set<String> visiting, List<String> typeUris) {
+        if (typeUris.contains(typeUri)) {
+            return true;
+        }
+        if (!visiting.add(typeUri)) {
+            return false;
+        }
+        for (CompDefModel compDef : compsByType.get(typeUri).get(0).getType().getCompDefs()) {
+            String childTypeUri = compDef.getChildTypeUri();
+            if (compsByType.containsKey(childTypeUri) && !visit(childTypeUri, compsByType, visiting, typeUris)) {
+                return false;
+            }
+        }
+        visiting.remove(typeUri);
+        typeUris.add(typeUri);
+        return true;
+    }
 }
@@ -0,0 +1,171 @@
+package systems.dmx.core.impl;
+
+import java.util.Arrays;
+
+
+
+/**
+ * A bounded map with primitive <code>long</code> keys (no boxing). Thread-safe.
+ * <p>
+ * Implemented as an open-addressing hash table (linear probing). When the size bound is reached an entry is evicted
+ * by the "clock" (second chance) algorithm: entries accessed since the clock hand passed them last are skipped once.
+ * So frequently read entries tend to stay in the cache.
+ */
+class LongKeyedCache<V> {
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private final int maxSize;
+
+    // the hash table; a slot is empty if its value is null
+    private final long[] keys;
+    private final Object[] values;
+    private final boolean[] referenced;
+    private final int mask;
+
+    private int size;
+    private int hand;               // the clock hand, a slot index
+    private long evictions;
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    /**
+     * @param   maxSize     the max number of entries. If 0 nothing is cached.
+     */
+    LongKeyedCache(int maxSize) {
+        this.maxSize = maxSize;
+        // the table capacity is a power of 2, at least twice the size bound (so the load factor is at most 0.5)
+        int capacity = Integer.highestOneBit(Math.max(2 * maxSize - 1, 15)) << 1;
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.referenced = new boolean[capacity];
+        this.mask = capacity - 1;
+    }
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    /**
+     * @return  the value for the given key, or <code>null</code> if there is no such entry.
+     */
+    synchronized V get(long key) {
+        int i = find(key);
+        if (i == -1) {
+            return null;
+        }
+        referenced[i] = true;
+        return (V) values[i];
+    }
+
+    /**
+     * Puts an entry in the cache. If the size bound is reached another entry is evicted.
+     *
+     * @param   value   not null
+     */
+    synchronized void put(long key, V value) {
+        if (maxSize == 0) {
+            return;
+        }
+        int i = find(key);
+        if (i == -1) {
+            if (size >= maxSize) {
+                evict();
+            }
+            i = slot(key);
+            while (values[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            size++;
+        }
+        values[i] = value;
+        referenced[i] = false;
+    }
+
+    synchronized void remove(long key) {
+        int i = find(key);
+        if (i != -1) {
+            removeAt(i);
+        }
+    }
+
+    synchronized void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    // ---
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return  the number of entries dropped due to the size bound.
+     */
+    synchronized long evictions() {
+        return evictions;
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    /**
+     * @return  the slot index of the given key, or -1 if there is no such entry.
+     */
+    private int find(long key) {
+        int i = slot(key);
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @return  the home slot of the given key.
+     */
+    private int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    private void evict() {
+        while (true) {
+            hand = (hand + 1) & mask;
+            if (values[hand] != null) {
+                if (referenced[hand]) {
+                    referenced[hand] = false;       // second chance
+                } else {
+                    removeAt(hand);
+                    evictions++;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Empties a slot and moves the subsequent entries of the probe sequence back, so no gap remains.
+     */
+    private void removeAt(int i) {
+        values[i] = null;
+        size--;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (values[j] == null) {
+                return;
+            }
+            int k = slot(keys[j]);
+            // the entry at j can be moved to i unless its home slot k lies cyclically in (i, j]
+            boolean stays = i <= j ? i < k && k <= j : i < k || k <= j;
+            if (!stays) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                referenced[i] = referenced[j];
+                values[j] = null;
+                i = j;
+            }
+        }
+    }
+}
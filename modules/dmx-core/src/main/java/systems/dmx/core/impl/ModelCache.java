@@ -0,0 +1,522 @@
+package systems.dmx.core.impl;
+
+import static systems.dmx.core.Constants.*;
+import systems.dmx.core.model.PlayerModel;
+import systems.dmx.core.model.SimpleValue;
+import systems.dmx.core.service.CacheStats;
+import systems.dmx.core.storage.spi.DMXStorage;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+
+/**
+ * A read-through cache of topic and assoc models, in front of the storage implementation.
+ * <p>
+ * The models fetched by ID are cached, that is by fetchTopic(), fetchAssoc(), fetchObject(), and fetchPlayerModels().
+ * A cached model is a snapshot: the callers always get a copy of their own. All other calls are passed through (see
+ * {@link ForwardingStorage}).
+ * <p>
+ * Additionally the cache serves as reverse parent index: the parent IDs of a child object (see
+ * {@link #fetchParentIds}) are cached along with the object. Based on these it maintains the {@link AncestorIndex}
+ * (see {@link #fetchAncestorIds}). The ancestor index is invalidated only by the writes which change an object's
+ * parents or type (see {@link #invalidateStructure}).
+ * It also holds the {@link UnificationCache}, as it sees all changes of topic values,
+ * and the {@link CredentialsCache} and the {@link TypeSnapshot}, as they are invalidated by changes as well.
+ * <p>
+ * The cache is invalidated (per object) by the storage write methods. Properties are not part of a model, so property
+ * changes do not invalidate. Storing or deleting a composition assoc, or changing its role types, invalidates the
+ * child object as well.
+ * <p>
+ * Rollback safety (like PermissionCache): an object invalidated within a transaction is bypassed by the invalidating
+ * thread until the transaction finishes. Then it is invalidated once more, regardless of commit or rollback. A model
+ * read while an object of the same stripe (see below) is invalidated concurrently is not put in the cache.
+ * <p>
+ * The cache is divided into stripes (by object ID), each with a lock of its own. So concurrent readers of different
+ * objects do not contend for one lock. The storage is never accessed while holding a stripe lock.
+ */
+class ModelCache extends ForwardingStorage {
+
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    private static final int MAX_SIZE = Integer.getInteger("dmx.database.model_cache_size", 50000);
+    private static final int STRIPES = 16;      // a power of 2
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    /**
+     * The composite ancestors of a child object, per ancestor type.
+     */
+    private final AncestorIndex ancestorIndex = new AncestorIndex();
+
+    /**
+     * The simple values unified by the current thread within the running transaction, see ValueIntegrator.
+     */
+    final UnificationCache unificationCache = new UnificationCache();
+
+    /**
+     * The verified credentials, see PrivilegedAccessImpl.checkCredentials().
+     */
+    final CredentialsCache credentialsCache = new CredentialsCache();
+
+    /**
+     * The persisted type catalogue snapshot, see TypeStorage.loadSnapshot().
+     */
+    final TypeSnapshot typeSnapshot;
+
+    /**
+     * The objects invalidated by the current thread within the running transaction.
+     */
+    private final ThreadLocal<Set<Long>> invalidated = ThreadLocal.withInitial(HashSet::new);
+
+    /**
+     * The objects whose parents or type are changed by the current thread within the running transaction. A subset
+     * of "invalidated".
+     */
+    private final ThreadLocal<Set<Long>> restructured = ThreadLocal.withInitial(HashSet::new);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    ModelCache(DMXStorage db) {
+        super(db);
+        this.typeSnapshot = new TypeSnapshot(db);
+        int stripeSize = (MAX_SIZE + STRIPES - 1) / STRIPES;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(stripeSize);
+        }
+    }
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+
+
+    // === Topics ===
+
+    @Override
+    public TopicModelImpl fetchTopic(long topicId) {
+        DMXObjectModelImpl model = get(topicId);
+        if (model instanceof TopicModelImpl) {
+            return (TopicModelImpl) model.clone();
+        }
+        long stamp = stamp(topicId);
+        TopicModelImpl topic = db.fetchTopic(topicId);
+        put(topic, stamp);
+        return topic;
+    }
+
+    // ---
+
+    @Override
+    public void storeTopic(TopicModelImpl topicModel) {
+        db.storeTopic(topicModel);
+        invalidate(topicModel.getId());
+    }
+
+    @Override
+    public void storeTopicUri(long topicId, String uri) {
+        invalidate(topicId);
+        db.storeTopicUri(topicId, uri);
+    }
+
+    @Override
+    public void storeTopicTypeUri(long topicId, String topicTypeUri) {
+        invalidate(topicId);
+        invalidateStructure(topicId);
+        unificationCache.remove(topicId);
+        credentialsCache.topicChanged(topicId);
+        db.storeTopicTypeUri(topicId, topicTypeUri);
+    }
+
+    @Override
+    public void storeTopicValue(long topicId, SimpleValue value, String indexKey, boolean isHtmlValue) {
+        invalidate(topicId);
+        unificationCache.remove(topicId);
+        credentialsCache.topicChanged(topicId);
+        db.storeTopicValue(topicId, value, indexKey, isHtmlValue);
+    }
+
+    // ---
+
+    @Override
+    public void deleteTopic(long topicId) {
+        invalidate(topicId);
+        invalidateStructure(topicId);
+        unificationCache.remove(topicId);
+        credentialsCache.topicChanged(topicId);
+        db.deleteTopic(topicId);
+    }
+
+
+
+    // === Associations ===
+
+    @Override
+    public AssocModelImpl fetchAssoc(long assocId) {
+        DMXObjectModelImpl model = get(assocId);
+        if (model instanceof AssocModelImpl) {
+            return (AssocModelImpl) model.clone();
+        }
+        long stamp = stamp(assocId);
+        AssocModelImpl assoc = db.fetchAssoc(assocId);
+        put(assoc, stamp);
+        return assoc;
+    }
+
+    /**
+     * Served from the cached assoc if available. Otherwise passed through (the assoc is not cached then).
+     */
+    @Override
+    public List<PlayerModel> fetchPlayerModels(long assocId) {
+        DMXObjectModelImpl model = get(assocId);
+        if (model instanceof AssocModelImpl) {
+            AssocModelImpl assoc = (AssocModelImpl) model;
+            List<PlayerModel> playerModels = new ArrayList();
+            playerModels.add(assoc.getPlayer1().clone());
+            playerModels.add(assoc.getPlayer2().clone());
+            return playerModels;
+        }
+        return db.fetchPlayerModels(assocId);
+    }
+
+    // ---
+
+    @Override
+    public void storeAssoc(AssocModelImpl assocModel) {
+        db.storeAssoc(assocModel);
+        invalidate(assocModel.getId());
+        invalidateChild(assocModel.getPlayer1());
+        invalidateChild(assocModel.getPlayer2());
+        credentialsCache.assocChanged(assocModel.getPlayer1(), assocModel.getPlayer2());
+        typeSnapshot.assocChanged(assocModel.getId(), assocModel.getPlayer1(), assocModel.getPlayer2());
+    }
+
+    @Override
+    public void storeAssocUri(long assocId, String uri) {
+        invalidate(assocId);
+        db.storeAssocUri(assocId, uri);
+    }
+
+    @Override
+    public void storeAssocTypeUri(long assocId, String assocTypeUri) {
+        invalidate(assocId);
+        invalidateStructure(assocId);
+        db.storeAssocTypeUri(assocId, assocTypeUri);
+    }
+
+    @Override
+    public void storeAssocValue(long assocId, SimpleValue value, String indexKey, boolean isHtmlValue) {
+        invalidate(assocId);
+        db.storeAssocValue(assocId, value, indexKey, isHtmlValue);
+    }
+
+    @Override
+    public void storeRoleTypeUri(long assocId, long playerId, String roleTypeUri) {
+        // Note: the role type might change from or to CHILD, so both players are invalidated
+        for (PlayerModel player : fetchPlayerModels(assocId)) {
+            invalidate(player.getId());
+            invalidateStructure(player.getId());
+        }
+        invalidate(assocId);
+        db.storeRoleTypeUri(assocId, playerId, roleTypeUri);
+    }
+
+    // ---
+
+    @Override
+    public void deleteAssoc(long assocId) {
+        List<PlayerModel> players = fetchPlayerModels(assocId);
+        for (PlayerModel player : players) {
+            invalidateChild(player);
+        }
+        credentialsCache.assocChanged(players.get(0), players.get(1));
+        typeSnapshot.assocChanged(assocId, players.get(0), players.get(1));
+        invalidate(assocId);
+        invalidateStructure(assocId);
+        db.deleteAssoc(assocId);
+    }
+
+
+
+    // === Generic Object ===
+
+    @Override
+    public DMXObjectModelImpl fetchObject(long id) {
+        DMXObjectModelImpl model = get(id);
+        if (model != null) {
+            return (DMXObjectModelImpl) model.clone();
+        }
+        long stamp = stamp(id);
+        DMXObjectModelImpl object = db.fetchObject(id);
+        put(object, stamp);
+        return object;
+    }
+
+
+
+    // === DB ===
+
+    @Override
+    public void shutdown() {
+        for (Stripe stripe : stripes) {
+            stripe.models.clear();
+            stripe.parentIds.clear();
+        }
+        db.shutdown();
+    }
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    /**
+     * Returns the IDs of the objects the given object is a child of, that is the objects related via an assoc where
+     * the given object plays the CHILD role, and the other player the PARENT role.
+     *
+     * @param   childId     ID of a topic or an assoc
+     */
+    long[] fetchParentIds(long childId) {
+        Set<Long> objectIds = invalidated.get();
+        boolean bypass = !objectIds.isEmpty() && objectIds.contains(childId);     // might reflect uncommitted state
+        Stripe stripe = stripe(childId);
+        long[] ids = bypass ? null : stripe.parentIds.get(childId);
+        if (ids == null) {
+            long stamp = stripe.invalidations;
+            List<RelatedTopicModelImpl> topics = db.fetchRelatedTopics(childId, null, CHILD, PARENT, null);
+            List<RelatedAssocModelImpl> assocs = db.fetchRelatedAssocs(childId, null, CHILD, PARENT, null);
+            ids = new long[topics.size() + assocs.size()];
+            int i = 0;
+            for (RelatedTopicModelImpl topic : topics) {
+                ids[i++] = topic.getId();
+            }
+            for (RelatedAssocModelImpl assoc : assocs) {
+                ids[i++] = assoc.getId();
+            }
+            if (!bypass) {
+                synchronized (stripe) {
+                    if (stripe.invalidations == stamp) {
+                        stripe.parentIds.put(childId, ids);
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the IDs of the composite ancestors of the given type of the given object, that is the objects of that
+     * type which are reached first by child-to-parent traversal. Each ID is returned once. If the given object is of
+     * the given type itself it is not regarded.
+     *
+     * @param   childId     ID of a topic or an assoc
+     */
+    long[] fetchAncestorIds(long childId, String typeUri) {
+        AncestorIndex.Entry entry = ancestorIndex.get(childId, typeUri);
+        if (entry != null && !isRestructured(entry.passedIds)) {
+            return entry.ancestorIds;
+        }
+        long[] stamp = ancestorIndex.stamp();
+        Set<Long> ancestorIds = new LinkedHashSet();
+        Set<Long> passedIds = new LinkedHashSet();
+        passedIds.add(childId);
+        collectAncestorIds(childId, typeUri, ancestorIds, passedIds);
+        entry = new AncestorIndex.Entry(toArray(ancestorIds), toArray(passedIds));
+        if (!isRestructured(entry.passedIds)) {     // might reflect uncommitted state otherwise
+            ancestorIndex.put(childId, typeUri, entry, stamp);
+        }
+        return entry.ancestorIds;
+    }
+
+    // ---
+
+    CacheStats getStats() {
+        int size = 0;
+        long evictions = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.models.size();
+            evictions += stripe.models.evictions();
+        }
+        return new CacheStats(hits.get(), misses.get(), size, evictions);
+    }
+
+    /**
+     * To be called when the outermost transaction of the current thread has finished (committed or rolled back).
+     */
+    void txFinished() {
+        unificationCache.txFinished();
+        credentialsCache.txFinished();
+        typeSnapshot.txFinished();
+        Set<Long> objectIds = invalidated.get();
+        if (!objectIds.isEmpty()) {
+            for (long objectId : objectIds) {
+                remove(objectId);
+            }
+            objectIds.clear();
+        }
+        objectIds = restructured.get();
+        if (!objectIds.isEmpty()) {
+            for (long objectId : objectIds) {
+                ancestorIndex.objectChanged(objectId);
+            }
+            objectIds.clear();
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    /**
+     * @return  the cached model (not a copy), or <code>null</code> if not cached.
+     */
+    private DMXObjectModelImpl get(long id) {
+        Set<Long> objectIds = invalidated.get();
+        DMXObjectModelImpl model = objectIds.isEmpty() || !objectIds.contains(id) ? stripe(id).models.get(id) : null;
+        if (model != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return model;
+    }
+
+    /**
+     * Caches a snapshot of the given model, unless an invalidation happened since the model was read.
+     *
+     * @param   stamp   the invalidation count of the model's stripe as read before the model was read from storage.
+     */
+    private void put(DMXObjectModelImpl model, long stamp) {
+        Set<Long> objectIds = invalidated.get();
+        if (!objectIds.isEmpty() && objectIds.contains(model.getId())) {
+            return;     // the model might reflect uncommitted state
+        }
+        DMXObjectModelImpl snapshot = (DMXObjectModelImpl) model.clone();
+        Stripe stripe = stripe(model.getId());
+        synchronized (stripe) {
+            if (stripe.invalidations == stamp) {
+                stripe.models.put(model.getId(), snapshot);
+            }
+        }
+    }
+
+    private void invalidate(long id) {
+        invalidated.get().add(id);
+        typeSnapshot.objectChanged(id);
+        remove(id);
+    }
+
+    /**
+     * Invalidates the given player if it plays the CHILD role. Its parent IDs are about to change.
+     */
+    private void invalidateChild(PlayerModel player) {
+        if (CHILD.equals(player.getRoleTypeUri())) {
+            invalidate(player.getId());
+            invalidateStructure(player.getId());
+        }
+    }
+
+    /**
+     * Invalidates the ancestor index entries which passed the given object. To be called (in addition to
+     * {@link #invalidate}) when the object's parents or its type are about to change, or when it is deleted.
+     */
+    private void invalidateStructure(long id) {
+        restructured.get().add(id);
+        ancestorIndex.objectChanged(id);
+    }
+
+    private void remove(long id) {
+        Stripe stripe = stripe(id);
+        synchronized (stripe) {
+            stripe.invalidations++;
+            stripe.models.remove(id);
+            stripe.parentIds.remove(id);
+        }
+    }
+
+    // ---
+
+    private Stripe stripe(long id) {
+        return stripes[Long.hashCode(id) & (STRIPES - 1)];
+    }
+
+    /**
+     * @return  the invalidation count of the given object's stripe. To be obtained before the object is read from
+     *          storage, and to be passed to {@link #put}.
+     */
+    private long stamp(long id) {
+        return stripe(id).invalidations;
+    }
+
+    // ---
+
+    private void collectAncestorIds(long objectId, String typeUri, Set<Long> ancestorIds, Set<Long> passedIds) {
+        for (long parentId : fetchParentIds(objectId)) {
+            if (passedIds.add(parentId)) {
+                if (fetchObject(parentId).getTypeUri().equals(typeUri)) {
+                    ancestorIds.add(parentId);
+                } else {
+                    collectAncestorIds(parentId, typeUri, ancestorIds, passedIds);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return  true if the parents or the type of one of the given objects are changed by the current thread within
+     *          the running transaction.
+     */
+    private boolean isRestructured(long[] ids) {
+        Set<Long> objectIds = restructured.get();
+        if (!objectIds.isEmpty()) {
+            for (long id : ids) {
+                if (objectIds.contains(id)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private long[] toArray(Set<Long> ids) {
+        long[] array = new long[ids.size()];
+        int i = 0;
+        for (long id : ids) {
+            array[i++] = id;
+        }
+        return array;
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Classes
+
+    /**
+     * A part of the cache. The lock guards "invalidations".
+     */
+    private static class Stripe {
+
+        /**
+         * Key: object ID, value: model snapshot.
+         */
+        private final LongKeyedCache<DMXObjectModelImpl> models;
+
+        /**
+         * The reverse parent index. Key: child object ID, value: the parent object IDs.
+         */
+        private final LongKeyedCache<long[]> parentIds;
+
+        /**
+         * Counts the invalidations of the stripe's objects. Used to detect a concurrent invalidation while reading
+         * from storage.
+         */
+        private volatile long invalidations;
+
+        private Stripe(int maxSize) {
+            this.models = new LongKeyedCache(maxSize);
+            this.parentIds = new LongKeyedCache(maxSize);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package systems.dmx.core.impl;
+
+import static systems.dmx.core.Constants.*;
+import systems.dmx.core.service.CacheStats;
+import systems.dmx.core.service.accesscontrol.Operation;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+import java.util.logging.Logger;
+
+
+
+/**
+ * Caches workspace-level permission decisions, keyed by (username, workspace ID, operation).
+ * <p>
+ * A decision depends on the workspace's sharing mode, its owner, and the user's membership. The cache is invalidated
+ * (per workspace) whenever one of these changes. The core invokes the respective hooks from the object model layer.
+ * <p>
+ * Rollback safety: a workspace invalidated within a transaction is bypassed by the invalidating thread until the
+ * transaction finishes. Then it is invalidated once more, regardless of commit or rollback. So neither uncommitted
+ * state nor state read concurrently before the commit survives in the cache. Additionally a decision is not stored if
+ * its workspace was invalidated while it was calculated (see {@link WorkspacePermissions#invalidated}). Otherwise a
+ * decision calculated from the old state could be stored after the final invalidation, and be served until the next
+ * one. Invalidations of other workspaces do not affect the decision.
+ */
+class PermissionCache {
+
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    private static final int MAX_SIZE = Integer.getInteger("dmx.security.permission_cache_size", 100000);
+
+    private static final String ANONYMOUS = "";     // ConcurrentHashMap does not support null keys
+
+    // ### TODO: copies in Constants.java of various plugins
+    private static final String MEMBERSHIP = "dmx.accesscontrol.membership";
+    private static final String SHARING_MODE = "dmx.workspaces.sharing_mode";
+    private static final String PROP_OWNER = "dmx.accesscontrol.owner";
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    /**
+     * Key: workspace ID, value: the cached decisions for that workspace. An invalidation removes the workspace's
+     * entry.
+     */
+    private final Map<Long, WorkspacePermissions> cache = new ConcurrentHashMap();
+
+    /**
+     * The workspaces invalidated by the current thread within the running transaction.
+     */
+    private final ThreadLocal<Set<Long>> invalidated = ThreadLocal.withInitial(HashSet::new);
+
+    /**
+     * Notified about each invalidated workspace, once the invalidating transaction has finished.
+     */
+    private final List<LongConsumer> listeners = new CopyOnWriteArrayList();
+
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    /**
+     * Returns the cached decision, or calculates and caches it.
+     *
+     * @param   username    the logged in user, or <code>null</code> if no user is logged in.
+     * @param   calculation calculates the decision in case of a cache miss. If it throws nothing is cached.
+     */
+    boolean get(String username, Operation operation, long workspaceId, BooleanSupplier calculation) {
+        if (invalidated.get().contains(workspaceId)) {
+            misses.incrementAndGet();
+            return calculation.getAsBoolean();
+        }
+        WorkspacePermissions permissions = cache.get(workspaceId);
+        String key = username != null ? username : ANONYMOUS;
+        Boolean decision = permissions != null ? permissions.get(operation).get(key) : null;
+        if (decision != null) {
+            hits.incrementAndGet();
+            return decision;
+        }
+        misses.incrementAndGet();
+        // Note: the entry is obtained before calculating. If the workspace is invalidated meanwhile the entry is
+        // removed from the cache, and the decision is not stored.
+        if (permissions == null) {
+            permissions = cache.computeIfAbsent(workspaceId, id -> new WorkspacePermissions());
+        }
+        boolean _decision = calculation.getAsBoolean();
+        if (size.get() >= MAX_SIZE) {
+            clear();
+        }
+        put(permissions, operation, key, _decision);
+        return _decision;
+    }
+
+    CacheStats getStats() {
+        return new CacheStats(hits.get(), misses.get(), size.get(), evictions.get());
+    }
+
+    /**
+     * Registers a listener which is notified about each workspace whose permissions might have changed.
+     * The listener is called (with the workspace ID) once the invalidating transaction has finished.
+     */
+    void addInvalidationListener(LongConsumer listener) {
+        listeners.add(listener);
+    }
+
+    // --- Invalidation Hooks ---
+
+    /**
+     * To be called when an association is created, updated, or deleted.
+     * Memberships invalidate their workspace. A composition with a Sharing Mode child invalidates its parent, that
+     * is the workspace whose sharing mode changes. Other compositions do not invalidate.
+     */
+    void assocChanged(AssocModelImpl assoc) {
+        String typeUri = assoc.getTypeUri();
+        if (MEMBERSHIP.equals(typeUri)) {
+            invalidate(assoc.getPlayer1());
+            invalidate(assoc.getPlayer2());
+        } else if (COMPOSITION.equals(typeUri) && isSharingMode(assoc.getPlayerByRole(CHILD))) {
+            invalidate(assoc.getPlayerByRole(PARENT));
+        }
+    }
+
+    /**
+     * To be called when a property is stored or removed.
+     */
+    void propertyChanged(long objectId, String propUri) {
+        if (propUri.equals(PROP_OWNER)) {
+            invalidate(objectId);
+        }
+    }
+
+    /**
+     * To be called when the outermost transaction of the current thread has finished (committed or rolled back).
+     */
+    void txFinished() {
+        Set<Long> workspaceIds = invalidated.get();
+        if (!workspaceIds.isEmpty()) {
+            for (long workspaceId : workspaceIds) {
+                remove(workspaceId);
+                for (LongConsumer listener : listeners) {
+                    listener.accept(workspaceId);
+                }
+            }
+            workspaceIds.clear();
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    private void invalidate(PlayerModelImpl player) {
+        if (player != null && player.id != -1) {
+            invalidate(player.id);
+        }
+    }
+
+    private void invalidate(long workspaceId) {
+        invalidated.get().add(workspaceId);
+        remove(workspaceId);
+    }
+
+    private boolean isSharingMode(PlayerModelImpl player) {
+        return player != null && player.id != -1 && SHARING_MODE.equals(player.getTypeUri());
+    }
+
+    /**
+     * Stores a decision in the given entry, unless the entry is invalidated meanwhile.
+     */
+    private void put(WorkspacePermissions permissions, Operation operation, String key, boolean decision) {
+        synchronized (permissions) {
+            if (permissions.invalidated) {
+                return;
+            }
+            if (permissions.get(operation).put(key, decision) == null) {
+                size.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return  the number of decisions removed.
+     */
+    private int remove(long workspaceId) {
+        WorkspacePermissions permissions = cache.remove(workspaceId);
+        if (permissions == null) {
+            return 0;
+        }
+        synchronized (permissions) {
+            permissions.invalidated = true;
+            int _size = permissions.size();
+            size.addAndGet(-_size);
+            return _size;
+        }
+    }
+
+    private void clear() {
+        long _size = 0;
+        for (long workspaceId : cache.keySet()) {
+            _size += remove(workspaceId);
+        }
+        evictions.addAndGet(_size);
+        logger.info("### Permission cache exceeded " + MAX_SIZE + " entries -- cleared");
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Classes
+
+    private static class WorkspacePermissions {
+
+        private final Map<String, Boolean> read = new ConcurrentHashMap();     // key: username
+        private final Map<String, Boolean> write = new ConcurrentHashMap();    // key: username
+
+        /**
+         * Set once this entry is removed from the cache. Decisions calculated meanwhile are not stored then.
+         * Guarded by this entry's monitor.
+         */
+        private boolean invalidated;
+
+        private Map<String, Boolean> get(Operation operation) {
+            switch (operation) {
+            case READ:
+                return read;
+            case WRITE:
+                return write;
+            default:
+                throw new RuntimeException(operation + " is an unsupported operation");
+            }
+        }
+
+        private int size() {
+            return read.size() + write.size();
+        }
+    }
+}
@@ -36,6 +36,7 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.locks.Lock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -493,7 +494,8 @@ public class PluginImpl implements Plugin, EventHandler {
     // === Activation ===
 
     /**
-     * Activates this plugin and then posts the PLUGIN_ACTIVATED OSGi event.
+     * Activates this plugin. Once the plugin manager has put this plugin into the pool of activated plugins it posts
+     * the PLUGIN_ACTIVATED OSGi event (see {@link #postPluginActivatedEvent}).
      *
      * Activation comprises:
      *   - invoke the plugin's preInstall() hook
@@ -501,14 +503,21 @@ public class PluginImpl implements Plugin, EventHandler {
      *   - register the plugin's event listeners
      *   - register the plugin's OSGi service
      *   - invoke the plugin's init() hook
+     *
+     * @param   installLock     held while the first 3 steps, see PluginManager.
      */
-    void activate() {
+    void activate(Lock installLock) {
         try {
             logger.info("----- Activating " + this + " -----");
             //
-            invokePreInstallHook();
-            installPluginInDB();
-            registerListeners();
+            installLock.lock();
+            try {
+                invokePreInstallHook();
+                installPluginInDB();
+                registerListeners();
+            } finally {
+                installLock.unlock();
+            }
             registerProvidedService();
             invokeInitHook();
             // Note: the event listeners must be registered *after* the plugin is installed in the database (see
@@ -516,14 +525,32 @@ public class PluginImpl implements Plugin, EventHandler {
             // Consider the Access Control plugin: it can't set a topic's creator before the "admin" user is created.
             //
             logger.info("----- Activation of " + this + " complete -----");
-            //
-            postPluginActivatedEvent();
-            //
         } catch (Throwable e) {
             throw new RuntimeException("Activating " + this + " failed", e);
         }
     }
 
+    /**
+     * Returns true if installing this plugin in the database involves writing: if it is not yet installed, or if
+     * migrations are to be run. To be called before activation.
+     */
+    boolean needsInstallation() {
+        try {
+            Topic pluginTopic = fetchPluginTopic();
+            if (pluginTopic == null) {
+                return true;
+            }
+            int installedModelVersion = pluginTopic.getChildTopics().getTopic(PLUGIN_MIGRATION_NR).getSimpleValue()
+                .intValue();
+            int requiredModelVersion = Integer.parseInt(getConfigProperty("dmx.plugin.model_version", "0"));
+            return installedModelVersion != requiredModelVersion;
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Checking the installation state of " + this + " failed -- assuming it needs " +
+                "installation", e);
+            return true;
+        }
+    }
+
     void deactivate() {
         unregisterListeners();
     }
@@ -928,7 +955,7 @@ public class PluginImpl implements Plugin, EventHandler {
         bundleContext.registerService(EventHandler.class.getName(), this, properties);
     }
 
-    private void postPluginActivatedEvent() {
+    void postPluginActivatedEvent() {
         Map<String, String> properties = new HashMap();
         properties.put(EventConstants.BUNDLE_SYMBOLICNAME, pluginUri);
         eventService.postEvent(new Event(PLUGIN_ACTIVATED, properties));
@@ -7,8 +7,17 @@ import org.osgi.framework.Bundle;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 
@@ -19,9 +28,20 @@ import java.util.logging.Logger;
  * <p>
  * A PluginManager singleton is hold by the {@link CoreServiceImpl} and is accessed concurrently
  * by all bundle activation threads (as created e.g. by the File Install bundle).
+ * <p>
+ * Plugins are activated in parallel, by a pool of <code>dmx.plugins.activation_threads</code> threads. A plugin is
+ * scheduled for activation once its requirements are met, that is the services it consumes (<code>Inject</code>) and
+ * the plugins it depends on (<code>dmx.plugin.dependencies</code>) are available. So independent plugins are
+ * activated concurrently while a dependent plugin waits for its dependencies. The timing of each activation is
+ * reported once all plugins are active.
  */
 class PluginManager {
 
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    static final int ACTIVATION_THREADS = Integer.getInteger("dmx.plugins.activation_threads",
+        Runtime.getRuntime().availableProcessors());
+
     // ---------------------------------------------------------------------------------------------- Instance Variables
 
     /**
@@ -31,6 +51,32 @@ class PluginManager {
      */
     private Map<String, PluginImpl> activatedPlugins = new HashMap();
 
+    /**
+     * The plugins whose activation is scheduled or running. Key: plugin URI.
+     */
+    private Map<String, PluginImpl> pendingPlugins = new HashMap();
+
+    /**
+     * The pending plugins which are deactivated meanwhile (that is their bundle is stopped). Their activation is
+     * skipped resp. undone, see {@link #_activatePlugin}.
+     */
+    private Set<PluginImpl> cancelledPlugins = new HashSet();
+
+    /**
+     * Guards the installation phase of the activations, see {@link #_activatePlugin}.
+     */
+    private ReadWriteLock installLock = new ReentrantReadWriteLock(true);     // fair=true
+
+    private ExecutorService executor;           // created lazily
+
+    /**
+     * Plugin detection results. Key: bundle ID and bundle modification time.
+     */
+    private Map<String, Boolean> pluginBundles = new HashMap();
+
+    private List<ActivationTiming> timings = new ArrayList();
+    private long startTime = System.currentTimeMillis();
+
     private CoreServiceImpl dmx;
 
     private Logger logger = Logger.getLogger(getClass().getName());
@@ -44,40 +90,46 @@ class PluginManager {
     // ----------------------------------------------------------------------------------------- Package Private Methods
 
     /**
-     * Activates a plugin.
+     * Schedules the activation of a plugin.
      * Called once the plugin's requirements are met (see PluginImpl.checkRequirementsForActivation()).
      * <p>
      * Once the plugin is activated checks if <i>all</i> installed plugins are activated now, and if so, fires the
      * {@link CoreEvent.ALL_PLUGINS_ACTIVE} core event.
      * <p>
-     * If the plugin is already activated, nothing is performed. This happens e.g. when a dependent plugin is
-     * redeployed.
-     * <p>
-     * Note: this method is synchronized. While a plugin is activated no other plugin must be activated. Otherwise
-     * the "type introduction" mechanism might miss some types. Consider this unsynchronized scenario: plugin B
-     * starts running its migrations just in the moment between plugin A's type introduction and event listener
-     * registration. Plugin A might miss some of the types created by plugin B.
+     * If the plugin is already activated (or its activation is already scheduled), nothing is performed. This happens
+     * e.g. when a dependent plugin is redeployed.
      */
-    synchronized void activatePlugin(PluginImpl plugin) {
-        // Note: we must not activate a plugin twice.
-        if (!_isPluginActivated(plugin.getUri())) {
-            plugin.activate();
-            addToActivatedPlugins(plugin);
-            //
-            if (checkAllPluginsActivated()) {
-                logger.info("########## All DMX plugins active ##########");
-                dmx.fireEvent(CoreEvent.ALL_PLUGINS_ACTIVE);
+    void activatePlugin(PluginImpl plugin) {
+        String pluginUri = plugin.getUri();
+        synchronized (this) {
+            // Note: we must not activate a plugin twice. A pending activation which is cancelled meanwhile does not
+            // count.
+            PluginImpl pending = pendingPlugins.get(pluginUri);
+            if (_isPluginActivated(pluginUri) || pending != null && !cancelledPlugins.contains(pending)) {
+                logger.info("Activating " + plugin + " SKIPPED -- already activated");
+                return;
+            }
+            pendingPlugins.put(pluginUri, plugin);
+            if (executor == null) {
+                executor = createExecutor();
             }
-        } else {
-            logger.info("Activating " + plugin + " SKIPPED -- already activated");
         }
+        long ready = System.currentTimeMillis();
+        executor.execute(() -> _activatePlugin(plugin, ready));
     }
 
+    /**
+     * Deactivates a plugin. If its activation is still scheduled or running the activation is cancelled: it is skipped
+     * resp. undone once complete, and the plugin is not added to the pool of activated plugins.
+     */
     synchronized void deactivatePlugin(PluginImpl plugin) {
         // Note: if plugin activation failed its listeners are not registered and it is not in the pool of activated
         // plugins. Unregistering the listeners and removing from pool would fail.
         String pluginUri = plugin.getUri();
-        if (_isPluginActivated(pluginUri)) {
+        if (pendingPlugins.get(pluginUri) == plugin) {
+            cancelledPlugins.add(plugin);
+            logger.info("Activation of " + plugin + " CANCELLED -- it is deactivated while pending");
+        } else if (_isPluginActivated(pluginUri)) {
             plugin.deactivate();
             removeFromActivatedPlugins(pluginUri);
         } else {
@@ -110,10 +162,92 @@ class PluginManager {
         return info;
     }
 
+    // ---
+
+    synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
 
 
     // ------------------------------------------------------------------------------------------------- Private Methods
 
+    /**
+     * Activates a plugin. Runs in an activation thread.
+     * <p>
+     * The installation phase (migrations, type introduction, event listener registration) is guarded by the install
+     * lock. A plugin which is not yet installed in the DB, or whose migrations are not yet run completely, is
+     * installed exclusively. Otherwise the "type introduction" mechanism might miss some types. Consider this
+     * unguarded scenario: plugin B starts running its migrations just in the moment between plugin A's type
+     * introduction and event listener registration. Plugin A might miss some of the types created by plugin B.
+     * An up-to-date plugin does not write to the DB while installation. Up-to-date plugins are installed
+     * concurrently.
+     * <p>
+     * If the plugin is deactivated while pending (see {@link #deactivatePlugin}) its activation is skipped, or, if
+     * already running, undone once complete.
+     */
+    private void _activatePlugin(PluginImpl plugin, long ready) {
+        boolean allActive = false;
+        try {
+            if (isCancelled(plugin)) {
+                return;
+            }
+            long started = System.currentTimeMillis();
+            boolean exclusive = plugin.needsInstallation();
+            Lock lock = exclusive ? installLock.writeLock() : installLock.readLock();
+            plugin.activate(lock);
+            //
+            synchronized (this) {
+                if (cancelledPlugins.contains(plugin)) {
+                    plugin.deactivate();
+                    logger.info("Activation of " + plugin + " UNDONE -- it was deactivated meanwhile");
+                    return;
+                }
+                addToActivatedPlugins(plugin);
+                timings.add(new ActivationTiming(plugin.getUri(), ready, started, System.currentTimeMillis(),
+                    exclusive));
+                allActive = checkAllPluginsActivated();
+            }
+            plugin.postPluginActivatedEvent();
+        } catch (Throwable e) {
+            logger.log(Level.SEVERE, "", e);
+            // Note: we catch anything, also errors (like NoClassDefFoundError).
+        } finally {
+            synchronized (this) {
+                pendingPlugins.remove(plugin.getUri(), plugin);
+                cancelledPlugins.remove(plugin);
+            }
+        }
+        //
+        if (allActive) {
+            logger.info("########## All DMX plugins active ##########" + activationReport());
+            dmx.fireEvent(CoreEvent.ALL_PLUGINS_ACTIVE);
+            // all migrations have run now
+            dmx.al.typeStorage.storeSnapshot();
+        }
+    }
+
+    private synchronized boolean isCancelled(PluginImpl plugin) {
+        if (cancelledPlugins.contains(plugin)) {
+            logger.info("Activation of " + plugin + " SKIPPED -- it was deactivated meanwhile");
+            return true;
+        }
+        return false;
+    }
+
+    private ExecutorService createExecutor() {
+        AtomicInteger threadNr = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(ACTIVATION_THREADS, 1), runnable -> {
+            Thread thread = new Thread(runnable, "dmx-plugin-activation-" + threadNr.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // ---
+
     /**
      * Checks if all installed plugins are activated.
      */
@@ -136,8 +270,15 @@ class PluginManager {
 
     /**
      * Plugin detection: checks if an arbitrary bundle is a DMX plugin.
+     * The result is remembered per bundle (and bundle update). Detection involves loading the activator class.
      */
     private boolean isDMXPlugin(Bundle bundle) {
+        return pluginBundles.computeIfAbsent(bundle.getBundleId() + ":" + bundle.getLastModified(),
+            key -> _isDMXPlugin(bundle)
+        );
+    }
+
+    private boolean _isDMXPlugin(Bundle bundle) {
         try {
             String activatorClassName = bundle.getHeaders().get("Bundle-Activator");
             if (activatorClassName != null) {
@@ -154,6 +295,23 @@ class PluginManager {
 
     // ---
 
+    private synchronized String activationReport() {
+        StringBuilder report = new StringBuilder("\n### Plugin activation (ms since core start: ready, started, " +
+            "finished; activation time), " + ACTIVATION_THREADS + " threads:");
+        long busy = 0;
+        long finished = 0;
+        for (ActivationTiming timing : timings) {
+            report.append("\n  " + timing);
+            busy += timing.finished - timing.started;
+            finished = Math.max(finished, timing.finished);
+        }
+        report.append("\n  => " + timings.size() + " plugins activated within " + (finished - startTime) +
+            " ms (sum of activation times: " + busy + " ms)");
+        return report.toString();
+    }
+
+    // ---
+
     private void addToActivatedPlugins(PluginImpl plugin) {
         activatedPlugins.put(plugin.getUri(), plugin);
     }
@@ -168,4 +326,27 @@ class PluginManager {
     private boolean _isPluginActivated(String pluginUri) {
         return activatedPlugins.get(pluginUri) != null;
     }
+
+    // ------------------------------------------------------------------------------------------------- Private Classes
+
+    private class ActivationTiming {
+
+        private String pluginUri;
+        private long ready, started, finished;
+        private boolean exclusive;      // true if the plugin was installed exclusively
+
+        private ActivationTiming(String pluginUri, long ready, long started, long finished, boolean exclusive) {
+            this.pluginUri = pluginUri;
+            this.ready = ready;
+            this.started = started;
+            this.finished = finished;
+            this.exclusive = exclusive;
+        }
+
+        @Override
+        public String toString() {
+            return pluginUri + ": " + (ready - startTime) + ", " + (started - startTime) + ", " +
+                (finished - startTime) + "; " + (finished - started) + (exclusive ? " (exclusive)" : "");
+        }
+    }
 }
@@ -10,11 +10,13 @@ import systems.dmx.core.model.DMXObjectModel;
 import systems.dmx.core.model.SimpleValue;
 import systems.dmx.core.model.RelatedTopicModel;
 import systems.dmx.core.model.TopicModel;
+import systems.dmx.core.service.CacheStats;
 import systems.dmx.core.service.accesscontrol.Credentials;
 import systems.dmx.core.service.accesscontrol.Operation;
 import systems.dmx.core.service.accesscontrol.PrivilegedAccess;
 import systems.dmx.core.service.accesscontrol.SharingMode;
 import systems.dmx.core.storage.spi.DMXTransaction;
+import systems.dmx.core.storage.spi.ObjectHeader;
 import systems.dmx.core.util.ContextTracker;
 import systems.dmx.core.util.JavaUtils;
 
@@ -22,7 +24,10 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.logging.Logger;
 
@@ -33,6 +38,7 @@ class PrivilegedAccessImpl implements PrivilegedAccess {
     // ------------------------------------------------------------------------------------------------------- Constants
 
     private static final String SITE_SALT = System.getProperty("dmx.security.site_salt", "");
+    private static final int PASSWORD_HASH_ITERATIONS = Integer.getInteger("dmx.security.password_hash_iterations", 0);
 
     // ### TODO: copies in Constants.java of various plugins
 
@@ -40,6 +46,7 @@ class PrivilegedAccessImpl implements PrivilegedAccess {
     private static final String USER_ACCOUNT         = "dmx.accesscontrol.user_account";
     private static final String USERNAME             = "dmx.accesscontrol.username";
     private static final String PASSWORD             = "dmx.accesscontrol.password";
+    private static final String LOGIN_ENABLED        = "dmx.accesscontrol.login_enabled";
     private static final String WORKSPACE            = "dmx.workspaces.workspace";
     private static final String SHARING_MODE         = "dmx.workspaces.sharing_mode";
     private static final String EMAIL_ADDRESS        = "dmx.contacts.email_address";
@@ -68,6 +75,7 @@ class PrivilegedAccessImpl implements PrivilegedAccess {
     // ---
 
     private static final String ENCODED_PASSWORD_PREFIX = "-SHA256-";
+    private static final String PBKDF2_PREFIX = "-PBKDF2-";
 
     // ---------------------------------------------------------------------------------------------- Instance Variables
 
@@ -119,6 +127,33 @@ class PrivilegedAccessImpl implements PrivilegedAccess {
         }
     }
 
+    @Override
+    public BitSet filterReadable(String username, long[] objectIds) {
+        BitSet readable = new BitSet(objectIds.length);
+        // key: workspace ID, value: READ permission
+        Map<Long, Boolean> permissions = new HashMap();
+        for (int i = 0; i < objectIds.length; i++) {
+            long objectId = objectIds[i];
+            String typeUri = null;
+            try {
+                boolean permission;
+                typeUri = getTypeUri(objectId);
+                long workspaceId = typeUri.equals(WORKSPACE) ? objectId : getAssignedWorkspaceId(objectId);
+                if (workspaceId == -1) {
+                    // fallback when no workspace is assigned
+                    permission = permissionIfNoWorkspaceIsAssigned(Operation.READ, objectId, typeUri);
+                } else {
+                    permission = permissions.computeIfAbsent(workspaceId, id -> hasReadPermission(username, id));
+                }
+                readable.set(i, permission);
+            } catch (Exception e) {
+                throw new RuntimeException("Checking READ permission for object " + objectId + " failed, typeUri=" +
+                    typeUri + ", " + userInfo(username), e);
+            }
+        }
+        return readable;
+    }
+
     // ---
 
     /**
@@ -127,23 +162,9 @@ class PrivilegedAccessImpl implements PrivilegedAccess {
      */
     @Override
     public boolean hasReadPermission(String username, long workspaceId) {
-        SharingMode sharingMode = getSharingMode(workspaceId);
-        switch (sharingMode) {
-        case PRIVATE:
-            return isOwner(username, workspaceId);
-        case CONFIDENTIAL:
-            return isOwner(username, workspaceId) || isMember(username, workspaceId);
-        case COLLABORATIVE:
-            return isOwner(username, workspaceId) || isMember(username, workspaceId);
-        case PUBLIC:
-            // Note: the System workspace is treated special: although it is a public workspace
-            // its content is readable only for logged in users.
-            return workspaceId != getSystemWorkspaceId() || username != null;
-        case COMMON:
-            return true;
-        default:
-            throw new RuntimeException(sharingMode + " is an unsupported sharing mode");
-        }
+        return al.permissionCache.get(username, Operation.READ, workspaceId, () ->
+            _hasReadPermission(username, workspaceId)
+        );
     }
 
     /**
@@ -152,21 +173,14 @@ class PrivilegedAccessImpl implements PrivilegedAccess {
      */
     @Override
     public boolean hasWritePermission(String username, long workspaceId) {
-        SharingMode sharingMode = getSharingMode(workspaceId);
-        switch (sharingMode) {
-        case PRIVATE:
-            return isOwner(username, workspaceId);
-        case CONFIDENTIAL:
-            return isOwner(username, workspaceId);
-        case COLLABORATIVE:
-            return isOwner(username, workspaceId) || isMember(username, workspaceId);
-        case PUBLIC:
-            return isOwner(username, workspaceId) || isMember(username, workspaceId);
-        case COMMON:
-            return true;
-        default:
-            throw new RuntimeException(sharingMode + " is an unsupported sharing mode");
-        }
+        return al.permissionCache.get(username, Operation.WRITE, workspaceId, () ->
+            _hasWritePermission(username, workspaceId)
+        );
+    }
+
+    @Override
+    public CacheStats getPermissionCacheStats() {
+        return al.permissionCache.getStats();
     }
 
 
@@ -177,13 +191,23 @@ class PrivilegedAccessImpl implements PrivilegedAccess {
     public Topic checkCredentials(Credentials cred) {
         TopicModelImpl usernameTopic = null;
         try {
+            CredentialsCache cache = al.modelCache.credentialsCache;
+            long stamp = cache.stamp();
+            long usernameTopicId = cache.get(cred);
+            if (usernameTopicId != -1) {
+                return al.db.fetchTopic(usernameTopicId).instantiate();
+            }
+            //
             usernameTopic = _getUsernameTopic(cred.username);
             if (usernameTopic == null) {
                 return null;
             }
-            if (!checkPassword(usernameTopic, cred.password)) {
+            TopicModelImpl userAccount = _getUserAccount(usernameTopic);
+            TopicModelImpl passwordTopic = _getPasswordTopic(userAccount);
+            if (!checkPassword(usernameTopic, passwordTopic, cred.password)) {
                 return null;
             }
+            cache.put(cred, usernameTopic.getId(), userAccount.getId(), passwordTopic.getId(), stamp);
             return usernameTopic.instantiate();
         } catch (Exception e) {
             throw new RuntimeException("Checking credentials for user \"" + cred.username + "\" failed, " +
@@ -191,6 +215,20 @@ class PrivilegedAccessImpl implements PrivilegedAccess {
         }
     }
 
+    @Override
+    public boolean isLoginEnabled(Topic usernameTopic) {
+        CredentialsCache cache = al.modelCache.credentialsCache;
+        long stamp = cache.stamp();
+        Boolean loginEnabled = cache.getLoginEnabled(usernameTopic.getId());
+        if (loginEnabled != null) {
+            return loginEnabled;
+        }
+        Topic configTopic = getConfigTopic(LOGIN_ENABLED, usernameTopic.getId());
+        boolean _loginEnabled = configTopic.getSimpleValue().booleanValue();
+        cache.putLoginEnabled(usernameTopic.getId(), configTopic.getId(), _loginEnabled, stamp);
+        return _loginEnabled;
+    }
+
     @Override
     public void changePassword(Credentials cred) {
         try {
@@ -206,7 +244,7 @@ class PrivilegedAccessImpl implements PrivilegedAccess {
     public void storePasswordHash(Credentials cred, TopicModel passwordTopic) {
         logger.info("### Salting password of user \"" + cred.username + "\"");
         String salt = JavaUtils.random256();
-        String hash = JavaUtils.encodeSHA256(SITE_SALT + salt + cred.password);
+        String hash = hashPassword(cred.password, salt, PASSWORD_HASH_ITERATIONS);
         ((TopicModelImpl) passwordTopic).storeProperty(PROP_SALT, salt, false);     // addToIndex=false
         ((TopicModelImpl) passwordTopic).updateSimpleValue(new SimpleValue(hash));
     }
@@ -222,9 +260,9 @@ class PrivilegedAccessImpl implements PrivilegedAccess {
     @Override
     public Topic getPrivateWorkspace(String username) {
         try {
-            for (TopicModelImpl workspace : fetchTopicsByOwner(username, WORKSPACE)) {
-                if (getSharingMode(workspace.getId()) == SharingMode.PRIVATE) {
-                    return workspace.instantiate();
+            for (long workspaceId : fetchTopicIdsByOwner(username, WORKSPACE)) {
+                if (getSharingMode(workspaceId) == SharingMode.PRIVATE) {
+                    return al.db.fetchTopic(workspaceId).instantiate();
                 }
             }
             throw new RuntimeException("User \"" + username + "\" has no private workspace");
@@ -421,6 +459,35 @@ class PrivilegedAccessImpl implements PrivilegedAccess {
 
 
 
+    // === Object Headers ===
+
+    @Override
+    public List<ObjectHeader> getTopicHeadersByProperty(String propUri, Object propValue) {
+        return al.db.fetchTopicHeadersByProperty(propUri, propValue);
+    }
+
+    @Override
+    public List<ObjectHeader> getAssocHeadersByProperty(String propUri, Object propValue) {
+        return al.db.fetchAssocHeadersByProperty(propUri, propValue);
+    }
+
+    @Override
+    public List<ObjectHeader> getTopicHeadersByType(String topicTypeUri) {
+        return al.db.fetchTopicHeadersByProperty("typeUri", topicTypeUri);
+    }
+
+    @Override
+    public List<ObjectHeader> getAssocHeadersByType(String assocTypeUri) {
+        return al.db.fetchAssocHeadersByProperty("typeUri", assocTypeUri);
+    }
+
+    @Override
+    public boolean objectExists(long id) {
+        return al.db.objectExists(id);
+    }
+
+
+
     // === Topicmaps ===
 
     @Override
@@ -499,12 +566,12 @@ class PrivilegedAccessImpl implements PrivilegedAccess {
      * Checks if given username and password do match.
      *
      * @param   usernameTopic   not <code>null</code>.
+     * @param   passwordTopic   the user's Password topic, not <code>null</code>.
      * @param   password        password provided by user, plain text
      *
      * @return  true if username and password match, false otherwise.
      */
-    private boolean checkPassword(TopicModel usernameTopic, String password) {
-        TopicModelImpl passwordTopic = getPasswordTopic(usernameTopic);
+    private boolean checkPassword(TopicModel usernameTopic, TopicModelImpl passwordTopic, String password) {
         String storedHash = passwordTopic.getSimpleValue().toString();          // SHA256 hash
         String username = usernameTopic.getSimpleValue().toString();
         Credentials cred = new Credentials(username, password);
@@ -512,9 +579,13 @@ class PrivilegedAccessImpl implements PrivilegedAccess {
         boolean isMatch;
         if (passwordTopic.hasProperty(PROP_SALT)) {
             String salt = (String) passwordTopic.getProperty(PROP_SALT);
-            compareHash = JavaUtils.encodeSHA256(SITE_SALT + salt + password);  // canonic: site salt already applied
+            int iterations = hashIterations(storedHash);
+            compareHash = hashPassword(password, salt, iterations);             // canonic: site salt already applied
             isMatch = storedHash.equals(compareHash);
             if (isMatch) {
+                if (iterations != PASSWORD_HASH_ITERATIONS) {
+                    _storePasswordHash(cred, passwordTopic);                     // hashing cost has been changed
+                }
                 return true;
             }
             compareHash = JavaUtils.encodeSHA256(salt + password);              // site salt not yet applied
@@ -566,7 +637,7 @@ class PrivilegedAccessImpl implements PrivilegedAccess {
     }
 
     private void _storePasswordHash(Credentials cred, TopicModelImpl passwordTopic) {
-        DMXTransaction tx = al.db.beginTx();
+        DMXTransaction tx = al.beginTx();
         try {
             storePasswordHash(cred, passwordTopic);
             tx.success();
@@ -577,6 +648,28 @@ class PrivilegedAccessImpl implements PrivilegedAccess {
         }
     }
 
+    /**
+     * @param   iterations  the PBKDF2 iterations, or 0 for a single SHA-256 hash (the format before
+     *                      <code>dmx.security.password_hash_iterations</code> was introduced).
+     */
+    private String hashPassword(String password, String salt, int iterations) {
+        if (iterations <= 0) {
+            return JavaUtils.encodeSHA256(SITE_SALT + salt + password);
+        }
+        return PBKDF2_PREFIX + iterations + "-" + JavaUtils.encodePBKDF2(password, SITE_SALT + salt, iterations);
+    }
+
+    /**
+     * Returns the PBKDF2 iterations a stored hash was calculated with, or 0 for a single SHA-256 hash.
+     */
+    private int hashIterations(String storedHash) {
+        if (!storedHash.startsWith(PBKDF2_PREFIX)) {
+            return 0;
+        }
+        int i = PBKDF2_PREFIX.length();
+        return Integer.parseInt(storedHash.substring(i, storedHash.indexOf('-', i)));
+    }
+
     // used for legacy accounts
     private String encodePassword(String password) {
         return ENCODED_PASSWORD_PREFIX + JavaUtils.encodeSHA256(password);
@@ -612,6 +705,46 @@ class PrivilegedAccessImpl implements PrivilegedAccess {
 
     // ---
 
+    private boolean _hasReadPermission(String username, long workspaceId) {
+        SharingMode sharingMode = getSharingMode(workspaceId);
+        switch (sharingMode) {
+        case PRIVATE:
+            return isOwner(username, workspaceId);
+        case CONFIDENTIAL:
+            return isOwner(username, workspaceId) || isMember(username, workspaceId);
+        case COLLABORATIVE:
+            return isOwner(username, workspaceId) || isMember(username, workspaceId);
+        case PUBLIC:
+            // Note: the System workspace is treated special: although it is a public workspace
+            // its content is readable only for logged in users.
+            return workspaceId != getSystemWorkspaceId() || username != null;
+        case COMMON:
+            return true;
+        default:
+            throw new RuntimeException(sharingMode + " is an unsupported sharing mode");
+        }
+    }
+
+    private boolean _hasWritePermission(String username, long workspaceId) {
+        SharingMode sharingMode = getSharingMode(workspaceId);
+        switch (sharingMode) {
+        case PRIVATE:
+            return isOwner(username, workspaceId);
+        case CONFIDENTIAL:
+            return isOwner(username, workspaceId);
+        case COLLABORATIVE:
+            return isOwner(username, workspaceId) || isMember(username, workspaceId);
+        case PUBLIC:
+            return isOwner(username, workspaceId) || isMember(username, workspaceId);
+        case COMMON:
+            return true;
+        default:
+            throw new RuntimeException(sharingMode + " is an unsupported sharing mode");
+        }
+    }
+
+    // ---
+
     /**
      * Checks if a user is the owner of a workspace.
      *
@@ -707,19 +840,19 @@ class PrivilegedAccessImpl implements PrivilegedAccess {
     // === Direct Storage Access ===
 
     /**
-     * Fetches topics by owner, and filter by type.
+     * Fetches topic IDs by owner, and filter by type. Only the topic headers are read.
      *
      * ### TODO: drop "typeUri" parameter. Throw if fetched topic is not a workspace.
      * Note: only for workspace topics the "dmx.accesscontrol.owner" property is set.
      */
-    private List<TopicModelImpl> fetchTopicsByOwner(String username, String typeUri) {
-        List<TopicModelImpl> topics = new ArrayList();
-        for (TopicModelImpl topic : al.db.fetchTopicsByProperty(PROP_OWNER, username)) {
+    private List<Long> fetchTopicIdsByOwner(String username, String typeUri) {
+        List<Long> topicIds = new ArrayList();
+        for (ObjectHeader topic : al.db.fetchTopicHeadersByProperty(PROP_OWNER, username)) {
             if (topic.getTypeUri().equals(typeUri)) {
-                topics.add(topic);
+                topicIds.add(topic.getId());
             }
         }
-        return topics;
+        return topicIds;
     }
 
     /**
@@ -118,11 +118,13 @@ public class TopicModelImpl extends DMXObjectModelImpl implements TopicModel {
     @Override
     final void storeProperty(String propUri, Object propValue, boolean addToIndex) {
         al.db.storeTopicProperty(id, propUri, propValue, addToIndex);
+        al.permissionCache.propertyChanged(id, propUri);
     }
 
     @Override
     final void removeProperty(String propUri) {
         al.db.deleteTopicProperty(id, propUri);
+        al.permissionCache.propertyChanged(id, propUri);
     }
 
     // ---
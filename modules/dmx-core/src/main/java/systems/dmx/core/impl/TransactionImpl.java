@@ -0,0 +1,54 @@
+package systems.dmx.core.impl;
+
+import systems.dmx.core.storage.spi.DMXTransaction;
+
+
+
+/**
+ * Wraps a storage transaction and notifies the Core caches once the outermost transaction of a thread has finished.
+ */
+class TransactionImpl implements DMXTransaction {
+
+    // ------------------------------------------------------------------------------------------------- Class Variables
+
+    private static final ThreadLocal<Integer> depth = ThreadLocal.withInitial(() -> 0);
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private DMXTransaction tx;
+    private AccessLayer al;
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    TransactionImpl(DMXTransaction tx, AccessLayer al) {
+        this.tx = tx;
+        this.al = al;
+        depth.set(depth.get() + 1);
+    }
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+    @Override
+    public void success() {
+        tx.success();
+    }
+
+    @Override
+    public void failure() {
+        tx.failure();
+    }
+
+    @Override
+    public void finish() {
+        try {
+            tx.finish();
+        } finally {
+            int _depth = depth.get() - 1;
+            depth.set(_depth);
+            if (_depth == 0) {
+                al.permissionCache.txFinished();
+                al.modelCache.txFinished();
+            }
+        }
+    }
+}
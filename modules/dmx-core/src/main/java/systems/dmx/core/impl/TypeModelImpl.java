@@ -28,9 +28,17 @@ class TypeModelImpl extends TopicModelImpl implements TypeModel {
 
     // ---------------------------------------------------------------------------------------------- Instance Variables
 
-    String dataTypeUri;     // may be null in models used for an update operation
-    SequencedHashMap<String, CompDefModelImpl> compDefs;        // is never null, may be empty
-    ViewConfigModelImpl viewConfig;                             // is never null
+    volatile String dataTypeUri;    // may be null in models used for an update operation
+
+    /**
+     * Is never null, may be empty.
+     * <p>
+     * Copy-on-write: a cached type is read concurrently (without locking) by all request threads. So the map is never
+     * modified once published. Modifications are applied to a copy which then replaces the map at once.
+     */
+    volatile SequencedHashMap<String, CompDefModelImpl> compDefs;
+
+    volatile ViewConfigModelImpl viewConfig;                    // is never null
 
     private Logger logger = Logger.getLogger(getClass().getName());
 
@@ -113,7 +121,9 @@ class TypeModelImpl extends TopicModelImpl implements TypeModel {
                 throw new RuntimeException("Type \"" + uri + "\" has a \"" + compDefUri + "\" comp def already");
             }
             //
-            compDefs.putBefore(compDefUri, (CompDefModelImpl) compDef, beforeCompDefUri);
+            SequencedHashMap<String, CompDefModelImpl> _compDefs = copyCompDefs();
+            _compDefs.putBefore(compDefUri, (CompDefModelImpl) compDef, beforeCompDefUri);
+            compDefs = _compDefs;
             return this;
         } catch (Exception e) {
             throw new RuntimeException("Adding comp def \"" + compDef.getCompDefUri() + "\" to type \"" + uri +
@@ -124,11 +134,13 @@ class TypeModelImpl extends TopicModelImpl implements TypeModel {
     @Override
     public CompDefModel removeCompDef(String compDefUri) {
         try {
-            CompDefModel compDef = compDefs.remove(compDefUri);
+            SequencedHashMap<String, CompDefModelImpl> _compDefs = copyCompDefs();
+            CompDefModel compDef = _compDefs.remove(compDefUri);
             if (compDef == null) {
                 throw new RuntimeException("Type \"" + uri + "\" has no comp def \"" + compDefUri + "\", available: " +
-                    compDefs.keySet());
+                    _compDefs.keySet());
             }
+            compDefs = _compDefs;
             return compDef;
         } catch (Exception e) {
             throw new RuntimeException("Removing comp def \"" + compDefUri + "\" from type \"" + uri + "\" failed", e);
@@ -596,17 +608,41 @@ class TypeModelImpl extends TopicModelImpl implements TypeModel {
 
     // ---
 
+    /**
+     * Note: all comp defs are rehashed in one copy, so readers never see an intermediate sequence.
+     */
     private void rehashCompDefs(Collection<CompDefModelImpl> newCompDefs) {
+        SequencedHashMap<String, CompDefModelImpl> _compDefs = copyCompDefs();
         for (CompDefModel compDef : newCompDefs) {
-            rehashCompDef(compDef.getCompDefUri(), null);
+            rehashCompDef(_compDefs, compDef.getCompDefUri(), null);
         }
+        compDefs = _compDefs;
     }
 
     private void rehashCompDef(String compDefUri, String beforeCompDefUri) {
-        CompDefModel compDef = removeCompDef(compDefUri);
+        SequencedHashMap<String, CompDefModelImpl> _compDefs = copyCompDefs();
+        rehashCompDef(_compDefs, compDefUri, beforeCompDefUri);
+        compDefs = _compDefs;
+    }
+
+    private void rehashCompDef(SequencedHashMap<String, CompDefModelImpl> compDefs, String compDefUri,
+                                                                                     String beforeCompDefUri) {
+        CompDefModelImpl compDef = compDefs.remove(compDefUri);
+        if (compDef == null) {
+            throw new RuntimeException("Type \"" + uri + "\" has no comp def \"" + compDefUri + "\", available: " +
+                compDefs.keySet());
+        }
         logger.info("Rehashing comp def \"" + compDefUri + "\" -> \"" + compDef.getCompDefUri() + "\" (put " +
             (beforeCompDefUri != null ? "before \"" + beforeCompDefUri + "\"" : "at end") + ")");
-        addCompDefBefore(compDef, beforeCompDefUri);
+        if (compDefs.containsKey(compDef.getCompDefUri())) {
+            throw new RuntimeException("Type \"" + uri + "\" has a \"" + compDef.getCompDefUri() +
+                "\" comp def already");
+        }
+        compDefs.putBefore(compDef.getCompDefUri(), compDef, beforeCompDefUri);
+    }
+
+    private SequencedHashMap<String, CompDefModelImpl> copyCompDefs() {
+        return (SequencedHashMap) compDefs.clone();
     }
 
     // ---
@@ -0,0 +1,313 @@
+package systems.dmx.core.impl;
+
+import static systems.dmx.core.Constants.*;
+import systems.dmx.core.model.CompDefModel;
+import systems.dmx.core.model.PlayerModel;
+import systems.dmx.core.model.TopicModel;
+import systems.dmx.core.model.ViewConfigModel;
+import systems.dmx.core.storage.spi.DMXStorage;
+import systems.dmx.core.storage.spi.DMXTransaction;
+
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+
+/**
+ * A persisted snapshot of the type catalogue: all topic types and assoc types, along with their comp defs and view
+ * configs, as fetched from DB. The snapshot is stored (as JSON) in the root node, once all plugins are active, that is
+ * after all migrations have run. At the next start the snapshot is loaded into the type cache, so the types are not
+ * fetched from DB one by one once touched. The snapshot is only loaded if its version matches, that is the snapshot
+ * format, the core model version, and the installed model versions of all plugins (see {@link #version}).
+ * <p>
+ * The snapshot is dropped (deleted from DB) as soon as one of the objects it is derived from is changed or deleted, or
+ * an assoc is created or deleted with one of those objects as a player (e.g. a comp def is added to a type). The
+ * hooks are invoked by ModelCache. The snapshot is dropped within the changing transaction, so a rollback restores it.
+ * <p>
+ * Note: types created after the snapshot was stored are not contained in it. They are fetched from DB on demand.
+ */
+class TypeSnapshot {
+
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    private static final int FORMAT_VERSION = 1;
+
+    // root node properties
+    private static final String PROP_SNAPSHOT = "type_catalogue_snapshot";
+    private static final String PROP_VERSION  = "type_catalogue_snapshot_version";
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    /**
+     * The IDs of the objects the stored snapshot is derived from. Empty if this process has neither loaded nor stored
+     * a snapshot.
+     */
+    private volatile Set<Long> objectIds = new HashSet();
+
+    /**
+     * Counts all writes. Used to detect a concurrent write while storing a snapshot.
+     */
+    private final AtomicLong writes = new AtomicLong();
+
+    /**
+     * The number of running transactions which have written already.
+     */
+    private final AtomicInteger writingTxs = new AtomicInteger();
+
+    /**
+     * Whether the current thread has written within the running transaction.
+     */
+    private final ThreadLocal<Boolean> writing = ThreadLocal.withInitial(() -> false);
+
+    private final DMXStorage db;
+
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    /**
+     * @param   db      the storage implementation (not the ModelCache).
+     */
+    TypeSnapshot(DMXStorage db) {
+        this.db = db;
+    }
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    /**
+     * Loads the stored snapshot.
+     * Prerequisite: there is an open transaction.
+     *
+     * @return  the types contained in the snapshot, or <code>null</code> if no snapshot is stored, or if its version
+     *          does not match, or if it can't be parsed.
+     */
+    List<TypeModelImpl> load(ModelFactoryImpl mf) {
+        try {
+            long time = System.currentTimeMillis();
+            if (!db.hasProperty(0, PROP_SNAPSHOT)) {
+                logger.info("Loading type catalogue snapshot SKIPPED -- no snapshot stored");
+                return null;
+            }
+            Object storedVersion = db.fetchProperty(0, PROP_VERSION);
+            String version = version();
+            if (!version.equals(storedVersion)) {
+                logger.info("Loading type catalogue snapshot SKIPPED -- snapshot version \"" + storedVersion +
+                    "\" does not match version \"" + version + "\"");
+                return null;
+            }
+            JSONArray snapshot = new JSONArray((String) db.fetchProperty(0, PROP_SNAPSHOT));
+            List<TypeModelImpl> types = new ArrayList();
+            Set<Long> ids = new HashSet();
+            for (int i = 0; i < snapshot.length(); i++) {
+                JSONObject type = snapshot.getJSONObject(i);
+                collectIds(type, ids);
+                types.add(parseType(type, mf));
+            }
+            objectIds = ids;
+            logger.info("### Loading type catalogue snapshot complete -- " + types.size() + " types (" +
+                (System.currentTimeMillis() - time) + " ms)");
+            return types;
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Loading type catalogue snapshot failed -- types are fetched from DB", e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores a snapshot of the given types, unless the stored snapshot is up-to-date already. Storing is skipped as
+     * well if a write happens meanwhile (or is about to be committed). Then the type catalogue might be in change.
+     * Runs in its own transaction. A failure is logged only.
+     *
+     * @param   types   supplies the types as fetched from DB (not the cached ones, as these might deviate from DB).
+     */
+    void store(Supplier<List<TypeModelImpl>> types) {
+        try {
+            if (isStored()) {
+                logger.info("Storing type catalogue snapshot SKIPPED -- snapshot is up-to-date");
+                return;
+            }
+            long stamp = writes.get();
+            if (writingTxs.get() > 0) {
+                logger.info("Storing type catalogue snapshot SKIPPED -- there are running write transactions");
+                return;
+            }
+            long time = System.currentTimeMillis();
+            JSONArray snapshot = new JSONArray();
+            Set<Long> ids = new HashSet();
+            for (TypeModelImpl type : types.get()) {
+                JSONObject _type = type.toJSON();
+                collectIds(_type, ids);
+                snapshot.put(_type);
+            }
+            String json = snapshot.toString();
+            DMXTransaction tx = db.beginTx();
+            try {
+                db.storeTopicProperty(0, PROP_SNAPSHOT, json, false);           // addToIndex=false
+                db.storeTopicProperty(0, PROP_VERSION, version(), false);       // addToIndex=false
+                tx.success();
+            } finally {
+                tx.finish();
+            }
+            objectIds = ids;
+            // Note: a write happened meanwhile is not necessarily seen by the snapshot. Only the writes happening
+            // from now on drop the snapshot by their own.
+            if (writes.get() != stamp) {
+                logger.info("### Type catalogue snapshot is dropped again -- concurrent write detected");
+                tx = db.beginTx();
+                try {
+                    drop();
+                    tx.success();
+                } finally {
+                    tx.finish();
+                }
+                return;
+            }
+            logger.info("### Storing type catalogue snapshot complete -- " + snapshot.length() + " types, " +
+                json.length() + " chars (" + (System.currentTimeMillis() - time) + " ms)");
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Storing type catalogue snapshot failed", e);
+        }
+    }
+
+    // --- Invalidation Hooks ---
+
+    /**
+     * To be called when an object is created, changed, or deleted.
+     */
+    void objectChanged(long objectId) {
+        if (!writing.get()) {
+            writing.set(true);
+            writingTxs.incrementAndGet();
+        }
+        writes.incrementAndGet();
+        if (objectIds.contains(objectId)) {
+            drop();
+        }
+    }
+
+    /**
+     * To be called when an association is created or deleted.
+     * Prerequisite: the association exists in DB (that is created already resp. not yet deleted).
+     */
+    void assocChanged(long assocId, PlayerModel player1, PlayerModel player2) {
+        if (isPlayer(player1) || isPlayer(player2)) {
+            // Note: an instantiation does not change the type (the type is a player, the instance the other one)
+            if (!INSTANTIATION.equals(db.fetchProperty(assocId, "typeUri"))) {
+                drop();
+            }
+        }
+    }
+
+    /**
+     * To be called when the outermost transaction of the current thread has finished (committed or rolled back).
+     */
+    void txFinished() {
+        if (writing.get()) {
+            writing.set(false);
+            writingTxs.decrementAndGet();
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    private boolean isStored() {
+        return !objectIds.isEmpty() && db.hasProperty(0, PROP_SNAPSHOT) &&
+            version().equals(db.fetchProperty(0, PROP_VERSION));
+    }
+
+    /**
+     * Returns the snapshot version: the snapshot format, the core model version, and the installed model version
+     * (migration number) of each plugin, as stored in DB.
+     * <p>
+     * A plugin migration which runs while the snapshot is stored usually drops it by its type changes. The plugin
+     * model versions in the version catch the remaining cases, e.g. migrations run by a DMX version which is not
+     * aware of the snapshot, or migrations which change types by direct storage access.
+     */
+    private String version() {
+        List<String> plugins = new ArrayList();
+        for (TopicModelImpl plugin : db.fetchTopics("typeUri", PLUGIN)) {
+            List<RelatedTopicModelImpl> migrationNr = db.fetchTopicRelatedTopics(plugin.getId(), COMPOSITION, PARENT,
+                CHILD, PLUGIN_MIGRATION_NR);
+            plugins.add(plugin.getUri() + "=" + (!migrationNr.isEmpty() ? migrationNr.get(0).getSimpleValue() : ""));
+        }
+        Collections.sort(plugins);
+        return FORMAT_VERSION + "/" + MigrationManager.CORE_MODEL_VERSION + "/" + String.join(",", plugins);
+    }
+
+    private boolean isPlayer(PlayerModel player) {
+        long playerId = ((PlayerModelImpl) player).id;
+        return playerId != -1 && objectIds.contains(playerId);
+    }
+
+    /**
+     * Deletes the stored snapshot.
+     * Prerequisite: there is an open transaction.
+     */
+    private void drop() {
+        if (db.hasProperty(0, PROP_SNAPSHOT)) {
+            logger.info("### Type catalogue changed -- dropping type catalogue snapshot");
+            db.deleteTopicProperty(0, PROP_SNAPSHOT);
+        }
+    }
+
+    // ---
+
+    private TypeModelImpl parseType(JSONObject type, ModelFactoryImpl mf) throws Exception {
+        TopicModel typeTopic = mf.newTopicModel(type);
+        List<CompDefModel> compDefs = new ArrayList();
+        JSONArray _compDefs = type.getJSONArray("compDefs");
+        for (int i = 0; i < _compDefs.length(); i++) {
+            JSONObject compDef = _compDefs.getJSONObject(i);
+            compDefs.add(mf.newCompDefModel(
+                mf.newAssocModel(compDef),
+                mf.newViewConfigModel(compDef.getJSONArray("viewConfigTopics"))
+            ));
+        }
+        String dataTypeUri = type.getString("dataTypeUri");
+        ViewConfigModel viewConfig = mf.newViewConfigModel(type.getJSONArray("viewConfigTopics"));
+        if (typeTopic.getTypeUri().equals(ASSOC_TYPE)) {
+            return mf.newAssocTypeModel(typeTopic, dataTypeUri, compDefs, viewConfig);
+        } else {
+            return mf.newTopicTypeModel(typeTopic, dataTypeUri, compDefs, viewConfig);
+        }
+    }
+
+    /**
+     * Collects the IDs of all the objects contained in the given JSON (recursively).
+     */
+    private void collectIds(Object json, Set<Long> ids) throws Exception {
+        if (json instanceof JSONObject) {
+            JSONObject object = (JSONObject) json;
+            Iterator<String> i = object.keys();
+            while (i.hasNext()) {
+                String key = i.next();
+                Object value = object.get(key);
+                if (key.equals("id") && value instanceof Number) {
+                    long id = ((Number) value).longValue();
+                    if (id != -1) {
+                        ids.add(id);
+                    }
+                } else {
+                    collectIds(value, ids);
+                }
+            }
+        } else if (json instanceof JSONArray) {
+            JSONArray array = (JSONArray) json;
+            for (int i = 0; i < array.length(); i++) {
+                collectIds(array.get(i), ids);
+            }
+        }
+    }
+}
@@ -9,13 +9,14 @@ import systems.dmx.core.model.RelatedTopicModel;
 import systems.dmx.core.model.SimpleValue;
 import systems.dmx.core.model.TopicModel;
 import systems.dmx.core.model.ViewConfigModel;
-import systems.dmx.core.util.DMXUtils;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
 
@@ -27,9 +28,20 @@ class TypeStorage {
 
     // ---------------------------------------------------------------------------------------------- Instance Variables
 
-    private Map<String, TypeModelImpl> typeCache = new HashMap();
+    /**
+     * Read by all request threads without locking.
+     */
+    private Map<String, TypeModelImpl> typeCache = new ConcurrentHashMap();
 
-    private EndlessRecursionDetection endlessRecursionDetection = new EndlessRecursionDetection();
+    /**
+     * Serializes lazy type loading. Loading a type might load further types (recursively, by the same thread).
+     * The types loaded by the lock holder are staged in "loadedTypes" and are published to the type cache only once
+     * the outermost load has completed. So other threads never see a partially loaded type (e.g. one without view
+     * config), and a type missed by several threads at once is loaded only once.
+     */
+    private ReentrantLock loadLock = new ReentrantLock();
+    private Map<String, TypeModelImpl> loadedTypes = new HashMap();                     // guarded by loadLock
+    private EndlessRecursionDetection endlessRecursionDetection = new EndlessRecursionDetection();  // dito
 
     private AccessLayer al;
     private ModelFactoryImpl mf;
@@ -51,16 +63,58 @@ class TypeStorage {
 
     TopicTypeModelImpl getTopicType(String topicTypeUri) {
         TopicTypeModelImpl topicType = (TopicTypeModelImpl) getTypeIfExists(topicTypeUri);
-        return topicType != null ? topicType : fetchTopicType(topicTypeUri);
+        return topicType != null ? topicType : loadTopicType(topicTypeUri);
     }
 
     AssocTypeModelImpl getAssocType(String assocTypeUri) {
         AssocTypeModelImpl assocType = (AssocTypeModelImpl) getTypeIfExists(assocTypeUri);
-        return assocType != null ? assocType : fetchAssocType(assocTypeUri);
+        return assocType != null ? assocType : loadAssocType(assocTypeUri);
     }
 
     private TypeModelImpl getTypeIfExists(String typeUri) {
-        return typeCache.get(typeUri);
+        TypeModelImpl type = typeCache.get(typeUri);
+        if (type == null && loadLock.isHeldByCurrentThread()) {
+            type = loadedTypes.get(typeUri);
+        }
+        return type;
+    }
+
+    // ---
+
+    private TopicTypeModelImpl loadTopicType(String topicTypeUri) {
+        loadLock.lock();
+        try {
+            // Note: another thread might have loaded the type meanwhile
+            TopicTypeModelImpl topicType = (TopicTypeModelImpl) getTypeIfExists(topicTypeUri);
+            return topicType != null ? topicType : fetchTopicType(topicTypeUri);
+        } finally {
+            unlockLoad();
+        }
+    }
+
+    private AssocTypeModelImpl loadAssocType(String assocTypeUri) {
+        loadLock.lock();
+        try {
+            // Note: another thread might have loaded the type meanwhile
+            AssocTypeModelImpl assocType = (AssocTypeModelImpl) getTypeIfExists(assocTypeUri);
+            return assocType != null ? assocType : fetchAssocType(assocTypeUri);
+        } finally {
+            unlockLoad();
+        }
+    }
+
+    /**
+     * Publishes the loaded types once the outermost load has completed, and releases the load lock.
+     */
+    private void unlockLoad() {
+        try {
+            if (loadLock.getHoldCount() == 1) {
+                typeCache.putAll(loadedTypes);
+                loadedTypes.clear();
+            }
+        } finally {
+            loadLock.unlock();
+        }
     }
 
     // ---
@@ -76,6 +130,76 @@ class TypeStorage {
         }
     }
 
+    // --- Snapshot ---
+
+    /**
+     * Puts the types of the stored type catalogue snapshot in the type cache, provided the snapshot is up-to-date.
+     * Otherwise the types are fetched from DB on demand, as usual.
+     * <p>
+     * Called at startup, before the core migrations run.
+     * Prerequisite: there is an open transaction.
+     */
+    void loadSnapshot() {
+        List<TypeModelImpl> types = al.modelCache.typeSnapshot.load(mf);
+        if (types != null) {
+            for (TypeModelImpl type : types) {
+                putInTypeCache(type);
+            }
+        }
+    }
+
+    /**
+     * Stores a snapshot of the type catalogue, unless an up-to-date one is stored already.
+     * <p>
+     * Called once all plugins are active, that is after all migrations have run.
+     */
+    void storeSnapshot() {
+        al.modelCache.typeSnapshot.store(this::fetchAllTypes);
+    }
+
+    /**
+     * Fetches all topic types and assoc types from DB. The types not yet in the type cache are put in the type cache.
+     * The cached types are fetched as well, but stay in place.
+     */
+    private List<TypeModelImpl> fetchAllTypes() {
+        loadLock.lock();
+        try {
+            List<TypeModelImpl> types = new ArrayList();
+            for (String topicTypeUri : fetchTypeUris(TOPIC_TYPE, META_TYPE, "dmx.core.meta_meta_type")) {
+                types.add(typeCache.containsKey(topicTypeUri) ? fetchTopicType(topicTypeUri) :
+                    getTopicType(topicTypeUri));
+                unstageCachedType(topicTypeUri);
+            }
+            for (String assocTypeUri : fetchTypeUris(ASSOC_TYPE)) {
+                types.add(typeCache.containsKey(assocTypeUri) ? fetchAssocType(assocTypeUri) :
+                    getAssocType(assocTypeUri));
+                unstageCachedType(assocTypeUri);
+            }
+            return types;
+        } finally {
+            unlockLoad();
+        }
+    }
+
+    private List<String> fetchTypeUris(String... typeUris) {
+        List<String> uris = new ArrayList();
+        for (String typeUri : typeUris) {
+            for (TopicModelImpl typeTopic : al.db.fetchTopics("typeUri", typeUri)) {
+                uris.add(typeTopic.getUri());
+            }
+        }
+        return uris;
+    }
+
+    /**
+     * Prevents a type which is cached already from being replaced by its fetched counterpart.
+     */
+    private void unstageCachedType(String typeUri) {
+        if (typeCache.containsKey(typeUri)) {
+            loadedTypes.remove(typeUri);
+        }
+    }
+
 
 
     // === Types ===
@@ -98,7 +222,7 @@ class TypeStorage {
             //
             // create and cache type model
             TopicTypeModelImpl topicType = mf.newTopicTypeModel(typeTopic, dataTypeUri, compDefs, null);
-            putInTypeCache(topicType);                                                            // viewConfig=null
+            loadedTypes.put(topicTypeUri, topicType);                                           // viewConfig=null
             //
             // Note: the topic type "View Config" can have view configs itself. In order to avoid endless recursions
             // the topic type "View Config" must be available in type cache *before* the view configs are fetched.
@@ -107,6 +231,7 @@ class TypeStorage {
             //
             return topicType;
         } catch (Exception e) {
+            loadedTypes.remove(topicTypeUri);
             throw new RuntimeException("Fetching topic type \"" + topicTypeUri + "\" failed", e);
         } finally {
             endlessRecursionDetection.reset(topicTypeUri);
@@ -129,7 +254,7 @@ class TypeStorage {
             //
             // create and cache type model
             AssocTypeModelImpl assocType = mf.newAssocTypeModel(typeTopic, dataTypeUri, compDefs, null);
-            putInTypeCache(assocType);                                                            // viewConfig=null
+            loadedTypes.put(assocTypeUri, assocType);                                           // viewConfig=null
             //
             // Note: the topic type "View Config" can have view configs itself. In order to avoid endless recursions
             // the topic type "View Config" must be available in type cache *before* the view configs are fetched.
@@ -138,6 +263,7 @@ class TypeStorage {
             //
             return assocType;
         } catch (Exception e) {
+            loadedTypes.remove(assocTypeUri);
             throw new RuntimeException("Fetching association type \"" + assocTypeUri + "\" failed", e);
         } finally {
             endlessRecursionDetection.reset(assocTypeUri);
@@ -245,14 +371,14 @@ class TypeStorage {
 
     private List<CompDefModel> fetchCompDefs(TopicModelImpl typeTopic) {
         Map<Long, CompDefModel> compDefs = fetchCompDefsUnsorted(typeTopic);
-        List<RelatedAssocModelImpl> sequence = fetchSequence(typeTopic);
+        List<Long> sequence = fetchSequenceIds(typeTopic);
         // error check
         if (compDefs.size() != sequence.size()) {
             throw new RuntimeException("DB inconsistency: type \"" + typeTopic.getUri() + "\" has " + compDefs.size() +
                 " comp defs but in sequence are " + sequence.size());
         }
         //
-        return sortCompDefs(compDefs, DMXUtils.idList(sequence));
+        return sortCompDefs(compDefs, sequence);
     }
 
     private Map<Long, CompDefModel> fetchCompDefsUnsorted(TopicModelImpl typeTopic) {
@@ -530,6 +656,42 @@ class TypeStorage {
         }
     }
 
+    /**
+     * ID-only variant of {@link #fetchSequence}: neither the comp defs nor the sequence assocs are built.
+     * Used when fetching a type's comp defs.
+     */
+    private List<Long> fetchSequenceIds(TopicModel typeTopic) {
+        try {
+            List<Long> sequence = new ArrayList();
+            //
+            long compDefId = singleId(al.db.fetchRelatedIds(typeTopic.getId(), COMPOSITION, TYPE, SEQUENCE_START,
+                COMPOSITION_DEF));
+            while (compDefId != -1) {
+                sequence.add(compDefId);
+                compDefId = singleId(al.db.fetchRelatedIds(compDefId, SEQUENCE, PREDECESSOR, SUCCESSOR,
+                    COMPOSITION_DEF));
+            }
+            //
+            return sequence;
+        } catch (Exception e) {
+            throw new RuntimeException("Fetching sequence for type \"" + typeTopic.getUri() + "\" failed", e);
+        }
+    }
+
+    /**
+     * @return  the sole ID of the given list, or -1 if the list is empty.
+     */
+    private long singleId(List<Long> ids) {
+        switch (ids.size()) {
+        case 0:
+            return -1;
+        case 1:
+            return ids.get(0);
+        default:
+            throw new RuntimeException("Ambiguity: sequence continues with " + ids.size() + " comp defs " + ids);
+        }
+    }
+
     // ---
 
     private RelatedAssocModelImpl fetchSequenceStart(long typeId) {
@@ -737,9 +899,7 @@ class TypeStorage {
     // --- Helper ---
 
     private void loadChildTopics(Iterable<? extends DMXObjectModelImpl> objects) {
-        for (DMXObjectModelImpl object : objects) {
-            object.loadChildTopics(true);   // deep=true
-        }
+        new ChildTopicsFetcher(al).fetch(objects, true);    // deep=true
     }
 
     // ---
@@ -0,0 +1,125 @@
+package systems.dmx.core.impl;
+
+import systems.dmx.core.model.SimpleValue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+
+
+/**
+ * Remembers the simple value topics unified by the current thread within the running transaction, see
+ * ValueIntegrator. So a bulk operation which integrates the same simple value many times (e.g. the same city for
+ * many contacts) looks it up only once.
+ * <p>
+ * Key: type URI, target workspace ID, and value. Value: topic ID. A topic created while unification is put in the
+ * cache as well (write-through).
+ * <p>
+ * The cache is bounded (LRU) and transaction-scoped: it is cleared once the outermost transaction of the thread has
+ * finished. Within the transaction an entry is removed once its topic's value or type changes, or the topic is
+ * deleted (see ModelCache). Changes of the topic's workspace assignment are not tracked.
+ */
+class UnificationCache {
+
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    private static final int MAX_SIZE = Integer.getInteger("dmx.database.unification_cache_size", 10000);
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private final ThreadLocal<Entries> entries = ThreadLocal.withInitial(Entries::new);
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    /**
+     * @return  the ID of the topic the given value was unified with, or <code>null</code> if not cached.
+     */
+    Long get(String typeUri, long workspaceId, SimpleValue value) {
+        return entries.get().get(key(typeUri, workspaceId, value));
+    }
+
+    void put(String typeUri, long workspaceId, SimpleValue value, long topicId) {
+        if (MAX_SIZE > 0) {
+            entries.get().put(key(typeUri, workspaceId, value), topicId);
+        }
+    }
+
+    /**
+     * To be called when a topic's value or type is changed, or when the topic is deleted.
+     */
+    void remove(long topicId) {
+        Entries _entries = entries.get();
+        if (!_entries.isEmpty()) {
+            _entries.removeTopic(topicId);
+        }
+    }
+
+    /**
+     * To be called when the outermost transaction of the current thread has finished (committed or rolled back).
+     */
+    void txFinished() {
+        entries.remove();
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    // Note: the type URI contains no '|', so the key is unique
+    private String key(String typeUri, long workspaceId, SimpleValue value) {
+        return typeUri + '|' + workspaceId + '|' + value;
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Classes
+
+    /**
+     * The LRU entries of one thread, along with a reverse index (topic ID -> keys) for removal.
+     * Note: a topic might be cached under several keys, e.g. a topic with no workspace assignment is reused in any
+     * target workspace.
+     */
+    private static class Entries extends LinkedHashMap<String, Long> {
+
+        private Map<Long, Set<String>> keys = new HashMap();
+
+        private Entries() {
+            super(16, 0.75f, true);     // accessOrder=true
+        }
+
+        @Override
+        public Long put(String key, Long topicId) {
+            Long _topicId = super.put(key, topicId);
+            if (_topicId != null) {
+                removeKey(_topicId, key);
+            }
+            keys.computeIfAbsent(topicId, id -> new HashSet()).add(key);
+            return _topicId;
+        }
+
+        private void removeTopic(long topicId) {
+            Set<String> _keys = keys.remove(topicId);
+            if (_keys != null) {
+                for (String key : _keys) {
+                    super.remove(key);
+                }
+            }
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            if (size() > MAX_SIZE) {
+                removeKey(eldest.getValue(), eldest.getKey());
+                return true;
+            }
+            return false;
+        }
+
+        private void removeKey(long topicId, String key) {
+            Set<String> _keys = keys.get(topicId);
+            _keys.remove(key);
+            if (_keys.isEmpty()) {
+                keys.remove(topicId);
+            }
+        }
+    }
+}
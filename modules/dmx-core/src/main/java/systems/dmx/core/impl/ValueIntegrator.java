@@ -205,6 +205,9 @@ class ValueIntegrator {
     /**
      * Fetches a simple topic by-value, or creates it.
      *
+     * The result is remembered for the rest of the transaction (see UnificationCache). So within a bulk operation
+     * an identical value is looked up only once.
+     *
      * Preconditions:
      *   - this.newValues is simple
      *   - this.newValues is not empty
@@ -218,8 +221,15 @@ class ValueIntegrator {
         // Note 1: only readable topics can be reused (access control is applied)
         // Note 2: only topics of the target workspace can be reused, otherwise access is not guaranteed by other users
         long wsId = targetWorkspaceId();
+        UnificationCache unificationCache = al.modelCache.unificationCache;
+        Long topicId = unificationCache.get(type.uri, wsId, newValue);
+        if (topicId != null) {
+            logger.fine("Reusing simple value " + topicId + " \"" + newValue + "\" (typeUri=\"" + type.uri +
+                "\", cached)");
+            return new UnifiedValue(al.db.fetchTopic(topicId), false);
+        }
         List<TopicModelImpl> topics = al.getTopicsByValue(type.uri, newValue).stream()
-            .filter(createReusablePredicat()).collect(Collectors.toList());
+            .filter(createReusablePredicat(wsId)).collect(Collectors.toList());
         int size = topics.size();
         if (size > 0) {
             topic = topics.get(0);
@@ -237,11 +247,11 @@ class ValueIntegrator {
             logger.fine("### Creating simple value " + topic.id + " \"" + newValue + "\" (typeUri=\"" + type.uri +
                 "\")");
         }
+        unificationCache.put(type.uri, wsId, newValue, topic.id);
         return new UnifiedValue(topic, created);
     }
 
-    private Predicate<TopicModelImpl> createReusablePredicat() {
-        long targetWsId = targetWorkspaceId();
+    private Predicate<TopicModelImpl> createReusablePredicat(long targetWsId) {
         return topic -> {
             // Allow reusing an existing child topic in a different parent context (instead of creating a new child
             // topic) if 1) existing topic has no workspace assignment, or 2) existing topic is assigned to the target
@@ -8,6 +8,8 @@ import org.eclipse.jetty.websocket.WebSocket.Connection;
 
 import javax.servlet.http.HttpSession;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -25,6 +27,7 @@ class WebSocketConnectionImpl implements WebSocketConnection, WebSocket, WebSock
     // ---------------------------------------------------------------------------------------------- Instance Variables
 
             String clientId;
+            String sessionId;
     private HttpSession session;
     private WebSocketConnectionPool pool;
     private CoreService dmx;
@@ -34,6 +37,22 @@ class WebSocketConnectionImpl implements WebSocketConnection, WebSocket, WebSock
      */
     private Connection connection;
 
+    /**
+     * Messages waiting to be sent by the connection's send worker (see WebSocketServiceImpl).
+     */
+    private Deque<QueuedMessage> outbound = new ArrayDeque();
+
+    /**
+     * Whether a sender thread is currently sending the outbound messages (guarded by this connection's monitor).
+     * At most one thread sends via a connection at a time, so the messages keep their order.
+     */
+    private boolean sending;
+
+    /**
+     * The username this connection is indexed under in the pool's fan-out index (see WebSocketConnectionPool).
+     */
+    volatile String indexedUsername;
+
     private Logger logger = Logger.getLogger(getClass().getName());
 
     // ----------------------------------------------------------------------------------------------------- Constructor
@@ -43,6 +62,7 @@ class WebSocketConnectionImpl implements WebSocketConnection, WebSocket, WebSock
      */
     WebSocketConnectionImpl(String clientId, HttpSession session, WebSocketConnectionPool pool, CoreService dmx) {
         this.clientId = clientId;
+        this.sessionId = session.getId();
         this.session = session;
         this.pool = pool;
         this.dmx = dmx;
@@ -101,15 +121,85 @@ class WebSocketConnectionImpl implements WebSocketConnection, WebSocket, WebSock
 
     // ----------------------------------------------------------------------------------------- Package Private Methods
 
-    void sendMessage(String message) {
+    /**
+     * @return  <code>true</code> if the message was sent, <code>false</code> if sending failed. In the latter case
+     *          this connection is removed from the pool.
+     */
+    boolean sendMessage(String message) {
         try {
             connection.sendMessage(message);
+            return true;
         } catch (Exception e) {
             pool.removeConnection(this);
             logger.log(Level.SEVERE, "Sending message via " + this + " failed -- connection removed from pool", e);
+            return false;
+        }
+    }
+
+    // --- Outbound Queue ---
+
+    /**
+     * Queues a message for sending. If the queue is full the oldest message is dropped.
+     *
+     * @return  <code>true</code> if a message was dropped.
+     */
+    synchronized boolean queueMessage(String message, long queuedAt, int maxQueued) {
+        boolean dropped = false;
+        if (outbound.size() >= maxQueued) {
+            outbound.poll();
+            dropped = true;
+        }
+        outbound.add(new QueuedMessage(message, queuedAt));
+        return dropped;
+    }
+
+    /**
+     * Claims the sending of the queued messages.
+     *
+     * @return  <code>true</code> if the caller is expected to send the queued messages (see {@link #pollMessage}),
+     *          <code>false</code> if there is nothing to send, or another thread is sending already. That thread
+     *          then sends the newly queued messages too.
+     */
+    synchronized boolean startSending() {
+        if (sending || outbound.isEmpty()) {
+            return false;
+        }
+        sending = true;
+        return true;
+    }
+
+    /**
+     * To be called by the thread which claimed the sending.
+     *
+     * @return  the oldest queued message, or <code>null</code> if the queue is empty. In the latter case the sending
+     *          is finished, and is to be claimed again.
+     */
+    synchronized QueuedMessage pollMessage() {
+        QueuedMessage message = outbound.poll();
+        if (message == null) {
+            sending = false;
         }
+        return message;
+    }
+
+    /**
+     * Drops all queued messages. To be called by the thread which claimed the sending, which finishes the sending.
+     *
+     * @return  the number of dropped messages.
+     */
+    synchronized int clearMessages() {
+        int size = outbound.size();
+        outbound.clear();
+        sending = false;
+        return size;
+    }
+
+    synchronized int queuedMessages() {
+        return outbound.size();
     }
 
+    // ---
+
     void close() {
         connection.close();
     }
@@ -126,4 +216,17 @@ class WebSocketConnectionImpl implements WebSocketConnection, WebSocket, WebSock
     private String username(HttpSession session) {
         return dmx.getPrivilegedAccess().username(session);
     }
+
+    // -------------------------------------------------------------------------------------------------- Nested Classes
+
+    static class QueuedMessage {
+
+        String message;
+        long queuedAt;      // System.nanoTime()
+
+        private QueuedMessage(String message, long queuedAt) {
+            this.message = message;
+            this.queuedAt = queuedAt;
+        }
+    }
 }
@@ -1,7 +1,13 @@
 package systems.dmx.core.impl;
 
+import systems.dmx.core.service.CoreService;
+
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
@@ -16,11 +22,34 @@ class WebSocketConnectionPool {
      */
     private Map<String, WebSocketConnectionImpl> pool = new ConcurrentHashMap();
 
+    /**
+     * key: session ID, value: the connections associated with that session
+     */
+    private Map<String, Set<WebSocketConnectionImpl>> sessions = new ConcurrentHashMap();
+
+    /**
+     * The fan-out index. key: workspace ID, value: the connections whose user has READ permission for that workspace.
+     * <p>
+     * An entry is built on the first broadcast regarding that workspace, and is dropped once the workspace's
+     * permissions change (membership, sharing mode, owner). When a connection's user logs in or out the connection is
+     * re-indexed, see {@link #checkUsername}.
+     */
+    private Map<Long, Set<WebSocketConnectionImpl>> readers = new ConcurrentHashMap();
+
+    /**
+     * Counts all index changes (invalidated workspaces, re-indexed connections). Used to detect a concurrent change
+     * while an index entry is built. Incremented under the pool monitor, which also guards the storing of entries.
+     */
+    private volatile long changes;
+
+    private CoreService dmx;
+
     private Logger logger = Logger.getLogger(getClass().getName());
 
     // ----------------------------------------------------------------------------------------------------- Constructor
 
-    WebSocketConnectionPool() {
+    WebSocketConnectionPool(CoreService dmx) {
+        this.dmx = dmx;
     }
 
     // ----------------------------------------------------------------------------------------- Package Private Methods
@@ -37,8 +66,30 @@ class WebSocketConnectionPool {
         return pool.values();
     }
 
+    /**
+     * Returns the connections whose user has READ permission for the given workspace.
+     * Builds the workspace's index entry if not yet done.
+     */
+    Collection<WebSocketConnectionImpl> getReadAllowedConnections(long workspaceId) {
+        Set<WebSocketConnectionImpl> connections = readers.get(workspaceId);
+        if (connections == null) {
+            connections = indexWorkspace(workspaceId);
+        }
+        // Note: a user might log in/out via a request not passing the Jersey response filter. The username check is
+        // cheap, so we do it for the recipients. Connections gaining permission this way are re-indexed only by
+        // checkUsername().
+        for (WebSocketConnectionImpl conn : connections) {
+            if (!Objects.equals(conn.getUsername(), conn.indexedUsername)) {
+                reindexConnection(conn);
+            }
+        }
+        return Collections.unmodifiableSet(connections);
+    }
+
     void addConnection(WebSocketConnectionImpl connection) {
         pool.put(connection.clientId, connection);
+        sessions.computeIfAbsent(connection.sessionId, sessionId -> ConcurrentHashMap.newKeySet()).add(connection);
+        reindexConnection(connection);
     }
 
     void removeConnection(WebSocketConnectionImpl connection) {
@@ -46,10 +97,147 @@ class WebSocketConnectionPool {
         if (!removed) {
             throw new RuntimeException("Can't remove WebSocket connection " + connection.clientId + " from pool");
         }
+        Set<WebSocketConnectionImpl> connections = sessions.get(connection.sessionId);
+        if (connections != null) {
+            connections.remove(connection);
+            if (connections.isEmpty()) {
+                sessions.remove(connection.sessionId);
+            }
+        }
+        unindexConnection(connection);
+    }
+
+    // --- Fan-out Index ---
+
+    /**
+     * Re-indexes the connections of the given session if its user has changed (login or logout).
+     * To be called after a request of that session has been processed.
+     */
+    void checkUsername(String sessionId) {
+        Set<WebSocketConnectionImpl> connections = sessions.get(sessionId);
+        if (connections != null) {
+            for (WebSocketConnectionImpl conn : connections) {
+                if (!Objects.equals(conn.getUsername(), conn.indexedUsername)) {
+                    reindexConnection(conn);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the index entry of a workspace whose permissions might have changed.
+     * It is rebuilt on the next broadcast regarding that workspace.
+     */
+    synchronized void workspaceChanged(long workspaceId) {
+        changes++;
+        readers.remove(workspaceId);
     }
 
+    // ---
+
     void close() {
         logger.info("Closing " + pool.size() + " WebSocket connections");
         getAllConnections().forEach(WebSocketConnectionImpl::close);
     }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    /**
+     * The permission check is performed once per distinct username (not once per connection).
+     * <p>
+     * The entry is built outside the pool monitor, so a permission change being committed meanwhile is not held up by
+     * the storage reads. The entry is stored only if the index has not changed while it was built (see
+     * {@link #changes}). Otherwise an entry built from the old state could be stored after the invalidation, and be
+     * served until the next one. In that case the entry is used for the current broadcast only.
+     * <p>
+     * Note: the connections are indexed by the username they are currently indexed under. A changed username is
+     * taken into account by re-indexing the connection (across all entries).
+     */
+    private Set<WebSocketConnectionImpl> indexWorkspace(long workspaceId) {
+        long stamp = changes;
+        Set<WebSocketConnectionImpl> connections = ConcurrentHashMap.newKeySet();
+        Map<String, Boolean> decisions = new HashMap();     // key: username, null for anonymous
+        for (WebSocketConnectionImpl conn : pool.values()) {
+            String username = conn.indexedUsername;
+            Boolean isReadAllowed = decisions.get(username);
+            if (isReadAllowed == null) {
+                isReadAllowed = dmx.getPrivilegedAccess().hasReadPermission(username, workspaceId);
+                decisions.put(username, isReadAllowed);
+            }
+            if (isReadAllowed) {
+                connections.add(conn);
+            }
+        }
+        return put(workspaceId, connections, stamp);
+    }
+
+    /**
+     * @return  the stored entry, which is the given one unless another thread has stored an entry meanwhile.
+     */
+    private synchronized Set<WebSocketConnectionImpl> put(long workspaceId, Set<WebSocketConnectionImpl> connections,
+                                                          long stamp) {
+        if (stamp != changes) {
+            return connections;
+        }
+        Set<WebSocketConnectionImpl> _connections = readers.putIfAbsent(workspaceId, connections);
+        return _connections != null ? _connections : connections;
+    }
+
+    /**
+     * Updates all existing index entries for the given connection, based on its current user.
+     * <p>
+     * Like at {@link #indexWorkspace} the permission checks are performed outside the pool monitor, so a login or
+     * logout does not hold up the other index updates. The decisions are applied only if the index has not changed
+     * meanwhile (see {@link #changes}). Otherwise they are calculated again.
+     */
+    private void reindexConnection(WebSocketConnectionImpl connection) {
+        boolean applied;
+        do {
+            long stamp = changes;
+            String username = connection.getUsername();
+            Map<Long, Boolean> decisions = new HashMap();      // key: workspace ID
+            for (long workspaceId : readers.keySet()) {
+                decisions.put(workspaceId, dmx.getPrivilegedAccess().hasReadPermission(username, workspaceId));
+            }
+            applied = applyDecisions(connection, username, decisions, stamp);
+        } while (!applied);
+    }
+
+    /**
+     * Note: an entry stored meanwhile (see {@link #put}) is not covered by the decisions. As it was built for the
+     * connection's previous username it is dropped, and rebuilt on the next broadcast regarding that workspace.
+     *
+     * @return  false if the index has changed since the decisions were calculated.
+     */
+    private synchronized boolean applyDecisions(WebSocketConnectionImpl connection, String username,
+                                                Map<Long, Boolean> decisions, long stamp) {
+        if (pool.get(connection.clientId) != connection) {
+            unindexConnection(connection);      // removed from pool meanwhile
+            return true;
+        }
+        if (stamp != changes) {
+            return false;
+        }
+        changes++;
+        logger.fine("Indexing WebSocket connection " + connection.clientId + " (username=" + username + ")");
+        connection.indexedUsername = username;
+        for (Map.Entry<Long, Set<WebSocketConnectionImpl>> entry : readers.entrySet()) {
+            Boolean isReadAllowed = decisions.get(entry.getKey());
+            if (isReadAllowed == null) {
+                readers.remove(entry.getKey());
+            } else if (isReadAllowed) {
+                entry.getValue().add(connection);
+            } else {
+                entry.getValue().remove(connection);
+            }
+        }
+        return true;
+    }
+
+    private synchronized void unindexConnection(WebSocketConnectionImpl connection) {
+        changes++;
+        for (Set<WebSocketConnectionImpl> connections : readers.values()) {
+            connections.remove(connection);
+        }
+    }
 }
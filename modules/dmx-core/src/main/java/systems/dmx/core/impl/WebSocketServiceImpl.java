@@ -1,17 +1,33 @@
 package systems.dmx.core.impl;
 
 import systems.dmx.core.impl.Messages.Dest;
+import systems.dmx.core.impl.Messages.Message;
+import systems.dmx.core.impl.WebSocketConnectionImpl.QueuedMessage;
 import systems.dmx.core.osgi.CoreActivator;
 import systems.dmx.core.service.Cookies;
 import systems.dmx.core.service.CoreService;
-import systems.dmx.core.service.accesscontrol.Operation;
 import systems.dmx.core.service.websocket.WebSocketConnection;
 import systems.dmx.core.service.websocket.WebSocketService;
+import systems.dmx.core.service.websocket.WebSocketStats;
+import systems.dmx.core.storage.spi.DMXTransaction;
 
 import org.codehaus.jettison.json.JSONObject;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -26,18 +42,35 @@ public class WebSocketServiceImpl implements WebSocketService {
                                                                     "ws://localhost:8080/websocket");
     // Note: the default value is required in case no config file is in effect. This applies when DM is started
     // via feature:install from Karaf. The default value must match the value defined in project POM.
+    static final int SEND_WORKERS = Integer.getInteger("dmx.websockets.send_workers",
+                                                               Math.min(4, Runtime.getRuntime().availableProcessors()));
+    static final int MAX_QUEUED_MESSAGES = Integer.getInteger("dmx.websockets.max_queued_messages", 1000);
+    static final int SEND_THREADS = Integer.getInteger("dmx.websockets.send_threads", 16);
+    static final int SEND_BATCH_SIZE = 20;      // max messages sent to one connection before others get their turn
+
+    // ### TODO: copies in Constants.java of various plugins
+    private static final String WORKSPACE = "dmx.workspaces.workspace";
 
     // ---------------------------------------------------------------------------------------------- Instance Variables
 
-    private WebSocketConnectionPool pool;       // instantiated in start()
-    private SendMessageWorker worker;           // instantiated in start()
+            WebSocketConnectionPool pool;       // instantiated in start()
+    private SendMessageWorker[] workers;        // instantiated in start()
+    private ExecutorService sender;             // instantiated in start()
+    private AccessLayer al;
     private CoreService dmx;
 
+    // Metrics
+    private AtomicLong sentMessages = new AtomicLong();
+    private AtomicLong droppedMessages = new AtomicLong();
+    private AtomicLong sendLatency = new AtomicLong();          // sum, in nanoseconds
+    private AtomicLong maxSendLatency = new AtomicLong();       // in nanoseconds
+
     private Logger logger = Logger.getLogger(getClass().getName());
 
     // ----------------------------------------------------------------------------------------------------- Constructor
 
-    WebSocketServiceImpl(CoreService dmx) {
+    WebSocketServiceImpl(AccessLayer al, CoreService dmx) {
+        this.al = al;
         this.dmx = dmx;
     }
 
@@ -70,6 +103,17 @@ public class WebSocketServiceImpl implements WebSocketService {
         Messages.get().add(Dest.SOME, message, connectionFilter);
     }
 
+    @Override
+    public void flush() {
+        // Note: if the WebSocket service is not started the queued messages are dropped
+        if (pool != null) {
+            for (Message message : Messages.get()) {
+                message.dest.send(message, this);
+            }
+        }
+        Messages.remove();
+    }
+
     // ---
 
     @Override
@@ -77,14 +121,30 @@ public class WebSocketServiceImpl implements WebSocketService {
         return WEBSOCKETS_URL;
     }
 
+    @Override
+    public WebSocketStats getStats() {
+        if (pool == null) {
+            return new WebSocketStats(0, 0, 0, 0, 0, 0);
+        }
+        long queuedMessages = 0;
+        for (SendMessageWorker worker : workers) {
+            queuedMessages += worker.taskQueue.size();
+        }
+        for (WebSocketConnectionImpl conn : pool.getAllConnections()) {
+            queuedMessages += conn.queuedMessages();
+        }
+        long sent = sentMessages.get();
+        return new WebSocketStats(pool.getAllConnections().size(), queuedMessages, sent, droppedMessages.get(),
+            sent > 0 ? millis(sendLatency.get() / sent) : 0, millis(maxSendLatency.get()));
+    }
+
     // ---
 
     public void start() {
         try {
-            logger.info("##### Starting WebSocket service");
-            pool = new WebSocketConnectionPool();
-            worker = new SendMessageWorker();
-            worker.start();
+            logger.info("##### Starting WebSocket service (" + SEND_WORKERS + " send workers, " + SEND_THREADS +
+                " send threads, max " + MAX_QUEUED_MESSAGES + " queued messages per connection)");
+            startWorkers();
             CoreActivator.getHttpService().registerServlet("/websocket", new WebSocketServlet(pool, dmx), null, null);
             logger.info("WebSocket service started successfully");
         } catch (Exception e) {
@@ -94,6 +154,28 @@ public class WebSocketServiceImpl implements WebSocketService {
 
     // ----------------------------------------------------------------------------------------- Package Private Methods
 
+    /**
+     * Starts the send workers, without registering the WebSocket servlet. Called by {@link #start} and by tests.
+     */
+    void startWorkers() {
+        pool = new WebSocketConnectionPool(dmx);
+        al.permissionCache.addInvalidationListener(pool::workspaceChanged);
+        AtomicInteger threads = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(SEND_THREADS, SEND_THREADS, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue(), runnable -> {
+                Thread thread = new Thread(runnable, "dmx-websocket-send-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        executor.allowCoreThreadTimeOut(true);
+        sender = executor;
+        workers = new SendMessageWorker[SEND_WORKERS];
+        for (int i = 0; i < SEND_WORKERS; i++) {
+            workers[i] = new SendMessageWorker(i);
+            workers[i].start();
+        }
+    }
+
     void _sendToOrigin(String message) {
         WebSocketConnectionImpl connection = getConnection();
         if (connection != null) {
@@ -109,10 +191,13 @@ public class WebSocketServiceImpl implements WebSocketService {
         queueMessage(message, isOrigin().negate());
     }
 
+    /**
+     * The receivers are determined by the send workers, not by the calling thread. The object's workspace is
+     * determined once per message, and the receivers are looked up in the pool's fan-out index.
+     */
     void _sendToReadAllowed(String message, long objectId) {
         // don't send back to origin
-        // only send if receiver has READ permission for object
-        queueMessage(message, isOrigin().negate().and(isReadAllowed(objectId)));
+        queueMessage(message, new ReadAllowedReceivers(objectId), isOrigin().negate());
     }
 
     void _sendToSome(String message, Predicate<WebSocketConnection> connectionFilter) {
@@ -121,12 +206,27 @@ public class WebSocketServiceImpl implements WebSocketService {
 
     // ---
 
+    /**
+     * Updates the fan-out index if the user of the request's session has changed (login or logout).
+     */
+    void checkUsername(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (pool != null && session != null) {
+            pool.checkUsername(session.getId());
+        }
+    }
+
+    // ---
+
     void stop() {
         try {
             if (pool != null) {
                 logger.info("### Stopping WebSocket service");
                 // CoreActivator.getHttpService().unregister("/websocket");     // HTTP service already gone
-                worker.interrupt();
+                for (SendMessageWorker worker : workers) {
+                    worker.interrupt();
+                }
+                sender.shutdownNow();
                 pool.close();
             } else {
                 logger.info("Stopping WebSocket service SKIPPED -- it was not successfully started");
@@ -139,11 +239,89 @@ public class WebSocketServiceImpl implements WebSocketService {
     // ------------------------------------------------------------------------------------------------- Private Methods
 
     private void queueMessage(String message, WebSocketConnectionImpl connection) {
-        worker.queueMessage(message, connection);
+        worker(connection).queueMessage(new MessageTask(message, connection));
     }
 
+    /**
+     * A send-to-many task is queued at every send worker. Each worker evaluates the filter for its own connections.
+     */
     private void queueMessage(String message, Predicate<WebSocketConnection> connectionFilter) {
-        worker.queueMessage(message, connectionFilter);
+        MessageTask task = new MessageTask(message, connectionFilter);
+        for (SendMessageWorker worker : workers) {
+            worker.queueMessage(task);
+        }
+    }
+
+    /**
+     * A send-to-read-allowed task is queued at every send worker, like a send-to-many task. So the messages sent via a
+     * connection keep their order. The receivers are determined by the first worker processing the task.
+     */
+    private void queueMessage(String message, ReadAllowedReceivers readers,
+                                              Predicate<WebSocketConnection> connectionFilter) {
+        MessageTask task = new MessageTask(message, readers, connectionFilter);
+        for (SendMessageWorker worker : workers) {
+            worker.queueMessage(task);
+        }
+    }
+
+    // ---
+
+    /**
+     * Returns the send worker responsible for a connection. Each connection is served by exactly one worker, so the
+     * messages sent via a connection keep their order.
+     */
+    private SendMessageWorker worker(WebSocketConnectionImpl connection) {
+        return workers[shard(connection)];
+    }
+
+    private int shard(WebSocketConnectionImpl connection) {
+        return Math.floorMod(connection.clientId.hashCode(), workers.length);
+    }
+
+    /**
+     * Sends the queued messages of a connection. Runs in a sender thread, which has claimed the sending (see
+     * {@link WebSocketConnectionImpl#startSending}).
+     * <p>
+     * At most {@link #SEND_BATCH_SIZE} messages are sent at a time. If more are queued the sending is resubmitted
+     * (keeping the claim), so the connections waiting for a sender thread get their turn.
+     */
+    private void sendMessages(WebSocketConnectionImpl conn) {
+        QueuedMessage message;
+        int sent = 0;
+        while ((message = conn.pollMessage()) != null) {
+            if (!conn.sendMessage(message.message)) {
+                droppedMessages.addAndGet(1 + conn.clearMessages());
+                return;
+            }
+            messageSent(message.queuedAt);
+            if (++sent == SEND_BATCH_SIZE) {
+                sendLater(conn);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Submits the sending of a connection's queued messages to the sender threads. The caller must have claimed the
+     * sending. Once the service is stopped the messages are dropped.
+     */
+    private void sendLater(WebSocketConnectionImpl conn) {
+        try {
+            sender.execute(() -> sendMessages(conn));
+        } catch (RejectedExecutionException e) {
+            droppedMessages.addAndGet(conn.clearMessages());
+        }
+    }
+
+    private void messageSent(long queuedAt) {
+        long latency = System.nanoTime() - queuedAt;
+        sentMessages.incrementAndGet();
+        sendLatency.addAndGet(latency);
+        maxSendLatency.accumulateAndGet(latency, Math::max);
+    }
+
+    private double millis(long nanos) {
+        return nanos / 1000000.0;
     }
 
     // ---
@@ -160,13 +338,14 @@ public class WebSocketServiceImpl implements WebSocketService {
         };
     }
 
-    private Predicate<WebSocketConnection> isReadAllowed(long objectId) {
-        return conn -> {
-            boolean isReadAllowed = dmx.getPrivilegedAccess().hasPermission(conn.getUsername(), Operation.READ,
-                objectId);
-            logger.fine(conn.getClientId() + " " + conn.getUsername() + " (isReadAllowed) -> " + isReadAllowed);
-            return isReadAllowed;
-        };
+    /**
+     * Returns the ID of the workspace that is relevant for READ permission checks regarding the given object, or -1
+     * if no workspace is assigned to the object.
+     */
+    private long workspaceId(long objectId) {
+        // Note: direct storage access is required here
+        String typeUri = (String) al.db.fetchProperty(objectId, "typeUri");
+        return typeUri.equals(WORKSPACE) ? objectId : dmx.getPrivilegedAccess().getAssignedWorkspaceId(objectId);
     }
 
     // ---
@@ -187,46 +366,97 @@ public class WebSocketServiceImpl implements WebSocketService {
 
     // ------------------------------------------------------------------------------------------------- Private Classes
 
+    /**
+     * Routes the messages of the connections it is responsible for, see {@link #worker}.
+     * <p>
+     * A worker queues each task's message at the bounded outbound queues of the receiving connections. The actual
+     * sending is performed by the sender threads, one at a time per connection. So a slow connection, whose sends
+     * block, does not hold up the other connections of the shard. Its outbound queue fills up instead, dropping the
+     * oldest messages. The number of sender threads is bounded (see {@link #SEND_THREADS}); connections waiting for
+     * a sender thread queue up at the sender.
+     * <p>
+     * If the worker's own task queue is full, the oldest task is dropped. A dropped message is counted once per
+     * receiving connection.
+     */
     private class SendMessageWorker extends Thread {
 
-        private BlockingQueue<MessageTask> messageQueue = new LinkedBlockingQueue();
+        private int shard;
+        private BlockingQueue<MessageTask> taskQueue = new LinkedBlockingQueue(MAX_QUEUED_MESSAGES);
 
-        private SendMessageWorker() {
-            setPriority(Thread.MIN_PRIORITY);
+        private SendMessageWorker(int shard) {
+            super("dmx-websocket-sender-" + shard);
+            this.shard = shard;
+            setDaemon(true);
         }
 
         @Override
         public void run() {
             boolean stopped = false;
             while (!stopped) {
-                MessageTask task = null;
                 try {
-                    task = messageQueue.take();
-                    task.sendMessage();
-                    yield();
+                    routeMessage(taskQueue.take());
                 } catch (InterruptedException e) {
                     stopped = true;
                 } catch (Exception e) {
-                    logger.log(Level.SEVERE, "An error occurred in the SendMessageWorker while processing a \"" +
-                        task.getMessageType() + "\" task (aborting this task):", e);
+                    logger.log(Level.SEVERE, "An error occurred in " + getName(), e);
                 }
             }
-            logger.info("### Terminating SendMessageWorker");
+            logger.info("### Terminating " + getName());
         }
 
-        private void queueMessage(String message, WebSocketConnectionImpl connection) {
-            try {
-                messageQueue.put(new MessageTask(message, connection));
-            } catch (InterruptedException e) {
-                logger.log(Level.WARNING, "Queueing a message failed:", e);
+        // ---
+
+        private void queueMessage(MessageTask task) {
+            while (!taskQueue.offer(task)) {
+                MessageTask dropped = taskQueue.poll();
+                if (dropped != null) {
+                    int count = receivers(dropped, false).size();
+                    droppedMessages.addAndGet(count);
+                    logger.warning("Send queue of " + getName() + " is full -- oldest message dropped (" + count +
+                        " receivers)");
+                }
             }
         }
 
-        private void queueMessage(String message, Predicate<WebSocketConnection> connectionFilter) {
+        /**
+         * Queues the task's message at the receiving connections, and has it sent.
+         */
+        private void routeMessage(MessageTask task) {
             try {
-                messageQueue.put(new MessageTask(message, connectionFilter));
-            } catch (InterruptedException e) {
-                logger.log(Level.WARNING, "Queueing a message failed:", e);
+                for (WebSocketConnectionImpl conn : receivers(task, true)) {
+                    if (conn.queueMessage(task.message, task.queuedAt, MAX_QUEUED_MESSAGES)) {
+                        droppedMessages.incrementAndGet();
+                    }
+                    if (conn.startSending()) {
+                        sendLater(conn);
+                    }
+                }
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "An error occurred in " + getName() + " while processing a \"" +
+                    task.getMessageType() + "\" task (aborting this task):", e);
+            }
+        }
+
+        /**
+         * Returns the receivers of the given task which this worker is responsible for.
+         *
+         * @param   resolve     if <code>false</code> the receivers of a send-to-read-allowed task are not determined
+         *                      if not yet done. All connections are considered then (used for counting a dropped
+         *                      task).
+         */
+        private Collection<WebSocketConnectionImpl> receivers(MessageTask task, boolean resolve) {
+            if (task.connection != null) {
+                return Collections.singletonList(task.connection);
+            } else {
+                Collection<WebSocketConnectionImpl> connections = task.readers == null ? pool.getAllConnections() :
+                    resolve ? task.readers.get() : task.readers.peek();
+                List<WebSocketConnectionImpl> receivers = new ArrayList();
+                for (WebSocketConnectionImpl conn : connections) {
+                    if (worker(conn) == this && task.connectionFilter.test(conn)) {
+                        receivers.add(conn);
+                    }
+                }
+                return receivers;
             }
         }
     }
@@ -234,8 +464,10 @@ public class WebSocketServiceImpl implements WebSocketService {
     private class MessageTask {
 
         private String message;
+        private long queuedAt = System.nanoTime();
 
         private WebSocketConnectionImpl connection;
+        private ReadAllowedReceivers readers;
         private Predicate<WebSocketConnection> connectionFilter;
 
         /**
@@ -254,27 +486,68 @@ public class WebSocketServiceImpl implements WebSocketService {
             this.connectionFilter = connectionFilter;
         }
 
+        /**
+         * A send-to-read-allowed task.
+         */
+        private MessageTask(String message, ReadAllowedReceivers readers,
+                                            Predicate<WebSocketConnection> connectionFilter) {
+            this.message = message;
+            this.readers = readers;
+            this.connectionFilter = connectionFilter;
+        }
+
         // ---
 
-        private void sendMessage() {
-            if (connection != null) {
-                _sendMessage(connection);
-            } else {
-                pool.getAllConnections().stream().filter(connectionFilter).forEach(conn -> _sendMessage(conn));
+        private String getMessageType() {
+            try {
+                return new JSONObject(message).getString("type");
+            } catch (Exception e) {
+                throw new RuntimeException("JSON parsing error", e);
             }
         }
+    }
+
+    /**
+     * The connections whose user has READ permission for an object. Determined once, by the first send worker which
+     * needs them. The storage is accessed within a transaction of that worker.
+     */
+    private class ReadAllowedReceivers {
 
-        private void _sendMessage(WebSocketConnectionImpl conn) {
-            conn.sendMessage(message);
+        private long objectId;
+        private volatile Collection<WebSocketConnectionImpl> connections;      // null if not yet determined
+
+        private ReadAllowedReceivers(long objectId) {
+            this.objectId = objectId;
         }
 
-        // ---
+        private synchronized Collection<WebSocketConnectionImpl> get() {
+            if (connections == null) {
+                connections = readAllowedConnections();
+            }
+            return connections;
+        }
 
-        private String getMessageType() {
+        private Collection<WebSocketConnectionImpl> peek() {
+            Collection<WebSocketConnectionImpl> _connections = connections;
+            return _connections != null ? _connections : pool.getAllConnections();
+        }
+
+        private Collection<WebSocketConnectionImpl> readAllowedConnections() {
+            DMXTransaction tx = dmx.beginTx();
             try {
-                return new JSONObject(message).getString("type");
+                long workspaceId = workspaceId(objectId);
+                // only send if receiver has READ permission for object
+                // Note: if no workspace is assigned READ permission is granted, see PrivilegedAccessImpl
+                Collection<WebSocketConnectionImpl> _connections = workspaceId != -1 ?
+                    pool.getReadAllowedConnections(workspaceId) : pool.getAllConnections();
+                tx.success();
+                return _connections;
             } catch (Exception e) {
-                throw new RuntimeException("JSON parsing error", e);
+                logger.log(Level.SEVERE, "Determining the receivers of a message regarding object " + objectId +
+                    " failed (message not sent)", e);
+                return Collections.emptyList();
+            } finally {
+                tx.finish();
             }
         }
     }
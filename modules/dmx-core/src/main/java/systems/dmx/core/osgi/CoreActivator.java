@@ -26,8 +26,8 @@ public class CoreActivator implements BundleActivator {
 
     // ------------------------------------------------------------------------------------------------------- Constants
 
-    // TODO: make it a config prop
-    private static final String DATABASE_FACTORY = "systems.dmx.storage.neo4j.Neo4jStorageFactory";
+    private static final String DATABASE_FACTORY = System.getProperty("dmx.database.factory",
+        "systems.dmx.storage.neo4j.Neo4jStorageFactory");
 
     private static final String DATABASE_PATH = System.getProperty("dmx.database.path", "dmx-db");
     // Note: the default value is required in case no config file is in effect. This applies when DM is started
@@ -0,0 +1,58 @@
+package systems.dmx.core.service;
+
+import systems.dmx.core.JSONEnabled;
+
+import org.codehaus.jettison.json.JSONObject;
+
+
+
+/**
+ * A snapshot of the usage counters of a Core cache.
+ */
+public class CacheStats implements JSONEnabled {
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    public final long hits;
+    public final long misses;
+    public final long size;         // number of cached entries at snapshot time
+    public final long evictions;    // number of entries dropped due to the size bound
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    public CacheStats(long hits, long misses, long size, long evictions) {
+        this.hits = hits;
+        this.misses = misses;
+        this.size = size;
+        this.evictions = evictions;
+    }
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+    /**
+     * @return  the hit ratio (0..1), or 0 if the cache was not accessed yet.
+     */
+    public double hitRatio() {
+        long requests = hits + misses;
+        return requests > 0 ? (double) hits / requests : 0;
+    }
+
+    @Override
+    public JSONObject toJSON() {
+        try {
+            return new JSONObject()
+                .put("hits", hits)
+                .put("misses", misses)
+                .put("hitRatio", hitRatio())
+                .put("size", size)
+                .put("evictions", evictions);
+        } catch (Exception e) {
+            throw new RuntimeException("Serialization failed", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + hits + ", misses=" + misses + ", size=" + size + ", evictions=" + evictions;
+    }
+}
@@ -8,16 +8,19 @@ import systems.dmx.core.Topic;
 import systems.dmx.core.TopicType;
 import systems.dmx.core.model.AssocModel;
 import systems.dmx.core.model.AssocTypeModel;
+import systems.dmx.core.model.DMXObjectModel;
 import systems.dmx.core.model.PlayerModel;
 import systems.dmx.core.model.RoleTypeModel;
 import systems.dmx.core.model.SimpleValue;
 import systems.dmx.core.model.TopicModel;
 import systems.dmx.core.model.TopicTypeModel;
+import systems.dmx.core.service.ResultPage;
 import systems.dmx.core.service.TopicResult;
 import systems.dmx.core.service.accesscontrol.PrivilegedAccess;
 import systems.dmx.core.service.websocket.WebSocketService;
 import systems.dmx.core.storage.spi.DMXTransaction;
 
+import java.util.Iterator;
 import java.util.List;
 
 
@@ -53,6 +56,27 @@ public interface CoreService {
 
     List<Topic> getTopicsByType(String topicTypeUri);
 
+    /**
+     * Paged variant of {@link #getTopicsByType(String)}. Only the topics of the requested page are fetched.
+     *
+     * @param   offset  the number of (readable) topics to skip.
+     * @param   limit   the max number of topics to return. Must be positive.
+     *
+     * @return  the page. Its cursor can be passed to {@link #getTopicsByType(String, String, int)} in order to fetch
+     *          the next page.
+     */
+    ResultPage<Topic> getTopicsByType(String topicTypeUri, int offset, int limit);
+
+    /**
+     * Paged variant of {@link #getTopicsByType(String)}. Only the topics of the requested page are fetched.
+     *
+     * @param   cursor  the cursor of the previous page, or <code>null</code> to fetch the first page. The topics are
+     *                  ordered by ID, and the page starts after the last topic of the previous page. So a topic
+     *                  created or deleted in between does not shift the page.
+     * @param   limit   the max number of topics to return. Must be positive.
+     */
+    ResultPage<Topic> getTopicsByType(String topicTypeUri, String cursor, int limit);
+
     Iterable<Topic> getAllTopics();
 
     // ---
@@ -139,6 +163,28 @@ public interface CoreService {
      */
     TopicResult queryTopicsFulltext(String query, String typeUri, boolean searchChildTopics);
 
+    /**
+     * Paged variant of {@link #queryTopicsFulltext(String, String, boolean)}.
+     * Unless "searchChildTopics" is set only the topics of the requested page are fetched.
+     *
+     * @param   offset  the number of (readable) topics to skip.
+     * @param   limit   the max number of topics to return. Must be positive.
+     */
+    ResultPage<Topic> queryTopicsFulltext(String query, String typeUri, boolean searchChildTopics, int offset,
+                                          int limit);
+
+    /**
+     * Paged variant of {@link #queryTopicsFulltext(String, String, boolean)}.
+     * Unless "searchChildTopics" is set only the topics of the requested page are fetched.
+     *
+     * @param   cursor  the cursor of the previous page, or <code>null</code> to fetch the first page. The topics are
+     *                  ordered by ID, and the page starts after the last topic of the previous page. So a topic
+     *                  created or deleted in between does not shift the page.
+     * @param   limit   the max number of topics to return. Must be positive.
+     */
+    ResultPage<Topic> queryTopicsFulltext(String query, String typeUri, boolean searchChildTopics, String cursor,
+                                          int limit);
+
     void indexTopicFulltext(long topicId, String text, String indexKey);
 
     // ---
@@ -304,6 +350,23 @@ public interface CoreService {
     QueryResult query(String topicQuery, String topicTypeUri, boolean searchTopicChildren,
                       String assocQuery, String assocTypeUri, boolean searchAssocChildren);
 
+    /**
+     * Creates topics and assocs in bulk, e.g. for the initial load of a large data set.
+     * <p>
+     * The objects are created batch by batch, each batch committed in its own transaction. (If called within a
+     * running transaction the batches are committed along with that transaction.) Within a batch the labels of the
+     * created composites are calculated -- and fulltext indexed -- once at the end of the batch. Plugins implementing
+     * {@link systems.dmx.core.service.event.BulkImportOptOut} receive no create events for the imported objects.
+     * <p>
+     * An assoc can refer to topics created by the same import by URI.
+     *
+     * @param   models      the models to create: topic models and assoc models (no types), in creation order.
+     * @param   batchSize   the number of models created per transaction.
+     *
+     * @throws  RuntimeException    If a batch fails. The batches committed before remain.
+     */
+    ImportReport importObjects(Iterator<? extends DMXObjectModel> models, int batchSize);
+
 
 
     // === Plugins ===
@@ -339,18 +402,57 @@ public interface CoreService {
      */
     boolean hasProperty(long id, String propUri);
 
+    /**
+     * Write-locks a topic or association until the current transaction finishes. Once the lock is acquired
+     * {@link #getProperty} returns the value as committed by concurrent transactions. So a property value can be
+     * read, modified, and written back without losing concurrent updates. Must be called within a transaction.
+     *
+     * @param   id  a topic ID, or an association ID
+     */
+    void acquireWriteLock(long id);
+
     // Note: setProperty() and removeProperty() are located in DMXObject API.
 
     // ---
 
     List<Topic> getTopicsByProperty(String propUri, Object propValue);
 
+    /**
+     * Paged variant of {@link #getTopicsByProperty(String, Object)}.
+     *
+     * @param   offset  the number of (readable) topics to skip.
+     * @param   limit   the max number of topics to return. Must be positive.
+     */
+    ResultPage<Topic> getTopicsByProperty(String propUri, Object propValue, int offset, int limit);
+
+    /**
+     * Paged variant of {@link #getTopicsByProperty(String, Object)}.
+     *
+     * @param   cursor  the cursor of the previous page, or <code>null</code> to fetch the first page. The topics are
+     *                  ordered by ID, and the page starts after the last topic of the previous page. So a topic
+     *                  created or deleted in between does not shift the page.
+     * @param   limit   the max number of topics to return. Must be positive.
+     */
+    ResultPage<Topic> getTopicsByProperty(String propUri, Object propValue, String cursor, int limit);
+
     List<Topic> getTopicsByPropertyRange(String propUri, Number from, Number to);
 
     List<Assoc> getAssocsByProperty(String propUri, Object propValue);
 
     List<Assoc> getAssocsByPropertyRange(String propUri, Number from, Number to);
 
+    /**
+     * Retrieves the topics of the given type which have the given property value.
+     * The property must be indexed.
+     */
+    List<Topic> getTopicsByTypeAndProperty(String topicTypeUri, String propUri, Object propValue);
+
+    /**
+     * Retrieves the associations of the given type which have the given property value.
+     * The property must be indexed.
+     */
+    List<Assoc> getAssocsByTypeAndProperty(String assocTypeUri, String propUri, Object propValue);
+
     // ---
 
     void addTopicPropertyIndex(String propUri);
@@ -372,4 +474,9 @@ public interface CoreService {
     WebSocketService getWebSocketService();
 
     Object getDatabaseVendorObject();
+
+    /**
+     * Returns the usage counters of the cache which holds the topic and association models fetched by ID.
+     */
+    CacheStats getModelCacheStats();
 }
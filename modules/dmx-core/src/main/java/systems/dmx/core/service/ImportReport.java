@@ -0,0 +1,44 @@
+package systems.dmx.core.service;
+
+import systems.dmx.core.JSONEnabled;
+
+import org.codehaus.jettison.json.JSONObject;
+
+
+
+/**
+ * The result of a bulk import, see {@link CoreService#importObjects}.
+ */
+public class ImportReport implements JSONEnabled {
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    /**
+     * Number of imported topics and assocs. Child topics created along with a composite are not counted.
+     */
+    public int topics, assocs;
+
+    /**
+     * Number of committed batches.
+     */
+    public int batches;
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+    @Override
+    public JSONObject toJSON() {
+        try {
+            return new JSONObject()
+                .put("topics", topics)
+                .put("assocs", assocs)
+                .put("batches", batches);
+        } catch (Exception e) {
+            throw new RuntimeException("Serialization failed", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return topics + " topics, " + assocs + " assocs, " + batches + " batches";
+    }
+}
@@ -3,8 +3,13 @@ package systems.dmx.core.service;
 import systems.dmx.core.DMXObject;
 import systems.dmx.core.JSONEnabled;
 import systems.dmx.core.util.DMXUtils;
+import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 
 
@@ -49,4 +54,18 @@ public class QueryResult implements JSONEnabled {
             throw new RuntimeException("Serialization failed", e);
         }
     }
+
+    @Override
+    public void writeJSON(Writer writer) throws IOException, JSONException {
+        Map<String, Iterable<? extends JSONEnabled>> arrays = new LinkedHashMap();
+        arrays.put("objects", objects);
+        DMXUtils.writeJSONObject(new JSONObject()
+            .put("topicQuery", topicQuery)
+            .put("topicTypeUri", topicTypeUri)
+            .put("searchTopicChildren", searchTopicChildren)
+            .put("assocQuery", assocQuery)
+            .put("assocTypeUri", assocTypeUri)
+            .put("searchAssocChildren", searchAssocChildren), arrays, writer
+        );
+    }
 }
@@ -0,0 +1,67 @@
+package systems.dmx.core.service;
+
+import systems.dmx.core.JSONEnabled;
+import systems.dmx.core.util.DMXUtils;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+
+/**
+ * One page of a paginated query result.
+ */
+public class ResultPage<T extends JSONEnabled> implements JSONEnabled {
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    public List<T> items;
+
+    /**
+     * Opaque cursor to be passed to the query in order to fetch the next page.
+     * <code>null</code> if this is the last page.
+     */
+    public String cursor;
+
+    /**
+     * The total number of query hits, before access control is applied. So the number of items the user can actually
+     * read might be lower.
+     */
+    public int totalEstimate;
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    public ResultPage(List<T> items, String cursor, int totalEstimate) {
+        this.items = items;
+        this.cursor = cursor;
+        this.totalEstimate = totalEstimate;
+    }
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+    @Override
+    public JSONObject toJSON() {
+        try {
+            return new JSONObject()
+                .put("items", DMXUtils.toJSONArray(items))
+                .put("cursor", cursor)
+                .put("totalEstimate", totalEstimate);
+        } catch (Exception e) {
+            throw new RuntimeException("Serialization failed", e);
+        }
+    }
+
+    @Override
+    public void writeJSON(Writer writer) throws IOException, JSONException {
+        Map<String, Iterable<? extends JSONEnabled>> arrays = new LinkedHashMap();
+        arrays.put("items", items);
+        DMXUtils.writeJSONObject(new JSONObject()
+            .put("cursor", cursor)
+            .put("totalEstimate", totalEstimate), arrays, writer
+        );
+    }
+}
@@ -3,8 +3,13 @@ package systems.dmx.core.service;
 import systems.dmx.core.JSONEnabled;
 import systems.dmx.core.Topic;
 import systems.dmx.core.util.DMXUtils;
+import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 
 
@@ -40,4 +45,15 @@ public class TopicResult implements JSONEnabled {
             throw new RuntimeException("Serialization failed", e);
         }
     }
+
+    @Override
+    public void writeJSON(Writer writer) throws IOException, JSONException {
+        Map<String, Iterable<? extends JSONEnabled>> arrays = new LinkedHashMap();
+        arrays.put("topics", topics);
+        DMXUtils.writeJSONObject(new JSONObject()
+            .put("query", query)
+            .put("topicTypeUri", topicTypeUri)
+            .put("searchChildTopics", searchChildTopics), arrays, writer
+        );
+    }
 }
@@ -5,10 +5,14 @@ import systems.dmx.core.DMXObject;
 import systems.dmx.core.RelatedTopic;
 import systems.dmx.core.Topic;
 import systems.dmx.core.model.TopicModel;
+import systems.dmx.core.service.CacheStats;
+import systems.dmx.core.storage.spi.ObjectHeader;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 
+import java.util.BitSet;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 
@@ -29,23 +33,56 @@ public interface PrivilegedAccess {
      */
     boolean hasPermission(String username, Operation operation, long objectId);
 
+    /**
+     * Checks if a user is permitted to READ the given objects (topics or associations). The READ permission is
+     * calculated only once per workspace the objects are assigned to.
+     * Equivalent to calling {@link #hasPermission} for each object, but no exception is thrown when permission is
+     * refused.
+     *
+     * @param   username    the logged in user, or <code>null</code> if no user is logged in.
+     * @param   objectIds   topic IDs and/or association IDs.
+     *
+     * @return  the READ permissions: bit <code>i</code> is set if permission is granted for
+     *          <code>objectIds[i]</code>.
+     */
+    BitSet filterReadable(String username, long[] objectIds);
+
     // ---
 
     boolean hasReadPermission(String username, long workspaceId);
 
     boolean hasWritePermission(String username, long workspaceId);
 
+    /**
+     * Returns the usage counters of the workspace-level permission cache which backs
+     * {@link #hasReadPermission} and {@link #hasWritePermission}.
+     */
+    CacheStats getPermissionCacheStats();
+
 
 
     // === User Accounts ===
 
     /**
      * Checks if the given credentials are valid.
+     * <p>
+     * Verified credentials are cached for a short time (<code>dmx.security.credentials_cache_ttl</code> seconds), in
+     * form of a salted digest. The cache entry is invalidated once the user's password changes.
      *
      * @return  the corresponding Username topic if the credentials are valid, or <code>null</code> otherwise.
      */
     Topic checkCredentials(Credentials cred);
 
+    /**
+     * Returns the "Login Enabled" setting of the given user.
+     * <p>
+     * As long as the user's credentials are cached as verified (see {@link #checkCredentials}) the setting is cached
+     * as well.
+     *
+     * @param   usernameTopic   a Username topic, as returned by {@link #checkCredentials}.
+     */
+    boolean isLoginEnabled(Topic usernameTopic);
+
     /**
      * Changes the password of an existing user account.
      * <p>
@@ -265,6 +302,39 @@ public interface PrivilegedAccess {
 
 
 
+    // === Object Headers ===
+
+    // Note: these methods read just the IDs and type URIs of the objects, not the objects themselves. They are meant
+    // for bulk operations, e.g. deleting a workspace's content. Access control is bypassed.
+
+    /**
+     * Returns the headers of the topics which have the given (indexed) property value.
+     */
+    List<ObjectHeader> getTopicHeadersByProperty(String propUri, Object propValue);
+
+    /**
+     * Returns the headers of the associations which have the given (indexed) property value.
+     */
+    List<ObjectHeader> getAssocHeadersByProperty(String propUri, Object propValue);
+
+    /**
+     * Returns the headers of all instances of the given topic type.
+     */
+    List<ObjectHeader> getTopicHeadersByType(String topicTypeUri);
+
+    /**
+     * Returns the headers of all instances of the given association type.
+     */
+    List<ObjectHeader> getAssocHeadersByType(String assocTypeUri);
+
+    /**
+     * @return  <code>true</code> if a topic or an association with the given ID exists, <code>false</code> if it
+     *          does not exist (anymore).
+     */
+    boolean objectExists(long id);
+
+
+
     // === Topicmaps ===
 
     void deleteAssocMapcontext(Assoc assoc);
@@ -0,0 +1,17 @@
+package systems.dmx.core.service.event;
+
+
+
+/**
+ * Marker interface for plugins which opt out of the create events while a bulk import is running.
+ * <p>
+ * A plugin implementing this interface receives no PRE_CREATE_TOPIC, POST_CREATE_TOPIC, PRE_CREATE_ASSOC, and
+ * POST_CREATE_ASSOC events for the objects created by {@link systems.dmx.core.service.CoreService#importObjects}.
+ * Useful for plugins whose create listeners are not needed for an initial load, e.g. timestamping or client
+ * notification.
+ * <p>
+ * Note: the standard plugins do not opt out. Their create listeners store data the imported objects need as well,
+ * e.g. creator, workspace assignment, and timestamps.
+ */
+public interface BulkImportOptOut {
+}
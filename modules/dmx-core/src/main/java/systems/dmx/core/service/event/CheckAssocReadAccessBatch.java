@@ -0,0 +1,20 @@
+package systems.dmx.core.service.event;
+
+import systems.dmx.core.service.EventListener;
+
+import java.util.BitSet;
+
+
+
+/**
+ * The batch counterpart of {@link CheckAssocReadAccess}. Fired when a whole list of associations is filtered for
+ * READability.
+ * <p>
+ * A listener clears the bits of the associations the current user has no READ permission for (bit index = array
+ * index). It must not throw an AccessControlException. The batch event is only fired if all the
+ * CHECK_ASSOC_READ_ACCESS listeners implement this interface; otherwise the associations are checked one by one.
+ */
+public interface CheckAssocReadAccessBatch extends EventListener {
+
+    void checkAssocReadAccess(long[] assocIds, BitSet readable);
+}
@@ -0,0 +1,19 @@
+package systems.dmx.core.service.event;
+
+import systems.dmx.core.service.EventListener;
+
+import java.util.BitSet;
+
+
+
+/**
+ * The batch counterpart of {@link CheckTopicReadAccess}. Fired when a whole list of topics is filtered for READability.
+ * <p>
+ * A listener clears the bits of the topics the current user has no READ permission for (bit index = array index).
+ * It must not throw an AccessControlException. The batch event is only fired if all the CHECK_TOPIC_READ_ACCESS
+ * listeners implement this interface; otherwise the topics are checked one by one.
+ */
+public interface CheckTopicReadAccessBatch extends EventListener {
+
+    void checkTopicReadAccess(long[] topicIds, BitSet readable);
+}
@@ -16,7 +16,19 @@ public interface WebSocketService {
 
     void sendToSome(String message, Predicate<WebSocketConnection> connectionFilter);
 
+    /**
+     * Sends the messages queued by the current thread. Within request scope this happens automatically once the
+     * response is sent. Outside request scope (e.g. in a background job) this must be called explicitly, otherwise
+     * the queued messages are never sent.
+     */
+    void flush();
+
     // ---
 
     String getWebSocketURL();
+
+    /**
+     * Returns a snapshot of the send metrics: queue depth, send latency, dropped messages.
+     */
+    WebSocketStats getStats();
 }
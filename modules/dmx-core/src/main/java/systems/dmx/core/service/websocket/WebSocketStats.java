@@ -0,0 +1,58 @@
+package systems.dmx.core.service.websocket;
+
+import systems.dmx.core.JSONEnabled;
+
+import org.codehaus.jettison.json.JSONObject;
+
+
+
+/**
+ * A snapshot of the WebSocket service's send metrics.
+ */
+public class WebSocketStats implements JSONEnabled {
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    public final int connections;           // number of open connections
+    public final long queuedMessages;       // number of messages waiting to be sent, at snapshot time
+    public final long sentMessages;
+    public final long droppedMessages;      // number of messages dropped due to full queues
+    public final double avgSendLatency;     // in milliseconds, from queueing to sending
+    public final double maxSendLatency;     // in milliseconds
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    public WebSocketStats(int connections, long queuedMessages, long sentMessages, long droppedMessages,
+                          double avgSendLatency, double maxSendLatency) {
+        this.connections = connections;
+        this.queuedMessages = queuedMessages;
+        this.sentMessages = sentMessages;
+        this.droppedMessages = droppedMessages;
+        this.avgSendLatency = avgSendLatency;
+        this.maxSendLatency = maxSendLatency;
+    }
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+    @Override
+    public JSONObject toJSON() {
+        try {
+            return new JSONObject()
+                .put("connections", connections)
+                .put("queuedMessages", queuedMessages)
+                .put("sentMessages", sentMessages)
+                .put("droppedMessages", droppedMessages)
+                .put("avgSendLatency", avgSendLatency)
+                .put("maxSendLatency", maxSendLatency);
+        } catch (Exception e) {
+            throw new RuntimeException("Serialization failed", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "connections=" + connections + ", queuedMessages=" + queuedMessages + ", sentMessages=" +
+            sentMessages + ", droppedMessages=" + droppedMessages + ", avgSendLatency=" + avgSendLatency +
+            "ms, maxSendLatency=" + maxSendLatency + "ms";
+    }
+}
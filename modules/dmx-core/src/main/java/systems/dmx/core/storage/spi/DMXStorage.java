@@ -10,7 +10,9 @@ import systems.dmx.core.model.PlayerModel;
 import systems.dmx.core.model.RelatedObjectModel;
 import systems.dmx.core.model.SimpleValue;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 
 
@@ -43,6 +45,18 @@ public interface DMXStorage {
 
     // ---
 
+    /**
+     * Lazy variant of {@link #fetchTopics}.
+     */
+    ModelHits<TopicModelImpl> fetchTopicHits(String key, Object value);
+
+    /**
+     * Lazy variant of {@link #queryTopicsFulltext}.
+     */
+    ModelHits<TopicModelImpl> queryTopicHitsFulltext(String key, Object value);
+
+    // ---
+
     /**
      * Stores a rudimentary topic in the DB.
      * <p>
@@ -157,6 +171,11 @@ public interface DMXStorage {
 
     DMXObjectModelImpl fetchObject(long id);
 
+    /**
+     * @return  <code>true</code> if a topic or an assoc with the given ID exists, as visible to the current thread.
+     */
+    boolean objectExists(long id);
+
 
 
     // === Traversal ===
@@ -237,6 +256,22 @@ public interface DMXStorage {
     List<RelatedTopicModelImpl> fetchRelatedTopics(long objectId, String assocTypeUri, String myRoleTypeUri,
                                                    String othersRoleTypeUri, String othersTopicTypeUri);
 
+    /**
+     * Batch version of {@link #fetchRelatedTopics(long, String, String, String, String)}: fetches the related topics
+     * of many objects at once.
+     *
+     * @param   objectIds           ids of topics and/or associations
+     * @param   assocTypeUri        may be null
+     * @param   myRoleTypeUri       may be null
+     * @param   othersRoleTypeUri   may be null
+     * @param   othersTopicTypeUri  may be null
+     *
+     * @return  The fetched topics, grouped by object ID. Objects without related topics are not contained.
+     */
+    Map<Long, List<RelatedTopicModelImpl>> fetchRelatedTopics(Collection<Long> objectIds, String assocTypeUri,
+                                                              String myRoleTypeUri, String othersRoleTypeUri,
+                                                              String othersTopicTypeUri);
+
     /**
      * @param   objectId            id of a topic or an association
      * @param   assocTypeUri        may be null
@@ -249,6 +284,39 @@ public interface DMXStorage {
     List<RelatedAssocModelImpl> fetchRelatedAssocs(long objectId, String assocTypeUri, String myRoleTypeUri,
                                                    String othersRoleTypeUri, String othersAssocTypeUri);
 
+    /**
+     * Batch version of {@link #fetchRelatedAssocs(long, String, String, String, String)}: fetches the related
+     * associations of many objects at once.
+     *
+     * @param   objectIds           ids of topics and/or associations
+     * @param   assocTypeUri        may be null
+     * @param   myRoleTypeUri       may be null
+     * @param   othersRoleTypeUri   may be null
+     * @param   othersAssocTypeUri  may be null
+     *
+     * @return  The fetched associations, grouped by object ID. Objects without related associations are not
+     *          contained.
+     */
+    Map<Long, List<RelatedAssocModelImpl>> fetchRelatedAssocs(Collection<Long> objectIds, String assocTypeUri,
+                                                              String myRoleTypeUri, String othersRoleTypeUri,
+                                                              String othersAssocTypeUri);
+
+    /**
+     * ID-only variant of {@link #fetchRelatedTopics(long, String, String, String, String)} and
+     * {@link #fetchRelatedAssocs(long, String, String, String, String)}. Neither the related objects nor the relating
+     * associations (including their players) are built.
+     *
+     * @param   objectId            id of a topic or an association
+     * @param   assocTypeUri        may be null
+     * @param   myRoleTypeUri       may be null
+     * @param   othersRoleTypeUri   may be null
+     * @param   othersTypeUri       may be null
+     *
+     * @return  The IDs of the related topics and/or associations.
+     */
+    List<Long> fetchRelatedIds(long objectId, String assocTypeUri, String myRoleTypeUri, String othersRoleTypeUri,
+                                                                                         String othersTypeUri);
+
 
 
     // === Properties ===
@@ -273,6 +341,33 @@ public interface DMXStorage {
 
     List<AssocModelImpl> fetchAssocsByPropertyRange(String propUri, Number from, Number to);
 
+    /**
+     * Fetches the topics of the given type which have the given (indexed) property value.
+     * Both criteria are resolved by the index, so the cost is proportional to the result size.
+     */
+    List<TopicModelImpl> fetchTopicsByTypeAndProperty(String topicTypeUri, String propUri, Object propValue);
+
+    /**
+     * Fetches the assocs of the given type which have the given (indexed) property value.
+     * Both criteria are resolved by the index, so the cost is proportional to the result size.
+     */
+    List<AssocModelImpl> fetchAssocsByTypeAndProperty(String assocTypeUri, String propUri, Object propValue);
+
+    /**
+     * Lazy variant of {@link #fetchTopicsByProperty}.
+     */
+    ModelHits<TopicModelImpl> fetchTopicHitsByProperty(String propUri, Object propValue);
+
+    /**
+     * Header-only variant of {@link #fetchTopicsByProperty}: just the topics' IDs and type URIs are read.
+     */
+    List<ObjectHeader> fetchTopicHeadersByProperty(String propUri, Object propValue);
+
+    /**
+     * Header-only variant of {@link #fetchAssocsByProperty}: just the assocs' IDs and type URIs are read.
+     */
+    List<ObjectHeader> fetchAssocHeadersByProperty(String propUri, Object propValue);
+
     // ---
 
     void storeTopicProperty(long topicId, String propUri, Object propValue, boolean addToIndex);
@@ -297,6 +392,15 @@ public interface DMXStorage {
 
     DMXTransaction beginTx();
 
+    /**
+     * Write-locks the given topic or association until the current transaction finishes. Once the lock is acquired
+     * the object's properties as committed by concurrent transactions are visible. To be called before reading a
+     * property whose value is to be written back modified (e.g. a counter).
+     *
+     * @param   id      id of a topic or an association
+     */
+    void acquireWriteLock(long id);
+
     boolean setupRootNode();
 
     void shutdown();
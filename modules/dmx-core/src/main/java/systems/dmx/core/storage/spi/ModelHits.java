@@ -0,0 +1,77 @@
+package systems.dmx.core.storage.spi;
+
+import systems.dmx.core.impl.DMXObjectModelImpl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+
+
+/**
+ * The lazy result of a storage query. The models are built one by one while iterating.
+ * <p>
+ * The hits are ordered by ID. So a caller can resume a query after the last model it has seen (see
+ * {@link #skipPast}), regardless of hits being added or removed in the meantime.
+ * <p>
+ * Must be closed once the caller is done with it (regardless whether it is fully iterated or not).
+ */
+public interface ModelHits<M extends DMXObjectModelImpl> extends Iterator<M> {
+
+    /**
+     * @return  the total number of hits. Depending on the storage this is an estimate.
+     */
+    int size();
+
+    /**
+     * Skips the hits up to and including the given ID without building their models. The given ID does not need to
+     * be a hit (anymore).
+     */
+    void skipPast(long id);
+
+    /**
+     * Releases the underlying storage resources.
+     */
+    void close();
+
+    // ---
+
+    /**
+     * Wraps an already fetched list.
+     */
+    static <M extends DMXObjectModelImpl> ModelHits<M> of(List<M> models) {
+        List<M> sorted = new ArrayList(models);
+        sorted.sort(Comparator.comparingLong(M::getId));
+        return new ModelHits<M>() {
+
+            private int pos;
+
+            @Override
+            public boolean hasNext() {
+                return pos < sorted.size();
+            }
+
+            @Override
+            public M next() {
+                return sorted.get(pos++);
+            }
+
+            @Override
+            public int size() {
+                return sorted.size();
+            }
+
+            @Override
+            public void skipPast(long id) {
+                while (pos < sorted.size() && sorted.get(pos).getId() <= id) {
+                    pos++;
+                }
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
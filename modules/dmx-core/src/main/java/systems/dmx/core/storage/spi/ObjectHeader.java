@@ -0,0 +1,42 @@
+package systems.dmx.core.storage.spi;
+
+import systems.dmx.core.Identifiable;
+
+
+
+/**
+ * The header of a topic or an association: just its ID and type URI. Returned by the storage's header-only queries,
+ * for callers which do not need the object's URI, value, or players.
+ */
+public class ObjectHeader implements Identifiable {
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private long id;
+    private String typeUri;
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    public ObjectHeader(long id, String typeUri) {
+        this.id = id;
+        this.typeUri = typeUri;
+    }
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    public String getTypeUri() {
+        return typeUri;
+    }
+
+    // ---
+
+    @Override
+    public String toString() {
+        return "header (id=" + id + ", typeUri=\"" + typeUri + "\")";
+    }
+}
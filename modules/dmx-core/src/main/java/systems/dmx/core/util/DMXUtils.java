@@ -17,8 +17,11 @@ import systems.dmx.core.osgi.CoreActivator;
 import systems.dmx.core.service.CoreService;
 
 import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -192,6 +195,69 @@ public class DMXUtils {
         return array;
     }
 
+    /**
+     * Streaming counterpart of {@link #toJSONArray}: writes the items one by one.
+     */
+    public static void writeJSONArray(Iterable<? extends JSONEnabled> items, Writer writer) throws IOException,
+                                                                                                  JSONException {
+        writer.write('[');
+        boolean first = true;
+        for (JSONEnabled item : items) {
+            if (!first) {
+                writer.write(',');
+            }
+            item.writeJSON(writer);
+            first = false;
+        }
+        writer.write(']');
+    }
+
+    /**
+     * Writes a JSON object which aggregates (possibly large) arrays. The arrays are streamed item by item, see
+     * {@link #writeJSONArray}.
+     *
+     * @param   properties  the object's other properties. Written first.
+     * @param   arrays      key: property name, value: array items. Written in iteration order.
+     */
+    public static void writeJSONObject(JSONObject properties, Map<String, Iterable<? extends JSONEnabled>> arrays,
+                                       Writer writer) throws IOException, JSONException {
+        writer.write('{');
+        boolean first = true;
+        Iterator<String> i = properties.keys();
+        while (i.hasNext()) {
+            String key = i.next();
+            if (!first) {
+                writer.write(',');
+            }
+            writer.write(JSONObject.quote(key));
+            writer.write(':');
+            writeJSONValue(properties.get(key), writer);
+            first = false;
+        }
+        for (Map.Entry<String, Iterable<? extends JSONEnabled>> entry : arrays.entrySet()) {
+            if (!first) {
+                writer.write(',');
+            }
+            writer.write(JSONObject.quote(entry.getKey()));
+            writer.write(':');
+            writeJSONArray(entry.getValue(), writer);
+            first = false;
+        }
+        writer.write('}');
+    }
+
+    private static void writeJSONValue(Object value, Writer writer) throws IOException, JSONException {
+        if (value instanceof JSONObject) {
+            ((JSONObject) value).write(writer);
+        } else if (value instanceof JSONArray) {
+            ((JSONArray) value).write(writer);
+        } else if (value instanceof String) {
+            writer.write(JSONObject.quote((String) value));
+        } else {
+            writer.write(String.valueOf(value));     // Boolean, Number, JSONObject.NULL
+        }
+    }
+
 
 
     // *****************
@@ -1,5 +1,7 @@
 package systems.dmx.core.util;
 
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.core.Response;
@@ -20,6 +22,8 @@ import java.net.URLConnection;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 
+import java.nio.charset.StandardCharsets;
+
 import java.security.MessageDigest;
 import java.security.SecureRandom;
 
@@ -257,8 +261,15 @@ public class JavaUtils {
 
     // ---
 
+    /**
+     * @return  the value of the given cookie, or <code>null</code> if the request has no such cookie.
+     */
     public static String cookieValue(HttpServletRequest request, String cookieName) {
-        for (Cookie cookie : request.getCookies()) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {      // the request has no cookies at all
+            return null;
+        }
+        for (Cookie cookie : cookies) {
             if (cookie.getName().equals(cookieName)) {
                 return cookie.getValue();
             }
@@ -301,6 +312,21 @@ public class JavaUtils {
         }
     }
 
+    /**
+     * PBKDF2 with HMAC-SHA256, yielding a 256 bit hash.
+     *
+     * @param   iterations  the hashing cost.
+     */
+    public static String encodePBKDF2(String password, String salt, int iterations) {
+        try {
+            PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt.getBytes(StandardCharsets.UTF_8), iterations,
+                256);
+            return encodeHex(SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded());
+        } catch (Exception e) {
+            throw new RuntimeException("PBKDF2 encoding failed", e);
+        }
+    }
+
     public static String random256() {
         SecureRandom random = new SecureRandom();
         byte bytes[] = new byte[32];    // 256 bits
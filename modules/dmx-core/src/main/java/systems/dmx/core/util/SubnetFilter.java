@@ -0,0 +1,122 @@
+package systems.dmx.core.util;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+
+
+/**
+ * A list of IPv4 and/or IPv6 address ranges in CIDR notation, e.g. "127.0.0.1/32, 172.68.8.0/24, ::1/128".
+ * <p>
+ * The ranges are parsed once, at construction. Checking an address is a plain byte comparison then. (In contrast
+ * {@link JavaUtils#isInRange} parses the range at every call.)
+ * <p>
+ * An address matches a range only if both are of the same family (IPv4 vs. IPv6). The exception is a range with
+ * prefix length 0 (e.g. "0.0.0.0/0"): it matches any address.
+ */
+public class SubnetFilter {
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private List<Range> ranges = new ArrayList();
+    private String setting;
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    /**
+     * @param   setting     comma separated list of address ranges in CIDR notation. A range without prefix length
+     *                      denotes a single address.
+     *
+     * @throws  RuntimeException    if the setting can't be parsed.
+     */
+    public SubnetFilter(String setting) {
+        this.setting = setting;
+        for (String range : setting.split(",")) {
+            range = range.trim();
+            if (!range.isEmpty()) {
+                ranges.add(new Range(range));
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+    /**
+     * @param   inetAddress     IPv4 or IPv6 address, e.g. "172.68.8.12". Note: for a machine name a DNS lookup is
+     *                          performed.
+     *
+     * @return  true if the address is in any of the ranges.
+     */
+    public boolean isInRange(String inetAddress) {
+        byte[] addr = address(inetAddress);
+        for (Range range : ranges) {
+            if (range.matches(addr)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return setting;
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    private static byte[] address(String inetAddress) {
+        try {
+            return InetAddress.getByName(inetAddress).getAddress();
+        } catch (Exception e) {
+            throw new RuntimeException("Parsing inet address \"" + inetAddress + "\" failed", e);
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Classes
+
+    private static class Range {
+
+        private byte[] network;     // the network address, with the host bits cleared
+        private int prefixLength;
+
+        private Range(String range) {
+            try {
+                String[] r = range.split("/");
+                network = address(r[0].trim());
+                prefixLength = r.length > 1 ? Integer.parseInt(r[1].trim()) : network.length * 8;
+                if (prefixLength < 0 || prefixLength > network.length * 8) {
+                    throw new IllegalArgumentException("Invalid prefix length: " + prefixLength);
+                }
+                for (int i = 0; i < network.length; i++) {
+                    network[i] &= mask(i);
+                }
+            } catch (Exception e) {
+                throw new RuntimeException("Parsing address range \"" + range + "\" failed", e);
+            }
+        }
+
+        private boolean matches(byte[] addr) {
+            if (prefixLength == 0) {
+                return true;
+            }
+            if (addr.length != network.length) {
+                return false;
+            }
+            for (int i = 0; i < addr.length && i * 8 < prefixLength; i++) {
+                if ((addr[i] & mask(i)) != network[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return  the network mask of the byte at the given index, e.g. 0xff, 0xc0, or 0.
+         */
+        private byte mask(int i) {
+            int bits = Math.min(Math.max(prefixLength - i * 8, 0), 8);
+            return (byte) (0xff00 >> bits);
+        }
+    }
+}
@@ -13,4 +13,7 @@ public class Constants {
     public static final String MEDIA_TYPE  = "dmx.files.media_type";
     public static final String SIZE        = "dmx.files.size";
     public static final String DISK_QUOTA  = "dmx.files.disk_quota";
+
+    // Properties
+    public static final String OCCUPIED_SPACE = "dmx.files.occupied_space";
 }
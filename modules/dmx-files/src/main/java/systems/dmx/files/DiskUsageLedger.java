@@ -0,0 +1,163 @@
+package systems.dmx.files;
+
+import static systems.dmx.files.Constants.*;
+
+import systems.dmx.core.Topic;
+import systems.dmx.core.service.CoreService;
+import systems.dmx.core.service.accesscontrol.PrivilegedAccess;
+import systems.dmx.core.storage.spi.DMXTransaction;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+
+
+/**
+ * Keeps track of the disk space occupied by each user's files, that is the files created by that user.
+ * <p>
+ * The per-user byte count is stored as a property of the user's Username topic. It is adjusted incrementally whenever
+ * a file is created, overwritten, or deleted. So a disk quota check does not need to scan all File topics.
+ * <p>
+ * For a user whose byte count is not yet stored (e.g. after an update from a previous DMX version) it is calculated
+ * once from the File topics.
+ * <p>
+ * A byte count is read-modified-written within the caller's transaction. In order not to lose concurrent updates the
+ * Username topic is write-locked <i>before</i> the byte count is read. Then the read includes the updates committed
+ * meanwhile, and concurrent updates wait for the commit. No JVM monitor is involved, so a lock wait can't deadlock
+ * with a monitor. Drift caused otherwise (e.g. by files changed outside DMX) is periodically corrected, see
+ * {@link #reconcile}.
+ */
+class DiskUsageLedger {
+
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    // ### TODO: copies in Constants.java of various plugins
+    private static final String USERNAME = "dmx.accesscontrol.username";
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private CoreService dmx;
+    private FilesService fs;
+
+    private Logger logger = Logger.getLogger(getClass().getName());
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    DiskUsageLedger(CoreService dmx, FilesService fs) {
+        this.dmx = dmx;
+        this.fs = fs;
+    }
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    /**
+     * Returns the disk space occupied by the given user's files (in bytes).
+     */
+    long getOccupiedSpace(String username) {
+        Topic usernameTopic = dmx.getPrivilegedAccess().getUsernameTopic(username);
+        if (usernameTopic == null) {
+            return 0;
+        }
+        if (!usernameTopic.hasProperty(OCCUPIED_SPACE)) {
+            return initOccupiedSpace(usernameTopic, username);
+        }
+        return (Long) usernameTopic.getProperty(OCCUPIED_SPACE);
+    }
+
+    /**
+     * Adjusts the disk space occupied by the given user's files.
+     * If the user's byte count is not yet initialized nothing is done. It will be calculated on first access.
+     *
+     * @param   username    the creator of the file; may be <code>null</code> (no user was logged in at creation
+     *                      time), then nothing is done.
+     * @param   delta       the number of bytes added (positive), or freed (negative).
+     */
+    void add(String username, long delta) {
+        if (username == null || delta == 0) {
+            return;
+        }
+        Topic usernameTopic = dmx.getPrivilegedAccess().getUsernameTopic(username);
+        if (usernameTopic == null) {
+            return;
+        }
+        dmx.acquireWriteLock(usernameTopic.getId());
+        if (!usernameTopic.hasProperty(OCCUPIED_SPACE)) {
+            return;
+        }
+        long occupiedSpace = (Long) usernameTopic.getProperty(OCCUPIED_SPACE) + delta;
+        storeOccupiedSpace(usernameTopic, Math.max(occupiedSpace, 0));
+    }
+
+    /**
+     * Recalculates the byte counts of all users from the File topics and the actual file sizes, and corrects the
+     * stored byte counts where they have drifted. Runs in its own transaction.
+     * <p>
+     * A file changed while the File topics are scanned is possibly not yet reflected in the recalculated byte count.
+     * This is corrected by the next run.
+     */
+    void reconcile() {
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            logger.info("### Reconciling disk usage ledger");
+            Map<String, Long> occupiedSpace = calculateOccupiedSpace();
+            int corrected = 0;
+            for (Topic usernameTopic : dmx.getTopicsByType(USERNAME)) {
+                String username = usernameTopic.getSimpleValue().toString();
+                long actual = occupiedSpace.getOrDefault(username, 0L);
+                dmx.acquireWriteLock(usernameTopic.getId());
+                if (!usernameTopic.hasProperty(OCCUPIED_SPACE) ||
+                        (Long) usernameTopic.getProperty(OCCUPIED_SPACE) != actual) {
+                    storeOccupiedSpace(usernameTopic, actual);
+                    corrected++;
+                }
+            }
+            tx.success();
+            logger.info("### Reconciling disk usage ledger complete -- " + corrected + " users corrected");
+        } catch (Exception e) {
+            throw new RuntimeException("Reconciling disk usage ledger failed", e);
+        } finally {
+            tx.finish();
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    private long initOccupiedSpace(Topic usernameTopic, String username) {
+        dmx.acquireWriteLock(usernameTopic.getId());
+        // another transaction might have initialized the byte count meanwhile
+        if (usernameTopic.hasProperty(OCCUPIED_SPACE)) {
+            return (Long) usernameTopic.getProperty(OCCUPIED_SPACE);
+        }
+        long occupiedSpace = calculateOccupiedSpace().getOrDefault(username, 0L);
+        logger.info("### Initializing disk usage of user \"" + username + "\" => " + occupiedSpace + " bytes");
+        storeOccupiedSpace(usernameTopic, occupiedSpace);
+        return occupiedSpace;
+    }
+
+    /**
+     * Calculates the disk space occupied by each user's files in a single pass over all File topics.
+     *
+     * @return  key: username, value: number of bytes.
+     */
+    private Map<String, Long> calculateOccupiedSpace() {
+        PrivilegedAccess pa = dmx.getPrivilegedAccess();
+        Map<String, Long> occupiedSpace = new HashMap();
+        for (Topic fileTopic : dmx.getTopicsByType(FILE)) {
+            long fileTopicId = fileTopic.getId();
+            String creator = pa.getCreator(fileTopicId);
+            if (creator != null) {
+                try {
+                    occupiedSpace.merge(creator, fs.getFile(fileTopicId).length(), Long::sum);
+                } catch (Exception e) {
+                    // Note: file might be deleted meanwhile
+                }
+            }
+        }
+        return occupiedSpace;
+    }
+
+    private void storeOccupiedSpace(Topic usernameTopic, long occupiedSpace) {
+        usernameTopic.setProperty(OCCUPIED_SPACE, occupiedSpace, false);     // addToIndex=false
+    }
+}
@@ -18,6 +18,7 @@ import systems.dmx.core.service.EventListener;
 import systems.dmx.core.service.Transactional;
 import systems.dmx.core.service.accesscontrol.Operation;
 import systems.dmx.core.service.accesscontrol.PrivilegedAccess;
+import systems.dmx.core.service.event.PreDeleteTopic;
 import systems.dmx.core.service.event.StaticResourceFilter;
 import systems.dmx.core.util.DMXUtils;
 import systems.dmx.core.util.JavaUtils;
@@ -45,6 +46,10 @@ import java.io.OutputStream;
 import java.net.URL;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -53,19 +58,24 @@ import java.util.regex.Pattern;
 
 @Path("/files")
 @Produces("application/json")
-public class FilesPlugin extends PluginActivator implements FilesService, StaticResourceFilter {
+public class FilesPlugin extends PluginActivator implements FilesService, StaticResourceFilter, PreDeleteTopic {
 
     // ---------------------------------------------------------------------------------------------- Instance Variables
 
     @Context
     private HttpServletRequest request;
 
+    private DiskUsageLedger diskUsage;
+    private ScheduledExecutorService reconciliation;
+
     // ------------------------------------------------------------------------------------------------------- Constants
 
     private static final String FILE_REPO_PATH = System.getProperty("dmx.filerepo.path", "/");
     private static final String FILE_REPOSITORY_PATH = canonizePath(FILE_REPO_PATH);
     private static final boolean FILE_REPOSITORY_PER_WORKSPACE = Boolean.getBoolean("dmx.filerepo.per_workspace");
     private static final int DISK_QUOTA_MB = Integer.getInteger("dmx.filerepo.disk_quota", -1);
+    private static final int RECONCILIATION_INTERVAL = Integer.getInteger(
+        "dmx.filerepo.disk_usage_reconciliation_interval", 24);     // in hours
     // Note: the default values are required in case no config file is in effect. This applies when DM is started
     // via feature:install from Karaf. The default value must match the value defined in project POM.
 
@@ -82,7 +92,8 @@ public class FilesPlugin extends PluginActivator implements FilesService, Static
             "\n  dmx.filerepo.path = \"" + FILE_REPO_PATH + "\" (canonized = \"" + FILE_REPOSITORY_PATH +
                 "\", root_dir = " + IS_ROOT_DIR + ")" +
             "\n  dmx.filerepo.per_workspace = " + FILE_REPOSITORY_PER_WORKSPACE +
-            "\n  dmx.filerepo.disk_quota = " + DISK_QUOTA_MB);
+            "\n  dmx.filerepo.disk_quota = " + DISK_QUOTA_MB +
+            "\n  dmx.filerepo.disk_usage_reconciliation_interval = " + RECONCILIATION_INTERVAL);
     }
 
     // Events
@@ -228,9 +239,13 @@ public class FilesPlugin extends PluginActivator implements FilesService, Static
             in.close();
             out.close();
             //
-            // 3) create topic
-            // ### TODO: think about overwriting an existing file.
-            // ### FIXME: in this case the existing file topic is not updated and might reflect e.g. the wrong size.
+            // 3) file system representation
+            // if an existing file was overwritten its File topic is updated
+            Topic fileTopic = fetchFileTopic(repoPath(file));
+            if (fileTopic != null) {
+                updateFileSize(fileTopic, file);
+                return fileTopic.loadChildTopics();
+            }
             return getFileTopic(repoPath);
         } catch (Exception e) {
             throw new RuntimeException(operation + " failed", e);
@@ -428,6 +443,15 @@ public class FilesPlugin extends PluginActivator implements FilesService, Static
 
 
 
+    // === Disk Usage ===
+
+    @Override
+    public long getOccupiedSpace(String username) {
+        return diskUsage.getOccupiedSpace(username);
+    }
+
+
+
     // *************
     // *** Hooks ***
     // *************
@@ -437,6 +461,15 @@ public class FilesPlugin extends PluginActivator implements FilesService, Static
     @Override
     public void init() {
         publishFileSystem(FILE_REPOSITORY_URI, FILE_REPOSITORY_PATH);
+        diskUsage = new DiskUsageLedger(dmx, this);
+        startReconciliation();
+    }
+
+    @Override
+    public void shutdown() {
+        if (reconciliation != null) {
+            reconciliation.shutdownNow();
+        }
     }
 
 
@@ -468,6 +501,17 @@ public class FilesPlugin extends PluginActivator implements FilesService, Static
         }
     }
 
+    /**
+     * Frees the disk space accounted for a File topic which is about to be deleted.
+     */
+    @Override
+    public void preDeleteTopic(Topic topic) {
+        if (topic.getTypeUri().equals(FILE)) {
+            String creator = dmx.getPrivilegedAccess().getCreator(topic.getId());
+            diskUsage.add(creator, -topic.getChildTopics().getLong(SIZE, 0));
+        }
+    }
+
 
 
     // ******************
@@ -579,7 +623,24 @@ public class FilesPlugin extends PluginActivator implements FilesService, Static
             childTopics.set(MEDIA_TYPE, mediaType);
         }
         //
-        return createFileOrFolderTopic(mf.newTopicModel(FILE, childTopics));      // throws Exception
+        Topic fileTopic = createFileOrFolderTopic(mf.newTopicModel(FILE, childTopics));      // throws Exception
+        diskUsage.add(dmx.getPrivilegedAccess().getCreator(fileTopic.getId()), path.length());
+        return fileTopic;
+    }
+
+    /**
+     * Updates the "Size" of a File topic after its file was overwritten, and adjusts the disk usage of the file's
+     * creator accordingly.
+     *
+     * @param   path    A canonic absolute path.
+     */
+    private void updateFileSize(Topic fileTopic, File path) {
+        long oldSize = fileTopic.getChildTopics().getLong(SIZE, 0);
+        long newSize = path.length();
+        if (newSize != oldSize) {
+            fileTopic.update(mf.newChildTopicsModel().set(SIZE, newSize));
+            diskUsage.add(dmx.getPrivilegedAccess().getCreator(fileTopic.getId()), newSize - oldSize);
+        }
     }
 
     /**
@@ -795,6 +856,31 @@ public class FilesPlugin extends PluginActivator implements FilesService, Static
         new DiskQuotaCheck(request, dmx).check(fileSize);
     }
 
+    // ---
+
+    /**
+     * Schedules the periodic disk usage reconciliation, unless disabled
+     * (<code>dmx.filerepo.disk_usage_reconciliation_interval</code> &lt;= 0).
+     */
+    private void startReconciliation() {
+        if (RECONCILIATION_INTERVAL <= 0) {
+            logger.info("### Disk usage reconciliation is disabled");
+            return;
+        }
+        reconciliation = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dmx-disk-usage-reconciliation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reconciliation.scheduleWithFixedDelay(() -> {
+            try {
+                diskUsage.reconcile();
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Disk usage reconciliation failed", e);
+            }
+        }, RECONCILIATION_INTERVAL, RECONCILIATION_INTERVAL, TimeUnit.HOURS);
+    }
+
     private String userInfo(String username) {
         return "user " + (username != null ? "\"" + username + "\"" : "<anonymous>");
     }
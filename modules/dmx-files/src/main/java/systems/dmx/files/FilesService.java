@@ -274,4 +274,17 @@ public interface FilesService extends PathMapper {
     // ---
 
     int openFile(long fileTopicId);
+
+
+
+    // === Disk Usage ===
+
+    /**
+     * Returns the disk space occupied by the files created by the given user (in bytes).
+     * <p>
+     * The value is maintained incrementally and periodically reconciled with the actual file sizes (see
+     * <code>dmx.filerepo.disk_usage_reconciliation_interval</code>). So it is cheap to call but might be slightly
+     * off for a while.
+     */
+    long getOccupiedSpace(String username);
 }
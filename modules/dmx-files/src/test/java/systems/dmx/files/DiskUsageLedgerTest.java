@@ -0,0 +1,171 @@
+package systems.dmx.files;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import systems.dmx.core.Topic;
+import systems.dmx.core.model.SimpleValue;
+import systems.dmx.core.service.CoreService;
+import systems.dmx.core.service.accesscontrol.PrivilegedAccess;
+import systems.dmx.core.storage.spi.DMXTransaction;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+import static systems.dmx.files.Constants.FILE;
+import static systems.dmx.files.Constants.OCCUPIED_SPACE;
+
+public class DiskUsageLedgerTest {
+
+    private static final String USERNAME = "dmx.accesscontrol.username";
+
+    private final CoreService dmx = mock();
+    private final PrivilegedAccess pa = mock();
+    private final FilesService fs = mock();
+
+    private final Topic alice = usernameTopic(1, "alice");
+    private final Topic bob = usernameTopic(2, "bob");
+
+    private final DiskUsageLedger subject = new DiskUsageLedger(dmx, fs);
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    public void before() throws Exception {
+        when(dmx.getPrivilegedAccess()).thenReturn(pa);
+        when(dmx.beginTx()).thenReturn(mock(DMXTransaction.class));
+        when(dmx.getTopicsByType(USERNAME)).thenReturn(Arrays.asList(alice, bob));
+        when(pa.getUsernameTopic("alice")).thenReturn(alice);
+        when(pa.getUsernameTopic("bob")).thenReturn(bob);
+        // alice has 2 files (10 + 20 bytes), bob has 1 file (5 bytes)
+        List<Topic> fileTopics = Arrays.asList(
+            fileTopic(11, "alice", 10), fileTopic(12, "alice", 20), fileTopic(13, "bob", 5)
+        );
+        when(dmx.getTopicsByType(FILE)).thenReturn(fileTopics);
+    }
+
+    // --- getOccupiedSpace ---
+
+    @Test
+    void getOccupiedSpace_returns_stored_byte_count() {
+        stored(alice, 42L);
+        assertThat(subject.getOccupiedSpace("alice")).isEqualTo(42);
+        verify(dmx, never()).getTopicsByType(FILE);
+    }
+
+    @Test
+    void getOccupiedSpace_initializes_byte_count_from_file_topics() {
+        assertThat(subject.getOccupiedSpace("alice")).isEqualTo(30);
+        InOrder inOrder = inOrder(dmx, alice);
+        inOrder.verify(dmx).acquireWriteLock(1);
+        inOrder.verify(alice).setProperty(OCCUPIED_SPACE, 30L, false);
+    }
+
+    @Test
+    void getOccupiedSpace_does_not_recalculate_a_byte_count_initialized_concurrently() {
+        // not stored at first check, but stored once the lock is acquired
+        when(alice.hasProperty(OCCUPIED_SPACE)).thenReturn(false, true);
+        when(alice.getProperty(OCCUPIED_SPACE)).thenReturn(7L);
+        assertThat(subject.getOccupiedSpace("alice")).isEqualTo(7);
+        verify(dmx, never()).getTopicsByType(FILE);
+        verify(alice, never()).setProperty(eq(OCCUPIED_SPACE), any(), anyBoolean());
+    }
+
+    @Test
+    void getOccupiedSpace_of_unknown_user_is_0() {
+        assertThat(subject.getOccupiedSpace("carol")).isEqualTo(0);
+    }
+
+    // --- add ---
+
+    @Test
+    void add_locks_before_reading_the_byte_count() {
+        stored(alice, 100L);
+        subject.add("alice", 23);
+        InOrder inOrder = inOrder(dmx, alice);
+        inOrder.verify(dmx).acquireWriteLock(1);
+        inOrder.verify(alice).getProperty(OCCUPIED_SPACE);
+        inOrder.verify(alice).setProperty(OCCUPIED_SPACE, 123L, false);
+    }
+
+    @Test
+    void add_does_not_go_below_0() {
+        stored(alice, 10L);
+        subject.add("alice", -25);
+        verify(alice).setProperty(OCCUPIED_SPACE, 0L, false);
+    }
+
+    @Test
+    void add_ignores_uninitialized_byte_count() {
+        subject.add("alice", 23);
+        verify(alice, never()).setProperty(eq(OCCUPIED_SPACE), any(), anyBoolean());
+    }
+
+    @Test
+    void add_ignores_anonymous_creator_and_zero_delta() {
+        subject.add(null, 23);
+        subject.add("alice", 0);
+        verifyNoInteractions(pa);
+    }
+
+    // --- reconcile ---
+
+    @Test
+    void reconcile_corrects_drifted_byte_counts_only() {
+        stored(alice, 30L);     // correct
+        stored(bob, 99L);       // drifted
+        subject.reconcile();
+        verify(alice, never()).setProperty(eq(OCCUPIED_SPACE), any(), anyBoolean());
+        verify(bob).setProperty(OCCUPIED_SPACE, 5L, false);
+        verify(dmx).acquireWriteLock(1);
+        verify(dmx).acquireWriteLock(2);
+    }
+
+    @Test
+    void reconcile_initializes_missing_byte_counts() {
+        subject.reconcile();
+        verify(alice).setProperty(OCCUPIED_SPACE, 30L, false);
+        verify(bob).setProperty(OCCUPIED_SPACE, 5L, false);
+    }
+
+    @Test
+    void reconcile_commits_its_transaction() {
+        DMXTransaction tx = mock();
+        when(dmx.beginTx()).thenReturn(tx);
+        when(dmx.getTopicsByType(USERNAME)).thenReturn(Collections.emptyList());
+        subject.reconcile();
+        verify(tx).success();
+        verify(tx).finish();
+    }
+
+    // ---
+
+    private Topic usernameTopic(long id, String username) {
+        Topic topic = mock();
+        when(topic.getId()).thenReturn(id);
+        when(topic.getSimpleValue()).thenReturn(new SimpleValue(username));
+        return topic;
+    }
+
+    private Topic fileTopic(long id, String creator, int size) throws Exception {
+        File file = Files.write(dir.resolve("file-" + id), new byte[size]).toFile();
+        Topic topic = mock();
+        when(topic.getId()).thenReturn(id);
+        when(pa.getCreator(id)).thenReturn(creator);
+        when(fs.getFile(id)).thenReturn(file);
+        return topic;
+    }
+
+    private void stored(Topic usernameTopic, long occupiedSpace) {
+        when(usernameTopic.hasProperty(OCCUPIED_SPACE)).thenReturn(true);
+        when(usernameTopic.getProperty(OCCUPIED_SPACE)).thenReturn(occupiedSpace);
+    }
+}
@@ -0,0 +1,239 @@
+package systems.dmx.storage.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+
+
+/**
+ * The exact index and the fulltext index of either the topics or the associations.
+ * <p>
+ * The index is derived from the records: {@link #add} indexes all the index entries of a record, {@link #remove}
+ * removes them again. So a record must be removed (in its indexed version) before a changed version is added.
+ * <p>
+ * Mirrors the Lucene indexes of the Neo4j storage:
+ * <ul>
+ * <li>Exact index: string values are matched as a whole, case-sensitive. Numeric values (properties) are indexed
+ *     numerically. They are found only by a numeric lookup, and can be queried by range.</li>
+ * <li>Fulltext index: texts are split at whitespace and lower-cased. A text is found by any of its tokens.</li>
+ * </ul>
+ * All lookups return a new set, to be changed by the caller.
+ * <p>
+ * Not thread-safe. Access is guarded by the storage.
+ */
+class ContentIndex {
+
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    /**
+     * Orders the integral numbers before the floating point numbers, and within these by value.
+     * Integral numbers and floating point numbers are indexed separately, as in Lucene.
+     */
+    private static final Comparator<Number> NUMBERS = (n1, n2) -> {
+        boolean integral1 = n1 instanceof Long;
+        boolean integral2 = n2 instanceof Long;
+        if (integral1 != integral2) {
+            return integral1 ? -1 : 1;
+        }
+        return integral1 ? Long.compare(n1.longValue(), n2.longValue()) :
+                           Double.compare(n1.doubleValue(), n2.doubleValue());
+    };
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private Map<String, Map<String, Set<Long>>> exact = new HashMap();          // key -> value -> IDs
+    private Map<String, NavigableMap<Number, Set<Long>>> numeric = new HashMap(); // key -> value -> IDs
+    private Map<String, Map<String, Set<Long>>> fulltext = new HashMap();       // key -> token -> IDs
+
+    private Map<Long, NodeRecord> records = new HashMap();                      // the indexed records
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    void add(NodeRecord record) {
+        for (Map.Entry<String, Object> entry : record.exact.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Number) {
+                add(numeric.computeIfAbsent(entry.getKey(), key -> new TreeMap(NUMBERS)), (Number) value, record.id);
+            } else {
+                add(exact.computeIfAbsent(entry.getKey(), key -> new HashMap()), (String) value, record.id);
+            }
+        }
+        for (Map.Entry<String, List<String>> entry : record.fulltext.entrySet()) {
+            Map<String, Set<Long>> tokens = fulltext.computeIfAbsent(entry.getKey(), key -> new HashMap());
+            for (String text : entry.getValue()) {
+                for (String token : tokenize(text)) {
+                    add(tokens, token, record.id);
+                }
+            }
+        }
+        records.put(record.id, record);
+    }
+
+    void remove(NodeRecord record) {
+        for (Map.Entry<String, Object> entry : record.exact.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Number) {
+                remove(numeric.get(entry.getKey()), (Number) value, record.id);
+            } else {
+                remove(exact.get(entry.getKey()), (String) value, record.id);
+            }
+        }
+        for (Map.Entry<String, List<String>> entry : record.fulltext.entrySet()) {
+            Map<String, Set<Long>> tokens = fulltext.get(entry.getKey());
+            for (String text : entry.getValue()) {
+                for (String token : tokenize(text)) {
+                    remove(tokens, token, record.id);
+                }
+            }
+        }
+        records.remove(record.id);
+    }
+
+    // --- Exact Index ---
+
+    Set<Long> get(String key, String value) {
+        return copy(get(exact, key).get(value));
+    }
+
+    Set<Long> get(String key, Predicate<String> value) {
+        return collect(get(exact, key), value);
+    }
+
+    Set<Long> getNumeric(String key, Number value) {
+        NavigableMap<Number, Set<Long>> values = numeric.get(key);
+        return copy(values != null ? values.get(numeric(value)) : null);
+    }
+
+    /**
+     * Both bounds are inclusive. A <code>null</code> bound is open. Only values of the same kind (integral or
+     * floating point) as the bounds are found.
+     */
+    Set<Long> getNumericRange(String key, Number from, Number to) {
+        NavigableMap<Number, Set<Long>> values = numeric.get(key);
+        if (values == null || from == null && to == null) {
+            return new HashSet();
+        }
+        Number _from = numeric(from != null ? from : to);
+        Number _to   = numeric(to   != null ? to   : from);
+        boolean integral = _from instanceof Long;
+        if (from == null) {
+            _from = integral ? (Number) Long.MIN_VALUE : (Number) Double.NEGATIVE_INFINITY;
+        }
+        if (to == null) {
+            _to = integral ? (Number) Long.MAX_VALUE : (Number) Double.POSITIVE_INFINITY;
+        }
+        if (NUMBERS.compare(_from, _to) > 0) {
+            return new HashSet();
+        }
+        return union(values.subMap(_from, true, _to, true).values());
+    }
+
+    // --- Fulltext Index ---
+
+    Set<Long> getToken(String key, String token) {
+        return copy(get(fulltext, key).get(token));
+    }
+
+    Set<Long> getToken(String key, Predicate<String> token) {
+        return collect(get(fulltext, key), token);
+    }
+
+    /**
+     * Returns the texts indexed for the given record under the given key.
+     */
+    List<String> texts(long id, String key) {
+        NodeRecord record = records.get(id);
+        List<String> texts = record != null ? record.fulltext.get(key) : null;
+        return texts != null ? texts : new ArrayList();
+    }
+
+    // ---
+
+    /**
+     * The fulltext analysis: splits the text at whitespace and lower-cases the tokens.
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            if (i == text.length() || Character.isWhitespace(text.charAt(i))) {
+                if (start != -1) {
+                    tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                    start = -1;
+                }
+            } else if (start == -1) {
+                start = i;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Normalizes a number as indexed: integral numbers to Long, floating point numbers to Double.
+     */
+    static Number numeric(Number value) {
+        if (value instanceof Double || value instanceof Float) {
+            return value.doubleValue();
+        }
+        return value.longValue();
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    private <K> void add(Map<K, Set<Long>> postings, K value, long id) {
+        postings.computeIfAbsent(value, v -> new HashSet()).add(id);
+    }
+
+    private <K> void remove(Map<K, Set<Long>> postings, K value, long id) {
+        // Note: a token may occur several times in a record, so it may be removed already
+        Set<Long> ids = postings.get(value);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                postings.remove(value);
+            }
+        }
+    }
+
+    // ---
+
+    private Map<String, Set<Long>> get(Map<String, Map<String, Set<Long>>> index, String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Tried to look up an index with a null key");
+        }
+        Map<String, Set<Long>> values = index.get(key);
+        return values != null ? values : new HashMap();
+    }
+
+    private Set<Long> collect(Map<String, Set<Long>> values, Predicate<String> value) {
+        Set<Long> ids = new HashSet();
+        for (Map.Entry<String, Set<Long>> entry : values.entrySet()) {
+            if (value.test(entry.getKey())) {
+                ids.addAll(entry.getValue());
+            }
+        }
+        return ids;
+    }
+
+    private Set<Long> union(Collection<Set<Long>> postings) {
+        Set<Long> ids = new HashSet();
+        for (Set<Long> _ids : postings) {
+            ids.addAll(_ids);
+        }
+        return ids;
+    }
+
+    private Set<Long> copy(Set<Long> ids) {
+        return ids != null ? new HashSet(ids) : new HashSet();
+    }
+}
@@ -0,0 +1,380 @@
+package systems.dmx.storage.memory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+
+
+/**
+ * A query against a {@link ContentIndex}, parsed from the subset of the Lucene query syntax the Neo4j storage
+ * accepts: terms, wildcard terms (<code>*</code>, <code>?</code>), quoted phrases, fields (<code>key:term</code>),
+ * groups (<code>( )</code>), the modifiers <code>+</code>, <code>-</code>, <code>!</code>, <code>NOT</code>, and the
+ * conjunctions <code>AND</code>, <code>&amp;&amp;</code>, <code>OR</code>, <code>||</code>. A backslash escapes the
+ * next character. The default operator is OR.
+ * <p>
+ * Against the exact index terms are matched case-sensitive, and a phrase is matched as a whole. Against the fulltext
+ * index terms and phrases are analyzed like the indexed texts (see {@link ContentIndex#tokenize}).
+ */
+abstract class IndexQuery {
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    /**
+     * @return  the IDs of the records matching this query.
+     */
+    abstract Set<Long> hits(ContentIndex index);
+
+    // ---
+
+    /**
+     * @param   key         the default field.
+     * @param   fulltext    whether the query is run against a fulltext index.
+     */
+    static IndexQuery parse(String key, String query, boolean fulltext) {
+        try {
+            return new Parser(query, fulltext).parseQuery(key, false);
+        } catch (Exception e) {
+            throw new RuntimeException("Parsing query \"" + query + "\" failed", e);
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Classes
+
+    private enum Occur {
+        MUST, SHOULD, MUST_NOT;
+    }
+
+    private static class TermQuery extends IndexQuery {
+
+        private String key;
+        private String term;
+        private boolean fulltext;
+
+        private TermQuery(String key, String term, boolean fulltext) {
+            this.key = key;
+            this.term = term;
+            this.fulltext = fulltext;
+        }
+
+        @Override
+        Set<Long> hits(ContentIndex index) {
+            return fulltext ? index.getToken(key, term) : index.get(key, term);
+        }
+    }
+
+    private static class WildcardQuery extends IndexQuery {
+
+        private String key;
+        private Pattern pattern;
+        private boolean fulltext;
+
+        private WildcardQuery(String key, Pattern pattern, boolean fulltext) {
+            this.key = key;
+            this.pattern = pattern;
+            this.fulltext = fulltext;
+        }
+
+        @Override
+        Set<Long> hits(ContentIndex index) {
+            return fulltext ? index.getToken(key, value -> pattern.matcher(value).matches()) :
+                              index.get(key, value -> pattern.matcher(value).matches());
+        }
+    }
+
+    /**
+     * A sequence of (fulltext) tokens occurring consecutively in an indexed text.
+     */
+    private static class PhraseQuery extends IndexQuery {
+
+        private String key;
+        private List<String> tokens;
+
+        private PhraseQuery(String key, List<String> tokens) {
+            this.key = key;
+            this.tokens = tokens;
+        }
+
+        @Override
+        Set<Long> hits(ContentIndex index) {
+            Set<Long> ids = index.getToken(key, tokens.get(0));
+            for (String token : tokens.subList(1, tokens.size())) {
+                ids.retainAll(index.getToken(key, token));
+            }
+            ids.removeIf(id -> !containsPhrase(index.texts(id, key)));
+            return ids;
+        }
+
+        private boolean containsPhrase(List<String> texts) {
+            for (String text : texts) {
+                if (Collections.indexOfSubList(ContentIndex.tokenize(text), tokens) != -1) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Matches the records which match all MUST clauses (or if there are none: at least one SHOULD clause), and no
+     * MUST_NOT clause. As in Lucene a query with only MUST_NOT clauses matches nothing.
+     */
+    private static class BooleanQuery extends IndexQuery {
+
+        private List<IndexQuery> queries = new ArrayList();
+        private List<Occur> occurs = new ArrayList();
+
+        @Override
+        Set<Long> hits(ContentIndex index) {
+            Set<Long> ids = null;
+            for (int i = 0; i < queries.size(); i++) {
+                if (occurs.get(i) == Occur.MUST) {
+                    Set<Long> hits = queries.get(i).hits(index);
+                    if (ids == null) {
+                        ids = hits;
+                    } else {
+                        ids.retainAll(hits);
+                    }
+                }
+            }
+            if (ids == null) {
+                ids = new HashSet();
+                for (int i = 0; i < queries.size(); i++) {
+                    if (occurs.get(i) == Occur.SHOULD) {
+                        ids.addAll(queries.get(i).hits(index));
+                    }
+                }
+            }
+            for (int i = 0; i < queries.size(); i++) {
+                if (occurs.get(i) == Occur.MUST_NOT && !ids.isEmpty()) {
+                    ids.removeAll(queries.get(i).hits(index));
+                }
+            }
+            return ids;
+        }
+
+        /**
+         * Adds a clause the way Lucene's query parser does (with default operator OR).
+         *
+         * @param   query   may be null (e.g. if the term is analyzed to nothing). Then only the conjunction applies.
+         */
+        private void add(IndexQuery query, Token conj, Token mod) {
+            boolean and = conj != null && conj.type == TokenType.AND;
+            if (and && !occurs.isEmpty()) {
+                int last = occurs.size() - 1;
+                if (occurs.get(last) != Occur.MUST_NOT) {
+                    occurs.set(last, Occur.MUST);
+                }
+            }
+            if (query == null) {
+                return;
+            }
+            boolean prohibited = mod != null && mod.type == TokenType.NOT;
+            boolean required = mod != null && mod.type == TokenType.PLUS || and && !prohibited;
+            queries.add(query);
+            occurs.add(prohibited ? Occur.MUST_NOT : required ? Occur.MUST : Occur.SHOULD);
+        }
+    }
+
+    // --- Parser ---
+
+    private enum TokenType {
+        TERM, PHRASE, FIELD, LPAREN, RPAREN, PLUS, NOT, AND, OR, EOF;
+    }
+
+    private static class Token {
+
+        private TokenType type;
+        private String text;            // TERM, PHRASE, FIELD: the unescaped text
+        private String regex;           // TERM: the wildcard pattern, null if the term has no wildcard
+
+        private Token(TokenType type) {
+            this.type = type;
+        }
+    }
+
+    private static class Parser {
+
+        private String query;
+        private boolean fulltext;
+        private int pos;
+        private Token token;            // the current token
+
+        private Parser(String query, boolean fulltext) {
+            this.query = query;
+            this.fulltext = fulltext;
+            next();
+        }
+
+        private BooleanQuery parseQuery(String key, boolean nested) {
+            BooleanQuery query = new BooleanQuery();
+            while (token.type != TokenType.EOF && !(nested && token.type == TokenType.RPAREN)) {
+                Token conj = null;
+                Token mod = null;
+                if (token.type == TokenType.AND || token.type == TokenType.OR) {
+                    conj = token;
+                    next();
+                }
+                if (token.type == TokenType.PLUS || token.type == TokenType.NOT) {
+                    mod = token;
+                    next();
+                }
+                query.add(parseClause(key), conj, mod);
+            }
+            return query;
+        }
+
+        private IndexQuery parseClause(String key) {
+            if (token.type == TokenType.FIELD) {
+                key = token.text;
+                next();
+            }
+            Token clause = token;
+            next();
+            switch (clause.type) {
+            case TERM:
+                return clause.regex != null ? wildcardQuery(key, clause.regex) : termQuery(key, clause.text);
+            case PHRASE:
+                return termQuery(key, clause.text);
+            case LPAREN:
+                BooleanQuery query = parseQuery(key, true);
+                if (token.type != TokenType.RPAREN) {
+                    throw new IllegalArgumentException("Missing \")\" at position " + pos);
+                }
+                next();
+                return query;
+            default:
+                throw new IllegalArgumentException("Unexpected " + clause.type + " at position " + pos);
+            }
+        }
+
+        // ---
+
+        private IndexQuery termQuery(String key, String text) {
+            if (!fulltext) {
+                return new TermQuery(key, text, false);
+            }
+            List<String> tokens = ContentIndex.tokenize(text);
+            switch (tokens.size()) {
+            case 0:
+                return null;
+            case 1:
+                return new TermQuery(key, tokens.get(0), true);
+            default:
+                return new PhraseQuery(key, tokens);
+            }
+        }
+
+        private IndexQuery wildcardQuery(String key, String regex) {
+            return new WildcardQuery(key, Pattern.compile(regex, Pattern.DOTALL), fulltext);
+        }
+
+        // --- Lexer ---
+
+        private void next() {
+            while (pos < query.length() && Character.isWhitespace(query.charAt(pos))) {
+                pos++;
+            }
+            if (pos == query.length()) {
+                token = new Token(TokenType.EOF);
+                return;
+            }
+            char c = query.charAt(pos);
+            switch (c) {
+            case '(':
+                pos++;
+                token = new Token(TokenType.LPAREN);
+                break;
+            case ')':
+                pos++;
+                token = new Token(TokenType.RPAREN);
+                break;
+            case '+':
+                pos++;
+                token = new Token(TokenType.PLUS);
+                break;
+            case '-':
+            case '!':
+                pos++;
+                token = new Token(TokenType.NOT);
+                break;
+            case '"':
+                pos++;
+                token = phrase();
+                break;
+            default:
+                token = term();
+            }
+        }
+
+        private Token phrase() {
+            StringBuilder text = new StringBuilder();
+            while (pos < query.length() && query.charAt(pos) != '"') {
+                char c = query.charAt(pos++);
+                if (c == '\\' && pos < query.length()) {
+                    c = query.charAt(pos++);
+                }
+                text.append(c);
+            }
+            if (pos == query.length()) {
+                throw new IllegalArgumentException("Missing closing \"");
+            }
+            pos++;
+            Token token = new Token(TokenType.PHRASE);
+            token.text = text.toString();
+            return token;
+        }
+
+        private Token term() {
+            StringBuilder text = new StringBuilder();
+            StringBuilder regex = new StringBuilder();
+            boolean wildcard = false;
+            boolean escaped = false;
+            while (pos < query.length()) {
+                char c = query.charAt(pos);
+                if (Character.isWhitespace(c) || c == '(' || c == ')' || c == '"') {
+                    break;
+                }
+                pos++;
+                if (c == '\\' && pos < query.length()) {
+                    c = query.charAt(pos++);
+                    escaped = true;
+                } else if (c == ':' && text.length() > 0) {
+                    Token token = new Token(TokenType.FIELD);
+                    token.text = text.toString();
+                    return token;
+                } else if (c == '*' || c == '?') {
+                    wildcard = true;
+                    regex.append(c == '*' ? ".*" : ".");
+                    continue;
+                }
+                text.append(c);
+                // Note: as in Lucene a wildcard term of the fulltext index is lower-cased (but not tokenized)
+                String literal = String.valueOf(fulltext ? Character.toLowerCase(c) : c);
+                regex.append(Pattern.quote(literal));
+            }
+            String _text = text.toString();
+            Token token = new Token(keyword(_text, escaped || wildcard));
+            token.text = _text;
+            token.regex = wildcard ? regex.toString() : null;
+            return token;
+        }
+
+        private TokenType keyword(String text, boolean literal) {
+            if (!literal) {
+                if (text.equals("AND") || text.equals("&&")) {
+                    return TokenType.AND;
+                } else if (text.equals("OR") || text.equals("||")) {
+                    return TokenType.OR;
+                } else if (text.equals("NOT")) {
+                    return TokenType.NOT;
+                }
+            }
+            return TokenType.TERM;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package systems.dmx.storage.memory;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+
+
+/**
+ * All the indexes of a set of records: the content indexes (exact and fulltext) of the topics and of the
+ * associations, and the association metadata index (player ID -> associations, role type URI -> associations).
+ * <p>
+ * The storage maintains one instance for the committed records, and each transaction one for the records it has
+ * written. Like a {@link ContentIndex} the instance is derived from the records by {@link #add} and {@link #remove}.
+ * <p>
+ * Not thread-safe. Access is guarded by the storage.
+ */
+class Indexes {
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    final ContentIndex topics = new ContentIndex();
+    final ContentIndex assocs = new ContentIndex();
+
+    private Map<Long, Set<Long>> playerAssocs = new HashMap();      // player ID -> assoc IDs
+    private Map<String, Set<Long>> roleAssocs = new HashMap();      // role type URI -> assoc IDs
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    void add(NodeRecord record) {
+        if (record.is(NodeType.TOPIC)) {
+            topics.add(record);
+        } else if (record.is(NodeType.ASSOC)) {
+            assocs.add(record);
+            for (NodeRecord.Player player : record.players) {
+                add(playerAssocs, player.id, record.id);
+                add(roleAssocs, player.roleTypeUri, record.id);
+            }
+        }
+    }
+
+    void remove(NodeRecord record) {
+        if (record.is(NodeType.TOPIC)) {
+            topics.remove(record);
+        } else if (record.is(NodeType.ASSOC)) {
+            assocs.remove(record);
+            for (NodeRecord.Player player : record.players) {
+                remove(playerAssocs, player.id, record.id);
+                remove(roleAssocs, player.roleTypeUri, record.id);
+            }
+        }
+    }
+
+    // ---
+
+    ContentIndex content(NodeType nodeType) {
+        return nodeType == NodeType.TOPIC ? topics : assocs;
+    }
+
+    /**
+     * @return  the IDs of the associations the given topic or association is a player of.
+     */
+    Set<Long> playerAssocs(long playerId) {
+        return copy(playerAssocs.get(playerId));
+    }
+
+    /**
+     * @return  the IDs of the associations having a player with the given role type.
+     */
+    Set<Long> roleAssocs(String roleTypeUri) {
+        return copy(roleAssocs.get(roleTypeUri));
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    private <K> void add(Map<K, Set<Long>> postings, K key, long id) {
+        postings.computeIfAbsent(key, k -> new HashSet()).add(id);
+    }
+
+    private <K> void remove(Map<K, Set<Long>> postings, K key, long id) {
+        Set<Long> ids = postings.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                postings.remove(key);
+            }
+        }
+    }
+
+    private Set<Long> copy(Set<Long> ids) {
+        return ids != null ? new HashSet(ids) : new HashSet();
+    }
+}
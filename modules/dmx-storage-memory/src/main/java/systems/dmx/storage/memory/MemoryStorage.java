@@ -0,0 +1,1257 @@
+package systems.dmx.storage.memory;
+
+import static systems.dmx.core.Constants.*;
+import systems.dmx.core.impl.AssocModelImpl;
+import systems.dmx.core.impl.DMXObjectModelImpl;
+import systems.dmx.core.impl.ModelFactoryImpl;
+import systems.dmx.core.impl.RelatedAssocModelImpl;
+import systems.dmx.core.impl.RelatedTopicModelImpl;
+import systems.dmx.core.impl.TopicModelImpl;
+import systems.dmx.core.model.AssocPlayerModel;
+import systems.dmx.core.model.PlayerModel;
+import systems.dmx.core.model.RelatedObjectModel;
+import systems.dmx.core.model.SimpleValue;
+import systems.dmx.core.model.TopicPlayerModel;
+import systems.dmx.core.storage.spi.DMXStorage;
+import systems.dmx.core.storage.spi.DMXTransaction;
+import systems.dmx.core.storage.spi.ModelHits;
+import systems.dmx.core.storage.spi.ObjectHeader;
+import systems.dmx.core.util.JavaUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+
+
+/**
+ * A DMX storage which keeps all the data in memory. Nothing is persisted: the content is lost at shutdown.
+ * <p>
+ * The committed records are kept in an array, indexed by ID. The indexes (exact, fulltext, and association metadata)
+ * are kept in hash maps (see {@link Indexes}). Query semantics mirror the Neo4j storage, including the Lucene query
+ * syntax (see {@link IndexQuery}).
+ * <p>
+ * Transactions (see {@link MemoryTransaction}): readers see the committed records plus the writes of their own
+ * transaction. Committed record versions are never changed, a commit replaces them. Writing transactions are
+ * serialized. A write outside a transaction fails, a read outside a transaction sees the committed records.
+ */
+public class MemoryStorage implements DMXStorage {
+
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    // The max time (in seconds) a transaction waits for the writer lock
+    private static final long LOCK_TIMEOUT = Long.getLong("dmx.database.lock_timeout", 60);
+
+    // --- Property Keys ---
+    private static final String KEY_VALUE    = "value";
+
+    // --- Content Index Keys ---
+    private static final String KEY_URI      = "uri";                       // used as property key as well
+    private static final String KEY_TPYE_URI = "typeUri";                   // used as property key as well
+    private static final String KEY_FULLTEXT = "fulltext";
+
+    private static final Comparator<NodeRecord> BY_ID = (r1, r2) -> Long.compare(r1.id, r2.id);
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private NodeRecord[] records = new NodeRecord[1024];    // the committed records, index: ID
+    private Indexes indexes = new Indexes();                // the indexes of the committed records
+    private AtomicLong nextId = new AtomicLong(1);          // ID 0 is the root node
+
+    private ReadWriteLock lock = new ReentrantReadWriteLock();  // guards the committed records and their indexes
+    private ReentrantLock writerLock = new ReentrantLock();     // held by the writing transaction
+
+    private ThreadLocal<MemoryTransaction> tx = new ThreadLocal();  // the outermost transaction of the current thread
+
+    private ModelFactoryImpl mf;
+
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    MemoryStorage(ModelFactoryImpl mf) {
+        records[0] = new NodeRecord(0, null);   // as in Neo4j the root node exists from the start, unconfigured
+        this.mf = mf;
+    }
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+
+
+    // ******************
+    // *** DMXStorage ***
+    // ******************
+
+
+
+    // === Topics ===
+
+    @Override
+    public TopicModelImpl fetchTopic(long topicId) {
+        return buildTopic(fetchRecord(topicId, NodeType.TOPIC));
+    }
+
+    @Override
+    public List<TopicModelImpl> fetchTopics(String key, Object value) {
+        return buildTopics(find(index -> index.topics.get(key, value.toString())));
+    }
+
+    @Override
+    public List<TopicModelImpl> queryTopics(String key, Object value) {
+        return buildTopics(query(NodeType.TOPIC, key, value, false));
+    }
+
+    @Override
+    public List<TopicModelImpl> queryTopicsFulltext(String key, Object value) {
+        if (key == null) {
+            key = KEY_FULLTEXT;
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("Tried to call queryTopicsFulltext() with a null value Object (key=\"" +
+                key + "\")");
+        }
+        //
+        return buildTopics(query(NodeType.TOPIC, key, value, true));
+    }
+
+    @Override
+    public Iterable<TopicModelImpl> fetchAllTopics() {
+        return () -> new ModelIterator<>(NodeType.TOPIC, this::buildTopic);
+    }
+
+    @Override
+    public ModelHits<TopicModelImpl> fetchTopicHits(String key, Object value) {
+        return new RecordHits<>(find(index -> index.topics.get(key, value.toString())), this::buildTopic);
+    }
+
+    @Override
+    public ModelHits<TopicModelImpl> queryTopicHitsFulltext(String key, Object value) {
+        if (key == null) {
+            key = KEY_FULLTEXT;
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("Tried to call queryTopicHitsFulltext() with a null value Object " +
+                "(key=\"" + key + "\")");
+        }
+        //
+        return new RecordHits<>(query(NodeType.TOPIC, key, value, true), this::buildTopic);
+    }
+
+    // ---
+
+    @Override
+    public void storeTopic(TopicModelImpl topicModel) {
+        setDefaults(topicModel);
+        //
+        // 1) update DB
+        NodeRecord record = new NodeRecord(nextId.getAndIncrement(), NodeType.TOPIC);
+        checkUri(topicModel.getUri());
+        storeAndIndexExactValue(record, KEY_URI, topicModel.getUri(), true);
+        storeAndIndexExactValue(record, KEY_TPYE_URI, topicModel.getTypeUri(), true);
+        write(record);
+        //
+        // 2) update model
+        topicModel.setId(record.id);
+    }
+
+    @Override
+    public void storeTopicUri(long topicId, String uri) {
+        checkUri(uri);
+        update(topicId, NodeType.TOPIC, record -> storeAndIndexExactValue(record, KEY_URI, uri, true));
+    }
+
+    // Note: a storage implementation is not responsible for maintaining the "Instantiation" associations.
+    // This is performed at the application layer.
+    // Note: the association metadata index needs no update. The player type URIs are looked up at query time.
+    @Override
+    public void storeTopicTypeUri(long topicId, String topicTypeUri) {
+        update(topicId, NodeType.TOPIC, record -> storeAndIndexExactValue(record, KEY_TPYE_URI, topicTypeUri, true));
+    }
+
+    @Override
+    public void storeTopicValue(long topicId, SimpleValue value, String indexKey, boolean isHtmlValue) {
+        if (indexKey == null) {
+            throw new IllegalArgumentException("indexKey must be not null (value=\"" + value + "\")");
+        }
+        //
+        update(topicId, NodeType.TOPIC, record -> storeAndIndexValue(record, value, indexKey, isHtmlValue));
+    }
+
+    @Override
+    public void indexTopicFulltext(long topicId, String text, String indexKey) {
+        update(topicId, NodeType.TOPIC, record -> {
+            addFulltext(record, KEY_FULLTEXT, text);
+            addFulltext(record, indexKey, text);
+        });
+    }
+
+    // ---
+
+    @Override
+    public void deleteTopic(long topicId) {
+        fetchRecord(topicId, NodeType.TOPIC);
+        writeTx().write(topicId, null);
+    }
+
+
+
+    // === Associations ===
+
+    @Override
+    public AssocModelImpl fetchAssoc(long assocId) {
+        return buildAssoc(fetchRecord(assocId, NodeType.ASSOC));
+    }
+
+    @Override
+    public List<AssocModelImpl> fetchAssocs(String key, Object value) {
+        return buildAssocs(find(index -> index.assocs.get(key, value.toString())));
+    }
+
+    @Override
+    public List<AssocModelImpl> queryAssocs(String key, Object value) {
+        return buildAssocs(query(NodeType.ASSOC, key, value, false));
+    }
+
+    @Override
+    public List<AssocModelImpl> queryAssocsFulltext(String key, Object value) {
+        if (key == null) {
+            key = KEY_FULLTEXT;
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("Tried to call queryAssocsFulltext() with a null value Object (key=\"" +
+                key + "\")");
+        }
+        //
+        return buildAssocs(query(NodeType.ASSOC, key, value, true));
+    }
+
+    @Override
+    public List<AssocModelImpl> queryAssocsByRoleType(String roleTypeUri) {
+        return buildAssocs(find(index -> index.roleAssocs(roleTypeUri)));
+    }
+
+    @Override
+    public List<AssocModelImpl> fetchAssocs(String assocTypeUri, long topicId1, long topicId2, String roleTypeUri1,
+                                                                                               String roleTypeUri2) {
+        return queryAssocs(assocTypeUri,
+            roleTypeUri1, NodeType.TOPIC, topicId1, null,
+            roleTypeUri2, NodeType.TOPIC, topicId2, null
+        );
+    }
+
+    @Override
+    public List<AssocModelImpl> fetchAssocsBetweenTopicAndAssoc(String assocTypeUri, long topicId, long assocId,
+                                                                String topicRoleTypeUri, String assocRoleTypeUri) {
+        return queryAssocs(assocTypeUri,
+            topicRoleTypeUri, NodeType.TOPIC, topicId, null,
+            assocRoleTypeUri, NodeType.ASSOC, assocId, null
+        );
+    }
+
+    @Override
+    public Iterable<AssocModelImpl> fetchAllAssocs() {
+        return () -> new ModelIterator<>(NodeType.ASSOC, this::buildAssoc);
+    }
+
+    @Override
+    public List<PlayerModel> fetchPlayerModels(long assocId) {
+        return buildPlayerModels(fetchRecord(assocId, NodeType.ASSOC));
+    }
+
+    // ---
+
+    @Override
+    public void storeAssoc(AssocModelImpl assocModel) {
+        setDefaults(assocModel);
+        //
+        // 1) update DB
+        NodeRecord record = new NodeRecord(nextId.getAndIncrement(), NodeType.ASSOC);
+        checkUri(assocModel.getUri());
+        storeAndIndexExactValue(record, KEY_URI, assocModel.getUri(), true);
+        storeAndIndexExactValue(record, KEY_TPYE_URI, assocModel.getTypeUri(), true);
+        record.players[0] = storePlayer(assocModel.getPlayer1());
+        record.players[1] = storePlayer(assocModel.getPlayer2());
+        write(record);
+        //
+        // 2) update model
+        assocModel.setId(record.id);
+    }
+
+    @Override
+    public void storeAssocUri(long assocId, String uri) {
+        checkUri(uri);
+        update(assocId, NodeType.ASSOC, record -> storeAndIndexExactValue(record, KEY_URI, uri, true));
+    }
+
+    // Note: a storage implementation is not responsible for maintaining the "Instantiation" associations.
+    // This is performed at the application layer.
+    @Override
+    public void storeAssocTypeUri(long assocId, String assocTypeUri) {
+        update(assocId, NodeType.ASSOC, record -> storeAndIndexExactValue(record, KEY_TPYE_URI, assocTypeUri, true));
+    }
+
+    @Override
+    public void storeAssocValue(long assocId, SimpleValue value, String indexKey, boolean isHtmlValue) {
+        if (indexKey == null) {
+            throw new IllegalArgumentException("indexKey must be not null (value=\"" + value + "\")");
+        }
+        //
+        update(assocId, NodeType.ASSOC, record -> storeAndIndexValue(record, value, indexKey, isHtmlValue));
+    }
+
+    @Override
+    public void storeRoleTypeUri(long assocId, long playerId, String roleTypeUri) {
+        update(assocId, NodeType.ASSOC, record -> {
+            int pos = record.playerPosition(playerId);
+            NodeRecord.Player player = record.players[pos];
+            record.players[pos] = new NodeRecord.Player(player.id, player.nodeType, roleTypeUri);
+        });
+    }
+
+    // ---
+
+    @Override
+    public void deleteAssoc(long assocId) {
+        fetchRecord(assocId, NodeType.ASSOC);
+        writeTx().write(assocId, null);
+    }
+
+
+
+    // === Generic Object ===
+
+    @Override
+    public DMXObjectModelImpl fetchObject(long id) {
+        NodeRecord record = fetchRecord(id);
+        if (record.is(NodeType.TOPIC)) {
+            return buildTopic(record);
+        } else if (record.is(NodeType.ASSOC)) {
+            return buildAssoc(record);
+        } else {
+            throw new RuntimeException("Unexpected node type: " + record.nodeType);
+        }
+    }
+
+    @Override
+    public boolean objectExists(long id) {
+        NodeRecord record = visibleRecord(id);
+        return record != null && (record.is(NodeType.TOPIC) || record.is(NodeType.ASSOC));
+    }
+
+
+
+    // === Traversal ===
+
+    @Override
+    public List<AssocModelImpl> fetchTopicAssocs(long topicId) {
+        fetchRecord(topicId, NodeType.TOPIC);
+        return buildAssocs(find(index -> index.playerAssocs(topicId)));
+    }
+
+    @Override
+    public List<AssocModelImpl> fetchAssocAssocs(long assocId) {
+        fetchRecord(assocId, NodeType.ASSOC);
+        return buildAssocs(find(index -> index.playerAssocs(assocId)));
+    }
+
+    // ---
+
+    @Override
+    public List<RelatedTopicModelImpl> fetchTopicRelatedTopics(long topicId, String assocTypeUri, String myRoleTypeUri,
+                                                               String othersRoleTypeUri, String othersTopicTypeUri) {
+        return buildRelatedTopics(queryAssocs(assocTypeUri,
+            myRoleTypeUri,     NodeType.TOPIC, topicId, null,
+            othersRoleTypeUri, NodeType.TOPIC, -1,      othersTopicTypeUri
+        ), topicId);
+    }
+
+    @Override
+    public List<RelatedAssocModelImpl> fetchTopicRelatedAssocs(long topicId, String assocTypeUri, String myRoleTypeUri,
+                                                               String othersRoleTypeUri, String othersAssocTypeUri) {
+        return buildRelatedAssocs(queryAssocs(assocTypeUri,
+            myRoleTypeUri,     NodeType.TOPIC, topicId, null,
+            othersRoleTypeUri, NodeType.ASSOC, -1,      othersAssocTypeUri
+        ), topicId);
+    }
+
+    // ---
+
+    @Override
+    public List<RelatedTopicModelImpl> fetchAssocRelatedTopics(long assocId, String assocTypeUri, String myRoleTypeUri,
+                                                               String othersRoleTypeUri, String othersTopicTypeUri) {
+        return buildRelatedTopics(queryAssocs(assocTypeUri,
+            myRoleTypeUri,     NodeType.ASSOC, assocId, null,
+            othersRoleTypeUri, NodeType.TOPIC, -1,      othersTopicTypeUri
+        ), assocId);
+    }
+
+    @Override
+    public List<RelatedAssocModelImpl> fetchAssocRelatedAssocs(long assocId, String assocTypeUri, String myRoleTypeUri,
+                                                               String othersRoleTypeUri, String othersAssocTypeUri) {
+        return buildRelatedAssocs(queryAssocs(assocTypeUri,
+            myRoleTypeUri,     NodeType.ASSOC, assocId, null,
+            othersRoleTypeUri, NodeType.ASSOC, -1,      othersAssocTypeUri
+        ), assocId);
+    }
+
+    // ---
+
+    @Override
+    public <M extends RelatedObjectModel> List<M> fetchTopicRelatedObjects(
+                                                          long topicId, String assocTypeUri, String myRoleTypeUri,
+                                                          String othersRoleTypeUri, String othersTypeUri) {
+        return buildRelatedObjects(queryAssocs(assocTypeUri,
+            myRoleTypeUri,     NodeType.TOPIC, topicId, null,
+            othersRoleTypeUri, null,           -1,      othersTypeUri
+        ), topicId);
+    }
+
+    @Override
+    public <M extends RelatedObjectModel> List<M> fetchAssocRelatedObjects(
+                                                          long assocId, String assocTypeUri, String myRoleTypeUri,
+                                                          String othersRoleTypeUri, String othersTypeUri) {
+        return buildRelatedObjects(queryAssocs(assocTypeUri,
+            myRoleTypeUri,     NodeType.ASSOC, assocId, null,
+            othersRoleTypeUri, null,           -1,      othersTypeUri
+        ), assocId);
+    }
+
+    // ---
+
+    @Override
+    public List<RelatedTopicModelImpl> fetchRelatedTopics(long id, String assocTypeUri, String myRoleTypeUri,
+                                                          String othersRoleTypeUri, String othersTopicTypeUri) {
+        return buildRelatedTopics(queryAssocs(assocTypeUri,
+            myRoleTypeUri,     null,           id, null,
+            othersRoleTypeUri, NodeType.TOPIC, -1, othersTopicTypeUri
+        ), id);
+    }
+
+    @Override
+    public Map<Long, List<RelatedTopicModelImpl>> fetchRelatedTopics(Collection<Long> ids, String assocTypeUri,
+                                                                     String myRoleTypeUri, String othersRoleTypeUri,
+                                                                     String othersTopicTypeUri) {
+        Map<Long, List<RelatedTopicModelImpl>> relTopics = new HashMap();
+        for (long id : new HashSet<Long>(ids)) {
+            List<AssocModelImpl> assocs = queryAssocs(assocTypeUri,
+                myRoleTypeUri,     null,           id, null,
+                othersRoleTypeUri, NodeType.TOPIC, -1, othersTopicTypeUri
+            );
+            if (!assocs.isEmpty()) {
+                relTopics.put(id, buildRelatedTopics(assocs, id));
+            }
+        }
+        return relTopics;
+    }
+
+    @Override
+    public List<RelatedAssocModelImpl> fetchRelatedAssocs(long id, String assocTypeUri, String myRoleTypeUri,
+                                                          String othersRoleTypeUri, String othersAssocTypeUri) {
+        return buildRelatedAssocs(queryAssocs(assocTypeUri,
+            myRoleTypeUri,     null,           id, null,
+            othersRoleTypeUri, NodeType.ASSOC, -1, othersAssocTypeUri
+        ), id);
+    }
+
+    @Override
+    public Map<Long, List<RelatedAssocModelImpl>> fetchRelatedAssocs(Collection<Long> ids, String assocTypeUri,
+                                                                     String myRoleTypeUri, String othersRoleTypeUri,
+                                                                     String othersAssocTypeUri) {
+        Map<Long, List<RelatedAssocModelImpl>> relAssocs = new HashMap();
+        for (long id : new HashSet<Long>(ids)) {
+            List<AssocModelImpl> assocs = queryAssocs(assocTypeUri,
+                myRoleTypeUri,     null,           id, null,
+                othersRoleTypeUri, NodeType.ASSOC, -1, othersAssocTypeUri
+            );
+            if (!assocs.isEmpty()) {
+                relAssocs.put(id, buildRelatedAssocs(assocs, id));
+            }
+        }
+        return relAssocs;
+    }
+
+    @Override
+    public List<Long> fetchRelatedIds(long id, String assocTypeUri, String myRoleTypeUri, String othersRoleTypeUri,
+                                                                                          String othersTypeUri) {
+        List<Long> relatedIds = new ArrayList();
+        for (NodeRecord record : queryAssocRecords(assocTypeUri,
+                myRoleTypeUri,     null, id, null,
+                othersRoleTypeUri, null, -1, othersTypeUri)) {
+            relatedIds.add(otherPlayerId(record, id));
+        }
+        return relatedIds;
+    }
+
+
+
+    // === Properties ===
+
+    @Override
+    public Object fetchProperty(long id, String propUri) {
+        NodeRecord record = fetchRecord(id);
+        Object value = record.props.get(propUri);
+        if (value == null) {
+            throw new RuntimeException("Node[" + id + "] has no property with propertyKey=\"" + propUri + "\"");
+        }
+        return value;
+    }
+
+    @Override
+    public boolean hasProperty(long id, String propUri) {
+        return fetchRecord(id).props.containsKey(propUri);
+    }
+
+    // ---
+
+    @Override
+    public List<TopicModelImpl> fetchTopicsByProperty(String propUri, Object propValue) {
+        return buildTopics(find(index -> getByProperty(index.topics, propUri, propValue)));
+    }
+
+    @Override
+    public List<TopicModelImpl> fetchTopicsByPropertyRange(String propUri, Number from, Number to) {
+        return buildTopics(find(index -> index.topics.getNumericRange(propUri, from, to)));
+    }
+
+    @Override
+    public List<AssocModelImpl> fetchAssocsByProperty(String propUri, Object propValue) {
+        return buildAssocs(find(index -> getByProperty(index.assocs, propUri, propValue)));
+    }
+
+    @Override
+    public List<AssocModelImpl> fetchAssocsByPropertyRange(String propUri, Number from, Number to) {
+        return buildAssocs(find(index -> index.assocs.getNumericRange(propUri, from, to)));
+    }
+
+    @Override
+    public List<TopicModelImpl> fetchTopicsByTypeAndProperty(String topicTypeUri, String propUri, Object propValue) {
+        return buildTopics(find(index -> getByTypeAndProperty(index.topics, topicTypeUri, propUri, propValue)));
+    }
+
+    @Override
+    public List<AssocModelImpl> fetchAssocsByTypeAndProperty(String assocTypeUri, String propUri, Object propValue) {
+        return buildAssocs(find(index -> getByTypeAndProperty(index.assocs, assocTypeUri, propUri, propValue)));
+    }
+
+    @Override
+    public ModelHits<TopicModelImpl> fetchTopicHitsByProperty(String propUri, Object propValue) {
+        return new RecordHits<>(find(index -> getByProperty(index.topics, propUri, propValue)), this::buildTopic);
+    }
+
+    @Override
+    public List<ObjectHeader> fetchTopicHeadersByProperty(String propUri, Object propValue) {
+        List<ObjectHeader> headers = new ArrayList();
+        for (NodeRecord record : find(index -> getByProperty(index.topics, propUri, propValue))) {
+            headers.add(new ObjectHeader(record.id, record.typeUri()));
+        }
+        return headers;
+    }
+
+    @Override
+    public List<ObjectHeader> fetchAssocHeadersByProperty(String propUri, Object propValue) {
+        List<ObjectHeader> headers = new ArrayList();
+        for (NodeRecord record : find(index -> getByProperty(index.assocs, propUri, propValue))) {
+            headers.add(new ObjectHeader(record.id, record.typeUri()));
+        }
+        return headers;
+    }
+
+    // ---
+
+    @Override
+    public void storeTopicProperty(long topicId, String propUri, Object propValue, boolean addToIndex) {
+        update(topicId, NodeType.TOPIC, record -> storeAndIndexExactValue(record, propUri, propValue, addToIndex));
+    }
+
+    @Override
+    public void storeAssocProperty(long assocId, String propUri, Object propValue, boolean addToIndex) {
+        update(assocId, NodeType.ASSOC, record -> storeAndIndexExactValue(record, propUri, propValue, addToIndex));
+    }
+
+    // ---
+
+    @Override
+    public void indexTopicProperty(long topicId, String propUri, Object propValue) {
+        update(topicId, NodeType.TOPIC, record -> indexExactValue(record, propUri, propValue));
+    }
+
+    @Override
+    public void indexAssocProperty(long assocId, String propUri, Object propValue) {
+        update(assocId, NodeType.ASSOC, record -> indexExactValue(record, propUri, propValue));
+    }
+
+    // ---
+
+    @Override
+    public void deleteTopicProperty(long topicId, String propUri) {
+        update(topicId, NodeType.TOPIC, record -> deleteProperty(record, propUri));
+    }
+
+    @Override
+    public void deleteAssocProperty(long assocId, String propUri) {
+        update(assocId, NodeType.ASSOC, record -> deleteProperty(record, propUri));
+    }
+
+
+
+    // === DB ===
+
+    @Override
+    public DMXTransaction beginTx() {
+        MemoryTransaction tx = this.tx.get();
+        if (tx != null) {
+            return tx.nested();
+        }
+        tx = new MemoryTransaction(this);
+        this.tx.set(tx);
+        return tx;
+    }
+
+    @Override
+    public void acquireWriteLock(long id) {
+        // the writer lock covers all records
+        fetchRecord(id);
+        writeTx();
+    }
+
+    @Override
+    public boolean setupRootNode() {
+        try {
+            NodeRecord rootNode = fetchRecord(0);
+            //
+            if (rootNode.nodeType != null) {
+                return false;
+            }
+            //
+            checkUri(META_TYPE);
+            NodeRecord record = rootNode.copy();
+            record.nodeType = NodeType.TOPIC;
+            record.props.put(KEY_VALUE, "Meta Type");
+            storeAndIndexExactValue(record, KEY_URI, META_TYPE, true);
+            storeAndIndexExactValue(record, KEY_TPYE_URI, "dmx.core.meta_meta_type", true);
+            write(record);
+            //
+            return true;
+        } catch (Exception e) {
+            throw new RuntimeException("Setting up the root node (0) failed", e);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        logger.info("Shutting down the memory storage -- the content is discarded");
+    }
+
+    // ---
+
+    /**
+     * @return  this storage. There is no underlying database.
+     */
+    @Override
+    public Object getDatabaseVendorObject() {
+        return this;
+    }
+
+    /**
+     * @return  the record of the given object (opaque to the caller).
+     */
+    @Override
+    public Object getDatabaseVendorObject(long objectId) {
+        return fetchRecord(objectId);
+    }
+
+    // ---
+
+    @Override
+    public ModelFactoryImpl getModelFactory() {
+        return mf;
+    }
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    /**
+     * Finishes the outermost transaction of the current thread: commits its writes (if requested) and releases the
+     * writer lock.
+     */
+    void finishTx(MemoryTransaction tx, boolean commit) {
+        try {
+            if (commit && !tx.writes.isEmpty()) {
+                lock.writeLock().lock();
+                try {
+                    for (Map.Entry<Long, NodeRecord> entry : tx.writes.entrySet()) {
+                        int id = entry.getKey().intValue();
+                        if (id >= records.length) {
+                            records = Arrays.copyOf(records, Math.max(records.length * 2, id + 1));
+                        }
+                        if (records[id] != null) {
+                            indexes.remove(records[id]);
+                        }
+                        records[id] = entry.getValue();
+                        if (records[id] != null) {
+                            indexes.add(records[id]);
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        } finally {
+            if (tx.locked) {
+                tx.locked = false;
+                writerLock.unlock();
+            }
+            this.tx.remove();
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+
+
+    // === Records ===
+
+    /**
+     * Fetches a record as visible to the current thread.
+     *
+     * @throws  IllegalStateException   if the record has been deleted within the running transaction.
+     */
+    private NodeRecord fetchRecord(long id) {
+        MemoryTransaction tx = this.tx.get();
+        if (tx != null && tx.writes.containsKey(id)) {
+            NodeRecord record = tx.writes.get(id);
+            if (record == null) {
+                throw new IllegalStateException("Node[" + id + "] has been deleted in this tx");
+            }
+            return record;
+        }
+        NodeRecord record = committedRecord(id);
+        if (record == null) {
+            throw new RuntimeException("Node[" + id + "] not found");
+        }
+        return record;
+    }
+
+    private NodeRecord fetchRecord(long id, NodeType nodeType) {
+        NodeRecord record = fetchRecord(id);
+        if (!record.is(nodeType)) {
+            throw new IllegalArgumentException(nodeType.error(id));
+        }
+        return record;
+    }
+
+    /**
+     * @return  the record as visible to the current thread, or <code>null</code> if there is none.
+     */
+    private NodeRecord visibleRecord(long id) {
+        MemoryTransaction tx = this.tx.get();
+        if (tx != null && tx.writes.containsKey(id)) {
+            return tx.writes.get(id);
+        }
+        return committedRecord(id);
+    }
+
+    private NodeRecord committedRecord(long id) {
+        lock.readLock().lock();
+        try {
+            return id >= 0 && id < records.length ? records[(int) id] : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---
+
+    /**
+     * Looks up records by the given index lookup, as visible to the current thread: the committed records matching
+     * the lookup (unless written by the running transaction), plus the records written by the running transaction
+     * matching the lookup.
+     * <p>
+     * Note: the indexes reflect the records as a whole, so the lookup can combine any criteria.
+     *
+     * @return  the found records, ordered by ID.
+     */
+    private List<NodeRecord> find(Function<Indexes, Set<Long>> lookup) {
+        MemoryTransaction tx = this.tx.get();
+        List<NodeRecord> records = new ArrayList();
+        lock.readLock().lock();
+        try {
+            for (long id : lookup.apply(indexes)) {
+                if (tx == null || !tx.writes.containsKey(id)) {
+                    records.add(this.records[(int) id]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (tx != null && !tx.writes.isEmpty()) {
+            for (long id : lookup.apply(tx.indexes)) {
+                records.add(tx.writes.get(id));
+            }
+        }
+        records.sort(BY_ID);
+        return records;
+    }
+
+    private List<NodeRecord> query(NodeType nodeType, String key, Object value, boolean fulltext) {
+        IndexQuery query = IndexQuery.parse(key, value.toString(), fulltext);
+        return find(index -> query.hits(index.content(nodeType)));
+    }
+
+    private Set<Long> getByProperty(ContentIndex index, String propUri, Object propValue) {
+        // Note: numbers must be queried as numeric value as they are indexed numerically.
+        if (propValue instanceof Number) {
+            return index.getNumeric(propUri, (Number) propValue);
+        }
+        return index.get(propUri, propValue.toString());
+    }
+
+    private Set<Long> getByTypeAndProperty(ContentIndex index, String typeUri, String propUri, Object propValue) {
+        Set<Long> ids = index.get(KEY_TPYE_URI, typeUri);
+        ids.retainAll(getByProperty(index, propUri, propValue));
+        return ids;
+    }
+
+    // ---
+
+    /**
+     * Queries associations by type, and by role type, player type, player ID, and player type URI of both players.
+     * The players are matched in both directions. Each criterion is optional (<code>null</code> resp. -1).
+     */
+    private List<AssocModelImpl> queryAssocs(String assocTypeUri,
+                                     String roleTypeUri1, NodeType playerType1, long playerId1, String playerTypeUri1,
+                                     String roleTypeUri2, NodeType playerType2, long playerId2, String playerTypeUri2) {
+        return buildAssocs(queryAssocRecords(assocTypeUri,
+            roleTypeUri1, playerType1, playerId1, playerTypeUri1,
+            roleTypeUri2, playerType2, playerId2, playerTypeUri2
+        ));
+    }
+
+    /**
+     * Like {@link #queryAssocs} but the assocs are not built.
+     */
+    private List<NodeRecord> queryAssocRecords(String assocTypeUri,
+                                     String roleTypeUri1, NodeType playerType1, long playerId1, String playerTypeUri1,
+                                     String roleTypeUri2, NodeType playerType2, long playerId2, String playerTypeUri2) {
+        List<NodeRecord> candidates;
+        if (playerId1 != -1 || playerId2 != -1) {
+            long playerId = playerId1 != -1 ? playerId1 : playerId2;
+            candidates = find(index -> index.playerAssocs(playerId));
+        } else if (roleTypeUri1 != null || roleTypeUri2 != null) {
+            String roleTypeUri = roleTypeUri1 != null ? roleTypeUri1 : roleTypeUri2;
+            candidates = find(index -> index.roleAssocs(roleTypeUri));
+        } else if (assocTypeUri != null) {
+            candidates = find(index -> index.assocs.get(KEY_TPYE_URI, assocTypeUri));
+        } else {
+            candidates = find(index -> index.assocs.get(KEY_TPYE_URI, typeUri -> true));
+        }
+        //
+        List<NodeRecord> assocs = new ArrayList();
+        for (NodeRecord record : candidates) {
+            if (assocTypeUri != null && !assocTypeUri.equals(record.typeUri())) {
+                continue;
+            }
+            // query bidirectional
+            if (matches(record.players[0], roleTypeUri1, playerType1, playerId1, playerTypeUri1) &&
+                matches(record.players[1], roleTypeUri2, playerType2, playerId2, playerTypeUri2) ||
+                matches(record.players[0], roleTypeUri2, playerType2, playerId2, playerTypeUri2) &&
+                matches(record.players[1], roleTypeUri1, playerType1, playerId1, playerTypeUri1)) {
+                assocs.add(record);
+            }
+        }
+        return assocs;
+    }
+
+    /**
+     * @return  the ID of the player of the given assoc record which is not the given one.
+     */
+    private long otherPlayerId(NodeRecord record, long playerId) {
+        long id1 = record.players[0].id;
+        long id2 = record.players[1].id;
+        if (id1 == playerId) {
+            return id2;
+        } else if (id2 == playerId) {
+            return id1;
+        } else {
+            throw new IllegalArgumentException("ID " + playerId + " is not a player in assoc " + record.id);
+        }
+    }
+
+    private boolean matches(NodeRecord.Player player, String roleTypeUri, NodeType playerType, long playerId,
+                                                                                               String playerTypeUri) {
+        if (roleTypeUri != null && !roleTypeUri.equals(player.roleTypeUri)) {
+            return false;
+        }
+        if (playerType != null && playerType != player.nodeType) {
+            return false;
+        }
+        if (playerId != -1 && playerId != player.id) {
+            return false;
+        }
+        if (playerTypeUri != null) {
+            NodeRecord record = visibleRecord(player.id);
+            return record != null && playerTypeUri.equals(record.typeUri());
+        }
+        return true;
+    }
+
+    // ---
+
+    /**
+     * Returns the running transaction of the current thread and makes sure it holds the writer lock.
+     */
+    private MemoryTransaction writeTx() {
+        MemoryTransaction tx = this.tx.get();
+        if (tx == null) {
+            throw new RuntimeException("Writing to the memory storage failed -- not in a transaction");
+        }
+        if (!tx.locked) {
+            try {
+                if (!writerLock.tryLock(LOCK_TIMEOUT, TimeUnit.SECONDS)) {
+                    throw new RuntimeException("Writing to the memory storage failed -- the writer lock is not " +
+                        "released within " + LOCK_TIMEOUT + " seconds");
+                }
+            } catch (InterruptedException e) {
+                throw new RuntimeException("Writing to the memory storage failed -- interrupted", e);
+            }
+            tx.locked = true;
+        }
+        return tx;
+    }
+
+    private void write(NodeRecord record) {
+        writeTx().write(record.id, record);
+    }
+
+    /**
+     * Changes a copy of the given record and writes the copy.
+     */
+    private void update(long id, NodeType nodeType, Consumer<NodeRecord> change) {
+        MemoryTransaction tx = writeTx();
+        NodeRecord record = fetchRecord(id, nodeType).copy();
+        change.accept(record);
+        tx.write(id, record);
+    }
+
+
+
+    // === Value Storage ===
+
+    /**
+     * Stores a record value under the specified key and (optionally) adds the value to the exact index (under the
+     * same key).
+     * <p>
+     * Used for URIs, type URIs, and properties.
+     */
+    private void storeAndIndexExactValue(NodeRecord record, String key, Object value, boolean addToIndex) {
+        // store
+        record.props.put(key, value);
+        // index
+        if (addToIndex) {
+            indexExactValue(record, key, value);
+        }
+    }
+
+    private void indexExactValue(NodeRecord record, String key, Object value) {
+        // Note: numbers are indexed numerically to allow range queries.
+        record.exact.put(key, value instanceof Number ? ContentIndex.numeric((Number) value) : value.toString());
+    }
+
+    private void storeAndIndexValue(NodeRecord record, SimpleValue value, String indexKey, boolean isHtmlValue) {
+        Object _value = value.value();
+        // store
+        record.props.put(KEY_VALUE, _value);
+        // index
+        record.exact.put(indexKey, _value.toString());
+        // TODO: don't fulltext index numbers/booleans?
+        String text = isHtmlValue ? JavaUtils.stripHTML((String) _value) : _value.toString();
+        record.fulltext.put(KEY_FULLTEXT, new ArrayList());
+        record.fulltext.put(indexKey, new ArrayList());
+        addFulltext(record, KEY_FULLTEXT, text);
+        addFulltext(record, indexKey, text);
+    }
+
+    private void addFulltext(NodeRecord record, String key, String text) {
+        record.fulltext.computeIfAbsent(key, k -> new ArrayList()).add(text);
+    }
+
+    private void deleteProperty(NodeRecord record, String propUri) {
+        record.props.remove(propUri);
+        record.exact.remove(propUri);
+    }
+
+    // ---
+
+    private NodeRecord.Player storePlayer(PlayerModel playerModel) {
+        NodeRecord playerRecord = fetchPlayerRecord(playerModel);
+        // update model (ID transfer for by-URI players)
+        if (playerModel instanceof TopicPlayerModel) {
+            if (((TopicPlayerModel) playerModel).topicIdentifiedByUri()) {
+                playerModel.setId(playerRecord.id);
+            }
+        }
+        //
+        return new NodeRecord.Player(playerRecord.id, playerRecord.nodeType, playerModel.getRoleTypeUri());
+    }
+
+    private NodeRecord fetchPlayerRecord(PlayerModel playerModel) {
+        if (playerModel instanceof TopicPlayerModel) {
+            TopicPlayerModel topicPlayer = (TopicPlayerModel) playerModel;
+            if (topicPlayer.topicIdentifiedByUri()) {
+                return fetchTopicRecordByUri(topicPlayer.getTopicUri());
+            } else {
+                return fetchRecord(topicPlayer.getId(), NodeType.TOPIC);
+            }
+        } else if (playerModel instanceof AssocPlayerModel) {
+            return fetchRecord(playerModel.getId(), NodeType.ASSOC);
+        } else {
+            throw new RuntimeException("Unexpected player model: " + playerModel);
+        }
+    }
+
+    private NodeRecord fetchTopicRecordByUri(String uri) {
+        List<NodeRecord> records = find(index -> index.topics.get(KEY_URI, uri));
+        //
+        if (records.isEmpty()) {
+            throw new RuntimeException("Topic with URI \"" + uri + "\" not found in DB");
+        }
+        //
+        return records.get(0);
+    }
+
+
+
+    // === Memory -> DMX Bridge ===
+
+    private TopicModelImpl buildTopic(NodeRecord record) {
+        try {
+            return mf.newTopicModel(
+                record.id,
+                (String) record.props.get(KEY_URI),
+                record.typeUri(),
+                new SimpleValue(record.props.get(KEY_VALUE)),
+                null    // childTopics=null
+            );
+        } catch (Exception e) {
+            throw new RuntimeException("Building a TopicModel failed, id=" + record.id + ", typeUri=" +
+                record.typeUri(), e);
+        }
+    }
+
+    private List<TopicModelImpl> buildTopics(List<NodeRecord> records) {
+        List<TopicModelImpl> topics = new ArrayList();
+        for (NodeRecord record : records) {
+            topics.add(buildTopic(record));
+        }
+        return topics;
+    }
+
+    // ---
+
+    private AssocModelImpl buildAssoc(NodeRecord record) {
+        try {
+            List<PlayerModel> playerModels = buildPlayerModels(record);
+            return mf.newAssocModel(
+                record.id,
+                (String) record.props.get(KEY_URI),
+                record.typeUri(),
+                playerModels.get(0), playerModels.get(1),
+                new SimpleValue(record.props.get(KEY_VALUE)),
+                null    // childTopics=null
+            );
+        } catch (Exception e) {
+            throw new RuntimeException("Building an AssocModel failed, id=" + record.id + ", typeUri=" +
+                record.typeUri(), e);
+        }
+    }
+
+    private List<AssocModelImpl> buildAssocs(List<NodeRecord> records) {
+        List<AssocModelImpl> assocs = new ArrayList();
+        for (NodeRecord record : records) {
+            assocs.add(buildAssoc(record));
+        }
+        return assocs;
+    }
+
+    private List<PlayerModel> buildPlayerModels(NodeRecord record) {
+        List<PlayerModel> playerModels = new ArrayList();
+        for (NodeRecord.Player player : record.players) {
+            playerModels.add(player.nodeType.createPlayerModel(player.id, player.roleTypeUri, mf));
+        }
+        return playerModels;
+    }
+
+
+
+    // === DMX Helper ===
+
+    private <M extends RelatedObjectModel> List<M> buildRelatedObjects(List<AssocModelImpl> assocs, long playerId) {
+        if (!assocs.isEmpty()) {
+            NodeRecord record = fetchRecord(assocs.get(0).getOtherPlayerId(playerId));
+            if (record.is(NodeType.TOPIC)) {
+                return (List<M>) buildRelatedTopics(assocs, playerId);
+            } else if (record.is(NodeType.ASSOC)) {
+                return (List<M>) buildRelatedAssocs(assocs, playerId);
+            } else {
+                throw new RuntimeException("Unexpected node type: " + record.nodeType);
+            }
+        } else {
+            return new ArrayList();
+        }
+    }
+
+    private List<RelatedTopicModelImpl> buildRelatedTopics(List<AssocModelImpl> assocs, long playerId) {
+        List<RelatedTopicModelImpl> relTopics = new ArrayList();
+        for (AssocModelImpl assoc : assocs) {
+            relTopics.add(mf.newRelatedTopicModel(
+                fetchTopic(assoc.getOtherPlayerId(playerId)),
+                assoc
+            ));
+        }
+        return relTopics;
+    }
+
+    private List<RelatedAssocModelImpl> buildRelatedAssocs(List<AssocModelImpl> assocs, long playerId) {
+        List<RelatedAssocModelImpl> relAssocs = new ArrayList();
+        for (AssocModelImpl assoc : assocs) {
+            relAssocs.add(mf.newRelatedAssocModel(
+                fetchAssoc(assoc.getOtherPlayerId(playerId)),
+                assoc
+            ));
+        }
+        return relAssocs;
+    }
+
+    // ---
+
+    private void setDefaults(DMXObjectModelImpl model) {
+        if (model.getUri() == null) {
+            model.setUri("");
+        }
+        if (model.getSimpleValue() == null) {
+            model.setSimpleValue("");
+        }
+    }
+
+    /**
+     * Checks if a topic or an association with the given URI exists in the DB, and
+     * throws an exception if so. If an empty URI ("") is given no check is performed.
+     *
+     * @param   uri     The URI to check. Must not be null.
+     */
+    private void checkUri(String uri) {
+        if (uri.equals("")) {
+            return;
+        }
+        if (!find(index -> index.topics.get(KEY_URI, uri)).isEmpty() ||
+            !find(index -> index.assocs.get(KEY_URI, uri)).isEmpty()) {
+            throw new RuntimeException("URI \"" + uri + "\" is already taken");
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Classes
+
+    /**
+     * Iterates all topics resp. all associations, as visible to the current thread. Lazy: the records are fetched
+     * while iterating.
+     */
+    private class ModelIterator<M extends DMXObjectModelImpl> implements Iterator<M> {
+
+        private NodeType nodeType;
+        private Function<NodeRecord, M> builder;
+        private long maxId = nextId.get();
+        private long id = -1;
+        private NodeRecord next;    // next matching record; updated by fetchNext()
+
+        private ModelIterator(NodeType nodeType, Function<NodeRecord, M> builder) {
+            this.nodeType = nodeType;
+            this.builder = builder;
+        }
+
+        @Override
+        public boolean hasNext() {
+            fetchNext();
+            return next != null;
+        }
+
+        @Override
+        public M next() {
+            fetchNext();
+            if (next == null) {
+                throw new NoSuchElementException("There is no next " + nodeType);
+            }
+            NodeRecord record = next;
+            next = null;
+            return builder.apply(record);
+        }
+
+        private void fetchNext() {
+            while (next == null && ++id < maxId) {
+                NodeRecord record = visibleRecord(id);
+                if (record != null && record.is(nodeType)) {
+                    next = record;
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the models lazily from the found records, in ID order.
+     */
+    private static class RecordHits<M extends DMXObjectModelImpl> implements ModelHits<M> {
+
+        private List<NodeRecord> records;
+        private Function<NodeRecord, M> builder;
+        private int pos;
+
+        private RecordHits(List<NodeRecord> records, Function<NodeRecord, M> builder) {
+            records.sort(Comparator.comparingLong(record -> record.id));
+            this.records = records;
+            this.builder = builder;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pos < records.size();
+        }
+
+        @Override
+        public M next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return builder.apply(records.get(pos++));
+        }
+
+        @Override
+        public int size() {
+            return records.size();
+        }
+
+        @Override
+        public void skipPast(long id) {
+            while (pos < records.size() && records.get(pos).id <= id) {
+                pos++;
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
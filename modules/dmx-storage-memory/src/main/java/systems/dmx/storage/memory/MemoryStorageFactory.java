@@ -0,0 +1,21 @@
+package systems.dmx.storage.memory;
+
+import systems.dmx.core.impl.ModelFactoryImpl;
+import systems.dmx.core.storage.spi.DMXStorage;
+import systems.dmx.core.storage.spi.DMXStorageFactory;
+
+
+
+/**
+ * A factory for obtaining a DMX storage which keeps all the data in memory.
+ * The database path is ignored: nothing is persisted.
+ */
+public class MemoryStorageFactory implements DMXStorageFactory {
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+    @Override
+    public DMXStorage newDMXStorage(String databasePath, ModelFactoryImpl mf) {
+        return new MemoryStorage(mf);
+    }
+}
@@ -0,0 +1,115 @@
+package systems.dmx.storage.memory;
+
+import systems.dmx.core.storage.spi.DMXTransaction;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+
+/**
+ * A transaction of the memory storage.
+ * <p>
+ * The writes are kept private until commit: a written record is a copy of the committed version (see
+ * {@link NodeRecord#copy}), indexed in the transaction's own {@link Indexes}. At commit the written versions replace
+ * the committed ones at once. So readers never see uncommitted writes, and a rollback just drops the writes.
+ * The first write acquires the storage's writer lock, which is held until the transaction is finished. So writing
+ * transactions are serialized, while reading ones run concurrently.
+ * <p>
+ * As in Neo4j nested transactions are "placebo" transactions: committing is up to the outermost transaction, and a
+ * nested transaction which fails marks the outermost one as rollback-only.
+ */
+class MemoryTransaction implements DMXTransaction {
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    /**
+     * The records written by this transaction (key: record ID). A <code>null</code> value denotes a deleted record.
+     */
+    final Map<Long, NodeRecord> writes = new HashMap();
+
+    /**
+     * The indexes of the written records.
+     */
+    final Indexes indexes = new Indexes();
+
+    boolean locked;                 // true if this transaction holds the writer lock
+
+    private boolean success;
+    private boolean failure;
+    private boolean rollbackOnly;   // set by a nested transaction
+
+    private MemoryStorage storage;
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    MemoryTransaction(MemoryStorage storage) {
+        this.storage = storage;
+    }
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+    @Override
+    public void success() {
+        success = true;
+    }
+
+    @Override
+    public void failure() {
+        failure = true;
+    }
+
+    @Override
+    public void finish() {
+        boolean commit = success && !failure && !rollbackOnly;
+        storage.finishTx(this, commit);
+        if (success && !failure && rollbackOnly) {
+            throw new RuntimeException("Transaction was marked as successful, but a nested transaction failed. " +
+                "So the transaction has been rolled back.");
+        }
+    }
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    DMXTransaction nested() {
+        return new DMXTransaction() {
+
+            private boolean success;
+
+            @Override
+            public void success() {
+                success = true;
+            }
+
+            @Override
+            public void failure() {
+                rollbackOnly = true;
+            }
+
+            @Override
+            public void finish() {
+                if (!success) {
+                    rollbackOnly = true;
+                }
+            }
+        };
+    }
+
+    // ---
+
+    /**
+     * Adds a written record version, replacing the previous version written by this transaction (if any).
+     *
+     * @param   record      the written version, or <code>null</code> if the record is deleted.
+     */
+    void write(long id, NodeRecord record) {
+        NodeRecord written = writes.get(id);
+        if (written != null) {
+            indexes.remove(written);
+        }
+        writes.put(id, record);
+        if (record != null) {
+            indexes.add(record);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package systems.dmx.storage.memory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+
+/**
+ * A topic or an association as stored in memory: its properties, its index entries, and (for an association) its
+ * players.
+ * <p>
+ * A record is a version. Once committed it is never changed. A transaction changes a private copy, which replaces
+ * the committed version at commit time (see {@link MemoryTransaction}).
+ */
+class NodeRecord {
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    final long id;
+    NodeType nodeType;      // null for the root node as long as it is not set up
+
+    final Map<String, Object> props;
+
+    /**
+     * The exact index entries. Key: index key, value: the indexed value. A String for values indexed by their
+     * string representation, a Long or a Double for numerically indexed values (properties).
+     */
+    final Map<String, Object> exact;
+
+    /**
+     * The fulltext index entries. Key: index key, value: the indexed texts.
+     */
+    final Map<String, List<String>> fulltext;
+
+    // players (associations only)
+    final Player[] players;
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    NodeRecord(long id, NodeType nodeType) {
+        this.id = id;
+        this.nodeType = nodeType;
+        this.props = new HashMap();
+        this.exact = new HashMap();
+        this.fulltext = new HashMap();
+        this.players = new Player[2];
+    }
+
+    private NodeRecord(NodeRecord record) {
+        this.id = record.id;
+        this.nodeType = record.nodeType;
+        this.props = new HashMap(record.props);
+        this.exact = new HashMap(record.exact);
+        this.fulltext = new HashMap();
+        for (Map.Entry<String, List<String>> entry : record.fulltext.entrySet()) {
+            fulltext.put(entry.getKey(), new ArrayList(entry.getValue()));
+        }
+        this.players = record.players.clone();
+    }
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    /**
+     * Returns a private copy of this record, to be changed by a transaction.
+     */
+    NodeRecord copy() {
+        return new NodeRecord(this);
+    }
+
+    boolean is(NodeType nodeType) {
+        return this.nodeType == nodeType;
+    }
+
+    String typeUri() {
+        return (String) props.get("typeUri");
+    }
+
+    // ---
+
+    /**
+     * @return  the position (0 or 1) the given ID plays in this association.
+     */
+    int playerPosition(long playerId) {
+        boolean pos1 = players[0].id == playerId;
+        boolean pos2 = players[1].id == playerId;
+        if (pos1 && pos2) {
+            throw new RuntimeException("Ambiguity: both players have ID " + playerId + " in association " + id);
+        } else if (pos1) {
+            return 0;
+        } else if (pos2) {
+            return 1;
+        } else {
+            throw new IllegalArgumentException("ID " + playerId + " is not a player in association " + id);
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Classes
+
+    /**
+     * An association player. Immutable.
+     */
+    static class Player {
+
+        final long id;
+        final NodeType nodeType;
+        final String roleTypeUri;
+
+        Player(long id, NodeType nodeType, String roleTypeUri) {
+            this.id = id;
+            this.nodeType = nodeType;
+            this.roleTypeUri = roleTypeUri;
+        }
+    }
+}
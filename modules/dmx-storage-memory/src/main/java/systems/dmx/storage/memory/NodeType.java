@@ -0,0 +1,38 @@
+package systems.dmx.storage.memory;
+
+import systems.dmx.core.model.PlayerModel;
+import systems.dmx.core.service.ModelFactory;
+
+
+
+enum NodeType {
+
+    TOPIC {
+        @Override
+        PlayerModel createPlayerModel(long id, String roleTypeUri, ModelFactory mf) {
+            return mf.newTopicPlayerModel(id, roleTypeUri);
+        }
+
+        @Override
+        String error(long id) {
+            return "ID " + id + " refers to an Assoc when the caller expects a Topic";
+        }
+    },
+    ASSOC {
+        @Override
+        PlayerModel createPlayerModel(long id, String roleTypeUri, ModelFactory mf) {
+            return mf.newAssocPlayerModel(id, roleTypeUri);
+        }
+
+        @Override
+        String error(long id) {
+            return "ID " + id + " refers to a Topic when the caller expects an Assoc";
+        }
+    };
+
+    // ---
+
+    abstract PlayerModel createPlayerModel(long id, String roleTypeUri, ModelFactory mf);
+
+    abstract String error(long id);
+}
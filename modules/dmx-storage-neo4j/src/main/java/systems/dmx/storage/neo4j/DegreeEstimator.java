@@ -0,0 +1,111 @@
+package systems.dmx.storage.neo4j;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+
+/**
+ * Decides whether the assocs a node is involved in are found by traversing the node's relationships, or by querying
+ * the assoc metadata index. Traversal is cheaper for a node with a handful of assocs. For a node with many assocs
+ * (e.g. a type topic, with an Instantiation assoc per instance) a query is cheaper, as the index narrows the
+ * result down by assoc type, role types, and player types at once.
+ * <p>
+ * Neo4j 1.8 does not store a node's degree. So the degree is estimated by probing: the node's incoming relationships
+ * are read up to a limit. Once a node exceeds the limit it is remembered as high-degree, and is not probed again.
+ * An estimate which gets outdated (e.g. when many assocs are deleted) affects performance, not results.
+ * <p>
+ * The Lucene index does not reliably reflect changes made within the current transaction (e.g. a retyped assoc is
+ * still found by its former type until commit). So that a change is visible regardless of degree, the nodes whose
+ * assocs are changed within a transaction are traversed in any case, until the transaction finishes.
+ */
+class DegreeEstimator {
+
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    /**
+     * Nodes with up to this many incoming relationships are traversed.
+     */
+    static final int MAX_TRAVERSAL_DEGREE = Integer.getInteger("dmx.database.max_traversal_degree", 50);
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    /**
+     * The IDs of the nodes known to have more than MAX_TRAVERSAL_DEGREE incoming relationships.
+     */
+    private final Set<Long> highDegreeNodes = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The IDs of the nodes whose assocs were changed within the current thread's transaction.
+     */
+    private final ThreadLocal<Set<Long>> touchedNodes = ThreadLocal.withInitial(HashSet::new);
+
+    /**
+     * The nesting depth of the current thread's transaction. 0 if no transaction is running.
+     */
+    private final ThreadLocal<Integer> txDepth = ThreadLocal.withInitial(() -> 0);
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    /**
+     * Returns the incoming relationships of the given node, provided it has a low degree or its assocs were changed
+     * within the current transaction.
+     *
+     * @return  the incoming relationships, or <code>null</code> if the node is to be found by index (then the caller
+     *          is expected to query the index).
+     */
+    List<Relationship> relationshipsToTraverse(Node node) {
+        boolean touched = touchedNodes.get().contains(node.getId());
+        if (!touched && highDegreeNodes.contains(node.getId())) {
+            return null;
+        }
+        List<Relationship> rels = new ArrayList();
+        for (Relationship rel : node.getRelationships(Direction.INCOMING)) {
+            if (!touched && rels.size() == MAX_TRAVERSAL_DEGREE) {
+                highDegreeNodes.add(node.getId());
+                return null;
+            }
+            rels.add(rel);
+        }
+        return rels;
+    }
+
+    /**
+     * To be called when a node is deleted. Neo4j reuses the IDs of deleted nodes.
+     */
+    void nodeDeleted(long nodeId) {
+        highDegreeNodes.remove(nodeId);
+    }
+
+    /**
+     * To be called when an assoc the given node is a player of is created, deleted, or changed in a way the assoc
+     * metadata index reflects (assoc type, role types, player types).
+     */
+    void nodeTouched(long nodeId) {
+        touchedNodes.get().add(nodeId);
+    }
+
+    // ---
+
+    void txStarted() {
+        txDepth.set(txDepth.get() + 1);
+    }
+
+    /**
+     * Once the outermost transaction is finished its changes are in the index, so the touched nodes are forgotten.
+     */
+    void txFinished() {
+        int depth = txDepth.get() - 1;
+        txDepth.set(depth);
+        if (depth == 0) {
+            touchedNodes.remove();
+        }
+    }
+}
@@ -14,11 +14,14 @@ import systems.dmx.core.model.SimpleValue;
 import systems.dmx.core.model.TopicPlayerModel;
 import systems.dmx.core.storage.spi.DMXStorage;
 import systems.dmx.core.storage.spi.DMXTransaction;
+import systems.dmx.core.storage.spi.ModelHits;
+import systems.dmx.core.storage.spi.ObjectHeader;
 import systems.dmx.core.util.JavaUtils;
 
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.factory.GraphDatabaseFactory;
@@ -27,18 +30,26 @@ import org.neo4j.graphdb.index.Index;
 import org.neo4j.graphdb.index.IndexHits;
 import org.neo4j.graphdb.index.IndexManager;
 import static org.neo4j.helpers.collection.MapUtil.stringMap;
+import org.neo4j.index.impl.lucene.LuceneDataSource;
 import org.neo4j.index.lucene.QueryContext;
 import org.neo4j.index.lucene.ValueContext;
 
 import org.apache.lucene.index.Term;
+import org.apache.lucene.queryParser.QueryParser;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.NumericRangeQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.Version;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
 
@@ -50,6 +61,9 @@ public class Neo4jStorage implements DMXStorage {
     // TODO: make it DB vendor agnostic; move to CoreActivator
     private static final String KEEP_TX_LOG = System.getProperty("dmx.database.keep_tx_log", "2 days");
 
+    // Max number of player IDs per batch query. Lucene limits a BooleanQuery to 1024 clauses by default.
+    private static final int MAX_QUERY_IDS = 500;
+
     // --- DB Property Keys ---
     private static final String KEY_NODE_TYPE = "nodeType";
     private static final String KEY_VALUE     = "value";
@@ -79,6 +93,7 @@ public class Neo4jStorage implements DMXStorage {
 
             GraphDatabaseService neo4j = null;
     private RelationtypeCache relTypeCache;
+    private DegreeEstimator degreeEstimator = new DegreeEstimator();
 
     private Index<Node> topicIndex;             // topic URI, topic type URI, topic value (index mode KEY), properties
     private Index<Node> topicFulltextIndex;     // topic value (index modes FULLTEXT or FULLTEXT_KEY)
@@ -161,6 +176,24 @@ public class Neo4jStorage implements DMXStorage {
         return new TopicModelIterable(this);
     }
 
+    @Override
+    public ModelHits<TopicModelImpl> fetchTopicHits(String key, Object value) {
+        return new TopicModelHits(topicIndex, buildExactQuery(key, value), this);
+    }
+
+    @Override
+    public ModelHits<TopicModelImpl> queryTopicHitsFulltext(String key, Object value) {
+        if (key == null) {
+            key = KEY_FULLTEXT;
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("Tried to call queryTopicHitsFulltext() with a null value Object " +
+                "(key=\"" + key + "\")");
+        }
+        //
+        return new TopicModelHits(topicFulltextIndex, buildFulltextQuery(key, value), this);
+    }
+
     // ---
 
     @Override
@@ -194,6 +227,7 @@ public class Neo4jStorage implements DMXStorage {
         //
         // 2) update association metadata index
         reindexTypeUri(topicNode, topicTypeUri);
+        touchNeighbours(topicNode);
     }
 
     @Override
@@ -223,6 +257,7 @@ public class Neo4jStorage implements DMXStorage {
         // 1) update DB
         Node topicNode = fetchTopicNode(topicId);
         topicNode.delete();
+        degreeEstimator.nodeDeleted(topicId);
         //
         // 2) update index
         removeTopicFromIndex(topicNode);
@@ -293,7 +328,7 @@ public class Neo4jStorage implements DMXStorage {
 
     @Override
     public List<PlayerModel> fetchPlayerModels(long assocId) {
-        return buildPlayerModels(fetchAssocNode(assocId));
+        return buildPlayerModels(fetchRelationships(fetchAssocNode(assocId)));
     }
 
     // ---
@@ -317,6 +352,7 @@ public class Neo4jStorage implements DMXStorage {
         // 2) update index
         indexAssoc(assocNode, player1.getRoleTypeUri(), playerNode1,
                               player2.getRoleTypeUri(), playerNode2);
+        touchPlayers(assocNode);
         // 3) update model
         assocModel.setId(assocNode.getId());
     }
@@ -338,6 +374,8 @@ public class Neo4jStorage implements DMXStorage {
         // 2) update association metadata index
         indexAssocType(assocNode, assocTypeUri);    // update association entry itself
         reindexTypeUri(assocNode, assocTypeUri);    // update all association entries the association is a player of
+        touchPlayers(assocNode);
+        touchNeighbours(assocNode);
     }
 
     @Override
@@ -363,6 +401,7 @@ public class Neo4jStorage implements DMXStorage {
         //
         // 2) update association metadata index
         indexAssocRoleType(assocNode, playerId, roleTypeUri);
+        touchPlayers(assocNode);
     }
 
     // ---
@@ -371,12 +410,14 @@ public class Neo4jStorage implements DMXStorage {
     public void deleteAssoc(long assocId) {
         // 1) update DB
         Node assocNode = fetchAssocNode(assocId);
+        touchPlayers(assocNode);
         // delete the 2 player relationships
         for (Relationship rel : fetchRelationships(assocNode)) {
             rel.delete();
         }
         //
         assocNode.delete();
+        degreeEstimator.nodeDeleted(assocId);
         //
         // 2) update index
         removeAssocFromIndex(assocNode);
@@ -400,6 +441,16 @@ public class Neo4jStorage implements DMXStorage {
         }
     }
 
+    @Override
+    public boolean objectExists(long id) {
+        Node node = fetchNodeIfExists(id);
+        try {
+            return node != null && (NodeType.TOPIC.isTypeOf(node) || NodeType.ASSOC.isTypeOf(node));
+        } catch (IllegalStateException e) {
+            return false;       // the node has been deleted in this tx
+        }
+    }
+
 
 
     // === Traversal ===
@@ -419,18 +470,18 @@ public class Neo4jStorage implements DMXStorage {
     @Override
     public List<RelatedTopicModelImpl> fetchTopicRelatedTopics(long topicId, String assocTypeUri, String myRoleTypeUri,
                                                                String othersRoleTypeUri, String othersTopicTypeUri) {
-        return buildRelatedTopics(queryAssocIndex(assocTypeUri,
-            myRoleTypeUri,     NodeType.TOPIC, topicId, null,
-            othersRoleTypeUri, NodeType.TOPIC, -1,      othersTopicTypeUri
+        return buildRelatedTopics(fetchPlayerAssocs(assocTypeUri,
+            myRoleTypeUri,     NodeType.TOPIC, topicId,
+            othersRoleTypeUri, NodeType.TOPIC, othersTopicTypeUri
         ), topicId);
     }
 
     @Override
     public List<RelatedAssocModelImpl> fetchTopicRelatedAssocs(long topicId, String assocTypeUri, String myRoleTypeUri,
                                                                String othersRoleTypeUri, String othersAssocTypeUri) {
-        return buildRelatedAssocs(queryAssocIndex(assocTypeUri,
-            myRoleTypeUri,     NodeType.TOPIC, topicId, null,
-            othersRoleTypeUri, NodeType.ASSOC, -1,      othersAssocTypeUri
+        return buildRelatedAssocs(fetchPlayerAssocs(assocTypeUri,
+            myRoleTypeUri,     NodeType.TOPIC, topicId,
+            othersRoleTypeUri, NodeType.ASSOC, othersAssocTypeUri
         ), topicId);
     }
 
@@ -439,18 +490,18 @@ public class Neo4jStorage implements DMXStorage {
     @Override
     public List<RelatedTopicModelImpl> fetchAssocRelatedTopics(long assocId, String assocTypeUri, String myRoleTypeUri,
                                                                String othersRoleTypeUri, String othersTopicTypeUri) {
-        return buildRelatedTopics(queryAssocIndex(assocTypeUri,
-            myRoleTypeUri,     NodeType.ASSOC, assocId, null,
-            othersRoleTypeUri, NodeType.TOPIC, -1,      othersTopicTypeUri
+        return buildRelatedTopics(fetchPlayerAssocs(assocTypeUri,
+            myRoleTypeUri,     NodeType.ASSOC, assocId,
+            othersRoleTypeUri, NodeType.TOPIC, othersTopicTypeUri
         ), assocId);
     }
 
     @Override
     public List<RelatedAssocModelImpl> fetchAssocRelatedAssocs(long assocId, String assocTypeUri, String myRoleTypeUri,
                                                                String othersRoleTypeUri, String othersAssocTypeUri) {
-        return buildRelatedAssocs(queryAssocIndex(assocTypeUri,
-            myRoleTypeUri,     NodeType.ASSOC, assocId, null,
-            othersRoleTypeUri, NodeType.ASSOC, -1,      othersAssocTypeUri
+        return buildRelatedAssocs(fetchPlayerAssocs(assocTypeUri,
+            myRoleTypeUri,     NodeType.ASSOC, assocId,
+            othersRoleTypeUri, NodeType.ASSOC, othersAssocTypeUri
         ), assocId);
     }
 
@@ -460,9 +511,9 @@ public class Neo4jStorage implements DMXStorage {
     public <M extends RelatedObjectModel> List<M> fetchTopicRelatedObjects(
                                                           long topicId, String assocTypeUri, String myRoleTypeUri,
                                                           String othersRoleTypeUri, String othersTypeUri) {
-        return buildRelatedObjects(queryAssocIndex(assocTypeUri,
-            myRoleTypeUri,     NodeType.TOPIC, topicId, null,
-            othersRoleTypeUri, null,           -1,      othersTypeUri
+        return buildRelatedObjects(fetchPlayerAssocs(assocTypeUri,
+            myRoleTypeUri,     NodeType.TOPIC, topicId,
+            othersRoleTypeUri, null,           othersTypeUri
         ), topicId);
     }
 
@@ -470,9 +521,9 @@ public class Neo4jStorage implements DMXStorage {
     public <M extends RelatedObjectModel> List<M> fetchAssocRelatedObjects(
                                                           long assocId, String assocTypeUri, String myRoleTypeUri,
                                                           String othersRoleTypeUri, String othersTypeUri) {
-        return buildRelatedObjects(queryAssocIndex(assocTypeUri,
-            myRoleTypeUri,     NodeType.ASSOC, assocId, null,
-            othersRoleTypeUri, null,           -1,      othersTypeUri
+        return buildRelatedObjects(fetchPlayerAssocs(assocTypeUri,
+            myRoleTypeUri,     NodeType.ASSOC, assocId,
+            othersRoleTypeUri, null,           othersTypeUri
         ), assocId);
     }
 
@@ -481,21 +532,66 @@ public class Neo4jStorage implements DMXStorage {
     @Override
     public List<RelatedTopicModelImpl> fetchRelatedTopics(long id, String assocTypeUri, String myRoleTypeUri,
                                                           String othersRoleTypeUri, String othersTopicTypeUri) {
-        return buildRelatedTopics(queryAssocIndex(assocTypeUri,
-            myRoleTypeUri,     null,           id, null,
-            othersRoleTypeUri, NodeType.TOPIC, -1, othersTopicTypeUri
+        return buildRelatedTopics(fetchPlayerAssocs(assocTypeUri,
+            myRoleTypeUri,     null,           id,
+            othersRoleTypeUri, NodeType.TOPIC, othersTopicTypeUri
         ), id);
     }
 
+    @Override
+    public Map<Long, List<RelatedTopicModelImpl>> fetchRelatedTopics(Collection<Long> ids, String assocTypeUri,
+                                                                     String myRoleTypeUri, String othersRoleTypeUri,
+                                                                     String othersTopicTypeUri) {
+        Map<Long, List<RelatedTopicModelImpl>> relTopics = new HashMap();
+        for (Map.Entry<Long, List<AssocModelImpl>> entry : fetchPlayerAssocs(ids, assocTypeUri,
+                myRoleTypeUri, othersRoleTypeUri, NodeType.TOPIC, othersTopicTypeUri).entrySet()) {
+            relTopics.put(entry.getKey(), buildRelatedTopics(entry.getValue(), entry.getKey()));
+        }
+        return relTopics;
+    }
+
     @Override
     public List<RelatedAssocModelImpl> fetchRelatedAssocs(long id, String assocTypeUri, String myRoleTypeUri,
                                                           String othersRoleTypeUri, String othersAssocTypeUri) {
-        return buildRelatedAssocs(queryAssocIndex(assocTypeUri,
-            myRoleTypeUri,     null,           id, null,
-            othersRoleTypeUri, NodeType.ASSOC, -1, othersAssocTypeUri
+        return buildRelatedAssocs(fetchPlayerAssocs(assocTypeUri,
+            myRoleTypeUri,     null,           id,
+            othersRoleTypeUri, NodeType.ASSOC, othersAssocTypeUri
         ), id);
     }
 
+    @Override
+    public Map<Long, List<RelatedAssocModelImpl>> fetchRelatedAssocs(Collection<Long> ids, String assocTypeUri,
+                                                                     String myRoleTypeUri, String othersRoleTypeUri,
+                                                                     String othersAssocTypeUri) {
+        Map<Long, List<RelatedAssocModelImpl>> relAssocs = new HashMap();
+        for (Map.Entry<Long, List<AssocModelImpl>> entry : fetchPlayerAssocs(ids, assocTypeUri,
+                myRoleTypeUri, othersRoleTypeUri, NodeType.ASSOC, othersAssocTypeUri).entrySet()) {
+            relAssocs.put(entry.getKey(), buildRelatedAssocs(entry.getValue(), entry.getKey()));
+        }
+        return relAssocs;
+    }
+
+    @Override
+    public List<Long> fetchRelatedIds(long id, String assocTypeUri, String myRoleTypeUri, String othersRoleTypeUri,
+                                                                                          String othersTypeUri) {
+        List<Long> relatedIds = new ArrayList();
+        Node node = fetchNodeIfExists(id);
+        List<Relationship> rels = node != null ? degreeEstimator.relationshipsToTraverse(node) : null;
+        if (rels == null) {
+            for (Node assocNode : assocPlayerIndex.query(buildAssocQuery(assocTypeUri,
+                    myRoleTypeUri,     null, id, null,
+                    othersRoleTypeUri, null, -1, othersTypeUri))) {
+                relatedIds.add(otherPlayerId(fetchRelationships(assocNode), id));
+            }
+        } else {
+            for (List<Relationship> playerRels : traversePlayerRels(rels, assocTypeUri, myRoleTypeUri,
+                    othersRoleTypeUri, null, othersTypeUri)) {
+                relatedIds.add(otherPlayerId(playerRels, id));
+            }
+        }
+        return relatedIds;
+    }
+
 
 
     // === Properties ===
@@ -532,6 +628,31 @@ public class Neo4jStorage implements DMXStorage {
         return buildAssocs(queryIndexByPropertyRange(assocIndex, propUri, from, to));
     }
 
+    @Override
+    public List<TopicModelImpl> fetchTopicsByTypeAndProperty(String topicTypeUri, String propUri, Object propValue) {
+        return buildTopics(queryIndexByTypeAndProperty(topicIndex, topicTypeUri, propUri, propValue));
+    }
+
+    @Override
+    public List<AssocModelImpl> fetchAssocsByTypeAndProperty(String assocTypeUri, String propUri, Object propValue) {
+        return buildAssocs(queryIndexByTypeAndProperty(assocIndex, assocTypeUri, propUri, propValue));
+    }
+
+    @Override
+    public ModelHits<TopicModelImpl> fetchTopicHitsByProperty(String propUri, Object propValue) {
+        return new TopicModelHits(topicIndex, buildExactQuery(propUri, propValue), this);
+    }
+
+    @Override
+    public List<ObjectHeader> fetchTopicHeadersByProperty(String propUri, Object propValue) {
+        return buildHeaders(queryIndexByProperty(topicIndex, propUri, propValue));
+    }
+
+    @Override
+    public List<ObjectHeader> fetchAssocHeadersByProperty(String propUri, Object propValue) {
+        return buildHeaders(queryIndexByProperty(assocIndex, propUri, propValue));
+    }
+
     // ---
 
     @Override
@@ -580,7 +701,14 @@ public class Neo4jStorage implements DMXStorage {
 
     @Override
     public DMXTransaction beginTx() {
-        return new Neo4jTransactionAdapter(neo4j);
+        return new Neo4jTransactionAdapter(neo4j, degreeEstimator);
+    }
+
+    @Override
+    public void acquireWriteLock(long id) {
+        // Note: a nested Neo4j transaction ignores lock requests, so the lock is acquired through the top-level
+        // transaction. It is released once that transaction finishes.
+        Neo4jTransactionAdapter.acquireWriteLock(fetchNode(id));
     }
 
     @Override
@@ -840,7 +968,136 @@ public class Neo4jStorage implements DMXStorage {
         return index.query(buildNumericRangeQuery(propUri, from, to));
     }
 
-    // ---
+    /**
+     * Note: the type URI and the properties of an object are indexed in the same index, as fields of the same Lucene
+     * document. So both criteria are matched by one query.
+     */
+    private IndexHits<Node> queryIndexByTypeAndProperty(Index<Node> index, String typeUri, String propUri,
+                                                        Object propValue) {
+        BooleanQuery query = new BooleanQuery();
+        addTermQuery(KEY_TPYE_URI, typeUri, query);
+        query.add(buildExactQuery(propUri, propValue), Occur.MUST);
+        return index.query(query);
+    }
+
+    // --- Fetch player assocs ---
+
+    /**
+     * Fetches the assocs which connect the given player with other players. For a low-degree player, or one whose
+     * assocs were changed within the current transaction, its relationships are traversed, otherwise the assoc
+     * metadata index is queried (see {@link DegreeEstimator}).
+     *
+     * @param   myPlayerType    the expected type of the given player, or <code>null</code> if both are accepted.
+     *                          If the player is of the other type an empty list is returned.
+     */
+    private List<AssocModelImpl> fetchPlayerAssocs(String assocTypeUri,
+                                                   String myRoleTypeUri,     NodeType myPlayerType,     long myPlayerId,
+                                                   String othersRoleTypeUri, NodeType othersPlayerType,
+                                                   String othersTypeUri) {
+        Node node = fetchNodeIfExists(myPlayerId);
+        List<Relationship> rels = node != null ? degreeEstimator.relationshipsToTraverse(node) : null;
+        if (rels == null) {
+            return queryAssocIndex(assocTypeUri,
+                myRoleTypeUri,     myPlayerType,     myPlayerId, null,
+                othersRoleTypeUri, othersPlayerType, -1,         othersTypeUri
+            );
+        }
+        if (myPlayerType != null && !myPlayerType.isTypeOf(node)) {
+            return new ArrayList();
+        }
+        return traverseAssocs(rels, assocTypeUri, myRoleTypeUri, othersRoleTypeUri, othersPlayerType, othersTypeUri);
+    }
+
+    /**
+     * Batch version of the above: fetches the assocs of many players at once. The players to be traversed are
+     * traversed one by one, the others are queried at once.
+     *
+     * @return  the assocs grouped by the ID of the queried player. Players without assocs are not contained.
+     */
+    private Map<Long, List<AssocModelImpl>> fetchPlayerAssocs(Collection<Long> playerIds, String assocTypeUri,
+                                                              String myRoleTypeUri, String othersRoleTypeUri,
+                                                              NodeType othersPlayerType, String othersTypeUri) {
+        Map<Long, List<AssocModelImpl>> assocs = new HashMap();
+        Set<Long> highDegreeIds = new HashSet();
+        for (long playerId : new HashSet<Long>(playerIds)) {
+            Node node = fetchNodeIfExists(playerId);
+            List<Relationship> rels = node != null ? degreeEstimator.relationshipsToTraverse(node) : null;
+            if (rels != null) {
+                List<AssocModelImpl> _assocs = traverseAssocs(rels, assocTypeUri, myRoleTypeUri, othersRoleTypeUri,
+                    othersPlayerType, othersTypeUri);
+                if (!_assocs.isEmpty()) {
+                    assocs.put(playerId, _assocs);
+                }
+            } else {
+                highDegreeIds.add(playerId);
+            }
+        }
+        if (!highDegreeIds.isEmpty()) {
+            assocs.putAll(queryAssocIndex(highDegreeIds, assocTypeUri, myRoleTypeUri, othersRoleTypeUri,
+                othersPlayerType, othersTypeUri));
+        }
+        return assocs;
+    }
+
+    /**
+     * Filters the given player relationships the same way the assoc metadata index is queried, and builds the assocs.
+     *
+     * @param   rels    the incoming relationships of "my" player.
+     */
+    private List<AssocModelImpl> traverseAssocs(List<Relationship> rels, String assocTypeUri, String myRoleTypeUri,
+                                                String othersRoleTypeUri, NodeType othersPlayerType,
+                                                String othersTypeUri) {
+        List<AssocModelImpl> assocs = new ArrayList();
+        for (List<Relationship> playerRels : traversePlayerRels(rels, assocTypeUri, myRoleTypeUri, othersRoleTypeUri,
+                othersPlayerType, othersTypeUri)) {
+            assocs.add(buildAssoc(playerRels.get(0).getStartNode(), playerRels));
+        }
+        return assocs;
+    }
+
+    /**
+     * Filters the given player relationships the same way the assoc metadata index is queried. The assocs are not
+     * built, so the callers which need just the player IDs read neither assoc nor player properties.
+     *
+     * @param   rels    the incoming relationships of "my" player.
+     *
+     * @return  the 2 player relationships of each matching assoc.
+     */
+    private List<List<Relationship>> traversePlayerRels(List<Relationship> rels, String assocTypeUri,
+                                                        String myRoleTypeUri, String othersRoleTypeUri,
+                                                        NodeType othersPlayerType, String othersTypeUri) {
+        List<List<Relationship>> matches = new ArrayList();
+        Set<Long> assocIds = new HashSet();
+        for (Relationship rel : rels) {
+            Node assocNode = rel.getStartNode();
+            // skip non-DM nodes stored by 3rd-party components (e.g. Neo4j Spatial)
+            if (!NodeType.ASSOC.isTypeOf(assocNode) || assocIds.contains(assocNode.getId())) {
+                continue;
+            }
+            if (assocTypeUri != null && !assocTypeUri.equals(typeUri(assocNode))) {
+                continue;
+            }
+            List<Relationship> playerRels = fetchRelationships(assocNode);
+            Relationship othersRel = playerRels.get(0).getId() == rel.getId() ? playerRels.get(1) : playerRels.get(0);
+            if (isMatch(rel, myRoleTypeUri) && isMatch(othersRel, othersRoleTypeUri) &&
+                    isMatch(othersRel.getEndNode(), othersPlayerType, othersTypeUri)) {
+                assocIds.add(assocNode.getId());
+                matches.add(playerRels);
+            }
+        }
+        return matches;
+    }
+
+    private boolean isMatch(Relationship rel, String roleTypeUri) {
+        return roleTypeUri == null || roleTypeUri.equals(rel.getType().name());
+    }
+
+    private boolean isMatch(Node playerNode, NodeType playerType, String playerTypeUri) {
+        return (playerType == null || playerType.isTypeOf(playerNode)) &&
+            (playerTypeUri == null || playerTypeUri.equals(typeUri(playerNode)));
+    }
+
+    // --- Query assoc index ---
 
     private List<AssocModelImpl> queryAssocIndex(String assocTypeUri,
                                      String roleTypeUri1, NodeType playerType1, long playerId1, String playerTypeUri1,
@@ -851,12 +1108,91 @@ public class Neo4jStorage implements DMXStorage {
         )));
     }
 
+    /**
+     * Batch version of the above: queries the assocs of many players at once.
+     *
+     * @return  the assocs grouped by the ID of the queried player.
+     */
+    private Map<Long, List<AssocModelImpl>> queryAssocIndex(Collection<Long> playerIds, String assocTypeUri,
+                                                String myRoleTypeUri, String othersRoleTypeUri,
+                                                NodeType othersPlayerType, String othersTypeUri) {
+        Map<Long, List<AssocModelImpl>> assocs = new HashMap();
+        List<Long> ids = new ArrayList(new HashSet(playerIds));
+        for (int i = 0; i < ids.size(); i += MAX_QUERY_IDS) {
+            Set<Long> chunk = new HashSet(ids.subList(i, Math.min(i + MAX_QUERY_IDS, ids.size())));
+            for (AssocModelImpl assoc : buildAssocs(assocPlayerIndex.query(buildAssocQuery(assocTypeUri,
+                    myRoleTypeUri,     null,             chunk, null,
+                    othersRoleTypeUri, othersPlayerType, othersTypeUri)))) {
+                // the query is bidirectional, so both players are checked
+                PlayerModel player1 = assoc.getPlayer1();
+                PlayerModel player2 = assoc.getPlayer2();
+                addAssoc(assocs, assoc, player1, player2, chunk, myRoleTypeUri, othersPlayerType);
+                addAssoc(assocs, assoc, player2, player1, chunk, myRoleTypeUri, othersPlayerType);
+            }
+        }
+        return assocs;
+    }
+
+    /**
+     * Adds the given assoc to the assocs of "my" player, provided "my" player is one of the queried players and plays
+     * the queried role, and the other player is of the queried player type.
+     */
+    private void addAssoc(Map<Long, List<AssocModelImpl>> assocs, AssocModelImpl assoc, PlayerModel me,
+                          PlayerModel other, Set<Long> ids, String myRoleTypeUri, NodeType othersPlayerType) {
+        boolean othersTypeMatches = othersPlayerType == NodeType.TOPIC ? other instanceof TopicPlayerModel :
+                                                                         other instanceof AssocPlayerModel;
+        if (ids.contains(me.getId()) && (myRoleTypeUri == null || myRoleTypeUri.equals(me.getRoleTypeUri())) &&
+                othersTypeMatches) {
+            List<AssocModelImpl> _assocs = assocs.get(me.getId());
+            if (_assocs == null) {
+                _assocs = new ArrayList();
+                assocs.put(me.getId(), _assocs);
+            }
+            _assocs.add(assoc);
+        }
+    }
+
     // --- Build index queries ---
 
     private QueryContext buildNumericRangeQuery(String propUri, Number from, Number to) {
         return QueryContext.numericRange(propUri, from, to);
     }
 
+    private Query buildExactQuery(String propUri, Object propValue) {
+        // Note: numbers must be queried as numeric value as they are indexed numerically.
+        if (propValue instanceof Long) {
+            long value = (Long) propValue;
+            return NumericRangeQuery.newLongRange(propUri, value, value, true, true);
+        } else if (propValue instanceof Integer) {
+            int value = (Integer) propValue;
+            return NumericRangeQuery.newIntRange(propUri, value, value, true, true);
+        } else if (propValue instanceof Double) {
+            double value = (Double) propValue;
+            return NumericRangeQuery.newDoubleRange(propUri, value, value, true, true);
+        } else if (propValue instanceof Float) {
+            float value = (Float) propValue;
+            return NumericRangeQuery.newFloatRange(propUri, value, value, true, true);
+        } else {
+            return new TermQuery(new Term(propUri, propValue.toString()));
+        }
+    }
+
+    /**
+     * Parses a fulltext query the way Neo4j does for a query string passed to a fulltext index (that is the index's
+     * lower-casing whitespace analyzer). Used where the query is to be combined with other criteria.
+     */
+    private Query buildFulltextQuery(String key, Object value) {
+        try {
+            QueryParser parser = new QueryParser(Version.LUCENE_30, key,
+                LuceneDataSource.LOWER_CASE_WHITESPACE_ANALYZER);
+            parser.setAllowLeadingWildcard(true);
+            parser.setLowercaseExpandedTerms(true);
+            return parser.parse(value.toString());
+        } catch (Exception e) {
+            throw new RuntimeException("Parsing fulltext query \"" + value + "\" failed (key=\"" + key + "\")", e);
+        }
+    }
+
     // ---
 
     private Query buildAssocQuery(String assocTypeUri,
@@ -883,6 +1219,33 @@ public class Neo4jStorage implements DMXStorage {
         return query;
     }
 
+    /**
+     * Variant of the above which matches a set of player IDs for player 1, and any player ID for player 2.
+     */
+    private Query buildAssocQuery(String assocTypeUri,
+                      String roleTypeUri1, NodeType playerType1, Collection<Long> playerIds1, String playerTypeUri1,
+                      String roleTypeUri2, NodeType playerType2,                             String playerTypeUri2) {
+        // query bidirectional
+        BooleanQuery direction1 = new BooleanQuery();
+        addRole(direction1, 1, roleTypeUri1, playerType1, playerIds1, playerTypeUri1);
+        addRole(direction1, 2, roleTypeUri2, playerType2, -1,         playerTypeUri2);
+        BooleanQuery direction2 = new BooleanQuery();
+        addRole(direction2, 1, roleTypeUri2, playerType2, -1,         playerTypeUri2);
+        addRole(direction2, 2, roleTypeUri1, playerType1, playerIds1, playerTypeUri1);
+        //
+        BooleanQuery roleQuery = new BooleanQuery();
+        roleQuery.add(direction1, Occur.SHOULD);
+        roleQuery.add(direction2, Occur.SHOULD);
+        //
+        BooleanQuery query = new BooleanQuery();
+        if (assocTypeUri != null) {
+            addTermQuery(KEY_ASSOC_TPYE_URI, assocTypeUri, query);
+        }
+        query.add(roleQuery, Occur.MUST);
+        //
+        return query;
+    }
+
     private void addRole(BooleanQuery query, int pos, String roleTypeUri, NodeType playerType, long playerId,
                                                                                                String playerTypeUri) {
         if (roleTypeUri != null)   addTermQuery(KEY_ROLE_TPYE_URI + pos,   roleTypeUri,   query);
@@ -891,6 +1254,16 @@ public class Neo4jStorage implements DMXStorage {
         if (playerTypeUri != null) addTermQuery(KEY_PLAYER_TYPE_URI + pos, playerTypeUri, query);
     }
 
+    private void addRole(BooleanQuery query, int pos, String roleTypeUri, NodeType playerType,
+                                                      Collection<Long> playerIds, String playerTypeUri) {
+        addRole(query, pos, roleTypeUri, playerType, -1, playerTypeUri);
+        BooleanQuery idQuery = new BooleanQuery();
+        for (long playerId : playerIds) {
+            idQuery.add(new TermQuery(new Term(KEY_PLAYER_ID + pos, Long.toString(playerId))), Occur.SHOULD);
+        }
+        query.add(idQuery, Occur.MUST);
+    }
+
     // ---
 
     private void addTermQuery(String key, long value, BooleanQuery query) {
@@ -982,8 +1355,15 @@ public class Neo4jStorage implements DMXStorage {
     // ---
 
     AssocModelImpl buildAssoc(Node assocNode) {
+        return buildAssoc(assocNode, fetchRelationships(assocNode));
+    }
+
+    /**
+     * @param   playerRels  the 2 player relationships of the given assoc node, as fetched already by the caller.
+     */
+    private AssocModelImpl buildAssoc(Node assocNode, List<Relationship> playerRels) {
         try {
-            List<PlayerModel> playerModels = buildPlayerModels(assocNode);
+            List<PlayerModel> playerModels = buildPlayerModels(playerRels);
             return mf.newAssocModel(
                 assocNode.getId(),
                 uri(assocNode),
@@ -1006,9 +1386,24 @@ public class Neo4jStorage implements DMXStorage {
         return assocs;
     }
 
-    private List<PlayerModel> buildPlayerModels(Node assocNode) {
+    // ---
+
+    /**
+     * Reads just the IDs and type URIs of the given nodes. Their URIs, values, and (for assocs) players are not read.
+     */
+    private List<ObjectHeader> buildHeaders(Iterable<Node> nodes) {
+        List<ObjectHeader> headers = new ArrayList();
+        for (Node node : nodes) {
+            headers.add(new ObjectHeader(node.getId(), typeUri(node)));
+        }
+        return headers;
+    }
+
+    // ---
+
+    private List<PlayerModel> buildPlayerModels(List<Relationship> playerRels) {
         List<PlayerModel> playerModels = new ArrayList();
-        for (Relationship rel : fetchRelationships(assocNode)) {
+        for (Relationship rel : playerRels) {
             Node node = rel.getEndNode();
             String roleTypeUri = rel.getType().name();
             PlayerModel playerModel = NodeType.of(node).createPlayerModel(node, roleTypeUri, mf);
@@ -1076,6 +1471,25 @@ public class Neo4jStorage implements DMXStorage {
         }
     }
 
+    /**
+     * Marks the players of the given assoc as touched within the current transaction (see {@link DegreeEstimator}).
+     */
+    private void touchPlayers(Node assocNode) {
+        for (Relationship rel : fetchRelationships(assocNode)) {
+            degreeEstimator.nodeTouched(rel.getEndNode().getId());
+        }
+    }
+
+    /**
+     * Marks the players of all assocs the given node is a player of. To be called when the node's type changes, as
+     * the assoc metadata index holds the type of both players.
+     */
+    private void touchNeighbours(Node playerNode) {
+        for (Relationship rel : playerNode.getRelationships(Direction.INCOMING)) {
+            touchPlayers(rel.getStartNode());
+        }
+    }
+
     private List<Relationship> fetchRelationships(Node assocNode) {
         List<Relationship> rels = new ArrayList();
         for (Relationship rel : assocNode.getRelationships(Direction.OUTGOING)) {
@@ -1094,6 +1508,24 @@ public class Neo4jStorage implements DMXStorage {
         return rel.getEndNode().getId();
     }
 
+    /**
+     * @param   playerRels  the 2 player relationships of an assoc.
+     *
+     * @return  the ID of the player which is not the given one.
+     */
+    private long otherPlayerId(List<Relationship> playerRels, long playerId) {
+        long id1 = playerId(playerRels.get(0));
+        long id2 = playerId(playerRels.get(1));
+        if (id1 == playerId) {
+            return id2;
+        } else if (id2 == playerId) {
+            return id1;
+        } else {
+            throw new IllegalArgumentException("ID " + playerId + " is not a player in association " +
+                playerRels.get(0).getStartNode().getId());
+        }
+    }
+
     // ---
 
     /**
@@ -1135,6 +1567,17 @@ public class Neo4jStorage implements DMXStorage {
         return neo4j.getNodeById(id);
     }
 
+    /**
+     * @return  the node with the given ID, or <code>null</code> if there is none.
+     */
+    private Node fetchNodeIfExists(long id) {
+        try {
+            return neo4j.getNodeById(id);
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+
     private Node fetchTopicNodeByUri(String uri) {
         Node node = topicIndex.get(KEY_URI, uri).getSingle();
         //
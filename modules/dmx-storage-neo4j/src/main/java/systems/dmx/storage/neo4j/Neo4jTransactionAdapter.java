@@ -3,6 +3,7 @@ package systems.dmx.storage.neo4j;
 import systems.dmx.core.storage.spi.DMXTransaction;
 
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.PropertyContainer;
 import org.neo4j.graphdb.Transaction;
 
 
@@ -12,14 +13,29 @@ import org.neo4j.graphdb.Transaction;
  */
 class Neo4jTransactionAdapter implements DMXTransaction {
 
+    // ------------------------------------------------------------------------------------------------- Class Variables
+
+    /**
+     * The top-level transaction of the current thread. Nested transactions are placebos which ignore lock requests.
+     */
+    private static final ThreadLocal<Transaction> topLevelTx = new ThreadLocal();
+
     // ---------------------------------------------------------------------------------------------- Instance Variables
 
     private Transaction tx;
+    private boolean topLevel;
+    private DegreeEstimator degreeEstimator;
 
     // ---------------------------------------------------------------------------------------------------- Constructors
 
-    Neo4jTransactionAdapter(GraphDatabaseService neo4j) {
-        tx = neo4j.beginTx();
+    Neo4jTransactionAdapter(GraphDatabaseService neo4j, DegreeEstimator degreeEstimator) {
+        this.tx = neo4j.beginTx();
+        if (topLevelTx.get() == null) {
+            topLevelTx.set(tx);
+            topLevel = true;
+        }
+        this.degreeEstimator = degreeEstimator;
+        degreeEstimator.txStarted();
     }
 
     // -------------------------------------------------------------------------------------------------- Public Methods
@@ -36,6 +52,26 @@ class Neo4jTransactionAdapter implements DMXTransaction {
 
     @Override
     public void finish() {
-        tx.finish();
+        try {
+            tx.finish();
+        } finally {
+            if (topLevel) {
+                topLevelTx.remove();
+            }
+            degreeEstimator.txFinished();
+        }
+    }
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    /**
+     * Write-locks the given node or relationship until the current thread's top-level transaction finishes.
+     */
+    static void acquireWriteLock(PropertyContainer container) {
+        Transaction tx = topLevelTx.get();
+        if (tx == null) {
+            throw new RuntimeException("Acquiring a write lock failed -- no transaction is running");
+        }
+        tx.acquireWriteLock(container);
     }
 }
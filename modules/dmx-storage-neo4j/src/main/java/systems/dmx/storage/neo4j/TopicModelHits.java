@@ -0,0 +1,149 @@
+package systems.dmx.storage.neo4j;
+
+import systems.dmx.core.impl.TopicModelImpl;
+import systems.dmx.core.storage.spi.ModelHits;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.index.Index;
+import org.neo4j.graphdb.index.IndexHits;
+import org.neo4j.index.lucene.QueryContext;
+
+import org.apache.lucene.search.FieldCacheRangeFilter;
+import org.apache.lucene.search.FilteredQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+
+import java.util.NoSuchElementException;
+
+
+
+/**
+ * Builds topic models lazily from Lucene index hits, in ID order.
+ * <p>
+ * The hits are fetched from Lucene in batches. A batch is the top N hits sorted by ID, restricted to the IDs after
+ * the resume point (the last hit read, resp. the ID passed to {@link #skipPast}). So Lucene keeps just N hits while
+ * collecting, and no hit before the resume point is read. Once a batch is exhausted the next one is queried, with
+ * doubled size. Both sorting and the ID range rely on the node ID Neo4j stores in each index document.
+ */
+class TopicModelHits implements ModelHits<TopicModelImpl> {
+
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    private static final String KEY_DOC_ID = "_id_";    // the node ID field of Neo4j's index documents
+
+    private static final Sort ID_ORDER = new Sort(new SortField(KEY_DOC_ID, SortField.LONG));
+
+    private static final int FIRST_BATCH_SIZE = 128;
+    private static final int MAX_BATCH_SIZE = 8192;
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private Index<Node> index;
+    private Query query;
+    private Neo4jStorage storage;
+
+    private long resumeId = -1;         // the hits up to and including this ID are skipped
+    private IndexHits<Node> batch;      // the current batch, or null if not yet queried resp. exhausted
+    private int batchSize = FIRST_BATCH_SIZE;
+    private int batchRead;              // number of hits read from the current batch
+    private boolean exhausted;          // true once a batch was not full
+    private Node next;                  // the look-ahead hit, or null
+    private int size = -1;              // the total number of hits, or -1 if not yet queried
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    TopicModelHits(Index<Node> index, Query query, Neo4jStorage storage) {
+        this.index = index;
+        this.query = query;
+        this.storage = storage;
+    }
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+    @Override
+    public boolean hasNext() {
+        return peek() != null;
+    }
+
+    @Override
+    public TopicModelImpl next() {
+        Node node = peek();
+        if (node == null) {
+            throw new NoSuchElementException();
+        }
+        next = null;
+        resumeId = node.getId();
+        return storage.buildTopic(node);
+    }
+
+    /**
+     * Counts the hits by a separate (unsorted) query. The count is taken once.
+     */
+    @Override
+    public int size() {
+        if (size == -1) {
+            IndexHits<Node> hits = index.query(query);
+            try {
+                size = hits.size();
+            } finally {
+                hits.close();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void skipPast(long id) {
+        if (id > resumeId) {
+            resumeId = id;
+            if (next != null && next.getId() <= id) {
+                next = null;
+            }
+            // the next batch starts after the given ID
+            closeBatch();
+            exhausted = false;
+        }
+    }
+
+    @Override
+    public void close() {
+        closeBatch();
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    private Node peek() {
+        while (next == null && !exhausted) {
+            if (batch == null) {
+                batch = queryBatch();
+                batchRead = 0;
+            }
+            if (batch.hasNext()) {
+                Node node = batch.next();
+                batchRead++;
+                if (node.getId() > resumeId) {      // a node is never returned twice
+                    next = node;
+                }
+            } else {
+                exhausted = batchRead < batchSize;
+                closeBatch();
+                batchSize = Math.min(2 * batchSize, MAX_BATCH_SIZE);
+            }
+        }
+        return next;
+    }
+
+    private IndexHits<Node> queryBatch() {
+        Query batchQuery = new FilteredQuery(query,
+            FieldCacheRangeFilter.newLongRange(KEY_DOC_ID, resumeId, null, false, true));
+        return index.query(new QueryContext(batchQuery).sort(ID_ORDER).top(batchSize));
+    }
+
+    private void closeBatch() {
+        if (batch != null) {
+            batch.close();
+            batch = null;
+        }
+    }
+}
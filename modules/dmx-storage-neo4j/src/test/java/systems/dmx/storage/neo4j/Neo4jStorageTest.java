@@ -10,8 +10,11 @@ import systems.dmx.core.model.PlayerModel;
 import systems.dmx.core.model.SimpleValue;
 import systems.dmx.core.storage.spi.DMXStorage;
 import systems.dmx.core.storage.spi.DMXTransaction;
+import systems.dmx.core.storage.spi.ModelHits;
+import systems.dmx.core.storage.spi.ObjectHeader;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -22,8 +25,12 @@ import org.junit.Ignore;
 import org.junit.Test;
 
 import java.io.File;
+import java.util.ArrayList;
 import static java.util.Arrays.asList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.logging.Logger;
 
 
@@ -106,6 +113,64 @@ public class Neo4jStorageTest {
         assertEquals(1, topics.size());
     }
 
+    @Test
+    public void traverseHighDegree() {
+        // a node with more assocs than traversed is queried by index; the result must be the same
+        int count = DegreeEstimator.MAX_TRAVERSAL_DEGREE + 10;
+        long assocId = -1;
+        DMXTransaction tx = db.beginTx();
+        try {
+            createTopic("hub", TOPIC_TYPE, "Hub");
+            for (int i = 0; i < count; i++) {
+                createTopic("instance-" + i, "hub", "Instance " + i);
+                assocId = createAssoc(INSTANTIATION, "hub", TYPE, "instance-" + i, INSTANCE);
+            }
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        long hubId = al.sd.fetchTopic("uri", "hub").getId();
+        long instanceId = al.sd.fetchTopic("uri", "instance-0").getId();
+        // high-degree node
+        List<RelatedTopicModelImpl> topics = db.fetchTopicRelatedTopics(hubId, INSTANTIATION, TYPE, INSTANCE, "hub");
+        assertEquals(count, topics.size());
+        topics = db.fetchTopicRelatedTopics(hubId, INSTANTIATION, INSTANCE, TYPE, null);
+        assertEquals(0, topics.size());
+        // low-degree node
+        topics = db.fetchTopicRelatedTopics(instanceId, INSTANTIATION, INSTANCE, TYPE, TOPIC_TYPE);
+        assertEquals(1, topics.size());
+        assertEquals(hubId, topics.get(0).getId());
+        // ID-only
+        assertEquals(count, db.fetchRelatedIds(hubId, INSTANTIATION, TYPE, INSTANCE, "hub").size());
+        assertEquals(asList(hubId), db.fetchRelatedIds(instanceId, INSTANTIATION, INSTANCE, TYPE, TOPIC_TYPE));
+        // batch, mixed
+        Map<Long, List<RelatedTopicModelImpl>> relTopics = db.fetchRelatedTopics(asList(hubId, instanceId),
+            INSTANTIATION, null, null, null);
+        assertEquals(count, relTopics.get(hubId).size());
+        assertEquals(1, relTopics.get(instanceId).size());
+        //
+        // changes made within a transaction are visible for a high-degree node as well
+        tx = db.beginTx();
+        try {
+            long newInstanceId = createTopic("instance-new", "hub", "Instance new");
+            createAssoc(INSTANTIATION, "hub", TYPE, "instance-new", INSTANCE);      // +1
+            db.storeAssocTypeUri(assocId, ASSOCIATION);                               // -1
+            db.storeTopicTypeUri(instanceId, TOPIC_TYPE);                             // -1
+            topics = db.fetchTopicRelatedTopics(hubId, INSTANTIATION, TYPE, INSTANCE, "hub");
+            assertEquals(count - 1, topics.size());
+            assertEquals(count - 1, db.fetchRelatedIds(hubId, INSTANTIATION, TYPE, INSTANCE, "hub").size());
+            assertTrue(db.fetchRelatedIds(hubId, INSTANTIATION, TYPE, INSTANCE, "hub").contains(newInstanceId));
+            relTopics = db.fetchRelatedTopics(asList(hubId), INSTANTIATION, TYPE, INSTANCE, "hub");
+            assertEquals(count - 1, relTopics.get(hubId).size());
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        // once committed the hub is queried by index again
+        topics = db.fetchTopicRelatedTopics(hubId, INSTANTIATION, TYPE, INSTANCE, "hub");
+        assertEquals(count - 1, topics.size());
+    }
+
     @Test
     public void deleteAssoc() {
         DMXTransaction tx = db.beginTx();
@@ -148,6 +213,29 @@ public class Neo4jStorageTest {
         }
     }
 
+    @Test
+    public void acquireWriteLock() throws Exception {
+        long topicId = al.sd.fetchTopic("uri", DATA_TYPE).getId();
+        DMXTransaction tx = db.beginTx();
+        try {
+            db.storeTopicProperty(topicId, "count", 0L, false);
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        // 2 transactions increment the counter concurrently; the 2nd one must wait for the 1st one's commit
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> increment(topicId, locked, proceed));
+        locked.await();
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> increment(topicId, null, null));
+        Thread.sleep(100);
+        proceed.countDown();
+        first.get();
+        second.get();
+        assertEquals(2L, db.fetchProperty(topicId, "count"));
+    }
+
     @Test
     public void testFulltextIndex() {
         List<TopicModelImpl> topics;
@@ -253,6 +341,37 @@ public class Neo4jStorageTest {
         topics = db.fetchTopicsByProperty("score", 23L);  assertEquals(2, topics.size());
     }
 
+    @Test
+    public void propertyIndexHeaders() {
+        List<ObjectHeader> headers = db.fetchTopicHeadersByProperty("score", 23L);
+        assertEquals(2, headers.size());
+        assertEquals("dmx.notes.note", headers.get(0).getTypeUri());
+    }
+
+    @Test
+    public void assocHeadersByType() {
+        List<Long> assocIds = new ArrayList();
+        for (ObjectHeader header : db.fetchAssocHeadersByProperty("typeUri", db.fetchAssoc(assocId).getTypeUri())) {
+            assocIds.add(header.getId());
+        }
+        assertTrue(assocIds.contains(assocId));
+    }
+
+    @Test
+    public void objectExists() {
+        long topicId = db.fetchTopicHeadersByProperty("score", 123L).get(0).getId();
+        assertTrue(db.objectExists(topicId));
+        DMXTransaction tx = db.beginTx();
+        try {
+            db.deleteTopic(topicId);
+            assertFalse(db.objectExists(topicId));
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        assertFalse(db.objectExists(topicId));
+    }
+
     @Test
     public void propertyIndexRange() {
         List<TopicModelImpl> topics;
@@ -261,10 +380,51 @@ public class Neo4jStorageTest {
         topics = db.fetchTopicsByPropertyRange("score", 23L, 1234L); assertEquals(4, topics.size());
     }
 
+    // --- Model Hits ---
+
+    @Test
+    public void topicHitsInIdOrder() {
+        // more hits than fit in the first batch
+        DMXTransaction tx = db.beginTx();
+        try {
+            for (int i = 0; i < 300; i++) {
+                createTopic("item-" + i, "dmx.notes.item", "Item " + i);
+            }
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        List<Long> ids = hitIds(db.fetchTopicHits("typeUri", "dmx.notes.item"), -1);
+        assertEquals(300, ids.size());
+        for (int i = 1; i < ids.size(); i++) {
+            assertTrue(ids.get(i - 1) < ids.get(i));
+        }
+        assertEquals(ids, hitIds(db.queryTopicHitsFulltext(null, "item"), -1));
+        // resume after a given ID
+        assertEquals(ids.subList(151, 300), hitIds(db.fetchTopicHits("typeUri", "dmx.notes.item"), ids.get(150)));
+        assertEquals(300, db.fetchTopicHits("typeUri", "dmx.notes.item").size());
+        assertEquals(2, hitIds(db.fetchTopicHitsByProperty("score", 23L), -1).size());
+    }
+
 
 
     // ------------------------------------------------------------------------------------------------- Private Methods
 
+    private List<Long> hitIds(ModelHits<TopicModelImpl> hits, long skipPastId) {
+        try {
+            List<Long> ids = new ArrayList();
+            if (skipPastId != -1) {
+                hits.skipPast(skipPastId);
+            }
+            while (hits.hasNext()) {
+                ids.add(hits.next().getId());
+            }
+            return ids;
+        } finally {
+            hits.close();
+        }
+    }
+
     private void setupContent() {
         DMXTransaction tx = db.beginTx();
         try {
@@ -302,6 +462,30 @@ public class Neo4jStorageTest {
 
     // ---
 
+    /**
+     * Increments the "count" property in its own transaction.
+     *
+     * @param   locked      if not null: counted down once the lock is acquired.
+     * @param   proceed     if not null: awaited before the incremented value is written.
+     */
+    private void increment(long topicId, CountDownLatch locked, CountDownLatch proceed) {
+        DMXTransaction tx = db.beginTx();
+        try {
+            db.acquireWriteLock(topicId);
+            long count = (Long) db.fetchProperty(topicId, "count");
+            if (locked != null) {
+                locked.countDown();
+                proceed.await();
+            }
+            db.storeTopicProperty(topicId, "count", count + 1, false);
+            tx.success();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } finally {
+            tx.finish();
+        }
+    }
+
     private long createTopic(String uri, String typeUri, String value) {
         return createTopic(uri, typeUri, value, false);
     }
@@ -0,0 +1,44 @@
+package systems.dmx.core.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+
+
+public class AncestorIndexTest {
+
+    private static final String TYPE_URI = "dmx.contacts.person";
+
+    @Test
+    public void unrelatedInvalidationKeepsEntry() {
+        AncestorIndex index = new AncestorIndex();
+        long[] stamp = index.stamp();
+        index.objectChanged(1001);      // another stripe than the passed objects
+        index.put(1, TYPE_URI, new AncestorIndex.Entry(new long[] {3}, new long[] {1, 2, 3}), stamp);
+        AncestorIndex.Entry entry = index.get(1, TYPE_URI);
+        assertNotNull(entry);
+        assertArrayEquals(new long[] {3}, entry.ancestorIds);
+    }
+
+    @Test
+    public void invalidationOfPassedObjectDiscardsEntry() {
+        AncestorIndex index = new AncestorIndex();
+        long[] stamp = index.stamp();
+        index.objectChanged(2);         // passed while calculating
+        index.put(1, TYPE_URI, new AncestorIndex.Entry(new long[] {3}, new long[] {1, 2, 3}), stamp);
+        assertNull(index.get(1, TYPE_URI));
+    }
+
+    @Test
+    public void invalidationRemovesDependentEntries() {
+        AncestorIndex index = new AncestorIndex();
+        index.put(1, TYPE_URI, new AncestorIndex.Entry(new long[] {3}, new long[] {1, 2, 3}), index.stamp());
+        index.put(4, TYPE_URI, new AncestorIndex.Entry(new long[] {5}, new long[] {4, 5}), index.stamp());
+        index.objectChanged(2);
+        assertNull(index.get(1, TYPE_URI));
+        assertNotNull(index.get(4, TYPE_URI));
+    }
+}
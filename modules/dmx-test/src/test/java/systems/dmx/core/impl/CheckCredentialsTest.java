@@ -0,0 +1,127 @@
+package systems.dmx.core.impl;
+
+import static systems.dmx.core.Constants.*;
+import systems.dmx.core.Assoc;
+import systems.dmx.core.Topic;
+import systems.dmx.core.model.SimpleValue;
+import systems.dmx.core.service.accesscontrol.Credentials;
+import systems.dmx.core.service.accesscontrol.PrivilegedAccess;
+import systems.dmx.core.storage.spi.DMXTransaction;
+import systems.dmx.core.util.JavaUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.function.Supplier;
+
+
+
+public class CheckCredentialsTest extends CoreServiceTestEnvironment {
+
+    private static final String USER_ACCOUNT = "dmx.accesscontrol.user_account";
+    private static final String USERNAME     = "dmx.accesscontrol.username";
+    private static final String PASSWORD     = "dmx.accesscontrol.password";
+    private static final String PROP_SALT    = "dmx.accesscontrol.salt";
+
+    private PrivilegedAccess pa;
+    private Topic username, userAccount;
+    private Assoc passwordAssoc;
+
+    @Before
+    public void createUserAccount() {
+        pa = dmx.getPrivilegedAccess();
+        inTx(() -> {
+            dmx.createTopicType(mf.newTopicTypeModel(USERNAME,     "Username",     TEXT));
+            dmx.createTopicType(mf.newTopicTypeModel(PASSWORD,     "Password",     TEXT));
+            dmx.createTopicType(mf.newTopicTypeModel(USER_ACCOUNT, "User Account", TEXT));
+            username = dmx.createTopic(mf.newTopicModel(USERNAME, new SimpleValue("alice")));
+            userAccount = dmx.createTopic(mf.newTopicModel(USER_ACCOUNT, new SimpleValue("Account alice")));
+            createComposition(userAccount, username);
+            passwordAssoc = createPassword("secret");
+            return null;
+        });
+    }
+
+    // ---
+
+    @Test
+    public void replacedPasswordTopicIsDetected() {
+        assertEquals(username.getId(), checkCredentials("alice", "secret").getId());
+        assertNull(checkCredentials("alice", "wrong"));
+        // the User Account gets another Password topic
+        inTx(() -> {
+            passwordAssoc.delete();
+            createPassword("new");
+            return null;
+        });
+        assertNull(checkCredentials("alice", "secret"));
+        assertEquals(username.getId(), checkCredentials("alice", "new").getId());
+    }
+
+    @Test
+    public void deletedUserAccountIsDetected() {
+        assertEquals(username.getId(), checkCredentials("alice", "secret").getId());
+        inTx(() -> {
+            userAccount.delete();
+            return null;
+        });
+        try {
+            checkCredentials("alice", "secret");
+            fail();
+        } catch (RuntimeException e) {
+            // is expected: "No User Account topic for username"
+        }
+    }
+
+    @Test
+    public void hashWithOtherCostIsRehashed() {
+        // a hash calculated with 1000 PBKDF2 iterations, while the configured cost is 0 (single SHA-256 hash)
+        Topic password = dmx.getTopic(passwordAssoc.getPlayerByRole(CHILD).getId());
+        String salt = (String) inTx(() -> password.getProperty(PROP_SALT));
+        String hash = "-PBKDF2-1000-" + JavaUtils.encodePBKDF2("secret", salt, 1000);
+        inTx(() -> {
+            dmx.al.db.storeTopicValue(password.getId(), new SimpleValue(hash), PASSWORD, false);
+            return null;
+        });
+        assertEquals(username.getId(), checkCredentials("alice", "secret").getId());
+        String rehashed = (String) inTx(() -> dmx.getTopic(password.getId()).getSimpleValue().toString());
+        assertFalse(rehashed.startsWith("-PBKDF2-"));
+        assertNull(checkCredentials("alice", "wrong"));
+        assertEquals(username.getId(), checkCredentials("alice", "secret").getId());
+    }
+
+    // ---
+
+    private Topic checkCredentials(String username, String password) {
+        return (Topic) inTx(() -> pa.checkCredentials(new Credentials(username, password)));
+    }
+
+    private Assoc createPassword(String password) {
+        Topic passwordTopic = dmx.createTopic(mf.newTopicModel(PASSWORD, new SimpleValue(JavaUtils.random256())));
+        pa.storePasswordHash(new Credentials("alice", password), passwordTopic.getModel());
+        return createComposition(userAccount, passwordTopic);
+    }
+
+    private Assoc createComposition(Topic parent, Topic child) {
+        return dmx.createAssoc(mf.newAssocModel(COMPOSITION,
+            mf.newTopicPlayerModel(parent.getId(), PARENT),
+            mf.newTopicPlayerModel(child.getId(), CHILD)
+        ));
+    }
+
+    private Object inTx(Supplier<Object> work) {
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            Object result = work.get();
+            tx.success();
+            return result;
+        } finally {
+            tx.finish();
+        }
+    }
+}
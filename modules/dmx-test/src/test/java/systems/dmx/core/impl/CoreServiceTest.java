@@ -13,6 +13,8 @@ import systems.dmx.core.Topic;
 import systems.dmx.core.TopicType;
 import systems.dmx.core.model.ChildTopicsModel;
 import systems.dmx.core.model.SimpleValue;
+import systems.dmx.core.service.ResultPage;
+import systems.dmx.core.service.TopicResult;
 import systems.dmx.core.storage.spi.DMXTransaction;
 
 import static org.junit.Assert.assertEquals;
@@ -23,11 +25,15 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import org.codehaus.jettison.json.JSONObject;
 import org.junit.Ignore;
 import org.junit.Test;
 
 import static java.util.Arrays.asList;
+import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Level;
@@ -105,6 +111,82 @@ public class CoreServiceTest extends CoreServiceTestEnvironment {
         }
     }
 
+    @Test
+    public void writeJSON() throws Exception {
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            dmx.createTopic(mf.newTopicModel("systems.dmx.notes", PLUGIN));
+            dmx.createTopic(mf.newTopicModel("systems.dmx.topicmaps", PLUGIN));
+            TopicResult result = new TopicResult("dmx", PLUGIN, false, dmx.getTopicsByType(PLUGIN));
+            //
+            StringWriter writer = new StringWriter();
+            result.writeJSON(writer);
+            assertEquals(result.toJSON().toString(), new JSONObject(writer.toString()).toString());
+            //
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+    }
+
+    @Test
+    public void getTopicsByTypePaged() {
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            for (int i = 0; i < 5; i++) {
+                dmx.createTopic(mf.newTopicModel(PLUGIN));
+            }
+            List<Topic> topics = sortById(dmx.getTopicsByType(PLUGIN));
+            // follow the cursors
+            List<Topic> paged = new ArrayList();
+            ResultPage<Topic> page = null;
+            do {
+                page = dmx.getTopicsByType(PLUGIN, page != null ? page.cursor : null, 2);
+                assertTrue(page.items.size() <= 2);
+                paged.addAll(page.items);
+            } while (page.cursor != null);
+            assertEquals(topics, paged);
+            assertEquals(topics.size(), page.totalEstimate);
+            // offset
+            page = dmx.getTopicsByType(PLUGIN, 3, 2);
+            assertEquals(topics.subList(3, 5), page.items);
+            assertNull(page.cursor);        // last page
+            //
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+    }
+
+    @Test
+    public void getTopicsByTypePagedWithChanges() {
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            for (int i = 0; i < 6; i++) {
+                dmx.createTopic(mf.newTopicModel(PLUGIN));
+            }
+            List<Topic> topics = sortById(dmx.getTopicsByType(PLUGIN));
+            ResultPage<Topic> page = dmx.getTopicsByType(PLUGIN, null, 2);
+            assertEquals(topics.subList(0, 2), page.items);
+            // change the result between two page fetches: a topic of the fetched page is deleted, one is created
+            dmx.deleteTopic(topics.get(0).getId());
+            Topic topic = dmx.createTopic(mf.newTopicModel(PLUGIN));
+            // the next pages continue right after the last topic fetched: nothing is skipped or repeated
+            List<Topic> paged = new ArrayList();
+            do {
+                page = dmx.getTopicsByType(PLUGIN, page.cursor, 2);
+                paged.addAll(page.items);
+            } while (page.cursor != null);
+            List<Topic> expected = new ArrayList(topics.subList(2, 6));
+            expected.add(topic);
+            assertEquals(expected, paged);
+            //
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+    }
+
     @Test
     public void createWithComposite() {
         DMXTransaction tx = dmx.beginTx();
@@ -754,10 +836,10 @@ public class CoreServiceTest extends CoreServiceTestEnvironment {
             //
             // re-execute query
             childTypes = getChildTypes(type);
-            assertEquals(3, childTypes.size());
-            // ### Note: the Lucene index update is not visible within the transaction!
-            // ### That's contradictory to the Neo4j documentation!
-            // ### It states that QueryContext's tradeCorrectnessForSpeed behavior is off by default.
+            assertEquals(2, childTypes.size());
+            // Note: the change is visible within the transaction. A Lucene index update is only visible once the
+            // transaction is committed, so Neo4jStorage traverses the nodes whose assocs were changed within the
+            // transaction, regardless of their degree (see its DegreeEstimator).
             //
             tx.success();
         } finally {
@@ -788,10 +870,10 @@ public class CoreServiceTest extends CoreServiceTestEnvironment {
             //
             // re-execute query
             childTypes = getChildTypes(type);
-            assertEquals(3, childTypes.size());
-            // ### Note: the Lucene index update is not visible within the transaction!
-            // ### That's contradictory to the Neo4j documentation!
-            // ### It states that QueryContext's tradeCorrectnessForSpeed behavior is off by default.
+            assertEquals(2, childTypes.size());
+            // Note: the change is visible within the transaction. A Lucene index update is only visible once the
+            // transaction is committed, so Neo4jStorage traverses the nodes whose assocs were changed within the
+            // transaction, regardless of their degree (see its DegreeEstimator).
             //
             tx.success();
         } finally {
@@ -1276,6 +1358,29 @@ public class CoreServiceTest extends CoreServiceTestEnvironment {
         }
     }
 
+    @Test
+    public void getTopicsByTypeAndProperty() {
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            setupWorkspacesModel();
+            //
+            Topic t1 = dmx.createTopic(mf.newTopicModel(PLUGIN));
+            Topic t2 = dmx.createTopic(mf.newTopicModel(PLUGIN));
+            Topic t3 = dmx.createTopic(mf.newTopicModel(PLUGIN_MIGRATION_NR, new SimpleValue(23)));
+            Topic ws = dmx.createTopic(mf.newTopicModel(PLUGIN));
+            //
+            dmx.getPrivilegedAccess().assignToWorkspace(t1, ws.getId());
+            dmx.getPrivilegedAccess().assignToWorkspace(t3, ws.getId());
+            //
+            List<Topic> topics = dmx.getTopicsByTypeAndProperty(PLUGIN, "dmx.workspaces.workspace_id", ws.getId());
+            assertEquals(asList(t1), topics);
+            //
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+    }
+
     @Test
     public void privilegedAccessAssignAssocToWorkspace() {
         DMXTransaction tx = dmx.beginTx();
@@ -1371,4 +1476,9 @@ public class CoreServiceTest extends CoreServiceTestEnvironment {
     private List<RelatedAssoc> getTestAssocs(Topic topic) {
         return topic.getRelatedAssocs(ASSOCIATION, DEFAULT, DEFAULT, ASSOCIATION);
     }
+
+    private List<Topic> sortById(List<Topic> topics) {
+        topics.sort(Comparator.comparingLong(Topic::getId));
+        return topics;
+    }
 }
@@ -15,7 +15,11 @@ public class CoreServiceTestEnvironment {
 
     // ------------------------------------------------------------------------------------------------------- Constants
 
-    private static final String DATABASE_FACTORY = "systems.dmx.storage.neo4j.Neo4jStorageFactory";
+    // Note: the tests run against Neo4j by default. To run them against the in-memory storage use the
+    // "memory-storage" profile (mvn test -P all,memory-storage), or -Ddmx.database.factory=
+    // systems.dmx.storage.memory.MemoryStorageFactory
+    private static final String DATABASE_FACTORY = System.getProperty("dmx.database.factory",
+        "systems.dmx.storage.neo4j.Neo4jStorageFactory");
 
     // ---------------------------------------------------------------------------------------------- Instance Variables
 
@@ -0,0 +1,73 @@
+package systems.dmx.core.impl;
+
+import systems.dmx.core.service.accesscontrol.Credentials;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+
+
+public class CredentialsCacheTest {
+
+    private static final long USERNAME_ID = 10, ACCOUNT_ID = 11, PASSWORD_ID = 12, CONFIG_ID = 13;
+
+    @Test
+    public void hitOnlyForSamePassword() {
+        CredentialsCache cache = new CredentialsCache();
+        cache.put(new Credentials("alice", "secret"), USERNAME_ID, ACCOUNT_ID, PASSWORD_ID, cache.stamp());
+        assertEquals(USERNAME_ID, cache.get(new Credentials("alice", "secret")));
+        assertEquals(-1, cache.get(new Credentials("alice", "wrong")));
+        assertEquals(-1, cache.get(new Credentials("bob", "secret")));
+    }
+
+    @Test
+    public void passwordChangeInvalidates() {
+        CredentialsCache cache = new CredentialsCache();
+        cache.put(new Credentials("alice", "secret"), USERNAME_ID, ACCOUNT_ID, PASSWORD_ID, cache.stamp());
+        cache.topicChanged(PASSWORD_ID);
+        assertEquals(-1, cache.get(new Credentials("alice", "secret")));
+    }
+
+    @Test
+    public void concurrentInvalidationPreventsPut() {
+        CredentialsCache cache = new CredentialsCache();
+        cache.put(new Credentials("bob", "pw"), 20, 21, 22, cache.stamp());     // cache must not be empty
+        long stamp = cache.stamp();
+        // a password change happens while "alice" is verified
+        cache.topicChanged(PASSWORD_ID);
+        cache.put(new Credentials("alice", "secret"), USERNAME_ID, ACCOUNT_ID, PASSWORD_ID, stamp);
+        assertEquals(-1, cache.get(new Credentials("alice", "secret")));
+    }
+
+    @Test
+    public void invalidationRepeatedOnTxFinished() {
+        CredentialsCache cache = new CredentialsCache();
+        // the password is changed while the cache is empty ...
+        cache.topicChanged(PASSWORD_ID);
+        // ... and meanwhile another thread caches the old password from committed data
+        cache.put(new Credentials("alice", "old"), USERNAME_ID, ACCOUNT_ID, PASSWORD_ID, cache.stamp());
+        assertEquals(USERNAME_ID, cache.get(new Credentials("alice", "old")));
+        // the changing transaction finishes
+        cache.txFinished();
+        assertEquals(-1, cache.get(new Credentials("alice", "old")));
+    }
+
+    @Test
+    public void loginEnabled() {
+        CredentialsCache cache = new CredentialsCache();
+        // not cached without verified credentials
+        cache.putLoginEnabled(USERNAME_ID, CONFIG_ID, true, cache.stamp());
+        assertNull(cache.getLoginEnabled(USERNAME_ID));
+        //
+        cache.put(new Credentials("alice", "secret"), USERNAME_ID, ACCOUNT_ID, PASSWORD_ID, cache.stamp());
+        cache.putLoginEnabled(USERNAME_ID, CONFIG_ID, true, cache.stamp());
+        assertTrue(cache.getLoginEnabled(USERNAME_ID));
+        // a config change invalidates the entry as a whole
+        cache.topicChanged(CONFIG_ID);
+        assertNull(cache.getLoginEnabled(USERNAME_ID));
+        assertEquals(-1, cache.get(new Credentials("alice", "secret")));
+    }
+}
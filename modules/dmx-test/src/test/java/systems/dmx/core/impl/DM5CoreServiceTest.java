@@ -1,6 +1,7 @@
 package systems.dmx.core.impl;
 
 import static systems.dmx.core.Constants.*;
+import systems.dmx.core.Assoc;
 import systems.dmx.core.ChildTopics;
 import systems.dmx.core.CompDef;
 import systems.dmx.core.DMXObject;
@@ -9,9 +10,14 @@ import systems.dmx.core.RelatedTopic;
 import systems.dmx.core.Topic;
 import systems.dmx.core.TopicType;
 import systems.dmx.core.model.ChildTopicsModel;
+import systems.dmx.core.model.DMXObjectModel;
 import systems.dmx.core.model.RelatedTopicModel;
 import systems.dmx.core.model.SimpleValue;
 import systems.dmx.core.model.TopicModel;
+import systems.dmx.core.service.ImportReport;
+import systems.dmx.core.service.event.BulkImportOptOut;
+import systems.dmx.core.service.event.PostCreateAssoc;
+import systems.dmx.core.service.event.PostCreateTopic;
 import systems.dmx.core.storage.spi.DMXTransaction;
 
 import static org.junit.Assert.assertEquals;
@@ -26,6 +32,7 @@ import org.junit.Ignore;
 import org.junit.Test;
 
 import static java.util.Arrays.asList;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -229,6 +236,110 @@ public class DM5CoreServiceTest extends CoreServiceTestEnvironment {
         }
     }
 
+    @Test
+    public void simpleValueUnificationAfterDeletion() {
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            defineValueLottoModel();
+            dmx.createTopic(mf.newTopicModel("lotto.draw", mf.newChildTopicsModel()
+                .add("lotto.number", 23)
+                .add("lotto.number", 42)
+            ));
+            Topic number = dmx.getTopicByValue("lotto.number", new SimpleValue(23));
+            number.delete();
+            // the deleted value must not be reused within the same transaction
+            dmx.createTopic(mf.newTopicModel("lotto.draw", mf.newChildTopicsModel()
+                .add("lotto.number", 23)
+                .add("lotto.number", 12)
+            ));
+            //
+            assertSame(3, dmx.getTopicsByType("lotto.number").size());
+            assertTrue(dmx.getTopicByValue("lotto.number", new SimpleValue(23)).getId() != number.getId());
+        } finally {
+            tx.finish();
+        }
+    }
+
+    @Test
+    public void importObjects() {
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            defineLottoModel();
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        // Note: the import commits its batches itself
+        List<DMXObjectModel> models = asList(
+            mf.newTopicModel("lotto.draw.1", "lotto.draw", mf.newChildTopicsModel()
+                .add("lotto.number", 23)
+                .add("lotto.number", 42)
+            ),
+            mf.newTopicModel("lotto.draw.2", "lotto.draw", mf.newChildTopicsModel()
+                .add("lotto.number", 42)
+                .add("lotto.number", 12)
+            ),
+            mf.newAssocModel(ASSOCIATION,
+                mf.newTopicPlayerModel("lotto.draw.1", DEFAULT),
+                mf.newTopicPlayerModel("lotto.draw.2", DEFAULT)
+            )
+        );
+        CreateListener listener = new CreateListener();
+        CreateListener optOutListener = new OptOutCreateListener();
+        addCreateListener(listener);
+        addCreateListener(optOutListener);
+        ImportReport report;
+        try {
+            report = dmx.importObjects(models.iterator(), 2);
+        } finally {
+            removeCreateListener(listener);
+            removeCreateListener(optOutListener);
+        }
+        assertSame(2, report.topics);
+        assertSame(1, report.assocs);
+        assertSame(2, report.batches);
+        // the create events are delivered, except to the listener which opts out
+        assertTrue(listener.topicUris.containsAll(asList("lotto.draw.1", "lotto.draw.2")));
+        assertTrue(listener.assocTypeUris.contains(ASSOCIATION));
+        assertEquals(0, optOutListener.topicUris.size());
+        assertEquals(0, optOutListener.assocTypeUris.size());
+        //
+        tx = dmx.beginTx();
+        try {
+            // the deferred labels are calculated, and fulltext indexed
+            assertEquals("23, 42", dmx.getTopicByUri("lotto.draw.1").getSimpleValue().toString());
+            assertEquals("42, 12", dmx.getTopicByUri("lotto.draw.2").getSimpleValue().toString());
+            // Note: the fulltext analyzer splits at whitespace only, so "42," does not match "42"
+            assertEquals("23, 42", dmx.queryTopicsFulltext("42", "lotto.draw", false).topics.get(0).getSimpleValue()
+                .toString());
+            assertEquals("42, 12", dmx.queryTopicsFulltext("12", "lotto.draw", false).topics.get(0).getSimpleValue()
+                .toString());
+            assertSame(3, dmx.getTopicsByType("lotto.number").size());
+            assertSame(1, dmx.getTopicByUri("lotto.draw.1").getRelatedTopics(ASSOCIATION, DEFAULT, DEFAULT, "lotto.draw").size());
+        } finally {
+            tx.finish();
+        }
+    }
+
+    @Test
+    public void createEventsOutsideImport() {
+        CreateListener optOutListener = new OptOutCreateListener();
+        addCreateListener(optOutListener);
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            defineLottoModel();
+            dmx.createTopic(mf.newTopicModel("lotto.draw.1", "lotto.draw", mf.newChildTopicsModel()
+                .add("lotto.number", 23)
+            ));
+            // the opt-out applies to bulk imports only
+            assertTrue(optOutListener.topicUris.contains("lotto.draw.1"));
+            tx.success();
+        } finally {
+            tx.finish();
+            removeCreateListener(optOutListener);
+        }
+    }
+
     // Author: Malte Reißig, revised by jri at 2020/04/26
     @Test
     public void childParentValueUpdate() {
@@ -350,4 +461,37 @@ public class DM5CoreServiceTest extends CoreServiceTestEnvironment {
             ))
         );
     }
+
+    // ---
+
+    private void addCreateListener(CreateListener listener) {
+        dmx.al.em.addListener(CoreEvent.POST_CREATE_TOPIC, listener);
+        dmx.al.em.addListener(CoreEvent.POST_CREATE_ASSOC, listener);
+    }
+
+    private void removeCreateListener(CreateListener listener) {
+        dmx.al.em.removeListener(CoreEvent.POST_CREATE_TOPIC, listener);
+        dmx.al.em.removeListener(CoreEvent.POST_CREATE_ASSOC, listener);
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Classes
+
+    private static class CreateListener implements PostCreateTopic, PostCreateAssoc {
+
+        private List<String> topicUris = new ArrayList();
+        private List<String> assocTypeUris = new ArrayList();
+
+        @Override
+        public void postCreateTopic(Topic topic) {
+            topicUris.add(topic.getUri());
+        }
+
+        @Override
+        public void postCreateAssoc(Assoc assoc) {
+            assocTypeUris.add(assoc.getTypeUri());
+        }
+    }
+
+    private static class OptOutCreateListener extends CreateListener implements BulkImportOptOut {
+    }
 }
@@ -0,0 +1,56 @@
+package systems.dmx.core.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+
+
+public class LongKeyedCacheTest {
+
+    @Test
+    public void putGetRemove() {
+        LongKeyedCache<String> cache = new LongKeyedCache(100);
+        for (long key = 0; key < 100; key++) {
+            cache.put(key, "v" + key);
+        }
+        assertEquals(100, cache.size());
+        // removing every other entry must not break the probe sequences of the remaining ones
+        for (long key = 0; key < 100; key += 2) {
+            cache.remove(key);
+        }
+        assertEquals(50, cache.size());
+        for (long key = 0; key < 100; key++) {
+            if (key % 2 == 0) {
+                assertNull(cache.get(key));
+            } else {
+                assertEquals("v" + key, cache.get(key));
+            }
+        }
+        assertEquals(0, cache.evictions());
+    }
+
+    @Test
+    public void evictionKeepsReferencedEntries() {
+        LongKeyedCache<String> cache = new LongKeyedCache(10);
+        for (long key = 0; key < 10; key++) {
+            cache.put(key, "v" + key);
+        }
+        cache.get(3);
+        for (long key = 10; key < 19; key++) {
+            cache.put(key, "v" + key);
+        }
+        assertEquals(10, cache.size());
+        assertEquals(9, cache.evictions());
+        assertEquals("v3", cache.get(3));
+    }
+
+    @Test
+    public void sizeZeroCachesNothing() {
+        LongKeyedCache<String> cache = new LongKeyedCache(0);
+        cache.put(1, "v1");
+        assertNull(cache.get(1));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,119 @@
+package systems.dmx.core.impl;
+
+import static systems.dmx.core.Constants.*;
+import systems.dmx.core.model.SimpleValue;
+import systems.dmx.core.storage.spi.DMXTransaction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+
+
+public class ModelCacheTest extends CoreServiceTestEnvironment {
+
+    private ModelCache cache;
+    private long topicId;
+
+    @Before
+    public void createTopic() {
+        cache = dmx.al.modelCache;
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            topicId = dmx.createTopic(mf.newTopicModel(PLUGIN_NAME, new SimpleValue("a"))).getId();
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        assertEquals("a", value());     // the topic is cached now
+    }
+
+    // ---
+
+    @Test
+    public void rollbackDiscardsCachedWrites() {
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            storeValue("b");
+            assertEquals("b", value());
+            cache.storeTopicTypeUri(topicId, PLUGIN_SYMBOLIC_NAME);
+            assertEquals(PLUGIN_SYMBOLIC_NAME, cache.fetchTopic(topicId).getTypeUri());
+        } finally {
+            tx.finish();        // rollback
+        }
+        assertEquals("a", value());
+        assertEquals(PLUGIN_NAME, cache.fetchTopic(topicId).getTypeUri());
+    }
+
+    @Test
+    public void storeTopicValueInvalidates() {
+        inTx(() -> storeValue("b"));
+        assertEquals("b", value());
+        assertEquals("b", otherThread(this::value));
+    }
+
+    @Test
+    public void storeTopicTypeUriInvalidates() {
+        inTx(() -> cache.storeTopicTypeUri(topicId, PLUGIN_SYMBOLIC_NAME));
+        assertEquals(PLUGIN_SYMBOLIC_NAME, cache.fetchTopic(topicId).getTypeUri());
+        assertEquals(PLUGIN_SYMBOLIC_NAME, cache.fetchObject(topicId).getTypeUri());
+    }
+
+    @Test
+    public void deleteTopicInvalidates() {
+        inTx(() -> dmx.getTopic(topicId).delete());
+        try {
+            cache.fetchTopic(topicId);
+            fail();
+        } catch (RuntimeException e) {
+            // is expected
+        }
+    }
+
+    @Test
+    public void otherThreadsNeverSeeUncommittedModels() {
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            storeValue("b");
+            assertEquals("b", value());     // read (and not cached) by the writing thread
+            // other threads see the committed model, and cache it
+            assertEquals("a", otherThread(this::value));
+            assertEquals("a", otherThread(this::value));
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        // once committed the model cached meanwhile is invalidated
+        assertEquals("b", otherThread(this::value));
+        assertEquals("b", value());
+    }
+
+    // ---
+
+    private String value() {
+        return cache.fetchTopic(topicId).getSimpleValue().toString();
+    }
+
+    private void storeValue(String value) {
+        cache.storeTopicValue(topicId, new SimpleValue(value), PLUGIN_NAME, false);
+    }
+
+    private void inTx(Runnable write) {
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            write.run();
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+    }
+
+    private <T> T otherThread(Supplier<T> read) {
+        return CompletableFuture.supplyAsync(read).join();
+    }
+}
@@ -0,0 +1,116 @@
+package systems.dmx.core.impl;
+
+import systems.dmx.core.service.CacheStats;
+import systems.dmx.core.service.accesscontrol.Operation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+
+public class PermissionCacheTest {
+
+    private static final String OWNER = "dmx.accesscontrol.owner";
+
+    @Test
+    public void hitAfterMiss() {
+        PermissionCache cache = new PermissionCache();
+        AtomicInteger calculations = new AtomicInteger();
+        assertTrue(cache.get("alice", Operation.READ, 1234, () -> calculations.incrementAndGet() > 0));
+        assertTrue(cache.get("alice", Operation.READ, 1234, () -> calculations.incrementAndGet() > 0));
+        assertEquals(1, calculations.get());
+        //
+        CacheStats stats = cache.getStats();
+        assertEquals(1, stats.hits);
+        assertEquals(1, stats.misses);
+        assertEquals(1, stats.size);
+    }
+
+    @Test
+    public void keyedByUserAndOperation() {
+        PermissionCache cache = new PermissionCache();
+        assertTrue(cache.get("alice", Operation.READ, 1234, () -> true));
+        assertFalse(cache.get("alice", Operation.WRITE, 1234, () -> false));
+        assertFalse(cache.get(null, Operation.READ, 1234, () -> false));      // anonymous
+        assertTrue(cache.get("alice", Operation.READ, 1234, () -> false));
+        assertEquals(3, cache.getStats().size);
+    }
+
+    @Test
+    public void ownerChangeInvalidatesWorkspace() {
+        PermissionCache cache = new PermissionCache();
+        assertFalse(cache.get("alice", Operation.WRITE, 1234, () -> false));
+        assertTrue(cache.get("alice", Operation.WRITE, 5678, () -> true));
+        cache.propertyChanged(1234, OWNER);
+        // invalidated workspace is bypassed until the transaction has finished ...
+        assertTrue(cache.get("alice", Operation.WRITE, 1234, () -> true));
+        assertFalse(cache.get("alice", Operation.WRITE, 1234, () -> false));
+        // ... other workspaces are not affected
+        assertTrue(cache.get("alice", Operation.WRITE, 5678, () -> false));
+        //
+        cache.txFinished();
+        assertTrue(cache.get("alice", Operation.WRITE, 1234, () -> true));
+        assertTrue(cache.get("alice", Operation.WRITE, 1234, () -> false));
+    }
+
+    @Test
+    public void decisionCalculatedDuringInvalidationIsNotCached() {
+        PermissionCache cache = new PermissionCache();
+        // while alice's decision is calculated (from the old state) another thread changes the owner and commits
+        assertTrue(cache.get("alice", Operation.WRITE, 1234, () -> {
+            CompletableFuture.runAsync(() -> {
+                cache.propertyChanged(1234, OWNER);
+                cache.txFinished();
+            }).join();
+            return true;
+        }));
+        // the stale decision is not served
+        assertFalse(cache.get("alice", Operation.WRITE, 1234, () -> false));
+        assertFalse(cache.get("alice", Operation.WRITE, 1234, () -> true));
+        assertEquals(1, cache.getStats().size);
+    }
+
+    @Test
+    public void invalidationOfOtherWorkspaceKeepsDecision() {
+        PermissionCache cache = new PermissionCache();
+        assertTrue(cache.get("alice", Operation.WRITE, 1234, () -> {
+            CompletableFuture.runAsync(() -> {
+                cache.propertyChanged(5678, OWNER);
+                cache.txFinished();
+            }).join();
+            return true;
+        }));
+        assertTrue(cache.get("alice", Operation.WRITE, 1234, () -> false));
+        assertEquals(1, cache.getStats().hits);
+    }
+
+    @Test
+    public void otherPropertiesDoNotInvalidate() {
+        PermissionCache cache = new PermissionCache();
+        assertTrue(cache.get("alice", Operation.READ, 1234, () -> true));
+        cache.propertyChanged(1234, "dmx.accesscontrol.modifier");
+        assertTrue(cache.get("alice", Operation.READ, 1234, () -> false));
+    }
+
+    @Test
+    public void listenersNotifiedOnTxFinished() {
+        PermissionCache cache = new PermissionCache();
+        List<Long> notified = new ArrayList();
+        cache.addInvalidationListener(notified::add);
+        cache.propertyChanged(1234, OWNER);
+        assertTrue(notified.isEmpty());
+        cache.txFinished();
+        assertEquals(Arrays.asList(1234L), notified);
+        cache.txFinished();
+        assertEquals(1, notified.size());
+    }
+}
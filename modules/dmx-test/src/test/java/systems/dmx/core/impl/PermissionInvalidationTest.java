@@ -0,0 +1,74 @@
+package systems.dmx.core.impl;
+
+import static systems.dmx.core.Constants.*;
+import systems.dmx.core.Topic;
+import systems.dmx.core.model.SimpleValue;
+import systems.dmx.core.storage.spi.DMXTransaction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+
+public class PermissionInvalidationTest extends CoreServiceTestEnvironment {
+
+    private static final String WORKSPACE = "dmx.workspaces.workspace";
+    private static final String SHARING_MODE = "dmx.workspaces.sharing_mode";
+
+    private List<Long> invalidated = new ArrayList();
+
+    @Before
+    public void createTypes() {
+        inTx(() -> {
+            dmx.createTopicType(mf.newTopicTypeModel(WORKSPACE, "Workspace", TEXT));
+            dmx.createTopicType(mf.newTopicTypeModel(SHARING_MODE, "Sharing Mode", TEXT));
+        });
+        dmx.al.permissionCache.addInvalidationListener(invalidated::add);
+    }
+
+    // ---
+
+    @Test
+    public void compositeTopicDoesNotInvalidate() {
+        inTx(() -> dmx.createTopic(mf.newTopicModel(PLUGIN, mf.newChildTopicsModel()
+            .set(PLUGIN_NAME, "Test Plugin")
+            .set(PLUGIN_SYMBOLIC_NAME, "systems.dmx.test")
+            .set(PLUGIN_MIGRATION_NR, 0)
+        )));
+        assertTrue(invalidated.isEmpty());
+    }
+
+    @Test
+    public void sharingModeChangeInvalidatesWorkspace() {
+        Topic[] topics = new Topic[2];
+        inTx(() -> {
+            topics[0] = dmx.createTopic(mf.newTopicModel(WORKSPACE, new SimpleValue("Workspace 1")));
+            topics[1] = dmx.createTopic(mf.newTopicModel(SHARING_MODE, new SimpleValue("Private")));
+        });
+        assertTrue(invalidated.isEmpty());
+        inTx(() -> dmx.createAssoc(mf.newAssocModel(COMPOSITION,
+            mf.newTopicPlayerModel(topics[0].getId(), PARENT),
+            mf.newTopicPlayerModel(topics[1].getId(), CHILD)
+        )));
+        assertEquals(Arrays.asList(topics[0].getId()), invalidated);
+    }
+
+    // ---
+
+    private void inTx(Runnable write) {
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            write.run();
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+    }
+}
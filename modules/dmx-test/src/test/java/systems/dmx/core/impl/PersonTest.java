@@ -152,6 +152,66 @@ public class PersonTest extends CoreServiceTestEnvironment {
         }
     }
 
+    @Test
+    public void queryTopicsFulltextSearchChildTopics() {
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            definePersonModel();
+            createPerson();
+            // "Berlin" matches both, City and Address; the Person is found once
+            assertEquals(1, dmx.queryTopicsFulltext("Berlin", PERSON, true).topics.size());
+            assertEquals(1, dmx.queryTopicsFulltext("Stauges", PERSON, true).topics.size());
+            assertEquals(0, dmx.queryTopicsFulltext("XYZ", PERSON, true).topics.size());
+            // a 2nd Person shares the City (a value); the new parent must be found
+            dmx.createTopic(mf.newTopicModel(PERSON, mf.newChildTopicsModel()
+                .set(PERSON_NAME, mf.newChildTopicsModel()
+                    .set(FIRST_NAME, "Ida")
+                    .set(LAST_NAME,  "Bohn"))
+                .add(ADDRESS + "#" + ADDRESS_ENTRY, mf.newChildTopicsModel()
+                    .set(STREET,      "Lindenstr. 5")
+                    .set(CITY,        "Berlin"))
+            ));
+            assertEquals(2, dmx.queryTopicsFulltext("Berlin", PERSON, true).topics.size());
+            assertEquals(1, dmx.queryTopicsFulltext("Bohn", PERSON, true).topics.size());
+            //
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+    }
+
+    @Test
+    public void queryTopicsFulltextSearchChildTopicsAfterReassignment() {
+        Topic person;
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            definePersonModel();
+            person = createPerson();
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        // the ancestor index is filled
+        assertEquals(person.getId(), queryPersons("Stauges").get(0).getId());
+        assertEquals(0, queryPersons("Smith").size());
+        // reassign the Last Name
+        tx = dmx.beginTx();
+        try {
+            person.update(mf.newChildTopicsModel().set(PERSON_NAME, mf.newChildTopicsModel()
+                .set(FIRST_NAME, "Dave")
+                .set(LAST_NAME,  "Smith")));
+            // the updating thread sees the change before commit
+            assertEquals(0, dmx.queryTopicsFulltext("Stauges", PERSON, true).topics.size());
+            assertEquals(1, dmx.queryTopicsFulltext("Smith", PERSON, true).topics.size());
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        // the "Stauges" value topic is still there, but not assigned anymore
+        assertEquals(0, queryPersons("Stauges").size());
+        assertEquals(person.getId(), queryPersons("Smith").get(0).getId());
+    }
+
     @Test
     public void getTopicByValueNullTypeUri() {
         DMXTransaction tx = dmx.beginTx();
@@ -453,8 +513,58 @@ public class PersonTest extends CoreServiceTestEnvironment {
         }
     }
 
+    @Test
+    public void loadChildTopicsBatched() {
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            definePersonModel();
+            createPerson();
+            Topic person = dmx.createTopic(mf.newTopicModel(PERSON, mf.newChildTopicsModel()
+                .set(PERSON_NAME, mf.newChildTopicsModel()
+                    .set(FIRST_NAME, "Dave")
+                    .set(LAST_NAME,  "Gallo"))
+                .add(EMAIL_ADDRESS, "me@example2.com")
+                .add(EMAIL_ADDRESS, "me@example.com")
+                .add(EMAIL_ADDRESS, "dave@example.com")
+            ));
+            //
+            List<Topic> persons = dmx.getTopicsByType(PERSON);
+            assertEquals(2, persons.size());
+            List<DMXObjectModelImpl> models = persons.stream().map(
+                p -> (DMXObjectModelImpl) p.getModel()
+            ).collect(Collectors.toList());
+            new ChildTopicsFetcher(dmx.al).fetch(models, true);     // deep=true
+            // batched loading yields the same result as per-object loading
+            for (Topic p : persons) {
+                Topic _p = dmx.getTopic(p.getId()).loadChildTopics();
+                assertEquals(_p.toJSON().toString(), p.toJSON().toString());
+                int emailAddresses = p.getId() == person.getId() ? 3 : 1;
+                assertEquals(emailAddresses, p.getModel().getChildTopics().getTopics(EMAIL_ADDRESS).size());
+            }
+            // the sequence order is kept
+            Topic p = persons.get(0).getId() == person.getId() ? persons.get(0) : persons.get(1);
+            assertEquals(asList("me@example2.com", "me@example.com", "dave@example.com"),
+                p.getChildTopics().getTopics(EMAIL_ADDRESS).stream().map(
+                    e -> e.getSimpleValue().toString()
+                ).collect(Collectors.toList()));
+            //
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+    }
+
     // ------------------------------------------------------------------------------------------------- Private Methods
 
+    private List<Topic> queryPersons(String query) {
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            return dmx.queryTopicsFulltext(query, PERSON, true).topics;
+        } finally {
+            tx.finish();
+        }
+    }
+
     private void definePersonModel() {
         defineDateModel();
         defineAddressModel();
@@ -0,0 +1,128 @@
+package systems.dmx.core.impl;
+
+import systems.dmx.core.osgi.PluginActivator;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+
+
+public class PluginManagerTest extends CoreServiceTestEnvironment {
+
+    private PluginManager pm;
+
+    @Before
+    public void setupPluginManager() throws Exception {
+        // another installed plugin which is never activated, so ALL_PLUGINS_ACTIVE is not fired
+        Bundle bundle = mock(Bundle.class);
+        when(bundle.getSymbolicName()).thenReturn("systems.dmx.test.other");
+        when(bundle.getHeaders()).thenReturn(new Hashtable(Collections.singletonMap("Bundle-Activator", "Other")));
+        when(bundle.loadClass("Other")).thenReturn((Class) PluginActivator.class);
+        dmx.bundleContext = mock(BundleContext.class);
+        when(dmx.bundleContext.getBundles()).thenReturn(new Bundle[] {bundle});
+        pm = dmx.pluginManager;
+    }
+
+    // ---
+
+    @Test
+    public void upToDatePluginsAreActivatedConcurrently() throws Exception {
+        assumeTrue(PluginManager.ACTIVATION_THREADS > 1);
+        CountDownLatch installing = new CountDownLatch(2);
+        // each activation completes only once both plugins are installing
+        PluginImpl a = plugin("systems.dmx.test.a", false, installing, installing);
+        PluginImpl b = plugin("systems.dmx.test.b", false, installing, installing);
+        pm.activatePlugin(a);
+        pm.activatePlugin(b);
+        awaitActivated(a);
+        awaitActivated(b);
+    }
+
+    @Test
+    public void installationIsExclusive() throws Exception {
+        assumeTrue(PluginManager.ACTIVATION_THREADS > 1);
+        CountDownLatch aInstalling = new CountDownLatch(1);
+        CountDownLatch aRelease = new CountDownLatch(1);
+        CountDownLatch bInstalling = new CountDownLatch(1);
+        PluginImpl a = plugin("systems.dmx.test.a", true, aInstalling, aRelease);
+        PluginImpl b = plugin("systems.dmx.test.b", false, bInstalling, new CountDownLatch(0));
+        pm.activatePlugin(a);
+        assertTrue(aInstalling.await(5, TimeUnit.SECONDS));
+        pm.activatePlugin(b);
+        // b waits for the install lock while a installs
+        assertFalse(bInstalling.await(200, TimeUnit.MILLISECONDS));
+        aRelease.countDown();
+        awaitActivated(a);
+        awaitActivated(b);
+    }
+
+    @Test
+    public void deactivationDuringActivationCancelsIt() throws Exception {
+        CountDownLatch installing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PluginImpl a = plugin("systems.dmx.test.a", false, installing, release);
+        pm.activatePlugin(a);
+        assertTrue(installing.await(5, TimeUnit.SECONDS));
+        pm.deactivatePlugin(a);     // the bundle stops while the plugin is activating
+        release.countDown();
+        // the activation is undone, and the plugin is not added to the pool of activated plugins
+        verify(a, timeout(5000)).deactivate();
+        verify(a, never()).postPluginActivatedEvent();
+        assertFalse(pm.isPluginActivated("systems.dmx.test.a"));
+        // the redeployed plugin is activated
+        PluginImpl a2 = plugin("systems.dmx.test.a", false, new CountDownLatch(1), new CountDownLatch(0));
+        pm.activatePlugin(a2);
+        awaitActivated(a2);
+        verify(a2, never()).deactivate();
+    }
+
+    // ---
+
+    /**
+     * Creates a plugin whose activation counts down "installing" once it holds the install lock, and then waits for
+     * "release".
+     */
+    private PluginImpl plugin(String pluginUri, boolean needsInstallation, CountDownLatch installing,
+                                                                           CountDownLatch release) {
+        PluginImpl plugin = mock(PluginImpl.class);
+        when(plugin.getUri()).thenReturn(pluginUri);
+        when(plugin.needsInstallation()).thenReturn(needsInstallation);
+        doAnswer(invocation -> {
+            Lock installLock = invocation.getArgument(0);
+            installLock.lock();
+            try {
+                installing.countDown();
+                assertTrue(release.await(5, TimeUnit.SECONDS));
+            } finally {
+                installLock.unlock();
+            }
+            return null;
+        }).when(plugin).activate(any());
+        return plugin;
+    }
+
+    private void awaitActivated(PluginImpl plugin) {
+        verify(plugin, timeout(5000)).postPluginActivatedEvent();
+        assertTrue(pm.isPluginActivated(plugin.getUri()));
+    }
+}
@@ -0,0 +1,145 @@
+package systems.dmx.core.impl;
+
+import static systems.dmx.core.Constants.*;
+import systems.dmx.core.Assoc;
+import systems.dmx.core.RelatedTopic;
+import systems.dmx.core.Topic;
+import systems.dmx.core.model.SimpleValue;
+import systems.dmx.core.service.accesscontrol.AccessControlException;
+import systems.dmx.core.service.event.CheckAssocReadAccess;
+import systems.dmx.core.service.event.CheckAssocReadAccessBatch;
+import systems.dmx.core.service.event.CheckTopicReadAccess;
+import systems.dmx.core.service.event.CheckTopicReadAccessBatch;
+import systems.dmx.core.storage.spi.DMXTransaction;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+
+
+public class ReadAccessBatchTest extends CoreServiceTestEnvironment {
+
+    private static final String NOTE = "dmx.test.note";
+
+    @Test
+    public void batchListener() {
+        BatchListener listener = new BatchListener();
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            dmx.createTopicType(mf.newTopicTypeModel(NOTE, "Note", TEXT));
+            Topic t1 = createNote("Note 1");
+            Topic t2 = createNote("Note 2");
+            Topic t3 = createNote("Note 3");
+            Assoc a1 = createAssoc(t1, t2);
+            createAssoc(t1, t3);
+            addListener(listener);
+            // the topics are checked at once
+            listener.denied.add(t2.getId());
+            assertEquals(2, dmx.getTopicsByType(NOTE).size());
+            assertEquals(1, listener.batchChecks);
+            assertEquals(0, listener.singleChecks);
+            // a related topic is not readable if its relating assoc is not readable
+            listener.denied.clear();
+            listener.denied.add(a1.getId());
+            List<RelatedTopic> topics = t1.getRelatedTopics(ASSOCIATION, DEFAULT, DEFAULT, NOTE);
+            assertEquals(1, topics.size());
+            assertEquals(t3.getId(), topics.get(0).getId());
+            assertEquals(0, listener.singleChecks);
+            //
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+    }
+
+    @Test
+    public void singleListenerFallback() {
+        SingleListener listener = new SingleListener();
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            dmx.createTopicType(mf.newTopicTypeModel(NOTE, "Note", TEXT));
+            Topic t1 = createNote("Note 1");
+            createNote("Note 2");
+            dmx.em.addListener(CoreEvent.CHECK_TOPIC_READ_ACCESS, listener);
+            listener.denied.add(t1.getId());
+            assertEquals(1, dmx.getTopicsByType(NOTE).size());
+            assertEquals(2, listener.singleChecks);
+            //
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+    }
+
+    // ---
+
+    private Topic createNote(String value) {
+        return dmx.createTopic(mf.newTopicModel(NOTE, new SimpleValue(value)));
+    }
+
+    private Assoc createAssoc(Topic topic1, Topic topic2) {
+        return dmx.createAssoc(mf.newAssocModel(ASSOCIATION,
+            mf.newTopicPlayerModel(topic1.getId(), DEFAULT),
+            mf.newTopicPlayerModel(topic2.getId(), DEFAULT)
+        ));
+    }
+
+    private void addListener(BatchListener listener) {
+        dmx.em.addListener(CoreEvent.CHECK_TOPIC_READ_ACCESS, listener);
+        dmx.em.addListener(CoreEvent.CHECK_TOPIC_READ_ACCESS_BATCH, listener);
+        dmx.em.addListener(CoreEvent.CHECK_ASSOC_READ_ACCESS, listener);
+        dmx.em.addListener(CoreEvent.CHECK_ASSOC_READ_ACCESS_BATCH, listener);
+    }
+
+    // ---
+
+    private static class SingleListener implements CheckTopicReadAccess {
+
+        Set<Long> denied = new HashSet();
+        int singleChecks;
+
+        @Override
+        public void checkTopicReadAccess(long topicId) {
+            singleChecks++;
+            if (denied.contains(topicId)) {
+                throw new AccessControlException("Topic " + topicId + " is not readable");
+            }
+        }
+    }
+
+    private static class BatchListener extends SingleListener implements CheckTopicReadAccessBatch,
+                                                                         CheckAssocReadAccess,
+                                                                         CheckAssocReadAccessBatch {
+        int batchChecks;
+
+        @Override
+        public void checkTopicReadAccess(long[] topicIds, BitSet readable) {
+            check(topicIds, readable);
+        }
+
+        @Override
+        public void checkAssocReadAccess(long assocId) {
+            singleChecks++;
+        }
+
+        @Override
+        public void checkAssocReadAccess(long[] assocIds, BitSet readable) {
+            check(assocIds, readable);
+        }
+
+        private void check(long[] objectIds, BitSet readable) {
+            batchChecks++;
+            for (int i = 0; i < objectIds.length; i++) {
+                if (denied.contains(objectIds[i])) {
+                    readable.clear(i);
+                }
+            }
+        }
+    }
+}
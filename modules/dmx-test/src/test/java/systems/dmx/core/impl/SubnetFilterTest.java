@@ -0,0 +1,69 @@
+package systems.dmx.core.impl;
+
+import systems.dmx.core.util.SubnetFilter;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+
+
+public class SubnetFilterTest {
+
+    @Test
+    public void singleRange() {
+        SubnetFilter filter = new SubnetFilter("172.68.8.0/24");
+        assertTrue(filter.isInRange("172.68.8.0"));
+        assertTrue(filter.isInRange("172.68.8.255"));
+        assertFalse(filter.isInRange("172.68.9.0"));
+        assertFalse(filter.isInRange("172.68.7.255"));
+    }
+
+    @Test
+    public void partialByteMask() {
+        SubnetFilter filter = new SubnetFilter("10.0.0.64/26");
+        assertTrue(filter.isInRange("10.0.0.64"));
+        assertTrue(filter.isInRange("10.0.0.127"));
+        assertFalse(filter.isInRange("10.0.0.63"));
+        assertFalse(filter.isInRange("10.0.0.128"));
+    }
+
+    @Test
+    public void multipleRanges() {
+        SubnetFilter filter = new SubnetFilter("127.0.0.1/32, 192.168.0.0/16,::1/128");
+        assertTrue(filter.isInRange("127.0.0.1"));
+        assertFalse(filter.isInRange("127.0.0.2"));
+        assertTrue(filter.isInRange("192.168.17.4"));
+        assertTrue(filter.isInRange("::1"));
+        assertFalse(filter.isInRange("::2"));
+    }
+
+    @Test
+    public void singleAddress() {
+        SubnetFilter filter = new SubnetFilter("100.68.8.113");
+        assertTrue(filter.isInRange("100.68.8.113"));
+        assertFalse(filter.isInRange("100.68.8.112"));
+    }
+
+    @Test
+    public void ipv6() {
+        SubnetFilter filter = new SubnetFilter("::3afe:7a0:c800/121");
+        assertTrue(filter.isInRange("::3afe:7a0:c800"));
+        assertTrue(filter.isInRange("::3afe:7a0:c87f"));
+        assertFalse(filter.isInRange("::3afe:7a0:c880"));
+        assertFalse(filter.isInRange("58.254.7.160"));      // IPv4 address never matches an IPv6 range
+    }
+
+    @Test
+    public void allAddresses() {
+        SubnetFilter filter = new SubnetFilter("0.0.0.0/0");
+        assertTrue(filter.isInRange("255.255.255.255"));
+        assertTrue(filter.isInRange("::1"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void invalidPrefixLength() {
+        new SubnetFilter("127.0.0.1/33");
+    }
+}
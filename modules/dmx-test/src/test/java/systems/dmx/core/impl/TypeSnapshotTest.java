@@ -0,0 +1,159 @@
+package systems.dmx.core.impl;
+
+import static systems.dmx.core.Constants.*;
+import systems.dmx.core.Topic;
+import systems.dmx.core.model.SimpleValue;
+import systems.dmx.core.storage.spi.DMXTransaction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONObject;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+
+
+public class TypeSnapshotTest extends CoreServiceTestEnvironment {
+
+    private static final String PROP_SNAPSHOT = "type_catalogue_snapshot";
+
+    @Test
+    public void roundTrip() throws Exception {
+        dmx.al.typeStorage.storeSnapshot();
+        JSONArray stored = new JSONArray((String) dmx.al.db.fetchProperty(0, PROP_SNAPSHOT));
+        List<TypeModelImpl> types = dmx.al.modelCache.typeSnapshot.load(mf);
+        assertEquals(stored.length(), types.size());
+        boolean assocType = false;
+        for (int i = 0; i < types.size(); i++) {
+            TypeModelImpl type = types.get(i);
+            assertEquals(stored.getJSONObject(i).toString(), type.toJSON().toString());
+            assertEquals(type.getTypeUri().equals(ASSOC_TYPE), type instanceof AssocTypeModelImpl);
+            assocType |= type instanceof AssocTypeModelImpl;
+        }
+        assertTrue(assocType);
+    }
+
+    @Test
+    public void typeChangeDropsSnapshot() {
+        dmx.al.typeStorage.storeSnapshot();
+        // an instance change keeps the snapshot
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            dmx.createTopic(mf.newTopicModel(PLUGIN_NAME, new SimpleValue("Test Plugin")));
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        assertTrue(hasSnapshot());
+        // a rolled back type change keeps the snapshot
+        tx = dmx.beginTx();
+        try {
+            dmx.getTopicType(PLUGIN_NAME).setSimpleValue("Name of Plugin");
+            assertFalse(hasSnapshot());
+        } finally {
+            tx.finish();
+        }
+        assertTrue(hasSnapshot());
+        // a committed type change drops the snapshot
+        tx = dmx.beginTx();
+        try {
+            dmx.getTopicType(PLUGIN_NAME).setSimpleValue("Name of Plugin");
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        assertFalse(hasSnapshot());
+    }
+
+    @Test
+    public void warmBootLoadsSnapshot() throws Exception {
+        dmx.al.typeStorage.storeSnapshot();
+        markSnapshot(PLUGIN_NAME, "Plugin Name (snapshot)");
+        // the marked value proves the type is served from the snapshot, not fetched from DB
+        assertEquals("Plugin Name (snapshot)", warmBoot(dmx2 -> dmx2.getTopicType(PLUGIN_NAME).getSimpleValue()
+            .toString()));
+    }
+
+    @Test
+    public void pluginMigrationInvalidatesSnapshot() throws Exception {
+        Topic plugin = inTx(() -> dmx.createTopic(mf.newTopicModel("dmx.test", PLUGIN, mf.newChildTopicsModel()
+            .set(PLUGIN_NAME, "Test Plugin")
+            .set(PLUGIN_SYMBOLIC_NAME, "systems.dmx.test")
+            .set(PLUGIN_MIGRATION_NR, 0)
+        )));
+        dmx.al.typeStorage.storeSnapshot();
+        markSnapshot(PLUGIN_NAME, "Plugin Name (snapshot)");
+        assertNotNull(dmx.al.modelCache.typeSnapshot.load(mf));
+        // a plugin migration which leaves the types unchanged, e.g. run by a version unaware of the snapshot
+        inTx(() -> {
+            plugin.update(mf.newChildTopicsModel().set(PLUGIN_MIGRATION_NR, 1));
+            return null;
+        });
+        assertTrue(hasSnapshot());
+        assertNull(dmx.al.modelCache.typeSnapshot.load(mf));
+        assertFalse(warmBoot(dmx2 -> dmx2.getTopicType(PLUGIN_NAME).getSimpleValue().toString())
+            .contains("snapshot"));
+    }
+
+    // ---
+
+    /**
+     * Starts a second core service on the same database, that is not a clean install, and passes it to the given
+     * function (within a transaction).
+     */
+    private <T> T warmBoot(Function<CoreServiceImpl, T> work) {
+        CoreServiceImpl dmx2 = new CoreServiceImpl(new AccessLayer(dmx.al.modelCache.db), null);
+        try {
+            DMXTransaction tx = dmx2.beginTx();
+            try {
+                T result = work.apply(dmx2);
+                tx.success();
+                return result;
+            } finally {
+                tx.finish();
+            }
+        } finally {
+            dmx2.shutdown();
+        }
+    }
+
+    /**
+     * Changes a type's value within the stored snapshot, bypassing the type itself.
+     */
+    private void markSnapshot(String typeUri, String value) throws Exception {
+        JSONArray types = new JSONArray((String) dmx.al.db.fetchProperty(0, PROP_SNAPSHOT));
+        for (int i = 0; i < types.length(); i++) {
+            JSONObject type = types.getJSONObject(i);
+            if (type.getString("uri").equals(typeUri)) {
+                type.put("value", value);
+            }
+        }
+        inTx(() -> {
+            dmx.al.modelCache.db.storeTopicProperty(0, PROP_SNAPSHOT, types.toString(), false);
+            return null;
+        });
+    }
+
+    private boolean hasSnapshot() {
+        return dmx.al.db.hasProperty(0, PROP_SNAPSHOT);
+    }
+
+    private <T> T inTx(Supplier<T> work) {
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            T result = work.get();
+            tx.success();
+            return result;
+        } finally {
+            tx.finish();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package systems.dmx.core.impl;
+
+import systems.dmx.core.service.CoreService;
+import systems.dmx.core.service.accesscontrol.PrivilegedAccess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.jetty.websocket.WebSocket.Connection;
+
+import javax.servlet.http.HttpSession;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+
+
+public class WebSocketConnectionPoolTest {
+
+    private static final long WORKSPACE_ID = 1234;
+
+    private CoreService dmx = mock(CoreService.class);
+    private PrivilegedAccess pa = mock(PrivilegedAccess.class);
+    private HttpSession session = mock(HttpSession.class);
+
+    private volatile String username;       // the user logged in at "session"
+
+    private WebSocketConnectionPool pool;
+
+    @Before
+    public void setup() {
+        when(dmx.getPrivilegedAccess()).thenReturn(pa);
+        when(session.getId()).thenReturn("session-1");
+        when(pa.username(session)).then(i -> username);
+        when(pa.hasReadPermission(isNull(), anyLong())).thenReturn(false);
+        pool = new WebSocketConnectionPool(dmx);
+    }
+
+    @Test
+    public void reindexingDoesNotHoldUpTheIndex() throws Exception {
+        CountDownLatch checking = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        when(pa.hasReadPermission(eq("alice"), anyLong())).then(i -> {
+            checking.countDown();
+            assertTrue(proceed.await(5, TimeUnit.SECONDS));
+            return true;
+        });
+        WebSocketConnectionImpl conn = new WebSocketConnectionImpl("client-1", session, pool, dmx);
+        conn.onOpen(mock(Connection.class));
+        assertEquals(0, pool.getReadAllowedConnections(WORKSPACE_ID).size());
+        //
+        // alice logs in, her permission check hangs
+        username = "alice";
+        CompletableFuture<Void> reindexing = CompletableFuture.runAsync(() -> pool.checkUsername("session-1"));
+        assertTrue(checking.await(5, TimeUnit.SECONDS));
+        // meanwhile the index can be updated, and the change makes the re-indexing check again
+        CompletableFuture.runAsync(() -> pool.workspaceChanged(5678)).get(1, TimeUnit.SECONDS);
+        proceed.countDown();
+        reindexing.get(5, TimeUnit.SECONDS);
+        //
+        assertEquals(Collections.singleton(conn), pool.getReadAllowedConnections(WORKSPACE_ID));
+        assertEquals("alice", conn.indexedUsername);
+    }
+}
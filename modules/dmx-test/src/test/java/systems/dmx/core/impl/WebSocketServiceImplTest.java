@@ -0,0 +1,352 @@
+package systems.dmx.core.impl;
+
+import static systems.dmx.core.Constants.*;
+import systems.dmx.core.Topic;
+import systems.dmx.core.model.SimpleValue;
+import systems.dmx.core.storage.spi.DMXTransaction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.jetty.websocket.WebSocket.Connection;
+
+import javax.servlet.http.HttpSession;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+
+
+public class WebSocketServiceImplTest extends CoreServiceTestEnvironment {
+
+    private static final int N = WebSocketServiceImpl.MAX_QUEUED_MESSAGES;
+
+    private static final String WORKSPACE = "dmx.workspaces.workspace";
+    private static final String SHARING_MODE = "dmx.workspaces.sharing_mode";
+    private static final String PROP_WORKSPACE_ID = "dmx.workspaces.workspace_id";
+    private static final String PROP_OWNER = "dmx.accesscontrol.owner";
+
+    private WebSocketServiceImpl wss;
+
+    @Before
+    public void startWorkers() {
+        wss = new WebSocketServiceImpl(dmx.al, dmx);
+        wss.startWorkers();
+    }
+
+    @After
+    public void stopWorkers() {
+        wss.stop();
+    }
+
+    // ---
+
+    @Test
+    public void slowConnectionDoesNotStallItsShard() throws Exception {
+        FakeConnection slow = connect("client-0");
+        FakeConnection fast = connect(sameShardAs("client-0"));
+        slow.block();
+        //
+        wss._sendToAll("m1");
+        slow.awaitSending();
+        wss._sendToAll("m2");
+        // the fast connection receives both messages while the slow one hangs in sending the first one
+        assertEquals("m1", fast.receive());
+        assertEquals("m2", fast.receive());
+        //
+        slow.unblock();
+        assertEquals("m1", slow.receive());
+        assertEquals("m2", slow.receive());
+    }
+
+    @Test
+    public void slowConnectionsOccupyBoundedSendThreads() throws Exception {
+        List<FakeConnection> slow = new ArrayList();
+        for (int i = 0; i <= WebSocketServiceImpl.SEND_THREADS; i++) {
+            FakeConnection conn = connect("client-" + i);
+            conn.block();
+            slow.add(conn);
+        }
+        //
+        wss._sendToAll("m1");
+        int sending = 0;
+        for (int i = 0; i < 500 && sending < WebSocketServiceImpl.SEND_THREADS; i++) {
+            Thread.sleep(10);
+            sending = (int) slow.stream().filter(FakeConnection::isSending).count();
+        }
+        Thread.sleep(100);
+        // one connection waits for a send thread
+        assertEquals(WebSocketServiceImpl.SEND_THREADS, slow.stream().filter(FakeConnection::isSending).count());
+        //
+        for (FakeConnection conn : slow) {
+            conn.unblock();
+        }
+        for (FakeConnection conn : slow) {
+            assertEquals("m1", conn.receive());
+        }
+    }
+
+    @Test
+    public void slowConnectionDropsOldestMessages() throws Exception {
+        FakeConnection slow = connect("client-0");
+        slow.block();
+        wss._sendToAll("m0");
+        slow.awaitSending();
+        // m0 is being sent, m1-m5 are dropped from the outbound queue in favor of the newer messages
+        for (int i = 1; i <= N + 5; i++) {
+            wss._sendToAll("m" + i);
+        }
+        awaitDropped(5);
+        slow.unblock();
+        assertEquals("m0", slow.receive());
+        assertEquals("m6", slow.receive());
+        for (int i = 7; i <= N + 5; i++) {
+            assertEquals("m" + i, slow.receive());
+        }
+        assertNull(slow.messages.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void fullTaskQueueDropsOldestTaskPerReceiver() throws Exception {
+        FakeConnection conn1 = connect("client-0");
+        FakeConnection conn2 = connect(sameShardAs("client-0"));
+        // the worker of the shard hangs in evaluating the first task's filter
+        CountDownLatch evaluating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        wss._sendToSome("t0", conn -> {
+            evaluating.countDown();
+            await(release);
+            return true;
+        });
+        assertTrue(evaluating.await(5, TimeUnit.SECONDS));
+        // the task queue takes N tasks: the 3 oldest are dropped, each one for both receivers
+        // Note: most tasks have no receivers, so the connections' outbound queues do not overflow
+        for (int i = 1; i <= N + 3; i++) {
+            boolean received = i <= 5 || i > N;
+            wss._sendToSome("m" + i, conn -> received);
+        }
+        assertEquals(6, wss.getStats().droppedMessages);
+        release.countDown();
+        for (FakeConnection conn : new FakeConnection[] {conn1, conn2}) {
+            assertEquals("t0", conn.receive());
+            assertEquals("m4", conn.receive());
+            assertEquals("m5", conn.receive());
+            assertEquals("m" + (N + 1), conn.receive());
+        }
+    }
+
+    @Test
+    public void readAllowedReceiversAreDeterminedByTheWorkers() throws Exception {
+        Topic workspace = createPrivateWorkspace("alice");
+        long noteId = createNote(workspace);
+        FakeConnection alice = connect("client-0", "alice");
+        FakeConnection bob = connect("client-1", "bob");
+        FakeConnection anonymous = connect("client-2");
+        //
+        wss._sendToReadAllowed("m1", noteId);
+        assertEquals("m1", alice.receive());
+        // the workspace's index entry is dropped once the owner change is committed
+        inTx(() -> workspace.setProperty(PROP_OWNER, "bob", false));
+        wss._sendToReadAllowed("m2", noteId);
+        assertEquals("m2", bob.receive());
+        //
+        wss._sendToAll("m3");
+        assertEquals("m3", alice.receive());
+        assertEquals("m3", bob.receive());
+        assertEquals("m3", anonymous.receive());
+    }
+
+    @Test
+    public void unknownObjectIsNotSent() throws Exception {
+        FakeConnection conn = connect("client-0");
+        wss._sendToReadAllowed("m1", -12345);   // the receivers can't be determined, logged by the worker
+        wss._sendToAll("m2");
+        assertEquals("m2", conn.receive());
+    }
+
+    // ---
+
+    private FakeConnection connect(String clientId) {
+        return connect(clientId, null);
+    }
+
+    private FakeConnection connect(String clientId, String username) {
+        FakeConnection connection = new FakeConnection();
+        new WebSocketConnectionImpl(clientId, session(clientId, username), wss.pool, dmx).onOpen(connection);
+        return connection;
+    }
+
+    /**
+     * Returns a client ID which is served by the same send worker as the given one.
+     */
+    private String sameShardAs(String clientId) {
+        int shard = Math.floorMod(clientId.hashCode(), WebSocketServiceImpl.SEND_WORKERS);
+        for (int i = 1;; i++) {
+            String id = "client-" + i;
+            if (Math.floorMod(id.hashCode(), WebSocketServiceImpl.SEND_WORKERS) == shard) {
+                return id;
+            }
+        }
+    }
+
+    private HttpSession session(String clientId, String username) {
+        return (HttpSession) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {HttpSession.class},
+            (proxy, method, args) -> method.getName().equals("getId") ? "session-" + clientId :
+                method.getName().equals("getAttribute") && args[0].equals("username") ? username : null);
+    }
+
+    // ---
+
+    private Topic createPrivateWorkspace(String owner) {
+        Topic[] workspace = new Topic[1];
+        inTx(() -> {
+            dmx.createTopicType(mf.newTopicTypeModel(WORKSPACE, "Workspace", TEXT));
+            dmx.createTopicType(mf.newTopicTypeModel(SHARING_MODE, "Sharing Mode", TEXT));
+            Topic sharingMode = dmx.createTopic(mf.newTopicModel("dmx.workspaces.private", SHARING_MODE,
+                new SimpleValue("Private")));
+            workspace[0] = dmx.createTopic(mf.newTopicModel(WORKSPACE, new SimpleValue("Workspace 1")));
+            workspace[0].setProperty(PROP_OWNER, owner, false);
+            dmx.createAssoc(mf.newAssocModel(COMPOSITION,
+                mf.newTopicPlayerModel(workspace[0].getId(), PARENT),
+                mf.newTopicPlayerModel(sharingMode.getId(), CHILD)
+            ));
+        });
+        return workspace[0];
+    }
+
+    private long createNote(Topic workspace) {
+        long[] noteId = new long[1];
+        inTx(() -> {
+            Topic note = dmx.createTopic(mf.newTopicModel(PLUGIN_NAME, new SimpleValue("Note 1")));
+            note.setProperty(PROP_WORKSPACE_ID, workspace.getId(), true);
+            noteId[0] = note.getId();
+        });
+        return noteId[0];
+    }
+
+    private void inTx(Runnable write) {
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            write.run();
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+    }
+
+    private void awaitDropped(long count) throws InterruptedException {
+        for (int i = 0; i < 500 && wss.getStats().droppedMessages < count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, wss.getStats().droppedMessages);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // ---
+
+    /**
+     * Records the sent messages. Sending can be blocked, like a send to a client which does not read.
+     */
+    private static class FakeConnection implements Connection {
+
+        private BlockingQueue<String> messages = new LinkedBlockingQueue();
+        private volatile CountDownLatch blocked = new CountDownLatch(0);
+        private CountDownLatch sending = new CountDownLatch(1);
+
+        private void block() {
+            blocked = new CountDownLatch(1);
+        }
+
+        private void unblock() {
+            blocked.countDown();
+        }
+
+        private boolean isSending() {
+            return sending.getCount() == 0;
+        }
+
+        private void awaitSending() throws InterruptedException {
+            assertTrue(sending.await(5, TimeUnit.SECONDS));
+        }
+
+        private String receive() throws InterruptedException {
+            return messages.poll(5, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void sendMessage(String message) {
+            sending.countDown();
+            await(blocked);
+            messages.add(message);
+        }
+
+        @Override
+        public void sendMessage(byte[] data, int offset, int length) {
+        }
+
+        @Override
+        public String getProtocol() {
+            return null;
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void close(int closeCode, String message) {
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void setMaxIdleTime(int ms) {
+        }
+
+        @Override
+        public void setMaxTextMessageSize(int size) {
+        }
+
+        @Override
+        public void setMaxBinaryMessageSize(int size) {
+        }
+
+        @Override
+        public int getMaxIdleTime() {
+            return 0;
+        }
+
+        @Override
+        public int getMaxTextMessageSize() {
+            return 0;
+        }
+
+        @Override
+        public int getMaxBinaryMessageSize() {
+            return 0;
+        }
+    }
+}
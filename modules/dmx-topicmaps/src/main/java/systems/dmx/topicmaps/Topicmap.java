@@ -7,8 +7,12 @@ import systems.dmx.core.model.topicmaps.ViewProps;
 import systems.dmx.core.model.topicmaps.ViewTopic;
 import systems.dmx.core.util.DMXUtils;
 
+import org.codehaus.jettison.json.JSONException;
 import org.codehaus.jettison.json.JSONObject;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.logging.Logger;
 
@@ -81,6 +85,20 @@ public class Topicmap implements JSONEnabled {
         }
     }
 
+    /**
+     * Streams the view topics and view assocs one by one.
+     */
+    @Override
+    public void writeJSON(Writer writer) throws IOException, JSONException {
+        Map<String, Iterable<? extends JSONEnabled>> arrays = new LinkedHashMap();
+        arrays.put("topics", topics.values());
+        arrays.put("assocs", assocs.values());
+        DMXUtils.writeJSONObject(new JSONObject()
+            .put("topic", topicmapTopic.toJSON())
+            .put("viewProps", viewProps.toJSON()), arrays, writer
+        );
+    }
+
     @Override
     public String toString() {
         return "topicmap " + getId();
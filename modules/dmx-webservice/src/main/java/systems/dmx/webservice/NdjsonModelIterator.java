@@ -0,0 +1,77 @@
+package systems.dmx.webservice;
+
+import systems.dmx.core.model.DMXObjectModel;
+import systems.dmx.core.service.ModelFactory;
+
+import org.codehaus.jettison.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+
+/**
+ * Reads topic models and assoc models from a newline delimited JSON stream (one object per line), lazily.
+ * So a large import is never held in memory as a whole.
+ * <p>
+ * An object with a "player1" property is read as an assoc model, any other object as a topic model.
+ * Blank lines are skipped.
+ */
+class NdjsonModelIterator implements Iterator<DMXObjectModel> {
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private BufferedReader reader;
+    private ModelFactory mf;
+
+    private String nextLine;        // the next non-blank line, or null if not yet read or at end of stream
+    private int lineNr;
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    NdjsonModelIterator(InputStream in, ModelFactory mf) {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        this.mf = mf;
+    }
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (nextLine == null) {
+                String line = reader.readLine();
+                if (line == null) {
+                    return false;
+                }
+                lineNr++;
+                if (!line.trim().isEmpty()) {
+                    nextLine = line;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            throw new RuntimeException("Reading line " + (lineNr + 1) + " of import failed", e);
+        }
+    }
+
+    @Override
+    public DMXObjectModel next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            JSONObject object = new JSONObject(nextLine);
+            return object.has("player1") ? mf.newAssocModel(object) : mf.newTopicModel(object);
+        } catch (Exception e) {
+            throw new RuntimeException("Parsing line " + lineNr + " of import failed", e);
+        } finally {
+            nextLine = null;
+        }
+    }
+}
@@ -20,9 +20,11 @@ import systems.dmx.core.model.TopicModel;
 import systems.dmx.core.model.TopicTypeModel;
 import systems.dmx.core.osgi.PluginActivator;
 import systems.dmx.core.service.DirectivesResponse;
+import systems.dmx.core.service.ImportReport;
 import systems.dmx.core.service.Inject;
 import systems.dmx.core.service.PluginInfo;
 import systems.dmx.core.service.QueryResult;
+import systems.dmx.core.service.ResultPage;
 import systems.dmx.core.service.TopicResult;
 import systems.dmx.core.service.Transactional;
 import systems.dmx.core.util.IdList;
@@ -36,11 +38,13 @@ import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 
+import java.io.InputStream;
 import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Level;
@@ -56,6 +60,11 @@ import java.util.logging.Logger;
 @Produces("application/json")
 public class WebservicePlugin extends PluginActivator {
 
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    private static final String DEFAULT_PAGE_SIZE = "100";
+    private static final String DEFAULT_IMPORT_BATCH_SIZE = "1000";
+
     // ---------------------------------------------------------------------------------------------- Instance Variables
 
     @Inject private WorkspacesService ws;
@@ -121,6 +130,38 @@ public class WebservicePlugin extends PluginActivator {
         return dmx.queryTopicsFulltext(query, topicTypeUri, searchChildTopics);
     }
 
+    // --- Paged queries ---
+
+    // Note: the "children" query parameter is handled by core's JerseyResponseFilter
+    @GET
+    @Path("/page/topics/type/{uri}")
+    public ResultPage<Topic> getTopicsByType(@PathParam("uri") String topicTypeUri,
+                                             @QueryParam("cursor") String cursor,
+                                             @QueryParam("offset") int offset,
+                                             @QueryParam("limit") @DefaultValue(DEFAULT_PAGE_SIZE) int limit) {
+        if (cursor != null) {
+            return dmx.getTopicsByType(topicTypeUri, cursor, limit);
+        } else {
+            return dmx.getTopicsByType(topicTypeUri, offset, limit);
+        }
+    }
+
+    // Note: the "children" query parameter is handled by core's JerseyResponseFilter
+    @GET
+    @Path("/page/topics/query/{query}")
+    public ResultPage<Topic> queryTopicsFulltext(@PathParam("query") String query,
+                                                 @QueryParam("topicTypeUri") String topicTypeUri,
+                                                 @QueryParam("searchChildTopics") boolean searchChildTopics,
+                                                 @QueryParam("cursor") String cursor,
+                                                 @QueryParam("offset") int offset,
+                                                 @QueryParam("limit") @DefaultValue(DEFAULT_PAGE_SIZE) int limit) {
+        if (cursor != null) {
+            return dmx.queryTopicsFulltext(query, topicTypeUri, searchChildTopics, cursor, limit);
+        } else {
+            return dmx.queryTopicsFulltext(query, topicTypeUri, searchChildTopics, offset, limit);
+        }
+    }
+
     @POST
     @Path("/topic")
     @Transactional
@@ -350,6 +391,22 @@ public class WebservicePlugin extends PluginActivator {
 
 
 
+    // === Bulk Import ===
+
+    /**
+     * Imports topics and assocs from a newline delimited JSON body, one model per line.
+     * Each batch is committed in its own transaction, so this method is not transactional as a whole.
+     */
+    @POST
+    @Path("/import")
+    @Consumes("application/x-ndjson")
+    public ImportReport importObjects(InputStream body,
+                                      @QueryParam("batchSize") @DefaultValue(DEFAULT_IMPORT_BATCH_SIZE) int batchSize) {
+        return dmx.importObjects(new NdjsonModelIterator(body, mf), batchSize);
+    }
+
+
+
     // === Plugins ===
 
     @GET
@@ -485,6 +542,9 @@ public class WebservicePlugin extends PluginActivator {
         return deleteMulti(new IdList(), assocIds);
     }
 
+    // Note: a workspace is deleted in the background (see WorkspacesService.deleteWorkspace()). The response does not
+    // contain its DELETE_TOPIC directive then. That directive is broadcasted to all clients once the deletion is
+    // complete. The progress is reported by GET /workspaces/{workspaceId}/deletion.
     @DELETE
     @Path("/topics/{topicIds}/assocs/{assocIds}")
     @Transactional
@@ -583,6 +643,8 @@ public class WebservicePlugin extends PluginActivator {
     // ---
 
     // TODO: move this logic to dmx.deleteTopic() so that it can delete types as well? (types ARE topics after all)
+    // Note: a workspace is just marked for deletion here, and then deleted in the background. No DELETE_TOPIC
+    // directive is added for it, see deleteMulti().
     private void deleteAnyTopic(long id) {
         Topic t = dmx.getTopic(id);
         String typeUri = t.getTypeUri();
@@ -47,7 +47,7 @@ public class JSONEnabledProvider implements MessageBodyWriter<JSONEnabled> {
                         throws IOException, WebApplicationException {
         try {
             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(entityStream));
-            jsonEnabled.toJSON().write(writer);
+            jsonEnabled.writeJSON(writer);
             writer.flush();
         } catch (Exception e) {
             throw new RuntimeException("Writing message body failed", e);
@@ -1,16 +1,21 @@
 package systems.dmx.webservice.provider;
 
 import systems.dmx.core.osgi.CoreActivator;
-import systems.dmx.core.util.JavaUtils;
 
 import org.codehaus.jettison.json.JSONObject;
 
+import java.io.BufferedReader;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import javax.ws.rs.WebApplicationException;
@@ -24,8 +29,20 @@ import javax.ws.rs.ext.Provider;
 @Provider
 public class ObjectProvider implements MessageBodyReader<Object> {
 
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    /**
+     * Marks a type which can't be deserialized (it has neither a factory method nor a JSON constructor).
+     */
+    private static final Deserializer NOT_READABLE = json -> null;
+
     // ---------------------------------------------------------------------------------------------- Instance Variables
 
+    /**
+     * The deserializers as looked up per type. Saves the reflective lookup on every request.
+     */
+    private Map<Class<?>, Deserializer> deserializers = new ConcurrentHashMap();
+
     private Logger logger = Logger.getLogger(getClass().getName());
 
     // -------------------------------------------------------------------------------------------------- Public Methods
@@ -35,8 +52,7 @@ public class ObjectProvider implements MessageBodyReader<Object> {
     @Override
     public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
         // Note: unlike equals() isCompatible() ignores parameters like "charset" in "application/json;charset=UTF-8"
-        return (getFactoryMethod(type) != null || getJSONConstructor(type) != null) &&
-            mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE);
+        return getDeserializer(type) != NOT_READABLE && mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE);
     }
 
     @Override
@@ -44,13 +60,10 @@ public class ObjectProvider implements MessageBodyReader<Object> {
                            MultivaluedMap<String, String> httpHeaders, InputStream entityStream)
                                                                   throws IOException, WebApplicationException {
         try {
-            JSONObject json = new JSONObject(JavaUtils.readText(entityStream));
-            Method method = getFactoryMethod(type);
-            if (method != null) {
-                return method.invoke(CoreActivator.getModelFactory(), json);
-            } else {
-                return getJSONConstructor(type).newInstance(json);
-            }
+            // Note: the JSON is parsed straight from the entity stream, the request body is not loaded into a String
+            BufferedReader reader = new BufferedReader(new InputStreamReader(entityStream, getCharset(mediaType)));
+            JSONObject json = new JSONObject(new StreamTokener(reader));
+            return getDeserializer(type).deserialize(json);
         } catch (Exception e) {
             throw new RuntimeException("Deserializing a " + type.getName() + " failed", e);
         }
@@ -58,6 +71,22 @@ public class ObjectProvider implements MessageBodyReader<Object> {
 
     // ------------------------------------------------------------------------------------------------- Private Methods
 
+    private Deserializer getDeserializer(Class<?> type) {
+        return deserializers.computeIfAbsent(type, this::lookupDeserializer);
+    }
+
+    private Deserializer lookupDeserializer(Class<?> type) {
+        Method method = getFactoryMethod(type);
+        if (method != null) {
+            return json -> method.invoke(CoreActivator.getModelFactory(), json);
+        }
+        Constructor<?> constructor = getJSONConstructor(type);
+        if (constructor != null) {
+            return json -> constructor.newInstance(json);
+        }
+        return NOT_READABLE;
+    }
+
     private Method getFactoryMethod(Class<?> type) {
         try {
             String methodName = "new" + type.getSimpleName();
@@ -74,4 +103,17 @@ public class ObjectProvider implements MessageBodyReader<Object> {
             return null;
         }
     }
+
+    // ---
+
+    private Charset getCharset(MediaType mediaType) {
+        String charset = mediaType.getParameters().get("charset");
+        return charset != null ? Charset.forName(charset) : StandardCharsets.UTF_8;
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Classes
+
+    private interface Deserializer {
+        Object deserialize(JSONObject json) throws Exception;
+    }
 }
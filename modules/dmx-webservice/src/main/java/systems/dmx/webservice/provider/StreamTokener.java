@@ -0,0 +1,121 @@
+package systems.dmx.webservice.provider;
+
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONTokener;
+
+import java.io.IOException;
+import java.io.Reader;
+
+
+
+/**
+ * A JSON tokener which reads from a character stream (instead of a String).
+ * <p>
+ * Lets a JSONObject be parsed directly from a request body, without loading the entire body into a String first.
+ * Supports the operations used by the JSON parser (in particular a single-character pushback, see {@link #back}).
+ */
+class StreamTokener extends JSONTokener {
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private Reader reader;
+    private char current;           // the char returned by the last next() call; 0 at end of stream
+    private boolean pushedBack;     // true if current is to be returned by the next next() call
+    private long position;          // number of chars consumed, for error messages
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    /**
+     * @param   reader      Should be buffered.
+     */
+    StreamTokener(Reader reader) {
+        super("");
+        this.reader = reader;
+    }
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+    @Override
+    public char next() {
+        if (pushedBack) {
+            pushedBack = false;
+        } else {
+            current = read();
+        }
+        if (current != 0) {
+            position++;
+        }
+        return current;
+    }
+
+    @Override
+    public String next(int n) throws JSONException {
+        StringBuilder chars = new StringBuilder(n);
+        for (int i = 0; i < n; i++) {
+            char c = next();
+            if (c == 0) {
+                throw syntaxError("Substring bounds error");
+            }
+            chars.append(c);
+        }
+        return chars.toString();
+    }
+
+    @Override
+    public void back() {
+        if (current != 0) {
+            pushedBack = true;
+            position--;
+        }
+    }
+
+    @Override
+    public boolean more() {
+        if (next() == 0) {
+            return false;
+        }
+        back();
+        return true;
+    }
+
+    @Override
+    public char skipTo(char to) {
+        char c;
+        do {
+            c = next();
+            if (c == 0) {
+                return c;
+            }
+        } while (c != to);
+        back();
+        return c;
+    }
+
+    @Override
+    public void skipPast(String to) {
+        int matched = 0;
+        while (matched < to.length()) {
+            char c = next();
+            if (c == 0) {
+                return;
+            }
+            matched = c == to.charAt(matched) ? matched + 1 : c == to.charAt(0) ? 1 : 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return " at character " + position;
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    private char read() {
+        try {
+            int c = reader.read();
+            return c != -1 ? (char) c : 0;
+        } catch (IOException e) {
+            throw new RuntimeException("Reading the JSON stream failed" + this, e);
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package systems.dmx.workspaces;
+
+import static systems.dmx.core.Constants.*;
+import static systems.dmx.workspaces.WorkspacesService.PROP_WORKSPACE_ID;
+import systems.dmx.core.DMXObject;
+import systems.dmx.core.JSONEnabled;
+import systems.dmx.core.Topic;
+import systems.dmx.core.model.DMXObjectModel;
+import systems.dmx.core.service.CoreService;
+import systems.dmx.core.service.Directive;
+import systems.dmx.core.service.Directives;
+import systems.dmx.core.storage.spi.DMXTransaction;
+import systems.dmx.core.storage.spi.ObjectHeader;
+
+import org.codehaus.jettison.json.JSONObject;
+
+import static java.util.Collections.singletonList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+
+/**
+ * Deletes a workspace along with its content, in the background.
+ * <p>
+ * The content is deleted in batches of <code>dmx.workspaces.deletion_batch_size</code> objects, each batch in its own
+ * transaction. So a large workspace is never held in one huge transaction. The IDs of the objects to delete are
+ * fetched once per phase, by header queries, that is without instantiating the objects. Then the objects are
+ * instantiated and deleted chunk by chunk. The client-sync directives of the
+ * individual deletions are not broadcasted. Instead one summary is broadcasted at the end: the deleted types, and the
+ * deleted workspace.
+ * <p>
+ * A pending deletion is marked at the workspace topic. If the platform stops before the deletion is complete, the
+ * deletion is resumed at next start, see {@link WorkspacesPlugin#allPluginsActive}. The progress is stored at the
+ * workspace topic as well, so it can be reported for a deletion not run by this process (see {@link #ofPending}).
+ * <p>
+ * Note: the deletion runs outside request scope, that is as "System". The user's permission to delete the workspace
+ * is checked once, when the deletion is requested.
+ */
+public class WorkspaceDeletion implements Runnable, JSONEnabled {
+
+    // ------------------------------------------------------------------------------------------------------- Constants
+
+    static final String PROP_DELETION_PENDING = "dmx.workspaces.deletion_pending";    // value: request time (long)
+    static final String PROP_DELETED_OBJECTS = "dmx.workspaces.deleted_objects";      // value: progress (long)
+
+    private static final int BATCH_SIZE = Integer.getInteger("dmx.workspaces.deletion_batch_size", 500);
+
+    // TODO: can't use AC constant -> cyclic dependency
+    // TODO: move Membership type to Workspaces module?
+    private static final String MEMBERSHIP = "dmx.accesscontrol.membership";
+
+    // ---------------------------------------------------------------------------------------------- Instance Variables
+
+    private long workspaceId;
+    private CoreService dmx;
+
+    private volatile State state = State.PENDING;
+    private volatile long deletedObjects;
+    private volatile String error;
+
+    private Directives summary = new Directives();      // the directives to be broadcasted at the end
+
+    private Logger logger = Logger.getLogger(getClass().getName());
+
+    // ---------------------------------------------------------------------------------------------------- Constructors
+
+    WorkspaceDeletion(long workspaceId, CoreService dmx) {
+        this.workspaceId = workspaceId;
+        this.dmx = dmx;
+    }
+
+    // -------------------------------------------------------------------------------------------------- Public Methods
+
+    public long getWorkspaceId() {
+        return workspaceId;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Returns the number of objects deleted so far (including the ones deleted before a resumption).
+     * Objects deleted implicitly -- e.g. the associations of a deleted topic -- are not counted.
+     */
+    public long getDeletedObjects() {
+        return deletedObjects;
+    }
+
+    // ---
+
+    @Override
+    public void run() {
+        try {
+            state = State.RUNNING;
+            if (!claim()) {
+                logger.info("### Deleting workspace " + workspaceId + " ABORTED -- the deletion was not committed");
+                state = State.ABORTED;
+                return;
+            }
+            logger.info("### Deleting workspace " + workspaceId + " (batch size " + BATCH_SIZE + ", " +
+                deletedObjects + " objects deleted already)");
+            // 1) delete instances by type
+            // Note: also instances assigned to other workspaces must be deleted
+            for (String typeUri : assignedTypeUris(TOPIC_TYPE)) {
+                deleteInBatches(ids(dmx.getPrivilegedAccess().getTopicHeadersByType(typeUri), null));
+                deleteBatch(() -> singletonList(dmx.getTopicType(typeUri)));
+            }
+            for (String typeUri : assignedTypeUris(ASSOC_TYPE)) {
+                deleteInBatches(ids(dmx.getPrivilegedAccess().getAssocHeadersByType(typeUri), null));
+                deleteBatch(() -> singletonList(dmx.getAssocType(typeUri)));
+            }
+            // 2) delete remaining instances
+            deleteInBatches(ids(dmx.getPrivilegedAccess().getTopicHeadersByProperty(PROP_WORKSPACE_ID, workspaceId),
+                null));
+            // Note: the memberships are deleted along with the workspace topic
+            deleteInBatches(ids(dmx.getPrivilegedAccess().getAssocHeadersByProperty(PROP_WORKSPACE_ID, workspaceId),
+                MEMBERSHIP));
+            // 3) delete workspace topic
+            inTx(() -> {
+                dmx.getPrivilegedAccess().deleteWorkspaceTopic(workspaceId);
+                return null;
+            });
+            broadcastSummary();
+            state = State.DONE;
+            logger.info("### Deleting workspace " + workspaceId + " complete -- " + deletedObjects +
+                " objects deleted");
+        } catch (Exception e) {
+            // Note: the workspace is still marked, so the deletion is resumed at next start
+            error = e.toString();
+            state = State.FAILED;
+            logger.log(Level.SEVERE, "Deleting workspace " + workspaceId + " failed (" + deletedObjects +
+                " objects deleted)", e);
+        }
+    }
+
+    // *** JSONEnabled ***
+
+    @Override
+    public JSONObject toJSON() {
+        try {
+            return new JSONObject()
+                .put("workspaceId", workspaceId)
+                .put("state", state.name())
+                .put("deletedObjects", deletedObjects)
+                .put("error", error);
+        } catch (Exception e) {
+            throw new RuntimeException("Serialization failed", e);
+        }
+    }
+
+    // ----------------------------------------------------------------------------------------- Package Private Methods
+
+    /**
+     * Marks the workspace for deletion. To be called within the requesting transaction.
+     */
+    static void markPending(Topic workspace) {
+        workspace.setProperty(PROP_DELETION_PENDING, System.currentTimeMillis(), false);     // addToIndex=false
+    }
+
+    static boolean isPending(Topic workspace) {
+        return workspace.hasProperty(PROP_DELETION_PENDING);
+    }
+
+    /**
+     * Returns the progress of a pending deletion as stored at the workspace topic. To be used for a deletion not run
+     * by this process, e.g. one started before a restart and not resumed yet.
+     *
+     * @return  the deletion, in state PENDING, or <code>null</code> if no deletion of the workspace is pending.
+     */
+    static WorkspaceDeletion ofPending(Topic workspace, CoreService dmx) {
+        if (!isPending(workspace)) {
+            return null;
+        }
+        WorkspaceDeletion deletion = new WorkspaceDeletion(workspace.getId(), dmx);
+        if (workspace.hasProperty(PROP_DELETED_OBJECTS)) {
+            deletion.deletedObjects = (Long) workspace.getProperty(PROP_DELETED_OBJECTS);
+        }
+        return deletion;
+    }
+
+    /**
+     * @return  true if this deletion is not yet finished (regardless of success).
+     */
+    boolean isActive() {
+        return state == State.PENDING || state == State.RUNNING;
+    }
+
+    // ------------------------------------------------------------------------------------------------- Private Methods
+
+    /**
+     * Waits for the requesting transaction to finish and checks if the deletion is (still) pending. Writing the
+     * progress property acquires the workspace topic's write lock, which the requesting transaction holds until it
+     * is committed or rolled back.
+     *
+     * @return  false if the requesting transaction was rolled back.
+     */
+    private boolean claim() {
+        Boolean claimed = inTx(() -> {
+            Topic workspace = dmx.getTopic(workspaceId);
+            long deleted = workspace.hasProperty(PROP_DELETED_OBJECTS) ?
+                (Long) workspace.getProperty(PROP_DELETED_OBJECTS) : 0;
+            workspace.setProperty(PROP_DELETED_OBJECTS, deleted, false);
+            if (!isPending(workspace)) {
+                throw new RollbackSignal();
+            }
+            deletedObjects = deleted;
+            return true;
+        });
+        return claimed != null;
+    }
+
+    private List<String> assignedTypeUris(String metaTypeUri) {
+        List<String> typeUris = new ArrayList();
+        for (Topic type : dmx.getTopicsByTypeAndProperty(metaTypeUri, PROP_WORKSPACE_ID, workspaceId)) {
+            typeUris.add(type.getUri());
+        }
+        return typeUris;
+    }
+
+    /**
+     * Deletes the given objects batch by batch, each batch in its own transaction.
+     *
+     * @param   ids     the IDs of the objects to delete. Objects which do not exist (anymore) are skipped.
+     */
+    private void deleteInBatches(List<Long> ids) {
+        for (int i = 0; i < ids.size(); i += BATCH_SIZE) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new RuntimeException("Deleting workspace " + workspaceId + " was interrupted");
+            }
+            List<Long> batch = ids.subList(i, Math.min(i + BATCH_SIZE, ids.size()));
+            deleteBatch(() -> existingObjects(batch));
+        }
+    }
+
+    /**
+     * Deletes one batch of objects, in its own transaction.
+     *
+     * @param   batch   supplies the objects to delete. Is called within the batch's transaction.
+     */
+    private void deleteBatch(Supplier<List<? extends DMXObject>> batch) {
+        inTx(() -> {
+            List<? extends DMXObject> objects = batch.get();
+            for (DMXObject object : objects) {
+                object.delete();
+            }
+            if (!objects.isEmpty()) {
+                long deleted = deletedObjects + objects.size();
+                dmx.getTopic(workspaceId).setProperty(PROP_DELETED_OBJECTS, deleted, false);
+                deletedObjects = deleted;
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Runs the given work in its own transaction. The directives of a committed transaction are reduced to the ones
+     * that go into the summary. The queued WebSocket messages are sent right away.
+     */
+    private <V> V inTx(Callable<V> work) {
+        DMXTransaction tx = dmx.beginTx();
+        try {
+            V result = work.call();
+            tx.success();
+            collectSummary();
+            return result;
+        } catch (RollbackSignal e) {
+            return null;
+        } catch (Exception e) {
+            throw new RuntimeException("Transaction of workspace deletion failed", e);
+        } finally {
+            tx.finish();
+            Directives.remove();
+            dmx.getWebSocketService().flush();
+        }
+    }
+
+    private void collectSummary() {
+        for (Directives.Entry entry : Directives.get()) {
+            if (entry.dir == Directive.DELETE_TOPIC_TYPE || entry.dir == Directive.DELETE_ASSOC_TYPE ||
+                    entry.dir == Directive.DELETE_TOPIC && ((DMXObjectModel) entry.arg).getId() == workspaceId) {
+                summary.add(entry.dir, entry.arg);
+            }
+        }
+    }
+
+    private void broadcastSummary() {
+        try {
+            dmx.getWebSocketService().sendToAll(new JSONObject()
+                .put("type", "processDirectives")
+                .put("args", summary.toJSONArray()).toString()
+            );
+            dmx.getWebSocketService().flush();
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Error while broadcasting the deletion of workspace " + workspaceId, e);
+        }
+    }
+
+    // --- Helper ---
+
+    private List<Long> ids(List<ObjectHeader> headers, String excludedTypeUri) {
+        List<Long> ids = new ArrayList();
+        for (ObjectHeader header : headers) {
+            if (!header.getTypeUri().equals(excludedTypeUri)) {
+                ids.add(header.getId());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Note: an object might have been deleted along with a previously deleted one, e.g. an association along with
+     * its player.
+     */
+    private List<DMXObject> existingObjects(List<Long> ids) {
+        List<DMXObject> objects = new ArrayList();
+        for (long id : ids) {
+            if (dmx.getPrivilegedAccess().objectExists(id)) {
+                objects.add(dmx.getObject(id));
+            } else {
+                logger.fine("Object " + id + " of workspace " + workspaceId + " is deleted already");
+            }
+        }
+        return objects;
+    }
+
+    // -------------------------------------------------------------------------------------------------- Nested Classes
+
+    public enum State {
+        PENDING, RUNNING, DONE, FAILED, ABORTED
+    }
+
+    /**
+     * Thrown within {@link #inTx} to roll back the transaction without failing.
+     */
+    private static class RollbackSignal extends RuntimeException {
+    }
+}
@@ -27,6 +27,7 @@ import systems.dmx.core.service.DirectivesResponse;
 import systems.dmx.core.service.Inject;
 import systems.dmx.core.service.Transactional;
 import systems.dmx.core.service.accesscontrol.SharingMode;
+import systems.dmx.core.service.event.AllPluginsActive;
 import systems.dmx.core.service.event.IntroduceAssocType;
 import systems.dmx.core.service.event.IntroduceRoleType;
 import systems.dmx.core.service.event.IntroduceTopicType;
@@ -44,10 +45,15 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response.Status;
 
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -60,7 +66,8 @@ public class WorkspacesPlugin extends PluginActivator implements WorkspacesServi
                                                                                     IntroduceAssocType,
                                                                                     IntroduceRoleType,
                                                                                     PostCreateTopic,
-                                                                                    PostCreateAssoc {
+                                                                                    PostCreateAssoc,
+                                                                                    AllPluginsActive {
 
     // ------------------------------------------------------------------------------------------------------- Constants
 
@@ -83,6 +90,9 @@ public class WorkspacesPlugin extends PluginActivator implements WorkspacesServi
     @Inject private TopicmapsService topicmapsService;
     @Inject private ConfigService configService;
 
+    private ExecutorService deletionExecutor;
+    private Map<Long, WorkspaceDeletion> deletions = new ConcurrentHashMap();  // key: workspace ID
+
     private Messenger me = new Messenger();
 
     private Logger logger = Logger.getLogger(getClass().getName());
@@ -143,13 +153,31 @@ public class WorkspacesPlugin extends PluginActivator implements WorkspacesServi
     public void deleteWorkspace(@PathParam("workspaceId") long workspaceId) {
         try {
             checkWorkspaceWriteAccess(workspaceId);
-            deleteWorkspaceContent(workspaceId);
-            dmx.getPrivilegedAccess().deleteWorkspaceTopic(workspaceId);
+            WorkspaceDeletion.markPending(dmx.getTopic(workspaceId));
+            startDeletion(workspaceId);
         } catch (Exception e) {
             throw new RuntimeException("Deleting workspace " + workspaceId + " failed", e);
         }
     }
 
+    @GET
+    @Path("/{workspaceId}/deletion")
+    @Override
+    public WorkspaceDeletion getWorkspaceDeletion(@PathParam("workspaceId") long workspaceId) {
+        WorkspaceDeletion deletion = deletions.get(workspaceId);
+        if (deletion == null) {
+            // Note: a deletion run by another process, or started before a restart and not resumed yet, is reported
+            // as stored at the workspace topic. A completed one leaves no trace, as the workspace topic is gone.
+            Topic workspace = workspaceIfExists(workspaceId);
+            deletion = workspace != null ? WorkspaceDeletion.ofPending(workspace, dmx) : null;
+        }
+        if (deletion == null) {
+            throw new WebApplicationException(new RuntimeException("No deletion of workspace " + workspaceId +
+                " is known"), Status.NOT_FOUND);
+        }
+        return deletion;
+    }
+
     // ---
 
     // Note: the "children" query parameter is handled by core's JerseyResponseFilter
@@ -262,10 +290,7 @@ public class WorkspacesPlugin extends PluginActivator implements WorkspacesServi
     @Override
     public List<Topic> getAssignedTopics(@PathParam("id") long workspaceId,
                                          @PathParam("topicTypeUri") String topicTypeUri) {
-        // TODO: optimization. Use getRelatedTopics() by using "Workspace Assignment" type.
-        List<Topic> topics = dmx.getTopicsByType(topicTypeUri);
-        applyWorkspaceFilter(topics.iterator(), workspaceId);
-        return topics;
+        return dmx.getTopicsByTypeAndProperty(topicTypeUri, PROP_WORKSPACE_ID, workspaceId);
     }
 
     // Note: the "children" query parameter is handled by core's JerseyResponseFilter
@@ -274,9 +299,7 @@ public class WorkspacesPlugin extends PluginActivator implements WorkspacesServi
     @Override
     public List<Assoc> getAssignedAssocs(@PathParam("id") long workspaceId,
                                          @PathParam("assocTypeUri") String assocTypeUri) {
-        List<Assoc> assocs = dmx.getAssocsByType(assocTypeUri);
-        applyWorkspaceFilter(assocs.iterator(), workspaceId);
-        return assocs;
+        return dmx.getAssocsByTypeAndProperty(assocTypeUri, PROP_WORKSPACE_ID, workspaceId);
     }
 
 
@@ -304,8 +327,21 @@ public class WorkspacesPlugin extends PluginActivator implements WorkspacesServi
         ));
     }
 
+    @Override
+    public void init() {
+        deletionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "dmx-workspace-deletion");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
     @Override
     public void shutdown() {
+        // Note: an interrupted deletion is resumed at next start
+        if (deletionExecutor != null) {
+            deletionExecutor.shutdownNow();
+        }
         // Note 1: unregistering is crucial e.g. for redeploying the Workspaces plugin. The next register call
         // (at preInstall() time) would fail as the Config service already holds such a registration.
         // Note 2: we must check if the Config service is still available. If the Config plugin is redeployed the
@@ -386,6 +422,25 @@ public class WorkspacesPlugin extends PluginActivator implements WorkspacesServi
         assignRoleTypeToWorkspace(roleType, workspaceId);
     }
 
+    /**
+     * Resumes the workspace deletions which were not complete when the platform stopped.
+     * <p>
+     * Note: we resume only once all plugins are active. The deletion fires events other plugins might rely on.
+     */
+    @Override
+    public void allPluginsActive() {
+        try {
+            for (Topic workspace : dmx.getTopicsByType(WORKSPACE)) {
+                if (WorkspaceDeletion.isPending(workspace)) {
+                    logger.info("### Resuming deletion of workspace " + workspace.getId());
+                    startDeletion(workspace.getId());
+                }
+            }
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Resuming the pending workspace deletions failed", e);
+        }
+    }
+
     // ---
 
     /**
@@ -551,43 +606,34 @@ public class WorkspacesPlugin extends PluginActivator implements WorkspacesServi
 
     // ---
 
-    private void deleteWorkspaceContent(long workspaceId) {
-        try {
-            // 1) delete instances by type
-            // Note: also instances assigned to other workspaces must be deleted
-            // FIXME: privileged deletion; current user might have no WRITE access for other workspace
-            for (Topic topicType : getAssignedTopics(workspaceId, TOPIC_TYPE)) {
-                String typeUri = topicType.getUri();
-                for (Topic topic : dmx.getTopicsByType(typeUri)) {
-                    topic.delete();
-                }
-                dmx.getTopicType(typeUri).delete();
-            }
-            for (Topic assocType : getAssignedTopics(workspaceId, ASSOC_TYPE)) {
-                String typeUri = assocType.getUri();
-                for (Assoc assoc : dmx.getAssocsByType(typeUri)) {
-                    assoc.delete();
-                }
-                dmx.getAssocType(typeUri).delete();
-            }
-            // 2) delete remaining instances
-            for (Topic topic : getAssignedTopics(workspaceId)) {
-                topic.delete();
-            }
-            for (Assoc assoc : getAssignedAssocs(workspaceId)) {
-                // TODO: can't use AC constant -> cyclic dependency
-                // TODO: move Membership type to Workspaces module?
-                if (!assoc.getTypeUri().equals("dmx.accesscontrol.membership")) {
-                    assoc.delete();
-                }
-            }
-        } catch (Exception e) {
-            throw new RuntimeException("Deleting content of workspace " + workspaceId + " failed", e);
+    /**
+     * Starts the background deletion of a workspace, unless a deletion of that workspace is already in progress.
+     */
+    private synchronized void startDeletion(long workspaceId) {
+        WorkspaceDeletion deletion = deletions.get(workspaceId);
+        if (deletion != null && deletion.isActive()) {
+            logger.info("### Deleting workspace " + workspaceId + " SKIPPED -- already in progress");
+            return;
         }
+        deletion = new WorkspaceDeletion(workspaceId, dmx);
+        deletions.put(workspaceId, deletion);
+        deletionExecutor.execute(deletion);
     }
 
     // --- Helper ---
 
+    /**
+     * @return  the workspace topic, or <code>null</code> if there is no (readable) workspace with the given ID.
+     */
+    private Topic workspaceIfExists(long workspaceId) {
+        try {
+            Topic workspace = dmx.getTopic(workspaceId);
+            return workspace.getTypeUri().equals(WORKSPACE) ? workspace : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     private boolean isDMXStandardType(DMXObject object) {
         return object.getUri().startsWith("dmx.");
     }
@@ -637,15 +683,6 @@ public class WorkspacesPlugin extends PluginActivator implements WorkspacesServi
         return dmx.getPrivilegedAccess().getDMXWorkspaceId();
     }
 
-    private void applyWorkspaceFilter(Iterator<? extends DMXObject> objects, long workspaceId) {
-        while (objects.hasNext()) {
-            DMXObject object = objects.next();
-            if (getAssignedWorkspaceId(object.getId()) != workspaceId) {
-                objects.remove();
-            }
-        }
-    }
-
     private void setEnabledSharingModesLabel(Topic topic) {
         if (topic.getTypeUri().equals(ENABLED_SHARING_MODES)) {
             topic.setSimpleValue(ENABLED_SHARING_MODES_LABEL);
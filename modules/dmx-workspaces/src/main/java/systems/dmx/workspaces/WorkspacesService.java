@@ -30,8 +30,28 @@ public interface WorkspacesService {
      */
     Topic createWorkspace(String name, String uri, SharingMode sharingMode);
 
+    /**
+     * Deletes a workspace along with its content.
+     * <p>
+     * Only the permission check is performed synchronously. The actual deletion runs in the background, in batches,
+     * each batch committed separately. Once the deletion is complete a summary is broadcasted to the clients. The
+     * progress is reported by {@link #getWorkspaceDeletion}. An incomplete deletion is resumed at next platform start.
+     * <p>
+     * If a deletion is already in progress for the given workspace, nothing is done.
+     *
+     * @throws  RuntimeException    If the current user has no WRITE permission for the workspace.
+     */
     void deleteWorkspace(long workspaceId);
 
+    /**
+     * Returns the progress of the deletion of the given workspace. A deletion not run by this process (e.g. one
+     * started before a restart and not resumed yet) is reported as stored at the workspace topic.
+     *
+     * @throws  javax.ws.rs.WebApplicationException  404 Not Found if no deletion of the given workspace is known:
+     *                                              neither one run since platform start, nor a pending one.
+     */
+    WorkspaceDeletion getWorkspaceDeletion(long workspaceId);
+
     // ---
 
     /**
@@ -0,0 +1,167 @@
+package systems.dmx.workspaces;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import systems.dmx.core.Topic;
+import systems.dmx.core.service.CoreService;
+import systems.dmx.core.service.accesscontrol.PrivilegedAccess;
+import systems.dmx.core.service.websocket.WebSocketService;
+import systems.dmx.core.storage.spi.DMXTransaction;
+import systems.dmx.core.storage.spi.ObjectHeader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+import static systems.dmx.workspaces.WorkspaceDeletion.PROP_DELETED_OBJECTS;
+import static systems.dmx.workspaces.WorkspacesService.PROP_WORKSPACE_ID;
+
+public class WorkspaceDeletionTest {
+
+    static {
+        System.setProperty("dmx.workspaces.deletion_batch_size", "2");
+    }
+
+    private static final long WORKSPACE_ID = 1;
+
+    private final CoreService dmx = mock();
+    private final PrivilegedAccess pa = mock();
+
+    private final Map<String, Object> workspaceProps = new HashMap();
+    private final Topic workspace = mock();
+
+    // 5 topics assigned to the workspace, IDs 11-15
+    private final List<Topic> topics = new ArrayList();
+    private final List<ObjectHeader> headers = new ArrayList();
+
+    @BeforeEach
+    public void before() {
+        when(dmx.beginTx()).thenReturn(mock(DMXTransaction.class));
+        when(dmx.getWebSocketService()).thenReturn(mock(WebSocketService.class));
+        when(dmx.getPrivilegedAccess()).thenReturn(pa);
+        // the workspace topic stores its properties in a map
+        when(workspace.getId()).thenReturn(WORKSPACE_ID);
+        when(workspace.hasProperty(anyString())).then(i -> workspaceProps.containsKey(i.getArgument(0)));
+        when(workspace.getProperty(anyString())).then(i -> workspaceProps.get(i.getArgument(0)));
+        doAnswer(i -> workspaceProps.put(i.getArgument(0), i.getArgument(1)))
+            .when(workspace).setProperty(anyString(), any(), anyBoolean());
+        when(dmx.getTopic(WORKSPACE_ID)).thenReturn(workspace);
+        //
+        for (long id = 11; id <= 15; id++) {
+            Topic topic = mock();
+            when(topic.getId()).thenReturn(id);
+            when(topic.getTypeUri()).thenReturn("dmx.notes.note");
+            when(dmx.getObject(id)).thenReturn(topic);
+            when(pa.objectExists(id)).thenReturn(true);
+            topics.add(topic);
+            headers.add(new ObjectHeader(id, "dmx.notes.note"));
+        }
+        when(pa.getTopicHeadersByProperty(PROP_WORKSPACE_ID, WORKSPACE_ID)).thenReturn(headers);
+        //
+        WorkspaceDeletion.markPending(workspace);
+    }
+
+    @AfterEach
+    public void after() {
+        Thread.interrupted();   // clears the interrupted status
+    }
+
+    // --- progress ---
+
+    @Test
+    void deletes_in_batches_and_reports_progress() {
+        WorkspaceDeletion deletion = new WorkspaceDeletion(WORKSPACE_ID, dmx);
+        deletion.run();
+        assertThat(deletion.getState()).isEqualTo(WorkspaceDeletion.State.DONE);
+        assertThat(deletion.getDeletedObjects()).isEqualTo(5);
+        // batch size 2: the progress is stored after each batch
+        verify(workspace).setProperty(PROP_DELETED_OBJECTS, 2L, false);
+        verify(workspace).setProperty(PROP_DELETED_OBJECTS, 4L, false);
+        verify(workspace).setProperty(PROP_DELETED_OBJECTS, 5L, false);
+        for (Topic topic : topics) {
+            verify(topic).delete();
+        }
+        verify(pa).deleteWorkspaceTopic(WORKSPACE_ID);
+    }
+
+    @Test
+    void fetches_the_ids_once() {
+        new WorkspaceDeletion(WORKSPACE_ID, dmx).run();
+        verify(pa, times(1)).getTopicHeadersByProperty(PROP_WORKSPACE_ID, WORKSPACE_ID);
+        verify(pa, times(1)).getAssocHeadersByProperty(PROP_WORKSPACE_ID, WORKSPACE_ID);
+        // the objects are not instantiated for fetching the IDs
+        verify(dmx, never()).getTopicsByProperty(anyString(), any());
+        verify(dmx, never()).getAssocsByProperty(anyString(), any());
+    }
+
+    @Test
+    void skips_objects_deleted_along_with_others() {
+        when(pa.objectExists(13)).thenReturn(false);
+        WorkspaceDeletion deletion = new WorkspaceDeletion(WORKSPACE_ID, dmx);
+        deletion.run();
+        assertThat(deletion.getState()).isEqualTo(WorkspaceDeletion.State.DONE);
+        assertThat(deletion.getDeletedObjects()).isEqualTo(4);
+        verify(dmx, never()).getObject(13);
+    }
+
+    @Test
+    void fails_if_an_existing_object_can_not_be_fetched() {
+        when(dmx.getObject(13)).thenThrow(new RuntimeException("Fetching object 13 failed"));
+        WorkspaceDeletion deletion = new WorkspaceDeletion(WORKSPACE_ID, dmx);
+        deletion.run();
+        assertThat(deletion.getState()).isEqualTo(WorkspaceDeletion.State.FAILED);
+        verify(pa, never()).deleteWorkspaceTopic(anyLong());
+        assertThat(WorkspaceDeletion.isPending(workspace)).isTrue();
+    }
+
+    @Test
+    void does_not_run_if_not_pending() {
+        workspaceProps.clear();
+        WorkspaceDeletion deletion = new WorkspaceDeletion(WORKSPACE_ID, dmx);
+        deletion.run();
+        assertThat(deletion.getState()).isEqualTo(WorkspaceDeletion.State.ABORTED);
+        verify(dmx, never()).getObject(anyLong());
+        verify(pa, never()).deleteWorkspaceTopic(anyLong());
+    }
+
+    // --- interruption ---
+
+    @Test
+    void interrupted_deletion_is_resumed_with_its_progress() {
+        // the interruption takes effect before the next batch
+        doAnswer(i -> {
+            Thread.currentThread().interrupt();
+            return null;
+        }).when(topics.get(2)).delete();
+        WorkspaceDeletion deletion = new WorkspaceDeletion(WORKSPACE_ID, dmx);
+        deletion.run();
+        assertThat(deletion.getState()).isEqualTo(WorkspaceDeletion.State.FAILED);
+        assertThat(deletion.getDeletedObjects()).isEqualTo(4);
+        verify(topics.get(4), never()).delete();
+        verify(pa, never()).deleteWorkspaceTopic(anyLong());
+        assertThat(WorkspaceDeletion.isPending(workspace)).isTrue();
+        // the progress is reported from the workspace topic, e.g. after a restart
+        Thread.interrupted();
+        WorkspaceDeletion pending = WorkspaceDeletion.ofPending(workspace, dmx);
+        assertThat(pending.getState()).isEqualTo(WorkspaceDeletion.State.PENDING);
+        assertThat(pending.getDeletedObjects()).isEqualTo(4);
+        // resume: just the last topic is left
+        when(pa.getTopicHeadersByProperty(PROP_WORKSPACE_ID, WORKSPACE_ID)).thenReturn(Arrays.asList(headers.get(4)));
+        pending.run();
+        assertThat(pending.getState()).isEqualTo(WorkspaceDeletion.State.DONE);
+        assertThat(pending.getDeletedObjects()).isEqualTo(5);
+        verify(topics.get(4)).delete();
+        verify(pa).deleteWorkspaceTopic(WORKSPACE_ID);
+    }
+
+    @Test
+    void no_pending_deletion_is_reported_for_an_unmarked_workspace() {
+        workspaceProps.clear();
+        assertThat(WorkspaceDeletion.ofPending(workspace, dmx)).isNull();
+    }
+}